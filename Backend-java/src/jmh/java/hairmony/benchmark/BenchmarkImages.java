@@ -0,0 +1,50 @@
+package hairmony.benchmark;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.*;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_CUBIC;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * The bundled test images (src/test/resources) re-encoded as JPEG at a given size,
+ * so each stage can be measured at phone-photo resolutions and not only at the file's own.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * JPEG (quality 90) of the resource scaled so its longer side is longSide pixels.
+     */
+    static byte[] jpeg(String resource, int longSide) throws IOException {
+        byte[] source;
+        try (InputStream in = BenchmarkImages.class.getResourceAsStream("/" + resource)) {
+            if (in == null) {
+                throw new IOException("Benchmark image not on the classpath: " + resource);
+            }
+            source = in.readAllBytes();
+        }
+        try (PointerScope scope = new PointerScope()) {
+            Mat image = imdecode(new Mat(source), IMREAD_COLOR);
+            double scale = (double) longSide / Math.max(image.cols(), image.rows());
+            Mat scaled = new Mat();
+            resize(image, scaled, new Size((int) Math.round(image.cols() * scale), (int) Math.round(image.rows() * scale)),
+                    0, 0, INTER_CUBIC);
+
+            BytePointer buffer = new BytePointer();
+            imencode(".jpg", scaled, buffer, new IntPointer(IMWRITE_JPEG_QUALITY, 90));
+            byte[] jpeg = new byte[(int) buffer.capacity()];
+            buffer.get(jpeg);
+            return jpeg;
+        }
+    }
+}
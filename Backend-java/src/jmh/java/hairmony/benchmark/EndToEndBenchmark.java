@@ -0,0 +1,75 @@
+package hairmony.benchmark;
+
+import hairmony.dto.FaceAnalysisResponse;
+import hairmony.repository.HaircutRepository;
+import hairmony.service.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole /AI/analyze-face pipeline (upload ingestion, decode, parallel detect/landmarks/forehead,
+ * classify, mapping) against a local forehead sidecar stub. The cache is sized to zero so every
+ * invocation runs the pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EndToEndBenchmark {
+
+    @Param({"640", "1920", "4000"})
+    public int longSide;
+
+    @Param({"test-face.png", "no-face.jpg"})
+    public String image;
+
+    private ForeheadSidecarStub sidecar;
+    private ExecutorService pipelineExecutor;
+    private ExecutorService sidecarExecutor;
+    private AIServiceImpl aiService;
+    private MockMultipartFile upload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        sidecar = new ForeheadSidecarStub();
+        pipelineExecutor = Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors());
+        sidecarExecutor = Executors.newCachedThreadPool();
+        FaceShapeDetectorServiceImpl faceShape = new FaceShapeDetectorServiceImpl();
+        faceShape.init();
+        aiService = new AIServiceImpl(
+                new FaceDetectionService(0, 30_000),
+                faceShape,
+                new HaircutCatalog(Mockito.mock(HaircutRepository.class)),
+                new ForeheadSidecarGuard(new HttpForeheadTipProvider(sidecar.url()), sidecarExecutor,
+                        new SimpleMeterRegistry(), 1_500, 16, 5, 10_000),
+                new FaceAnalysisCache(0, 1),
+                new UploadBufferPool(0, 64L << 20, 4L << 20, 30_000),
+                new FaceAnalysisMetrics(new SimpleMeterRegistry()),
+                pipelineExecutor);
+        upload = new MockMultipartFile("file", image, "image/jpeg", BenchmarkImages.jpeg(image, longSide));
+
+        FaceAnalysisResponse response = aiService.analyzeFace(upload);
+        if (response.shape() != null && response.shape().startsWith("Internal error")) {
+            throw new IllegalStateException("Pipeline failed during setup: " + response.shape());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipelineExecutor.shutdownNow();
+        sidecarExecutor.shutdownNow();
+        sidecar.close();
+    }
+
+    @Benchmark
+    public FaceAnalysisResponse analyzeFace() {
+        return aiService.analyzeFace(upload);
+    }
+}
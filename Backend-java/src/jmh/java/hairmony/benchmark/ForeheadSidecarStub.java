@@ -0,0 +1,46 @@
+package hairmony.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the Python /detect-forehead endpoint: reads the base64 JSON body and answers
+ * with a fixed tip, so the end-to-end numbers include the HTTP/JSON round trip but not MediaPipe.
+ */
+final class ForeheadSidecarStub implements AutoCloseable {
+
+    private static final byte[] RESPONSE = "{\"forehead_x\": 300.0, \"forehead_y\": 120.0}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+
+    ForeheadSidecarStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/detect-forehead", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(RESPONSE);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/detect-forehead";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,139 @@
+package hairmony.benchmark;
+
+import hairmony.dto.PointDTO;
+import hairmony.service.FaceDetectionService;
+import hairmony.service.FaceShapeDetectorServiceImpl;
+import hairmony.service.ImageHeader;
+import hairmony.serviceInterfaces.IFaceShapeDetector;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point2fVectorVector;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static hairmony.service.FaceImageUtils.*;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
+
+/**
+ * One benchmark per AIServiceImpl stage, fed with what the previous stage produces for
+ * test-face.png at the given size. Every invocation frees its Mats in a PointerScope like the
+ * pipeline does, so the GC profiler's alloc rate is the heap side only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PipelineStageBenchmark {
+
+    // Longer side of the uploaded JPEG: webcam frame, full HD, 12 MP phone photo
+    @Param({"640", "1920", "4000"})
+    public int longSide;
+
+    private byte[] jpeg;
+    private int reduction;
+    private Mat decoded;
+    private Mat padded;
+    private FaceDetectionService faceDetection;
+    private FaceShapeDetectorServiceImpl faceShape;
+    private Rect faceRect;
+    private Point2fVectorVector landmarks;
+    private final PointDTO foreheadTip = new PointDTO(300.0, 120.0);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        jpeg = BenchmarkImages.jpeg("test-face.png", longSide);
+        reduction = ImageHeader.read(jpeg).reductionFor(CANVAS_SIZE);
+        decoded = imdecode(new Mat(jpeg), decodeFlags(reduction));
+        padded = resizeAndPad(decoded, CANVAS_SIZE, CANVAS_SIZE);
+
+        faceDetection = new FaceDetectionService(1, 30_000);
+        faceShape = new FaceShapeDetectorServiceImpl();
+        faceShape.init();
+        faceRect = faceDetection.detectFace(padded);
+        if (faceRect == null) {
+            throw new IllegalStateException("No face detected in test-face.png at " + longSide + " px");
+        }
+        landmarks = faceShape.detectLandmarks(padded, faceRect);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        landmarks.close();
+        faceRect.close();
+        padded.close();
+        decoded.close();
+    }
+
+    @Benchmark
+    public int decodeFull() {
+        try (PointerScope scope = new PointerScope()) {
+            return imdecode(encodedMat(ByteBuffer.wrap(jpeg)), IMREAD_COLOR).cols();
+        }
+    }
+
+    /**
+     * What the pipeline actually does: header-driven 1/2..1/8 decode (same as decodeFull for small images).
+     */
+    @Benchmark
+    public int decodeReduced() {
+        try (PointerScope scope = new PointerScope()) {
+            ImageHeader header = ImageHeader.read(jpeg);
+            return imdecode(encodedMat(ByteBuffer.wrap(jpeg)), decodeFlags(header.reductionFor(CANVAS_SIZE))).cols();
+        }
+    }
+
+    @Benchmark
+    public int resizeAndPadStage() {
+        try (PointerScope scope = new PointerScope()) {
+            return resizeAndPad(decoded, CANVAS_SIZE, CANVAS_SIZE).cols();
+        }
+    }
+
+    /**
+     * JPEG encode of the canvas sent to the forehead sidecar.
+     */
+    @Benchmark
+    public byte[] matToBytesStage() {
+        try (PointerScope scope = new PointerScope()) {
+            return matToBytes(padded);
+        }
+    }
+
+    @Benchmark
+    public int detectFace() {
+        try (PointerScope scope = new PointerScope()) {
+            Rect rect = faceDetection.detectFace(padded);
+            return rect == null ? 0 : rect.width();
+        }
+    }
+
+    @Benchmark
+    public long detectLandmarks() {
+        try (PointerScope scope = new PointerScope()) {
+            return faceShape.detectLandmarks(padded, faceRect).get(0).size();
+        }
+    }
+
+    @Benchmark
+    public IFaceShapeDetector.ClassificationResult classifyFaceShape() {
+        return faceShape.classifyFaceShape(landmarks, faceRect, foreheadTip.x(), foreheadTip.y());
+    }
+
+    /**
+     * Landmarks, face rect and forehead tip back to the uploaded image's coordinates.
+     */
+    @Benchmark
+    public void mapToOriginal(Blackhole blackhole) {
+        int width = decoded.cols() * reduction;
+        int height = decoded.rows() * reduction;
+        blackhole.consume(mapLandmarksToOriginal(landmarks, padded, width, height));
+        blackhole.consume(mapFaceRectToOriginal(faceRect, padded, width, height));
+        blackhole.consume(mapForeheadTipToOriginal(foreheadTip, padded, width, height));
+    }
+}
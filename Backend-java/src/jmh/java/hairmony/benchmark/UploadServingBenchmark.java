@@ -0,0 +1,132 @@
+package hairmony.benchmark;
+
+import hairmony.service.ImageVariantServiceImpl;
+import hairmony.service.LocalObjectStorage;
+import hairmony.service.UploadFileServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /uploads/** throughput over real HTTP (embedded Tomcat, NIO connector with sendfile) for the
+ * previous Spring resource handler ("resource") and {@link UploadFileServer} ("upload"), on a
+ * thumbnail-sized and a photo-sized content-addressed file. With revalidate=true the client sends
+ * back the validators of its first response, as a browser with the file cached does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+public class UploadServingBenchmark {
+
+    @Param({"resource", "upload"})
+    public String handler;
+
+    @Param({"24", "2048"})
+    public int fileKb;
+
+    @Param({"false", "true"})
+    public boolean revalidate;
+
+    private Path dir;
+    private Tomcat tomcat;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("hairmony-uploads-bench");
+        byte[] content = new byte[fileKb * 1024];
+        new Random(42).nextBytes(content);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        String relative = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".jpg";
+        Files.createDirectories(dir.resolve(relative).getParent());
+        Files.write(dir.resolve(relative), content);
+
+        ResourceHttpRequestHandler resourceHandler = new ResourceHttpRequestHandler();
+        resourceHandler.setLocations(List.of(new FileSystemResource(dir + "/")));
+        resourceHandler.afterPropertiesSet();
+        UploadFileServer uploadServer = new UploadFileServer(
+                new ImageVariantServiceImpl(dir.toString(), Executors.newSingleThreadExecutor(),
+                        new SimpleMeterRegistry(), "jpg", 82, 160, 640, false),
+                new LocalObjectStorage(dir.toString()),
+                new SimpleMeterRegistry(), dir.toString(), 32L << 20, 256 * 1024, 48 * 1024, 0);
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(dir.resolve(".tomcat").toString());
+        tomcat.setPort(0);
+        Context context = tomcat.addContext("", dir.toString());
+        Tomcat.addServlet(context, "resource", new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                try {
+                    req.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, req.getPathInfo().substring(1));
+                    resourceHandler.handleRequest(req, resp);
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            }
+        });
+        context.addServletMappingDecoded("/resource/*", "resource");
+        Tomcat.addServlet(context, "upload", new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                uploadServer.serve(req.getPathInfo().substring(1), req.getParameter("size"), req, resp);
+            }
+        });
+        context.addServletMappingDecoded("/upload/*", "upload");
+        tomcat.getConnector();
+        tomcat.start();
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI uri = URI.create("http://127.0.0.1:" + tomcat.getConnector().getLocalPort() + "/" + handler + "/" + relative);
+        HttpResponse<Void> first = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding());
+        if (first.statusCode() != 200) {
+            throw new IllegalStateException(handler + " answered " + first.statusCode());
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        if (revalidate) {
+            first.headers().firstValue("ETag").ifPresent(etag -> builder.header("If-None-Match", etag));
+            first.headers().firstValue("Last-Modified").ifPresent(date -> builder.header("If-Modified-Since", date));
+        }
+        request = builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        tomcat.stop();
+        tomcat.destroy();
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int get() throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
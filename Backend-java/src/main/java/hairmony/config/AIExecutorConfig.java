@@ -0,0 +1,83 @@
+package hairmony.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class AIExecutorConfig {
+
+    // Loads the pooled models (Haar, LBF) concurrently at boot and runs the warm-up. Threads time out
+    // once startup is over, so it costs nothing afterwards.
+    @Bean(name = "aiStartupExecutor", destroyMethod = "shutdown")
+    public ExecutorService aiStartupExecutor(@Value("${ai.models.load-threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("ai-startup-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Runs the concurrent stages of one face analysis (forehead lookup, Haar detection, LBF fitting)
+    @Bean(name = "aiPipelineExecutor", destroyMethod = "shutdown")
+    public ExecutorService aiPipelineExecutor(@Value("${ai.pipeline.threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("ai-pipeline-"));
+    }
+
+    // Forehead sidecar calls, so each can be abandoned at its deadline. Never queues: the sidecar guard's
+    // bulkhead admits at most max-concurrent calls, and a call keeps its thread until it returns.
+    @Bean(name = "aiSidecarExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService aiSidecarExecutor(@Value("${ai.forehead.max-concurrent:16}") int maxConcurrent) {
+        int size = Math.max(1, maxConcurrent);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("ai-sidecar-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Workers for /AI/analyze-faces. When the queue is full the submitting (streaming) thread runs
+    // the item itself, which slows that batch down instead of letting it grow the queue.
+    @Bean(name = "aiBatchExecutor", destroyMethod = "shutdown")
+    public ExecutorService aiBatchExecutor(@Value("${ai.batch.threads:0}") int threads,
+                                           @Value("${ai.batch.queue-capacity:32}") int queueCapacity) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("ai-batch-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Workers for /AI/jobs. The queue is the job backlog itself: when it is full the submission is
+    // rejected (HTTP 429) instead of piling up images in memory or blocking a Tomcat thread.
+    @Bean(name = "aiJobExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor aiJobExecutor(@Value("${ai.jobs.workers:0}") int threads,
+                                            @Value("${ai.jobs.queue-capacity:64}") int queueCapacity) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("ai-job-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Runs /AI/live frames. Each connection has at most one frame queued (newer frames replace it),
+    // so the queue is bounded by the number of open sessions rather than by the client frame rate.
+    @Bean(name = "aiLiveExecutor", destroyMethod = "shutdown")
+    public ExecutorService aiLiveExecutor(@Value("${ai.live.threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("ai-live-"));
+    }
+}
@@ -10,9 +10,15 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class JWTAuthenticationFilter extends GenericFilter {
 
+    // WebSocket subprotocol a browser offers together with its JWT: new WebSocket(url, ["bearer", token])
+    public static final String WEBSOCKET_TOKEN_PROTOCOL = "bearer";
+
     private final JWTUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
 
@@ -27,9 +33,17 @@ public class JWTAuthenticationFilter extends GenericFilter {
                          FilterChain chain) throws IOException, ServletException {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
         String authHeader = httpRequest.getHeader("Authorization");
+        String jwtToken = null;
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String jwtToken = authHeader.substring(7);
+            jwtToken = authHeader.substring(7);
+        } else if ("websocket".equalsIgnoreCase(httpRequest.getHeader("Upgrade"))) {
+            // Browsers can't send headers on a WebSocket handshake (/AI/live), so the token comes as the
+            // subprotocol offered after "bearer". Not in the URL: request URIs end up in logs
+            jwtToken = webSocketToken(httpRequest);
+        }
+
+        if (jwtToken != null) {
             try {
                 if (jwtUtil.validateToken(jwtToken)) {
                     String username = jwtUtil.getUsernameFromToken(jwtToken);
@@ -53,4 +67,15 @@ public class JWTAuthenticationFilter extends GenericFilter {
 
         chain.doFilter(request, response);
     }
+
+    private static String webSocketToken(HttpServletRequest request) {
+        List<String> offered = new ArrayList<>();
+        for (String header : Collections.list(request.getHeaders("Sec-WebSocket-Protocol"))) {
+            for (String protocol : header.split(",")) {
+                offered.add(protocol.trim());
+            }
+        }
+        int bearer = offered.indexOf(WEBSOCKET_TOKEN_PROTOCOL);
+        return bearer >= 0 && bearer + 1 < offered.size() ? offered.get(bearer + 1) : null;
+    }
 }
@@ -42,9 +42,16 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers(
                                 "/auth/**",
-                                "/uploads/**"
-
+                                "/uploads/**",
+                                "/actuator/health",
+                                "/actuator/health/**"
                         ).permitAll()
+                        // Pool, memory and traffic figures are not for everyone: scrape with an admin token
+                        .requestMatchers("/actuator/prometheus").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.DELETE, "/AI/cache", "/AI/cache/**").hasRole("ADMIN")
+                        // A barber's own hours (BarberController checks it is theirs); a shop's are for admins
+                        .requestMatchers(HttpMethod.PUT, "/barbers/*/working-hours").hasAnyRole("BARBER", "ADMIN")
+                        .requestMatchers(HttpMethod.PUT, "/barbershops/*/working-hours").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
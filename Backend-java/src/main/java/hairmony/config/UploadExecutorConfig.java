@@ -0,0 +1,43 @@
+package hairmony.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class UploadExecutorConfig {
+
+    // Streams uploads to disk for the file storage service, which bounds how many are written at once.
+    // A full queue is answered with 429 rather than parking more request threads on disk I/O.
+    @Bean(name = "uploadIoExecutor", destroyMethod = "shutdown")
+    public ExecutorService uploadIoExecutor(@Value("${uploads.io.threads:4}") int threads,
+                                            @Value("${uploads.io.queue-capacity:64}") int queueCapacity) {
+        int size = Math.max(1, threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("upload-io-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Generates thumbnail/medium variants of uploaded pictures. A full queue rejects the job: the
+    // original is served until the next backfill, and the uploading request is never held up.
+    @Bean(name = "uploadImageExecutor", destroyMethod = "shutdown")
+    public ExecutorService uploadImageExecutor(@Value("${uploads.variants.threads:2}") int threads,
+                                               @Value("${uploads.variants.queue-capacity:256}") int queueCapacity) {
+        int size = Math.max(1, threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("upload-image-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
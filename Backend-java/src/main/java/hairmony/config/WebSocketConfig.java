@@ -0,0 +1,36 @@
+package hairmony.config;
+
+import hairmony.controller.LiveFaceWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final LiveFaceWebSocketHandler liveFaceWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // The handshake is authenticated by JWTAuthenticationFilter (JWT offered as a subprotocol after "bearer")
+        registry.addHandler(liveFaceWebSocketHandler, "/AI/live")
+                .setAllowedOrigins("http://localhost:4000"); // Frontend origin
+    }
+
+    // A webcam JPEG is well above Tomcat's 8 KB default message buffer
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(
+            @Value("${ai.live.max-frame-bytes:2097152}") int maxFrameBytes) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxBinaryMessageBufferSize(maxFrameBytes);
+        container.setMaxTextMessageBufferSize(8192);
+        return container;
+    }
+}
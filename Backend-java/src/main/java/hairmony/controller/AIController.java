@@ -1,22 +1,170 @@
 package hairmony.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hairmony.dto.AnalysisJobStatus;
+import hairmony.dto.BatchAnalysisItem;
 import hairmony.dto.FaceAnalysisResponse;
+import hairmony.service.CustomUserDetails;
+import hairmony.service.UploadBuffer;
 import hairmony.serviceInterfaces.AIServiceInf;
+import hairmony.serviceInterfaces.AnalysisJobServiceInf;
+import hairmony.serviceInterfaces.BatchAnalysisServiceInf;
+import hairmony.serviceInterfaces.BatchAnalysisServiceInf.BatchSlot;
+import hairmony.serviceInterfaces.QuotaServiceInf;
+import hairmony.serviceInterfaces.QuotaServiceInf.Feature;
+import hairmony.serviceInterfaces.QuotaServiceInf.Grant;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/AI")
 @RequiredArgsConstructor
 public class AIController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final AIServiceInf aiService;
+    private final BatchAnalysisServiceInf batchAnalysisService;
+    private final AnalysisJobServiceInf analysisJobService;
+    private final QuotaServiceInf quotaService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ai.batch.max-files:200}")
+    private final int maxBatchFiles;
 
+    // Takes one upload trial up front (402 when none are left) and gives it back if the analysis fails
     @PostMapping("/analyze-face")
-    public ResponseEntity<FaceAnalysisResponse> analyzeFace(@RequestParam("file") MultipartFile file) {
-        FaceAnalysisResponse response = aiService.analyzeFace(file);
+    public ResponseEntity<FaceAnalysisResponse> analyzeFace(@RequestParam("file") MultipartFile file,
+                                                            @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userId(userDetails);
+        Grant grant = quotaService.consume(userId, Feature.UPLOAD);
+        FaceAnalysisResponse response;
+        try {
+            response = aiService.analyzeFace(file);
+        } catch (RuntimeException e) {
+            quotaService.refund(userId, Feature.UPLOAD, grant);
+            throw e;
+        }
+        if (!response.analyzed()) {
+            quotaService.refund(userId, Feature.UPLOAD, grant);
+        }
         return ResponseEntity.ok(response);
     }
+
+    // Many images in one request; one NDJSON line per image, streamed as each analysis finishes.
+    // 429 when the user already has ai.batch.max-concurrent-per-user batches running. Each image is charged
+    // on its own; past the user's quota the item carries the payment message instead of a result
+    @PostMapping(value = "/analyze-faces", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> analyzeFaces(@RequestParam("files") List<MultipartFile> files,
+                                                              @AuthenticationPrincipal UserDetails userDetails) {
+        if (files.size() > maxBatchFiles) {
+            BatchAnalysisItem tooMany = new BatchAnalysisItem(-1, null, null,
+                    "Too many files: " + files.size() + " (max " + maxBatchFiles + ")");
+            return ResponseEntity.badRequest().contentType(NDJSON).body(out -> writeLine(out, tooMany));
+        }
+        Long userId = userId(userDetails);
+        BatchSlot slot = batchAnalysisService.reserve(userId);
+        StreamingResponseBody body = out -> {
+            try (slot) {
+                batchAnalysisService.analyzeBatch(userId, files, item -> {
+                    try {
+                        writeLine(out, item);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    // Async mode: queue the image and return 202 with the job id; 429 + Retry-After when the queue is full
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitJob(@RequestParam("file") MultipartFile file,
+                                       @AuthenticationPrincipal UserDetails userDetails) {
+        Long userId = userId(userDetails);
+        Grant grant = quotaService.consume(userId, Feature.UPLOAD);
+        try {
+            AnalysisJobStatus job = analysisJobService.submit(file, userDetails.getUsername(),
+                    () -> quotaService.refund(userId, Feature.UPLOAD, grant));
+            return ResponseEntity.accepted()
+                    .location(URI.create("/AI/jobs/" + job.id()))
+                    .body(job);
+        } catch (UploadBuffer.UploadTooLargeException e) {
+            quotaService.refund(userId, Feature.UPLOAD, grant);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("message", e.getMessage()));
+        } catch (RuntimeException e) {
+            quotaService.refund(userId, Feature.UPLOAD, grant);
+            throw e;
+        }
+    }
+
+    // Poll a job; with waitMs > 0 the response is held (without a Tomcat thread) until it finishes or the wait ends
+    @GetMapping("/jobs/{jobId}")
+    public CompletableFuture<ResponseEntity<AnalysisJobStatus>> getJob(@PathVariable String jobId,
+                                                                       @RequestParam(defaultValue = "0") long waitMs,
+                                                                       @AuthenticationPrincipal UserDetails userDetails) {
+        String owner = userDetails.getUsername();
+        if (waitMs <= 0) {
+            return CompletableFuture.completedFuture(analysisJobService.get(jobId, owner)
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.notFound().build()));
+        }
+        return analysisJobService.await(jobId, owner, Duration.ofMillis(waitMs))
+                .map(status -> status.thenApply(ResponseEntity::ok))
+                .orElseGet(() -> CompletableFuture.completedFuture(ResponseEntity.notFound().build()));
+    }
+
+    private static Long userId(UserDetails userDetails) {
+        if (!(userDetails instanceof CustomUserDetails customUserDetails)) {
+            throw new IllegalStateException("Invalid UserDetails implementation");
+        }
+        return customUserDetails.getUser().getId();
+    }
+
+    private void writeLine(OutputStream out, BatchAnalysisItem item) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(item));
+        out.write('\n');
+        out.flush();
+    }
+
+    // Admin: drop a cached analysis (key = SHA-256 hex of the image bytes)
+    @DeleteMapping("/cache/{digest}")
+    public ResponseEntity<Void> evictCachedResult(@PathVariable String digest) {
+        return aiService.evictCachedResult(digest)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    // Admin: flush the whole analysis cache
+    @DeleteMapping("/cache")
+    public ResponseEntity<Map<String, Integer>> evictAllCachedResults() {
+        return ResponseEntity.ok(Map.of("evicted", aiService.evictAllCachedResults()));
+    }
+
+    // Detector pool and result cache usage, for capacity tuning
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getPipelineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(aiService.getPipelineStats());
+        stats.put("jobQueue", analysisJobService.stats());
+        return ResponseEntity.ok(stats);
+    }
 }
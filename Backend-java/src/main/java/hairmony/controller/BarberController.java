@@ -1,10 +1,20 @@
 package hairmony.controller;
 
+import hairmony.dto.AvailabilityDTO;
 import hairmony.entities.Barber;
+import hairmony.entities.User;
+import hairmony.entities.WorkingHours;
+import hairmony.exceptions.ForbiddenException;
+import hairmony.service.CustomUserDetails;
+import hairmony.serviceInterfaces.AvailabilityServiceInf;
 import hairmony.serviceInterfaces.BarberServiceInf;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -13,6 +23,7 @@ import java.util.List;
 public class BarberController {
 
     private final BarberServiceInf barberService; // Inject the interface
+    private final AvailabilityServiceInf availabilityService;
 
     @GetMapping
     public List<Barber> getAllBarbers() {
@@ -29,5 +40,30 @@ public class BarberController {
     public Barber getBarberById(@PathVariable Long barberId) {
         return barberService.getBarberById(barberId);
     }
-}
 
+    // e.g. GET /barbers/12/availability?from=2024-05-06&to=2024-05-12 (default: a week from today, at most
+    // availability.max-range-days), answered from memory
+    @GetMapping("/{barberId}/availability")
+    public AvailabilityDTO getAvailability(
+            @PathVariable Long barberId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return availabilityService.getAvailability(barberId, from, to);
+    }
+
+    // Empty body => back to the barbershop's hours. Only the barber themself or an admin; 409 when an
+    // upcoming reservation would fall outside the new hours
+    @PutMapping("/{barberId}/working-hours")
+    public WorkingHours updateWorkingHours(@PathVariable Long barberId, @RequestBody(required = false) WorkingHours hours,
+                                           @AuthenticationPrincipal UserDetails userDetails) {
+        if (!(userDetails instanceof CustomUserDetails customUserDetails)) {
+            throw new IllegalStateException("Invalid UserDetails implementation");
+        }
+        User caller = customUserDetails.getUser();
+        if (!"ADMIN".equals(caller.getRole()) && !barberId.equals(caller.getId())) {
+            throw new ForbiddenException("Barbers can only change their own working hours");
+        }
+        return availabilityService.updateBarberHours(barberId, hours);
+    }
+}
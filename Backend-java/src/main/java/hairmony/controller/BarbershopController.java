@@ -1,6 +1,8 @@
 package hairmony.controller;
 
 import hairmony.entities.Barbershop;
+import hairmony.entities.WorkingHours;
+import hairmony.serviceInterfaces.AvailabilityServiceInf;
 import hairmony.serviceInterfaces.BarbershopServiceInf;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -13,6 +15,7 @@ import java.util.List;
 public class BarbershopController {
 
     private final BarbershopServiceInf barbershopService; // Inject the interface
+    private final AvailabilityServiceInf availabilityService;
 
     @GetMapping
     public List<Barbershop> getAllShops() {
@@ -28,4 +31,11 @@ public class BarbershopController {
     public Barbershop createBarbershop(@RequestBody Barbershop shop) {
         return barbershopService.createBarbershop(shop);
     }
+
+    // Hours of the barbers of the shop without their own; empty body => availability.default-hours.
+    // Admins only (shops have no owner account); 409 when an upcoming reservation would fall outside them
+    @PutMapping("/{shopId}/working-hours")
+    public WorkingHours updateWorkingHours(@PathVariable Long shopId, @RequestBody(required = false) WorkingHours hours) {
+        return availabilityService.updateBarbershopHours(shopId, hours);
+    }
 }
@@ -0,0 +1,183 @@
+package hairmony.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hairmony.config.JWTAuthenticationFilter;
+import hairmony.dto.LiveFaceUpdate;
+import hairmony.exceptions.PaymentRequiredException;
+import hairmony.service.CustomUserDetails;
+import hairmony.service.LiveFaceSession;
+import hairmony.serviceInterfaces.LiveFaceSessionServiceInf;
+import hairmony.serviceInterfaces.QuotaServiceInf;
+import hairmony.serviceInterfaces.QuotaServiceInf.Feature;
+import hairmony.serviceInterfaces.QuotaServiceInf.Grant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * /AI/live: the client sends JPEG webcam frames as binary messages and receives a JSON
+ * {@link LiveFaceUpdate} whenever the result changes. When frames arrive faster than they can be
+ * analyzed, only the newest pending frame is kept.
+ * <p>
+ * A session takes one live use of the user's quota when it opens. Without one left the client gets
+ * {"status":"NEED_PAYMENT","message":...} and the connection is closed with 1008 (policy violation);
+ * a session that never produced a face result gives the use back when it closes.
+ */
+@Component
+public class LiveFaceWebSocketHandler extends BinaryWebSocketHandler implements SubProtocolCapable {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveFaceWebSocketHandler.class);
+    private static final String LIVE_CONNECTION = "liveFaceConnection";
+
+    private final LiveFaceSessionServiceInf liveFaceService;
+    private final QuotaServiceInf quotaService;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService liveExecutor;
+    private final int sendTimeLimitMs;
+    private final int sendBufferBytes;
+
+    public LiveFaceWebSocketHandler(LiveFaceSessionServiceInf liveFaceService,
+                                    QuotaServiceInf quotaService,
+                                    ObjectMapper objectMapper,
+                                    @Qualifier("aiLiveExecutor") ExecutorService liveExecutor,
+                                    @Value("${ai.live.send-time-limit-ms:5000}") int sendTimeLimitMs,
+                                    @Value("${ai.live.send-buffer-bytes:262144}") int sendBufferBytes) {
+        this.liveFaceService = liveFaceService;
+        this.quotaService = quotaService;
+        this.objectMapper = objectMapper;
+        this.liveExecutor = liveExecutor;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferBytes = sendBufferBytes;
+    }
+
+    // The browser only accepts the handshake if one of the offered subprotocols is selected
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(JWTAuthenticationFilter.WEBSOCKET_TOKEN_PROTOCOL);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        Long userId = userId(session);
+        Grant grant;
+        try {
+            grant = quotaService.consume(userId, Feature.LIVE);
+        } catch (PaymentRequiredException e) {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(
+                    Map.of("status", "NEED_PAYMENT", "message", e.getMessage()))));
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("NEED_PAYMENT"));
+            return;
+        }
+        WebSocketSession out = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, sendBufferBytes);
+        session.getAttributes().put(LIVE_CONNECTION, new LiveConnection(out, liveFaceService.openSession(), userId, grant));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        LiveConnection connection = (LiveConnection) session.getAttributes().get(LIVE_CONNECTION);
+        if (connection == null) {
+            return;
+        }
+        ByteBuffer payload = message.getPayload();
+        byte[] frame = new byte[payload.remaining()];
+        payload.get(frame);
+
+        // Latest frame wins: a frame still waiting for a worker is replaced, not queued behind
+        connection.pendingFrame.set(frame);
+        if (connection.draining.compareAndSet(false, true)) {
+            liveExecutor.execute(() -> drain(connection));
+        }
+    }
+
+    private void drain(LiveConnection connection) {
+        while (true) {
+            byte[] frame = connection.pendingFrame.getAndSet(null);
+            if (frame == null) {
+                connection.draining.set(false);
+                // A frame may have arrived between the empty read and the flag reset
+                if (connection.pendingFrame.get() != null && connection.draining.compareAndSet(false, true)) {
+                    continue;
+                }
+                return;
+            }
+            if (!connection.out.isOpen()) {
+                connection.draining.set(false);
+                return;
+            }
+            LiveFaceUpdate update = liveFaceService.processFrame(connection.state, frame);
+            if (update != null) {
+                if (!update.landmarks().isEmpty()) {
+                    connection.analyzed = true;
+                }
+                send(connection, update);
+            }
+        }
+    }
+
+    private void send(LiveConnection connection, LiveFaceUpdate update) {
+        try {
+            connection.out.sendMessage(new TextMessage(objectMapper.writeValueAsString(update)));
+        } catch (Exception e) {
+            log.debug("live session {}: dropping update for frame {} ({})",
+                    connection.out.getId(), update.frame(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        LiveConnection connection = (LiveConnection) session.getAttributes().remove(LIVE_CONNECTION);
+        if (connection != null) {
+            connection.pendingFrame.set(null);
+            if (!connection.analyzed) {
+                quotaService.refund(connection.userId, Feature.LIVE, connection.grant);
+            }
+            log.debug("live session {} closed after {} frames ({})",
+                    session.getId(), connection.state.frames(), status);
+        }
+    }
+
+    // The handshake went through JWTAuthenticationFilter, so the principal is the authenticated user
+    private static Long userId(WebSocketSession session) {
+        if (!(session.getPrincipal() instanceof Authentication authentication)
+                || !(authentication.getPrincipal() instanceof CustomUserDetails userDetails)) {
+            throw new IllegalStateException("Live session without an authenticated user");
+        }
+        return userDetails.getUser().getId();
+    }
+
+    private static final class LiveConnection {
+        final WebSocketSession out;
+        final LiveFaceSession state;
+        final AtomicReference<byte[]> pendingFrame = new AtomicReference<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+        final Long userId;
+        final Grant grant;
+        // Set once a frame yields a face; written by the draining worker, read when the connection closes
+        volatile boolean analyzed;
+
+        LiveConnection(WebSocketSession out, LiveFaceSession state, Long userId, Grant grant) {
+            this.out = out;
+            this.state = state;
+            this.userId = userId;
+            this.grant = grant;
+        }
+    }
+}
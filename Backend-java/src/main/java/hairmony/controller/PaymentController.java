@@ -8,6 +8,8 @@ import hairmony.entities.Payment;
 import hairmony.entities.Reservation;
 import hairmony.entities.User;
 import hairmony.repository.*;
+import hairmony.service.HaircutCatalog;
+import hairmony.service.MonthlyUsageLedger;
 import hairmony.serviceInterfaces.NotificationServiceInf;
 import hairmony.serviceInterfaces.ReservationServiceInf;
 import hairmony.serviceInterfaces.StripeServiceInf;
@@ -28,8 +30,9 @@ public class PaymentController {
     private final PaymentRepository paymentRepository;
     private final UserRepository userRepository;
     private final ReservationRepository reservationRepository;
-    private final HaircutRepository haircutRepository;
+    private final HaircutCatalog haircutCatalog;
     private final NotificationServiceInf notificationService;   // Or an interface if you prefer
+    private final MonthlyUsageLedger monthlyUsageLedger;
 
     @PostMapping("/stripe-checkout")
     public ResponseEntity<StripeResponse> createCheckoutSession(
@@ -66,8 +69,7 @@ public class PaymentController {
             throw new RuntimeException("Reservation is not pending payment");
         }
 
-        Haircuts haircut = haircutRepository.findByNameContainingIgnoreCase(reservation.getHairstyleChosen())
-                .stream().findFirst().orElse(null);
+        Haircuts haircut = haircutCatalog.findFirstByNameContaining(reservation.getHairstyleChosen()).orElse(null);
         double amount = (haircut != null) ? haircut.getPrice() : 20.0;
 
         User user = userRepository.findById(userId)
@@ -117,8 +119,10 @@ public class PaymentController {
             Long reservationId = Long.parseLong(reservationIdStr);
             Reservation reservation = reservationRepository.findById(reservationId)
                     .orElseThrow(() -> new RuntimeException("Reservation not found"));
+            String previousStatus = reservation.getStatus();
             reservation.setStatus("CONFIRMED");
             reservationRepository.save(reservation);
+            monthlyUsageLedger.statusChanged(reservation, previousStatus);
             notificationService.createNotification(
                     user,
                     "Your payment of $" + amountPaid + " was successful!, your reservation is confirmed!"
@@ -0,0 +1,35 @@
+package hairmony.controller;
+
+import hairmony.service.UploadFileServer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+@Controller
+@RequiredArgsConstructor
+public class UploadController {
+
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+
+    private final UploadFileServer uploadFileServer;
+
+    // Stored pictures, e.g. /uploads/ab/cd/<sha256>.jpg?size=thumb
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(@RequestParam(name = "size", required = false) String size,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String relative = UriUtils.decode(PATHS.extractPathWithinPattern("/uploads/**", path), StandardCharsets.UTF_8);
+        uploadFileServer.serve(relative, size, request, response);
+    }
+}
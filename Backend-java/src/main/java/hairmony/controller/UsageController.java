@@ -1,9 +1,8 @@
 package hairmony.controller;
 
-import hairmony.entities.User;
-import hairmony.repository.UserRepository;
+import hairmony.exceptions.PaymentRequiredException;
 import hairmony.service.CustomUserDetails;
-import jakarta.transaction.Transactional;
+import hairmony.serviceInterfaces.QuotaServiceInf;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -15,47 +14,29 @@ import java.util.Map;
 @RestController
 @RequestMapping("/usage")
 @RequiredArgsConstructor
-@Transactional
 public class UsageController {
 
-    private final UserRepository userRepository;
+    private final QuotaServiceInf quotaService;
 
+    // Takes one use of the feature up front. The AI endpoints (uploads, batches, jobs and /AI/live) charge
+    // their own uses, so the frontend no longer calls this before them
     @GetMapping("/check")
     public Map<String, String> checkUsage(@RequestParam String feature,@AuthenticationPrincipal UserDetails userDetails) {
-        // 1. Load user
         if (!(userDetails instanceof CustomUserDetails)) {
             throw new IllegalStateException("Invalid UserDetails implementation");
         }
         Long userId = ((CustomUserDetails) userDetails).getUser().getId();
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // 2. If user has unlimited access => OK
-        if (user.isUnlimitedAccess()) {
-            return Map.of("status", "OK");
+        QuotaServiceInf.Feature quotaFeature = QuotaServiceInf.Feature.of(feature).orElse(null);
+        if (quotaFeature == null) {
+            return Map.of("status", "NEED_PAYMENT", "message", "Payment required");
         }
-
-        // 3. If user has free trial left => decrement
-        if ("upload".equals(feature)) {
-            if (user.getFreeTrialsRemaining() > 0) {
-                user.setFreeTrialsRemaining(user.getFreeTrialsRemaining() - 1);
-                userRepository.save(user);
-                return Map.of("status", "OK");
-            } else {
-                // Or check if user paid for this feature
-                return Map.of("status", "NEED_PAYMENT", "message", "Pay $2 for another upload");
-            }
-        } else if ("live".equals(feature)) {
-            if (user.getLiveTrialsRemaining() > 0) {
-                user.setLiveTrialsRemaining(user.getLiveTrialsRemaining() - 1);
-                userRepository.save(user);
-                return Map.of("status", "OK");
-            } else {
-                return Map.of("status", "NEED_PAYMENT", "message", "Pay $5 to use Live Detection");
-            }
+        // Unlimited access => OK, otherwise one trial is taken atomically or payment is needed
+        try {
+            quotaService.consume(userId, quotaFeature);
+            return Map.of("status", "OK");
+        } catch (PaymentRequiredException e) {
+            return Map.of("status", "NEED_PAYMENT", "message", e.getMessage());
         }
-
-        // default
-        return Map.of("status", "NEED_PAYMENT", "message", "Payment required");
     }
 }
@@ -0,0 +1,17 @@
+package hairmony.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * State of an asynchronous face analysis job: QUEUED, RUNNING, DONE (with result) or FAILED (with error).
+ * queuedMs/runMs are the time spent waiting for a worker and being analyzed so far.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AnalysisJobStatus(
+        String id,
+        String status,
+        FaceAnalysisResponse result,
+        String error,
+        Long queuedMs,
+        Long runMs
+) {}
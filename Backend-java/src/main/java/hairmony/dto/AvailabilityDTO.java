@@ -0,0 +1,18 @@
+package hairmony.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Free appointment start times of a barber, day by day. Each start leaves appointmentMinutes free within
+ * the working hours; starts are slotMinutes apart.
+ */
+public record AvailabilityDTO(
+        Long barberId,
+        int slotMinutes,
+        int appointmentMinutes,
+        List<Day> days
+) {
+    public record Day(LocalDate date, List<LocalTime> freeSlots) {}
+}
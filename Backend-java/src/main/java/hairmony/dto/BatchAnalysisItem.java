@@ -0,0 +1,14 @@
+package hairmony.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One NDJSON line of a batch analysis: either a result or an error for the image at {@code index}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchAnalysisItem(
+        int index,
+        String filename,
+        FaceAnalysisResponse result,
+        String error
+) {}
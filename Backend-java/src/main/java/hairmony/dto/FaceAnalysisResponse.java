@@ -2,10 +2,28 @@ package hairmony.dto;
 
 import java.util.List;
 
+/**
+ * {@code degraded} is true when the forehead sidecar could not be used and the forehead tip was
+ * estimated from the landmarks instead.
+ */
 public record FaceAnalysisResponse(
         String shape,
         List<String> hairstyles,
         List<PointDTO> landmarks,
         RectDTO faceRect,
-        PointDTO foreheadTip
-) {}
\ No newline at end of file
+        PointDTO foreheadTip,
+        boolean degraded
+) {
+    public FaceAnalysisResponse(String shape, List<String> hairstyles, List<PointDTO> landmarks,
+                                RectDTO faceRect, PointDTO foreheadTip) {
+        this(shape, hairstyles, landmarks, faceRect, foreheadTip, false);
+    }
+
+    /**
+     * False for the failure responses (no face, undecodable image, sidecar or internal error),
+     * which carry the reason in {@code shape} and no face rect.
+     */
+    public boolean analyzed() {
+        return faceRect != null;
+    }
+}
@@ -0,0 +1,17 @@
+package hairmony.dto;
+
+import java.util.List;
+
+/**
+ * One result pushed to a /AI/live client. {@code tracked} is true when the landmarks were fitted
+ * inside the ROI predicted from the previous frame instead of after a full face detection.
+ */
+public record LiveFaceUpdate(
+        long frame,
+        boolean tracked,
+        String shape,
+        List<String> hairstyles,
+        List<PointDTO> landmarks,
+        RectDTO faceRect,
+        PointDTO foreheadTip
+) {}
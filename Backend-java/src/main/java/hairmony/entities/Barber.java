@@ -1,6 +1,7 @@
 package hairmony.entities;
 
 import jakarta.persistence.DiscriminatorValue;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
@@ -20,6 +21,9 @@ public class Barber extends User {
     @JoinColumn(name = "barbershop_id")
     private Barbershop barbershop; // If you have a Barbershop entity
 
+    @Embedded
+    private WorkingHours workingHours; // null => the barbershop's hours
+
     public Barber(String username, String password, String role,String picture,String specialty, double rating) {
         super(username, password, role,picture);
         this.specialty = specialty;
@@ -21,6 +21,9 @@ public class Barbershop {
     private double rating;
     private String picture;
 
+    @Embedded
+    private WorkingHours workingHours; // for its barbers without their own
+
     // Relationship: one barbershop has many barbers
     @OneToMany(mappedBy = "barbershop", fetch = FetchType.LAZY)
     @JsonIgnore
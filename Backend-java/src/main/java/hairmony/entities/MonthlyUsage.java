@@ -0,0 +1,63 @@
+package hairmony.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+
+/**
+ * How many CONFIRMED reservations a client has in one month (by reservation date), so the free haircuts
+ * left can be read by primary key instead of counted over the reservations table.
+ */
+@Entity
+@Table(name = "client_monthly_usage")
+@Getter
+@Setter
+@NoArgsConstructor
+public class MonthlyUsage implements Persistable<MonthlyUsage.Key> {
+
+    @EmbeddedId
+    private Key id;
+
+    private int confirmed;
+
+    // The key is assigned, so save() would otherwise merge over a row inserted meanwhile instead of failing
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    public MonthlyUsage(Long clientId, int month, int confirmed) {
+        this.id = new Key(clientId, month);
+        this.confirmed = confirmed;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
+
+    /**
+     * Client and month as yyyyMM (202405).
+     */
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "client_id")
+        private Long clientId;
+
+        @Column(name = "usage_month")
+        private int month;
+    }
+}
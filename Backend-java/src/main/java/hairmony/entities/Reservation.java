@@ -4,9 +4,15 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 @Entity
-@Table(name = "reservations")
+@Table(name = "reservations", indexes = {
+        // Per-client history and the client_monthly_usage backfill (GROUP BY client, month of date)
+        @Index(name = "idx_reservations_client_date_status", columnList = "client_id, date, status"),
+        // A barber's upcoming reservations, loaded into the availability calendar
+        @Index(name = "idx_reservations_barber_date", columnList = "barber_id, date")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -31,6 +37,9 @@ public class Reservation {
     @Column(nullable = false, columnDefinition = "varchar(255) default 'CONFIRMED'")
     private String status;
 
+    // When the slot was held, or held again: a PENDING_PAYMENT reservation gives it back availability.payment-hold-minutes later
+    private LocalDateTime heldAt;
+
     // ---- ADD THIS RELATIONSHIP ----
     @OneToOne(mappedBy = "reservation", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Review review;
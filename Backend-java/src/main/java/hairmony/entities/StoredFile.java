@@ -0,0 +1,33 @@
+package hairmony.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One content-addressed upload ("ab/cd/&lt;sha256&gt;.&lt;ext&gt;" under uploads/) and how many
+ * pictures point at it. The file is deleted when the last reference is released.
+ */
+@Entity
+@Table(name = "stored_files")
+@Getter
+@Setter
+@NoArgsConstructor
+public class StoredFile {
+
+    @Id
+    @Column(name = "storage_key", length = 96)
+    private String storageKey;
+
+    private long size;
+    private int refCount;
+    private LocalDateTime createdAt;
+
+    public StoredFile(String storageKey, long size) {
+        this.storageKey = storageKey;
+        this.size = size;
+        this.refCount = 1;
+        this.createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,24 @@
+package hairmony.entities;
+
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.time.LocalTime;
+
+/**
+ * Opening hours of a barber or a barbershop. A barber without their own uses their barbershop's, then
+ * availability.default-hours.
+ */
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkingHours {
+
+    private LocalTime opensAt;
+    private LocalTime closesAt;     // 00:00 => midnight, the end of the day
+    private LocalTime breakStart;   // optional, e.g. lunch
+    private LocalTime breakEnd;
+    private String closedDays;      // e.g. "SUNDAY,MONDAY"
+}
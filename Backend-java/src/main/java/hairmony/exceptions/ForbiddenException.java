@@ -0,0 +1,8 @@
+package hairmony.exceptions;
+
+// Authenticated, but not allowed to change this resource (403)
+public class ForbiddenException extends RuntimeException {
+    public ForbiddenException(String message) {
+        super(message);
+    }
+}
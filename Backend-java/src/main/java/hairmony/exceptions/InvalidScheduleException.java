@@ -0,0 +1,8 @@
+package hairmony.exceptions;
+
+// Working hours that do not describe a day (400)
+public class InvalidScheduleException extends RuntimeException {
+    public InvalidScheduleException(String message) {
+        super(message);
+    }
+}
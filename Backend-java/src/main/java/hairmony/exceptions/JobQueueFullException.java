@@ -0,0 +1,13 @@
+package hairmony.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class JobQueueFullException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public JobQueueFullException(long retryAfterSeconds) {
+        super("Analysis queue is full, retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
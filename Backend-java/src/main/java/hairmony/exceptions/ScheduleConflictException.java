@@ -0,0 +1,8 @@
+package hairmony.exceptions;
+
+// New working hours that would leave upcoming reservations outside them (409)
+public class ScheduleConflictException extends RuntimeException {
+    public ScheduleConflictException(String message) {
+        super(message);
+    }
+}
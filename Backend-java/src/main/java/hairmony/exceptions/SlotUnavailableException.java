@@ -0,0 +1,8 @@
+package hairmony.exceptions;
+
+// The requested reservation slot is taken, outside working hours or in the past (409)
+public class SlotUnavailableException extends RuntimeException {
+    public SlotUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package hairmony.exceptions;
+
+public class TooManyBatchesException extends RuntimeException {
+
+    public TooManyBatchesException(int maxBatches) {
+        super("Too many batches in progress (max " + maxBatches + " per user), retry when one finishes");
+    }
+}
@@ -0,0 +1,13 @@
+package hairmony.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class UploadQueueFullException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public UploadQueueFullException(long retryAfterSeconds) {
+        super("Too many uploads in progress, retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,36 @@
+package hairmony.repository;
+
+import hairmony.entities.MonthlyUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface MonthlyUsageRepository extends JpaRepository<MonthlyUsage, MonthlyUsage.Key> {
+
+    // Counts only change through conditional UPDATEs: 1 row => the reservation was counted/uncounted
+
+    @Query("SELECT u.confirmed FROM MonthlyUsage u WHERE u.id.clientId = :clientId AND u.id.month = :month")
+    Optional<Integer> findConfirmed(@Param("clientId") Long clientId, @Param("month") int month);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MonthlyUsage u SET u.confirmed = u.confirmed + 1 "
+            + "WHERE u.id.clientId = :clientId AND u.id.month = :month AND u.confirmed < :limit")
+    int incrementBelow(@Param("clientId") Long clientId, @Param("month") int month, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MonthlyUsage u SET u.confirmed = u.confirmed + :count "
+            + "WHERE u.id.clientId = :clientId AND u.id.month = :month")
+    int add(@Param("clientId") Long clientId, @Param("month") int month, @Param("count") int count);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MonthlyUsage u SET u.confirmed = u.confirmed - 1 "
+            + "WHERE u.id.clientId = :clientId AND u.id.month = :month AND u.confirmed > 0")
+    int decrement(@Param("clientId") Long clientId, @Param("month") int month);
+}
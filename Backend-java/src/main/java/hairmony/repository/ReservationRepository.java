@@ -2,8 +2,13 @@ package hairmony.repository;
 
 import hairmony.entities.Reservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
@@ -11,4 +16,36 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     // e.g. find all reservations by barber or by client, if needed
      List<Reservation> findByBarberId(Long barberId);
      List<Reservation> findByClientId(Long clientId);
+
+    // [clientId, year, month, count] of CONFIRMED reservations, to rebuild client_monthly_usage
+    @Query("SELECT r.client.id, YEAR(r.date), MONTH(r.date), COUNT(r) FROM Reservation r "
+            + "WHERE r.status = 'CONFIRMED' AND r.client IS NOT NULL AND r.date IS NOT NULL "
+            + "GROUP BY r.client.id, YEAR(r.date), MONTH(r.date)")
+    List<Object[]> countConfirmedByClientAndMonth();
+
+    // [barberId, date, time] of the reservations holding a slot from a day on, to build the availability calendars
+    @Query("SELECT r.barber.id, r.date, r.time FROM Reservation r WHERE r.barber IS NOT NULL AND r.date >= :from "
+            + "AND r.time IS NOT NULL AND r.status <> 'CANCELLED'")
+    List<Object[]> findTakenSlotsFrom(@Param("from") LocalDate from);
+
+    // [date, time], the same for one barber
+    @Query("SELECT r.date, r.time FROM Reservation r WHERE r.barber.id = :barberId AND r.date >= :from "
+            + "AND r.time IS NOT NULL AND r.status <> 'CANCELLED'")
+    List<Object[]> findTakenSlotsByBarberFrom(@Param("barberId") Long barberId, @Param("from") LocalDate from);
+
+    // [id, barberId, date, time, heldAt] of the unpaid reservations holding a slot from a day on
+    @Query("SELECT r.id, r.barber.id, r.date, r.time, r.heldAt FROM Reservation r WHERE r.barber IS NOT NULL "
+            + "AND r.date >= :from AND r.time IS NOT NULL AND r.status = 'PENDING_PAYMENT'")
+    List<Object[]> findUnpaidHoldsFrom(@Param("from") LocalDate from);
+
+    // The same for one barber
+    @Query("SELECT r.id, r.barber.id, r.date, r.time, r.heldAt FROM Reservation r WHERE r.barber.id = :barberId "
+            + "AND r.date >= :from AND r.time IS NOT NULL AND r.status = 'PENDING_PAYMENT'")
+    List<Object[]> findUnpaidHoldsByBarberFrom(@Param("barberId") Long barberId, @Param("from") LocalDate from);
+
+    // 1 row => cancelled; 0 => paid or changed meanwhile
+    @Transactional
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = 'CANCELLED' WHERE r.id = :id AND r.status = 'PENDING_PAYMENT'")
+    int cancelIfUnpaid(@Param("id") Long id);
 }
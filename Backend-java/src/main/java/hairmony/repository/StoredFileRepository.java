@@ -0,0 +1,28 @@
+package hairmony.repository;
+
+import hairmony.entities.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    // Reference counts only change through conditional UPDATEs: 1 row => the reference was taken/dropped
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount + 1 WHERE f.storageKey = :key")
+    int retain(@Param("key") String key);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredFile f SET f.refCount = f.refCount - 1 WHERE f.storageKey = :key AND f.refCount > 0")
+    int release(@Param("key") String key);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM StoredFile f WHERE f.storageKey = :key AND f.refCount = 0")
+    int deleteIfUnreferenced(@Param("key") String key);
+}
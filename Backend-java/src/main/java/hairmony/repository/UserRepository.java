@@ -2,6 +2,7 @@ package hairmony.repository;
 
 import hairmony.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -10,4 +11,29 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.username = :username")
     Optional<User> findByUsername(@Param("username") String username);
+
+    @Query("SELECT u.unlimitedAccess FROM User u WHERE u.id = :id")
+    Optional<Boolean> findUnlimitedAccessById(@Param("id") Long id);
+
+    // Quota counters are changed with conditional updates (no read-modify-write): 1 row => one use taken/returned
+
+    @Modifying
+    @Query("UPDATE User u SET u.freeTrialsRemaining = u.freeTrialsRemaining - 1 " +
+            "WHERE u.id = :id AND u.unlimitedAccess = false AND u.freeTrialsRemaining > 0")
+    int consumeFreeTrial(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.freeTrialsRemaining = u.freeTrialsRemaining + 1 " +
+            "WHERE u.id = :id AND u.unlimitedAccess = false")
+    int refundFreeTrial(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.LiveTrialsRemaining = u.LiveTrialsRemaining - 1 " +
+            "WHERE u.id = :id AND u.unlimitedAccess = false AND u.LiveTrialsRemaining > 0")
+    int consumeLiveTrial(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.LiveTrialsRemaining = u.LiveTrialsRemaining + 1 " +
+            "WHERE u.id = :id AND u.unlimitedAccess = false")
+    int refundLiveTrial(@Param("id") Long id);
 }
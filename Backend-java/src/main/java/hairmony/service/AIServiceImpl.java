@@ -3,48 +3,102 @@ package hairmony.service;
 import hairmony.dto.FaceAnalysisResponse;
 import hairmony.dto.PointDTO;
 import hairmony.dto.RectDTO;
-import hairmony.entities.Haircuts;
-import hairmony.repository.HaircutRepository;
 import hairmony.serviceInterfaces.AIServiceInf;
 import hairmony.serviceInterfaces.IFaceDetection;
 import hairmony.serviceInterfaces.IFaceShapeDetector;
 import lombok.RequiredArgsConstructor;
-import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.PointerScope;
 import org.bytedeco.opencv.opencv_core.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.Base64;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
-import static org.bytedeco.opencv.global.opencv_core.*;
-import static org.bytedeco.opencv.global.opencv_imgcodecs.*;
-import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
-import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+import static hairmony.service.FaceImageUtils.*;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
 
 @Service
 @RequiredArgsConstructor
 public class AIServiceImpl implements AIServiceInf {
 
+    private static final Logger log = LoggerFactory.getLogger(AIServiceImpl.class);
+
     private final IFaceDetection faceDetectionService;
     private final IFaceShapeDetector faceShapeDetectorService;
-    private final HaircutRepository haircutRepository;
+    private final HaircutCatalog haircutCatalog;
+    private final ForeheadSidecarGuard foreheadSidecar;
+    private final FaceAnalysisCache analysisCache;
+    private final UploadBufferPool uploadBuffers;
+    private final FaceAnalysisMetrics metrics;
+    @Qualifier("aiPipelineExecutor")
+    private final ExecutorService pipelineExecutor;
 
     @Override
     public FaceAnalysisResponse analyzeFace(MultipartFile file) {
-        try {
-            // 1) Read raw bytes
-            byte[] bytes = file.getBytes();
+        // 1) Stream the upload into a pooled native buffer (hashed on the way) and decode from there,
+        //    instead of copying it to a heap byte[] and then again into a Mat. The buffer goes back to the
+        //    pool once decoded (or before waiting on an identical in-flight upload), not after the analysis
+        try (UploadBufferPool.Upload upload = uploadBuffers.open(file)) {
+            return withHairstyles(analysisCache.getOrCompute(upload.digest(),
+                    () -> runPipeline(upload.contents(), upload::close), upload::close));
+        } catch (UploadBuffer.UploadTooLargeException e) {
+            metrics.recordOutcome(FaceAnalysisMetrics.OUTCOME_TOO_LARGE);
+            return new FaceAnalysisResponse(
+                    e.getMessage(),
+                    Collections.emptyList(),
+                    Collections.emptyList(),
+                    null,
+                    null
+            );
+        } catch (Exception e) {
+            log.error("analyze-face failed", e);
+            return internalError(e);
+        }
+    }
+
+    @Override
+    public FaceAnalysisResponse analyzeFace(byte[] bytes) {
+        // Identical uploads (re-sent photos, repeated live frames) are served from the cache,
+        // and concurrent identical requests share a single pipeline run
+        return withHairstyles(analysisCache.getOrCompute(bytes, () -> runPipeline(ByteBuffer.wrap(bytes), () -> { })));
+    }
+
+    // Cached results carry no hairstyles: they are looked up on every read, so catalog changes show up at once
+    private FaceAnalysisResponse withHairstyles(FaceAnalysisResponse response) {
+        if (!response.analyzed()) {
+            return response;
+        }
+        List<String> hairstyles = new StageTimings(metrics).time("hairstyles",
+                () -> getRecommendedHairstyles(response.shape()));
+        return new FaceAnalysisResponse(response.shape(), hairstyles,
+                response.landmarks(), response.faceRect(), response.foreheadTip(), response.degraded());
+    }
 
-            // 2) Decode into an OpenCV Mat
+    /**
+     * @param decoded called once the encoded image is no longer needed, i.e. right after decoding
+     */
+    private FaceAnalysisResponse runPipeline(ByteBuffer image, Runnable decoded) {
+        long pipelineStart = System.nanoTime();
+        StageTimings timings = new StageTimings(metrics);
+        String outcome = FaceAnalysisMetrics.OUTCOME_ERROR;
+        String shape = null;
+        // Every Mat/vector of this analysis is freed when the scope closes, not by GC finalization
+        try (NativeScope nativeScope = new NativeScope()) {
+            // 2) Decode into an OpenCV Mat. Large photos are decoded at 1/2..1/8 size straight from the
+            //    header's dimensions, since resizeAndPad would throw those pixels away anyway.
             //    (We keep this in a separate method so we can override in tests.)
-            Mat original = decodeMat(bytes);
+            ImageHeader header = ImageHeader.read(image);
+            int reduction = header == null ? 1 : header.reductionFor(CANVAS_SIZE);
+            Mat original = timings.time("decode", () -> decodeMat(encodedMat(image), decodeFlags(reduction)));
+            decoded.run();
             if (original.empty()) {
+                outcome = FaceAnalysisMetrics.OUTCOME_INVALID_IMAGE;
                 return new FaceAnalysisResponse(
                         "Invalid image or can't decode",
                         Collections.emptyList(),
@@ -54,211 +108,249 @@ public class AIServiceImpl implements AIServiceInf {
                 );
             }
 
-            // 3) Resize/pad to 600x600
-            Mat padded = resizeAndPad(original, 600, 600);
+            // Results are mapped back to the uploaded image's size, not the (possibly reduced) decoded one
+            int originalWidth = reduction > 1 ? header.width() : original.cols();
+            int originalHeight = reduction > 1 ? header.height() : original.rows();
 
-            // 4) Python forehead tip
-            byte[] paddedBytes = matToBytes(padded);
-            PointDTO pythonForeheadTipPadded = getForeheadTipFromPython(paddedBytes);
-            if (pythonForeheadTipPadded == null) {
-                return new FaceAnalysisResponse(
-                        "Failed to get forehead tip from Python",
-                        Collections.emptyList(),
-                        Collections.emptyList(),
-                        null,
-                        null
-                );
+            // 3) Resize/pad to 600x600
+            Mat padded = timings.time("resize", () -> resizeAndPad(original, CANVAS_SIZE, CANVAS_SIZE));
+
+            // 4-6) Forehead lookup runs concurrently with face detection -> landmark fitting.
+            //      They only share the padded Mat; the first failure cancels whatever is still pending.
+            //      A sidecar that is down, slow or circuit-broken yields null here: the tip is then estimated
+            //      from the landmarks and the response flagged as degraded.
+            CompletableFuture<PointDTO> foreheadStage = runStage(nativeScope, timings, "forehead", () -> {
+                PointDTO tip;
+                try {
+                    tip = getForeheadTipFromPython(matToBytes(padded));
+                } catch (ForeheadSidecarGuard.SidecarUnavailableException e) {
+                    log.debug("analyze-face falls back to the landmark forehead estimate: {}", e.getMessage());
+                    return null;
+                }
+                if (tip == null) {
+                    throw new PipelineFailure("Failed to get forehead tip from Python", FaceAnalysisMetrics.OUTCOME_SIDECAR_FAILURE);
+                }
+                return tip;
+            });
+            CompletableFuture<Rect> detectStage = runStage(nativeScope, timings, "detect", () -> {
+                Rect rect = faceDetectionService.detectFace(padded);
+                if (rect == null) {
+                    throw new PipelineFailure("No face detected", FaceAnalysisMetrics.OUTCOME_NO_FACE);
+                }
+                return rect;
+            });
+            CompletableFuture<Point2fVectorVector> landmarkStage = detectStage.thenCompose(rect ->
+                    runStage(nativeScope, timings, "landmarks", () -> faceShapeDetectorService.detectLandmarks(padded, rect)));
+
+            cancelOthersOnFailure(foreheadStage, detectStage, landmarkStage);
+            try {
+                CompletableFuture.allOf(foreheadStage, landmarkStage).join();
+            } catch (CompletionException | CancellationException ex) {
+                Throwable cause = firstFailure(foreheadStage, detectStage, landmarkStage);
+                if (cause instanceof PipelineFailure failure) {
+                    outcome = failure.outcome;
+                    log.debug("analyze-face stopped early ({}), stage timings ms: {}", failure.getMessage(), timings);
+                    return new FaceAnalysisResponse(
+                            failure.getMessage(),
+                            Collections.emptyList(),
+                            Collections.emptyList(),
+                            null,
+                            null
+                    );
+                }
+                throw cause instanceof Exception e ? e : ex;
             }
-
-            // 5) Detect face
-            Rect faceRect = faceDetectionService.detectFace(padded);
-            if (faceRect == null) {
-                return new FaceAnalysisResponse(
-                        "No face detected",
-                        Collections.emptyList(),
-                        Collections.emptyList(),
-                        null,
-                        null
-                );
+            Rect faceRect = detectStage.join();
+            Point2fVectorVector landmarks = landmarkStage.join();
+            boolean degraded = foreheadStage.join() == null;
+            PointDTO pythonForeheadTipPadded = degraded ? estimateForeheadTip(landmarks) : foreheadStage.join();
+            if (degraded) {
+                metrics.recordForeheadFallback();
             }
 
-            // 6) Detect landmarks
-            Point2fVectorVector landmarks = faceShapeDetectorService.detectLandmarks(padded, faceRect);
-
             // 7) Classify
-            IFaceShapeDetector.ClassificationResult localResult = faceShapeDetectorService.classifyFaceShape(
-                    landmarks, faceRect, pythonForeheadTipPadded.x(), pythonForeheadTipPadded.y()
-            );
-            String shape = localResult.shape();
-
-            // 8) Convert landmarks to original coords (optional). We'll do it fully here:
-            List<PointDTO> originalLandmarks = mapLandmarksToOriginal(landmarks, padded, original);
-
-            // 9) Build RectDTO for the face
-            RectDTO originalFaceRect = mapFaceRectToOriginal(faceRect, padded, original);
-
-            // 10) Map the forehead tip
-            PointDTO originalForeheadTip = mapForeheadTipToOriginal(pythonForeheadTipPadded, padded, original);
-
-            // 11) Get recommended hairstyles
-            List<String> hairstyles = getRecommendedHairstyles(shape);
-
-            // 12) Return
+            IFaceShapeDetector.ClassificationResult localResult = timings.time("classify", () ->
+                    faceShapeDetectorService.classifyFaceShape(
+                            landmarks, faceRect, pythonForeheadTipPadded.x(), pythonForeheadTipPadded.y()
+                    ));
+            shape = localResult.shape();
+            outcome = FaceAnalysisMetrics.OUTCOME_SHAPE;
+
+            // 8-10) Convert landmarks, face rect and forehead tip to original coords
+            long mapStart = System.nanoTime();
+            List<PointDTO> originalLandmarks = mapLandmarksToOriginal(landmarks, padded, originalWidth, originalHeight);
+            RectDTO originalFaceRect = mapFaceRectToOriginal(faceRect, padded, originalWidth, originalHeight);
+            PointDTO originalForeheadTip = mapForeheadTipToOriginal(pythonForeheadTipPadded, padded, originalWidth, originalHeight);
+            timings.record("map", System.nanoTime() - mapStart);
+
+            // 11) Return; the recommended hairstyles are added by the caller, outside the cache
+            log.debug("analyze-face stage timings ms: {}", timings);
             return new FaceAnalysisResponse(
                     shape,
-                    hairstyles,
+                    Collections.emptyList(),
                     originalLandmarks,
                     originalFaceRect,
-                    originalForeheadTip
+                    originalForeheadTip,
+                    degraded
             );
 
         } catch (Exception e) {
-            e.printStackTrace();
-            return new FaceAnalysisResponse(
-                    "Internal error: " + e.getMessage(),
-                    Collections.emptyList(),
-                    Collections.emptyList(),
-                    null,
-                    null
-            );
+            log.error("analyze-face failed, stage timings ms: {}", timings, e);
+            return internalError(e);
+        } finally {
+            metrics.recordAnalysis(outcome, shape, System.nanoTime() - pipelineStart);
         }
     }
 
-    /**
-     * Overridable decode method. In production, it does a real imdecode.
-     * In tests, we can override to simulate success/failure.
-     */
-    protected Mat decodeMat(byte[] bytes) {
-        return imdecode(new Mat(bytes), IMREAD_COLOR);
+    private static FaceAnalysisResponse internalError(Exception e) {
+        return new FaceAnalysisResponse(
+                "Internal error: " + e.getMessage(),
+                Collections.emptyList(),
+                Collections.emptyList(),
+                null,
+                null
+        );
     }
 
     /**
-     * Resizes and pads a Mat to a given width & height.
+     * Submit a pipeline stage. Cancelling the returned future interrupts the worker running it.
+     * Native temporaries of the stage are freed when it ends; its result is handed to the request's scope.
      */
-    private Mat resizeAndPad(Mat input, int targetW, int targetH) {
-        int original_w = input.cols();
-        int original_h = input.rows();
-        double scale = Math.min(targetW * 1.0 / original_w, targetH * 1.0 / original_h);
-        int new_w = (int) (original_w * scale);
-        int new_h = (int) (original_h * scale);
-
-        Mat resized = new Mat();
-        resize(input, resized, new Size(new_w, new_h), 0, 0, INTER_AREA);
-
-        int pad_left = (targetW - new_w) / 2;
-        int pad_right = targetW - new_w - pad_left;
-        int pad_top = (targetH - new_h) / 2;
-        int pad_bottom = targetH - new_h - pad_top;
-
-        Mat padded = new Mat();
-        copyMakeBorder(resized, padded, pad_top, pad_bottom, pad_left, pad_right, BORDER_CONSTANT, new Scalar(0,0,0,0));
-        return padded;
+    private <T> CompletableFuture<T> runStage(NativeScope nativeScope, StageTimings timings, String stage, Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = pipelineExecutor.submit(() -> {
+            if (!nativeScope.enterStage()) {
+                result.cancel(false);
+                return;
+            }
+            long start = System.nanoTime();
+            try (PointerScope stageScope = new PointerScope()) {
+                result.complete(nativeScope.attach(work.get()));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                timings.record(stage, System.nanoTime() - start);
+                nativeScope.exitStage();
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static void cancelOthersOnFailure(CompletableFuture<?>... stages) {
+        for (CompletableFuture<?> stage : stages) {
+            stage.whenComplete((value, error) -> {
+                if (error != null) {
+                    for (CompletableFuture<?> other : stages) {
+                        other.cancel(true);
+                    }
+                }
+            });
+        }
     }
 
     /**
-     * Overridable method that calls the Python microservice or returns null on error.
+     * The failure that triggered the cancellation (cancelled siblings are skipped).
      */
-    protected PointDTO getForeheadTipFromPython(byte[] imageBytes) {
-        try {
-            String base64Img = Base64.getEncoder().encodeToString(imageBytes);
-            String jsonPayload = "{ \"image_base64\": \"" + base64Img + "\" }";
-
-            HttpClient httpClient = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(java.net.URI.create("http://localhost:5000/detect-forehead"))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                String respStr = response.body();
-                if (respStr.contains("forehead_x") && respStr.contains("forehead_y")) {
-                    double fx = extractDouble(respStr, "forehead_x");
-                    double fy = extractDouble(respStr, "forehead_y");
-                    return new PointDTO(fx, fy);
+    private static Throwable firstFailure(CompletableFuture<?>... stages) {
+        for (CompletableFuture<?> stage : stages) {
+            if (stage.isCompletedExceptionally() && !stage.isCancelled()) {
+                try {
+                    stage.join();
+                } catch (CompletionException e) {
+                    return e.getCause() != null ? e.getCause() : e;
                 }
-            } else {
-                System.err.println("Python service returned status: " + response.statusCode());
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
         }
-        return null;
+        return new CancellationException("Pipeline cancelled");
     }
 
     /**
-     * Helper to extract a double from a JSON-ish substring, given a key.
+     * A stage outcome that ends the analysis with a user-facing shape message (not an internal error).
      */
-    private double extractDouble(String respStr, String key) {
-        int idx = respStr.indexOf(key);
-        if (idx < 0) return 0.0;
-        int colon = respStr.indexOf(":", idx);
-        int comma = respStr.indexOf(",", colon);
-        if (comma < 0) comma = respStr.indexOf("}", colon);
-        String sub = respStr.substring(colon+1, comma).trim();
-        sub = sub.replaceAll("[^0-9.]", "");
-        return Double.parseDouble(sub);
+    static class PipelineFailure extends RuntimeException {
+        final String outcome;
+
+        PipelineFailure(String message, String outcome) {
+            super(message, null, false, false);
+            this.outcome = outcome;
+        }
     }
 
     /**
-     * Convert a padded landmark coordinate back to original space.
+     * Wall time per pipeline stage for one request, in milliseconds; also fed to the stage histograms.
      */
-    private List<PointDTO> mapLandmarksToOriginal(Point2fVectorVector landmarks, Mat padded, Mat original) {
-        if (landmarks.empty()) return Collections.emptyList();
-        Point2fVector points = landmarks.get(0);
-
-        // figure out ratio
-        double ratio_x = (double) original.cols() / padded.cols();
-        double ratio_y = (double) original.rows() / padded.rows();
-
-        List<PointDTO> result = new ArrayList<>();
-        for (int i=0; i<points.size(); i++) {
-            float px = points.get(i).x();
-            float py = points.get(i).y();
-            double rx = px * ratio_x;
-            double ry = py * ratio_y;
-            result.add(new PointDTO(rx, ry));
+    static class StageTimings {
+        private final Map<String, Double> millis = new ConcurrentHashMap<>();
+        private final FaceAnalysisMetrics metrics;
+
+        StageTimings(FaceAnalysisMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        void record(String stage, long nanos) {
+            millis.put(stage, nanos / 1_000_000.0);
+            metrics.recordStage(stage, nanos);
+        }
+
+        <T> T time(String stage, Supplier<T> work) {
+            long start = System.nanoTime();
+            try {
+                return work.get();
+            } finally {
+                record(stage, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new TreeMap<>(millis).toString();
         }
-        return result;
     }
 
-    private RectDTO mapFaceRectToOriginal(Rect rect, Mat padded, Mat original) {
-        double ratio_x = (double) original.cols() / padded.cols();
-        double ratio_y = (double) original.rows() / padded.rows();
+    @Override
+    public boolean evictCachedResult(String digest) {
+        return analysisCache.evict(digest);
+    }
 
-        int x = (int) (rect.x() * ratio_x);
-        int y = (int) (rect.y() * ratio_y);
-        int w = (int) (rect.width() * ratio_x);
-        int h = (int) (rect.height() * ratio_y);
-        return new RectDTO(x,y,w,h);
+    @Override
+    public int evictAllCachedResults() {
+        return analysisCache.evictAll();
     }
 
-    private PointDTO mapForeheadTipToOriginal(PointDTO tip, Mat padded, Mat original) {
-        double ratio_x = (double) original.cols() / padded.cols();
-        double ratio_y = (double) original.rows() / padded.rows();
-        return new PointDTO(tip.x() * ratio_x, tip.y() * ratio_y);
+    @Override
+    public Map<String, Object> getPipelineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("faceDetectorPool", faceDetectionService.poolStats());
+        stats.put("facemarkPool", faceShapeDetectorService.poolStats());
+        stats.put("resultCache", analysisCache.stats());
+        stats.put("uploadBufferPool", uploadBuffers.stats());
+        stats.put("nativeMemory", NativeScope.MemoryStats.current());
+        return stats;
+    }
+
+    /**
+     * Overridable decode method. In production, it does a real imdecode.
+     * In tests, we can override to simulate success/failure.
+     */
+    protected Mat decodeMat(Mat encoded, int flags) {
+        return imdecode(encoded, flags);
     }
 
     /**
-     * Convert Mat => JPG bytes.
+     * Overridable method that asks the configured forehead provider (Python sidecar or in-process DJL)
+     * through the sidecar guard. Null when no forehead was found; throws
+     * {@link ForeheadSidecarGuard.SidecarUnavailableException} when the provider could not be used.
      */
-    private byte[] matToBytes(Mat mat) throws IOException {
-        BytePointer buffer = new BytePointer();
-        imencode(".jpg", mat, buffer);
-        byte[] arr = new byte[(int) buffer.capacity()];
-        buffer.get(arr);
-        buffer.deallocate();
-        return arr;
+    protected PointDTO getForeheadTipFromPython(byte[] imageBytes) {
+        return foreheadSidecar.detectForeheadTip(imageBytes);
     }
 
     private List<String> getRecommendedHairstyles(String faceShape) {
-        List<Haircuts> recommended = haircutRepository.findByFaceShapeIgnoreCase(faceShape);
-        if (recommended == null || recommended.isEmpty()) {
-            return Collections.emptyList();
-        }
-        return recommended.stream()
-                .map(Haircuts::getName)
-                .collect(Collectors.toList());
+        return haircutCatalog.namesByFaceShape(faceShape);
     }
 }
@@ -0,0 +1,245 @@
+package hairmony.service;
+
+import hairmony.dto.AnalysisJobStatus;
+import hairmony.dto.FaceAnalysisResponse;
+import hairmony.exceptions.JobQueueFullException;
+import hairmony.serviceInterfaces.AIServiceInf;
+import hairmony.serviceInterfaces.AnalysisJobServiceInf;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Face analyses run in the background (/AI/jobs): the upload is queued for a fixed worker pool and the
+ * request returns a job id at once, so a burst of uploads occupies the job workers instead of Tomcat
+ * threads. The queue is bounded; a full queue rejects the job with a Retry-After estimate.
+ */
+@Service
+public class AnalysisJobServiceImpl implements AnalysisJobServiceInf {
+
+    static final String QUEUED = "QUEUED";
+    static final String RUNNING = "RUNNING";
+    static final String DONE = "DONE";
+    static final String FAILED = "FAILED";
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisJobServiceImpl.class);
+    private static final long PRUNE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AIServiceInf aiService;
+    private final ThreadPoolExecutor jobExecutor;
+    private final long maxUploadBytes;
+    private final long resultTtlNanos;
+    private final Duration maxWait;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong lastPruneNanos = new AtomicLong(System.nanoTime());
+
+    private final Timer waitTimer;
+    private final Timer runTimer;
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public AnalysisJobServiceImpl(AIServiceInf aiService,
+                                  @Qualifier("aiJobExecutor") ThreadPoolExecutor jobExecutor,
+                                  MeterRegistry registry,
+                                  @Value("${ai.upload.max-bytes:20971520}") long maxUploadBytes,
+                                  @Value("${ai.jobs.result-ttl-seconds:600}") long resultTtlSeconds,
+                                  @Value("${ai.jobs.max-wait-ms:30000}") long maxWaitMs) {
+        this.aiService = aiService;
+        this.jobExecutor = jobExecutor;
+        this.maxUploadBytes = maxUploadBytes;
+        this.resultTtlNanos = TimeUnit.SECONDS.toNanos(resultTtlSeconds);
+        this.maxWait = Duration.ofMillis(maxWaitMs);
+
+        Gauge.builder("ai.jobs.queue.depth", jobExecutor, e -> e.getQueue().size())
+                .description("Analysis jobs waiting for a worker")
+                .register(registry);
+        Gauge.builder("ai.jobs.queue.capacity", jobExecutor, e -> e.getQueue().size() + e.getQueue().remainingCapacity())
+                .register(registry);
+        Gauge.builder("ai.jobs.active", jobExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("Analysis jobs being processed")
+                .register(registry);
+        this.waitTimer = Timer.builder("ai.jobs.wait")
+                .description("Time from submission until a worker picks the job up")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.runTimer = Timer.builder("ai.jobs.run")
+                .description("Time a worker spends on one job")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.completed = Counter.builder("ai.jobs.finished").tag("status", "done").register(registry);
+        this.failed = Counter.builder("ai.jobs.finished").tag("status", "failed").register(registry);
+        this.rejected = Counter.builder("ai.jobs.rejected")
+                .description("Submissions refused because the queue was full")
+                .register(registry);
+    }
+
+    @Override
+    public AnalysisJobStatus submit(MultipartFile file, String owner, Runnable onFailure) {
+        pruneExpired();
+        if (file.getSize() > maxUploadBytes) {
+            throw new UploadBuffer.UploadTooLargeException(maxUploadBytes);
+        }
+        // Cheap early rejection, before the upload is copied onto the heap
+        if (jobExecutor.getQueue().remainingCapacity() == 0) {
+            throw queueFull();
+        }
+        byte[] image;
+        try {
+            image = file.getBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), owner);
+        jobs.put(job.id, job);
+        try {
+            jobExecutor.execute(() -> run(job, image, onFailure));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw queueFull();
+        }
+        return job.status();
+    }
+
+    @Override
+    public Optional<AnalysisJobStatus> get(String jobId, String owner) {
+        return find(jobId, owner).map(Job::status);
+    }
+
+    @Override
+    public Optional<CompletableFuture<AnalysisJobStatus>> await(String jobId, String owner, Duration wait) {
+        Duration capped = wait.compareTo(maxWait) > 0 ? maxWait : wait;
+        return find(jobId, owner).map(job -> job.finished.copy()
+                .orTimeout(Math.max(0, capped.toMillis()), TimeUnit.MILLISECONDS)
+                .handle((done, timeout) -> job.status()));
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", jobExecutor.getQueue().size());
+        stats.put("queueCapacity", jobExecutor.getQueue().size() + jobExecutor.getQueue().remainingCapacity());
+        stats.put("workers", jobExecutor.getMaximumPoolSize());
+        stats.put("active", jobExecutor.getActiveCount());
+        stats.put("avgWaitMs", waitTimer.mean(TimeUnit.MILLISECONDS));
+        stats.put("maxWaitMs", waitTimer.max(TimeUnit.MILLISECONDS));
+        stats.put("avgRunMs", runTimer.mean(TimeUnit.MILLISECONDS));
+        stats.put("completed", (long) completed.count());
+        stats.put("failed", (long) failed.count());
+        stats.put("rejected", (long) rejected.count());
+        stats.put("retained", jobs.size());
+        return stats;
+    }
+
+    private void run(Job job, byte[] image, Runnable onFailure) {
+        job.startedNanos = System.nanoTime();
+        waitTimer.record(job.startedNanos - job.submittedNanos, TimeUnit.NANOSECONDS);
+        try {
+            job.result = aiService.analyzeFace(image);
+            completed.increment();
+        } catch (Exception e) {
+            // The details stay in the log: exception messages can carry paths, hosts or native errors
+            log.warn("Analysis job {} failed", job.id, e);
+            job.error = "Analysis failed, please try again";
+            failed.increment();
+        } finally {
+            job.finishedNanos = System.nanoTime();
+            runTimer.record(job.finishedNanos - job.startedNanos, TimeUnit.NANOSECONDS);
+            if (job.error != null || job.result == null || !job.result.analyzed()) {
+                runQuietly(onFailure);
+            }
+            job.finished.complete(null);
+        }
+    }
+
+    private static void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            log.warn("Job failure callback failed", e);
+        }
+    }
+
+    /**
+     * Seconds until a slot is likely to free up: the backlog ahead divided by the worker count,
+     * at the observed average run time.
+     */
+    private JobQueueFullException queueFull() {
+        rejected.increment();
+        double avgRunSeconds = Math.max(0.1, runTimer.mean(TimeUnit.MILLISECONDS) / 1000.0);
+        long backlog = jobExecutor.getQueue().size() + jobExecutor.getActiveCount();
+        long seconds = (long) Math.ceil(backlog * avgRunSeconds / Math.max(1, jobExecutor.getMaximumPoolSize()));
+        return new JobQueueFullException(Math.min(60, Math.max(1, seconds)));
+    }
+
+    private Optional<Job> find(String jobId, String owner) {
+        Job job = jobs.get(jobId);
+        // Someone else's job id behaves like an unknown one
+        if (job == null || !Objects.equals(job.owner, owner) || job.expired(System.nanoTime(), resultTtlNanos)) {
+            return Optional.empty();
+        }
+        return Optional.of(job);
+    }
+
+    private void pruneExpired() {
+        long now = System.nanoTime();
+        long last = lastPruneNanos.get();
+        if (now - last < PRUNE_INTERVAL_NANOS || !lastPruneNanos.compareAndSet(last, now)) {
+            return;
+        }
+        jobs.values().removeIf(job -> job.expired(now, resultTtlNanos));
+    }
+
+    private static final class Job {
+        final String id;
+        final String owner;
+        final long submittedNanos = System.nanoTime();
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+        volatile long startedNanos;
+        volatile long finishedNanos;
+        volatile FaceAnalysisResponse result;
+        volatile String error;
+
+        Job(String id, String owner) {
+            this.id = id;
+            this.owner = owner;
+        }
+
+        boolean expired(long now, long ttlNanos) {
+            return finished.isDone() && now - finishedNanos > ttlNanos;
+        }
+
+        AnalysisJobStatus status() {
+            long now = System.nanoTime();
+            long started = startedNanos;
+            long ended = finishedNanos;
+            if (!finished.isDone()) {
+                return started == 0
+                        ? new AnalysisJobStatus(id, QUEUED, null, null, millis(now - submittedNanos), null)
+                        : new AnalysisJobStatus(id, RUNNING, null, null, millis(started - submittedNanos), millis(now - started));
+            }
+            return new AnalysisJobStatus(id, error == null ? DONE : FAILED, result, error,
+                    millis(started - submittedNanos), millis(ended - started));
+        }
+
+        private static long millis(long nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+}
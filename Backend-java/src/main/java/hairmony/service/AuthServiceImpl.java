@@ -4,15 +4,12 @@ import hairmony.entities.*;
 import hairmony.repository.BarbershopRepository;
 import hairmony.repository.UserRepository;
 import hairmony.serviceInterfaces.AuthServiceInf;
+import hairmony.serviceInterfaces.FileStorageServiceInf;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.nio.file.*;
-import java.util.UUID;
-
 @Service
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthServiceInf {
@@ -20,6 +17,7 @@ public class AuthServiceImpl implements AuthServiceInf {
     private final UserRepository userRepository;
     private final BarbershopRepository barbershopRepository;
     private final PasswordEncoder passwordEncoder;
+    private final FileStorageServiceInf fileStorageService;
 
     @Override
     public String registerUser(
@@ -43,7 +41,7 @@ public class AuthServiceImpl implements AuthServiceInf {
         // 3) Save user’s picture if provided
         String userPicturePath = null;
         if (pictureFile != null && !pictureFile.isEmpty()) {
-            userPicturePath = saveFileToUploads(pictureFile);
+            userPicturePath = fileStorageService.store(pictureFile);
         }
 
         // 4) Create user based on role
@@ -62,6 +60,7 @@ public class AuthServiceImpl implements AuthServiceInf {
                 newUser = barber;
             }
             default -> {
+                fileStorageService.release(userPicturePath);
                 return "Invalid role. Must be CLIENT, BARBER, or ADMIN.";
             }
         }
@@ -98,29 +97,11 @@ public class AuthServiceImpl implements AuthServiceInf {
 
             // If there's a barbershop picture
             if (barbershopPic != null && !barbershopPic.isEmpty()) {
-                String shopPicPath = saveFileToUploads(barbershopPic);
+                String shopPicPath = fileStorageService.store(barbershopPic);
                 newShop.setPicture(shopPicPath);
             }
             barbershopRepository.save(newShop);
             return newShop;
         }
     }
-
-    // Helper to store uploaded file in /uploads
-    private String saveFileToUploads(MultipartFile file) {
-        try {
-            Path uploadsDir = Paths.get("uploads");
-            Files.createDirectories(uploadsDir);
-
-            String originalFilename = file.getOriginalFilename();
-            String uniqueFilename = UUID.randomUUID() + "_" + originalFilename;
-
-            Path targetPath = uploadsDir.resolve(uniqueFilename).normalize();
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-
-            return "uploads/" + uniqueFilename;
-        } catch (IOException e) {
-            throw new RuntimeException("Could not store file. Error: " + e.getMessage());
-        }
-    }
 }
@@ -0,0 +1,365 @@
+package hairmony.service;
+
+import hairmony.dto.AvailabilityDTO;
+import hairmony.entities.Barber;
+import hairmony.entities.Barbershop;
+import hairmony.entities.Reservation;
+import hairmony.entities.WorkingHours;
+import hairmony.exceptions.InvalidScheduleException;
+import hairmony.exceptions.ResourceNotFoundException;
+import hairmony.exceptions.ScheduleConflictException;
+import hairmony.exceptions.SlotUnavailableException;
+import hairmony.repository.BarberRepository;
+import hairmony.repository.BarbershopRepository;
+import hairmony.repository.ReservationRepository;
+import hairmony.serviceInterfaces.AvailabilityServiceInf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link SlotCalendar} per barber, all loaded with one query at startup (or a barber's alone the first
+ * time they are asked for), then kept up to date by the reservation service: a booking holds its slot before
+ * it is saved, and status changes take or free it. The calendars assume this is the only instance taking
+ * reservations, like the other in-memory caches of the application.
+ * <p>
+ * An unpaid (PENDING_PAYMENT) reservation holds its slot for availability.payment-hold-minutes only. The
+ * unpaid holds are kept in memory too, and each availability read or booking first cancels the ones that
+ * have lapsed, so the database is only touched when there is one to cancel.
+ */
+@Service
+public class AvailabilityServiceImpl implements AvailabilityServiceInf {
+
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityServiceImpl.class);
+
+    // The only status whose reservation gives its slot back
+    static final String CANCELLED = "CANCELLED";
+    // Holds its slot until it is paid or its hold lapses
+    static final String PENDING_PAYMENT = "PENDING_PAYMENT";
+
+    private final ReservationRepository reservationRepository;
+    private final BarberRepository barberRepository;
+    private final BarbershopRepository barbershopRepository;
+    private final int slotMinutes;
+    private final int appointmentMinutes;
+    private final int maxRangeDays;
+    private final boolean warmUp;
+    private final WorkingHours defaultHours;
+    private final int paymentHoldMinutes;
+    // Unpaid holds saved before heldAt existed lapse counting from this start
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final Map<Long, SlotCalendar> calendars = new ConcurrentHashMap<>();
+    private final Map<Long, UnpaidHold> unpaidHolds = new ConcurrentHashMap<>();   // reservation id -> hold
+
+    public AvailabilityServiceImpl(ReservationRepository reservationRepository,
+                                   BarberRepository barberRepository,
+                                   BarbershopRepository barbershopRepository,
+                                   @Value("${availability.slot-minutes:15}") int slotMinutes,
+                                   @Value("${availability.appointment-minutes:30}") int appointmentMinutes,
+                                   @Value("${availability.max-range-days:31}") int maxRangeDays,
+                                   @Value("${availability.warm-up:true}") boolean warmUp,
+                                   @Value("${availability.payment-hold-minutes:30}") int paymentHoldMinutes,
+                                   @Value("${availability.default-hours.opens-at:09:00}") String opensAt,
+                                   @Value("${availability.default-hours.closes-at:18:00}") String closesAt,
+                                   @Value("${availability.default-hours.break-start:12:00}") String breakStart,
+                                   @Value("${availability.default-hours.break-end:13:00}") String breakEnd,
+                                   @Value("${availability.default-hours.closed-days:SUNDAY}") String closedDays) {
+        if (slotMinutes < 1 || 24 * 60 % slotMinutes != 0) {
+            throw new IllegalArgumentException("availability.slot-minutes must divide a day, got " + slotMinutes);
+        }
+        if (appointmentMinutes < 1 || maxRangeDays < 1 || paymentHoldMinutes < 1) {
+            throw new IllegalArgumentException("availability.appointment-minutes, max-range-days and payment-hold-minutes must be >= 1");
+        }
+        this.reservationRepository = reservationRepository;
+        this.barberRepository = barberRepository;
+        this.barbershopRepository = barbershopRepository;
+        this.slotMinutes = slotMinutes;
+        this.appointmentMinutes = appointmentMinutes;
+        this.maxRangeDays = maxRangeDays;
+        this.warmUp = warmUp;
+        this.paymentHoldMinutes = paymentHoldMinutes;
+        this.defaultHours = validated(new WorkingHours(time(opensAt), time(closesAt), time(breakStart), time(breakEnd), closedDays));
+        if (defaultHours == null) {
+            throw new IllegalArgumentException("availability.default-hours.opens-at and closes-at are required");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmUp) {
+            return;
+        }
+        Map<Long, SlotCalendar> loaded = new HashMap<>();
+        for (Barber barber : barberRepository.findAll()) {
+            loaded.put(barber.getId(), new SlotCalendar(slotMinutes, hoursOf(barber)));
+        }
+        int reservations = 0;
+        for (Object[] row : reservationRepository.findTakenSlotsFrom(LocalDate.now())) {
+            SlotCalendar calendar = loaded.get(((Number) row[0]).longValue());
+            if (calendar != null) {
+                calendar.take((LocalDate) row[1], (LocalTime) row[2], appointmentMinutes);
+                reservations++;
+            }
+        }
+        for (Object[] row : reservationRepository.findUnpaidHoldsFrom(LocalDate.now())) {
+            if (loaded.containsKey(((Number) row[1]).longValue())) {
+                trackUnpaid(row);
+            }
+        }
+        // A calendar loaded on demand meanwhile already has everything this snapshot has, and maybe more
+        loaded.forEach(calendars::putIfAbsent);
+        log.info("Availability loaded: {} barbers, {} upcoming reservations", loaded.size(), reservations);
+    }
+
+    @Override
+    public AvailabilityDTO getAvailability(Long barberId, LocalDate from, LocalDate to) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        LocalDate first = from == null || from.isBefore(today) ? today : from;
+        LocalDate last = to == null ? first.plusDays(6) : to;
+        if (last.isAfter(first.plusDays(maxRangeDays - 1))) {
+            last = first.plusDays(maxRangeDays - 1);
+        }
+
+        releaseLapsedHolds(now);
+        SlotCalendar calendar = calendar(barberId);
+        List<AvailabilityDTO.Day> days = new ArrayList<>();
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            // Today, only the starts still ahead
+            int fromMinute = date.equals(today) ? now.getHour() * 60 + now.getMinute() + 1 : 0;
+            days.add(new AvailabilityDTO.Day(date, calendar.freeStarts(date, appointmentMinutes, fromMinute)));
+        }
+        return new AvailabilityDTO(barberId, slotMinutes, appointmentMinutes, days);
+    }
+
+    @Override
+    public void hold(Long barberId, LocalDate date, LocalTime time) {
+        if (date == null || time == null) {
+            throw new SlotUnavailableException("Pick a date and a time for the reservation");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!LocalDateTime.of(date, time).isAfter(now)) {
+            throw new SlotUnavailableException("That time has already passed");
+        }
+        releaseLapsedHolds(now);
+        SlotCalendar calendar = calendar(barberId);
+        calendar.prune(now.toLocalDate());
+        switch (calendar.hold(date, time, appointmentMinutes)) {
+            case HELD -> {
+            }
+            case OFF_GRID -> throw new SlotUnavailableException("Appointments start every " + slotMinutes + " minutes");
+            case CLOSED -> throw new SlotUnavailableException("The barber is not working at " + time + " on " + date);
+            case TAKEN -> throw new SlotUnavailableException("The barber is already booked at " + time + " on " + date);
+        }
+    }
+
+    @Override
+    public void release(Long barberId, LocalDate date, LocalTime time) {
+        SlotCalendar calendar = calendars.get(barberId);
+        if (calendar != null && date != null && time != null) {
+            calendar.free(date, time, appointmentMinutes);
+        }
+    }
+
+    @Override
+    public void awaitingPayment(Reservation reservation) {
+        if (reservation.getId() != null && reservation.getBarber() != null && reservation.getDate() != null
+                && reservation.getTime() != null) {
+            unpaidHolds.put(reservation.getId(), new UnpaidHold(reservation.getBarber().getId(), reservation.getDate(),
+                    reservation.getTime(), lapsesAt(reservation.getHeldAt())));
+        }
+    }
+
+    @Override
+    public void statusChanged(Reservation reservation, String previousStatus) {
+        if (PENDING_PAYMENT.equals(reservation.getStatus())) {
+            awaitingPayment(reservation);
+        } else if (reservation.getId() != null) {
+            unpaidHolds.remove(reservation.getId());
+        }
+        boolean held = holdsSlot(previousStatus);
+        boolean holds = holdsSlot(reservation.getStatus());
+        if (held == holds || reservation.getBarber() == null || reservation.getDate() == null
+                || reservation.getTime() == null || reservation.getDate().isBefore(LocalDate.now())) {
+            return;
+        }
+        SlotCalendar calendar = calendars.get(reservation.getBarber().getId());
+        if (calendar == null) {
+            // Loaded on first use from the reservations as saved, this change included
+            return;
+        }
+        // Not checked against the calendar: staff may put a cancelled reservation back even if its slot was rebooked
+        if (holds) {
+            calendar.take(reservation.getDate(), reservation.getTime(), appointmentMinutes);
+        } else {
+            calendar.free(reservation.getDate(), reservation.getTime(), appointmentMinutes);
+        }
+    }
+
+    @Override
+    public WorkingHours updateBarberHours(Long barberId, WorkingHours hours) {
+        Barber barber = barberRepository.findById(barberId)
+                .orElseThrow(() -> new ResourceNotFoundException("Barber not found"));
+        barber.setWorkingHours(validated(hours));
+        WorkingHours effective = hoursOf(barber);
+
+        SlotCalendar calendar = calendar(barberId);
+        // Holding the calendar keeps bookings out between the check and the new hours
+        synchronized (calendar) {
+            rejectOrphans(calendar, effective, "The barber");
+            barberRepository.save(barber);
+            calendar.setHours(effective);
+        }
+        return effective;
+    }
+
+    @Override
+    public WorkingHours updateBarbershopHours(Long barbershopId, WorkingHours hours) {
+        Barbershop shop = barbershopRepository.findById(barbershopId)
+                .orElseThrow(() -> new ResourceNotFoundException("Barbershop not found"));
+        WorkingHours shopHours = validated(hours);
+        WorkingHours effective = isSet(shopHours) ? shopHours : defaultHours;
+
+        // Only the barbers without hours of their own follow the shop's
+        List<SlotCalendar> following = new ArrayList<>();
+        for (Barber barber : barberRepository.findByBarbershopId(barbershopId)) {
+            if (!isSet(barber.getWorkingHours())) {
+                SlotCalendar calendar = calendar(barber.getId());
+                rejectOrphans(calendar, effective, barber.getUsername());
+                following.add(calendar);
+            }
+        }
+        shop.setWorkingHours(shopHours);
+        barbershopRepository.save(shop);
+        following.forEach(calendar -> calendar.setHours(effective));
+        return effective;
+    }
+
+    /**
+     * Cancels the unpaid reservations whose hold has lapsed and frees their slots. The cancellation is a
+     * conditional UPDATE, so a payment that confirmed the reservation first wins and keeps the slot.
+     */
+    private void releaseLapsedHolds(LocalDateTime now) {
+        for (Map.Entry<Long, UnpaidHold> entry : unpaidHolds.entrySet()) {
+            UnpaidHold hold = entry.getValue();
+            if (hold.lapsesAt().isAfter(now) || !unpaidHolds.remove(entry.getKey(), hold)) {
+                continue;
+            }
+            if (reservationRepository.cancelIfUnpaid(entry.getKey()) == 1) {
+                SlotCalendar calendar = calendars.get(hold.barberId());
+                if (calendar != null) {
+                    calendar.free(hold.date(), hold.time(), appointmentMinutes);
+                }
+                log.info("Reservation {} not paid within {} minutes, cancelled", entry.getKey(), paymentHoldMinutes);
+            }
+        }
+    }
+
+    // [id, barberId, date, time, heldAt]
+    private void trackUnpaid(Object[] row) {
+        unpaidHolds.putIfAbsent(((Number) row[0]).longValue(), new UnpaidHold(((Number) row[1]).longValue(),
+                (LocalDate) row[2], (LocalTime) row[3], lapsesAt((LocalDateTime) row[4])));
+    }
+
+    private LocalDateTime lapsesAt(LocalDateTime heldAt) {
+        return (heldAt != null ? heldAt : startedAt).plusMinutes(paymentHoldMinutes);
+    }
+
+    private record UnpaidHold(Long barberId, LocalDate date, LocalTime time, LocalDateTime lapsesAt) {}
+
+    /**
+     * @throws ScheduleConflictException when a reservation still ahead would fall outside the new hours
+     */
+    private static void rejectOrphans(SlotCalendar calendar, WorkingHours hours, String who) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime orphan = calendar.firstOrphan(hours, now.toLocalDate(), now.getHour() * 60 + now.getMinute());
+        if (orphan != null) {
+            throw new ScheduleConflictException(who + " has a reservation at " + orphan.toLocalTime() + " on "
+                    + orphan.toLocalDate() + " outside the new hours; move or cancel it first");
+        }
+    }
+
+    private SlotCalendar calendar(Long barberId) {
+        SlotCalendar calendar = calendars.get(barberId);
+        if (calendar != null) {
+            return calendar;
+        }
+        Barber barber = barberRepository.findById(barberId)
+                .orElseThrow(() -> new ResourceNotFoundException("Barber not found"));
+        SlotCalendar loaded = new SlotCalendar(slotMinutes, hoursOf(barber));
+        for (Object[] row : reservationRepository.findTakenSlotsByBarberFrom(barberId, LocalDate.now())) {
+            loaded.take((LocalDate) row[0], (LocalTime) row[1], appointmentMinutes);
+        }
+        reservationRepository.findUnpaidHoldsByBarberFrom(barberId, LocalDate.now()).forEach(this::trackUnpaid);
+        calendar = calendars.putIfAbsent(barberId, loaded);
+        return calendar != null ? calendar : loaded;
+    }
+
+    private WorkingHours hoursOf(Barber barber) {
+        if (isSet(barber.getWorkingHours())) {
+            return barber.getWorkingHours();
+        }
+        if (barber.getBarbershop() != null && isSet(barber.getBarbershop().getWorkingHours())) {
+            return barber.getBarbershop().getWorkingHours();
+        }
+        return defaultHours;
+    }
+
+    private static boolean isSet(WorkingHours hours) {
+        return hours != null && hours.getOpensAt() != null;
+    }
+
+    private static boolean holdsSlot(String status) {
+        return status != null && !CANCELLED.equals(status);
+    }
+
+    /**
+     * @return hours, or null when none of it is set (no hours of its own)
+     */
+    private static WorkingHours validated(WorkingHours hours) {
+        if (hours == null || (hours.getOpensAt() == null && hours.getClosesAt() == null && hours.getBreakStart() == null
+                && hours.getBreakEnd() == null && (hours.getClosedDays() == null || hours.getClosedDays().isBlank()))) {
+            return null;
+        }
+        if (hours.getOpensAt() == null || hours.getClosesAt() == null) {
+            throw new InvalidScheduleException("opensAt and closesAt are both required");
+        }
+        int opens = hours.getOpensAt().toSecondOfDay() / 60;
+        int closes = SlotCalendar.endMinute(hours.getClosesAt());
+        if (closes <= opens) {
+            throw new InvalidScheduleException("closesAt must be after opensAt");
+        }
+        if ((hours.getBreakStart() == null) != (hours.getBreakEnd() == null)) {
+            throw new InvalidScheduleException("breakStart and breakEnd go together");
+        }
+        if (hours.getBreakStart() != null) {
+            int breakStart = hours.getBreakStart().toSecondOfDay() / 60;
+            int breakEnd = SlotCalendar.endMinute(hours.getBreakEnd());
+            if (breakEnd <= breakStart || breakStart < opens || breakEnd > closes) {
+                throw new InvalidScheduleException("The break must be within the working hours");
+            }
+        }
+        try {
+            SlotCalendar.closedDays(hours.getClosedDays());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidScheduleException("closedDays must list days of the week, e.g. SUNDAY,MONDAY");
+        }
+        return hours;
+    }
+
+    private static LocalTime time(String value) {
+        return value == null || value.isBlank() ? null : LocalTime.parse(value.trim());
+    }
+}
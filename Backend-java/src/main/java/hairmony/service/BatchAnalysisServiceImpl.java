@@ -0,0 +1,159 @@
+package hairmony.service;
+
+import hairmony.dto.BatchAnalysisItem;
+import hairmony.dto.FaceAnalysisResponse;
+import hairmony.exceptions.PaymentRequiredException;
+import hairmony.exceptions.TooManyBatchesException;
+import hairmony.serviceInterfaces.AIServiceInf;
+import hairmony.serviceInterfaces.BatchAnalysisServiceInf;
+import hairmony.serviceInterfaces.QuotaServiceInf;
+import hairmony.serviceInterfaces.QuotaServiceInf.Feature;
+import hairmony.serviceInterfaces.QuotaServiceInf.Grant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+@Service
+public class BatchAnalysisServiceImpl implements BatchAnalysisServiceInf {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchAnalysisServiceImpl.class);
+
+    private final AIServiceInf aiService;
+    private final QuotaServiceInf quotaService;
+    private final ExecutorService batchExecutor;
+    private final int maxInFlightPerBatch;
+    private final int maxBatchesPerUser;
+    // userId -> batches running; an entry goes away with the user's last batch
+    private final Map<Long, Integer> running = new ConcurrentHashMap<>();
+
+    public BatchAnalysisServiceImpl(AIServiceInf aiService,
+                                    QuotaServiceInf quotaService,
+                                    @Qualifier("aiBatchExecutor") ExecutorService batchExecutor,
+                                    @Value("${ai.batch.max-in-flight-per-batch:4}") int maxInFlightPerBatch,
+                                    @Value("${ai.batch.max-concurrent-per-user:2}") int maxBatchesPerUser) {
+        this.aiService = aiService;
+        this.quotaService = quotaService;
+        this.batchExecutor = batchExecutor;
+        this.maxInFlightPerBatch = Math.max(1, maxInFlightPerBatch);
+        this.maxBatchesPerUser = Math.max(1, maxBatchesPerUser);
+    }
+
+    // The in-flight cap bounds one batch; without this a user could still take the whole pool with parallel batches
+    @Override
+    public BatchSlot reserve(Long userId) {
+        AtomicBoolean granted = new AtomicBoolean();
+        running.compute(userId, (id, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxBatchesPerUser) {
+                return count;
+            }
+            granted.set(true);
+            return current + 1;
+        });
+        if (!granted.get()) {
+            throw new TooManyBatchesException(maxBatchesPerUser);
+        }
+        AtomicBoolean closed = new AtomicBoolean();
+        return () -> {
+            if (closed.compareAndSet(false, true)) {
+                running.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null);
+            }
+        };
+    }
+
+    @Override
+    public void analyzeBatch(Long userId, List<MultipartFile> files, Consumer<BatchAnalysisItem> sink) {
+        CompletionService<BatchAnalysisItem> completion = new ExecutorCompletionService<>(batchExecutor);
+        // Set by the first item refused for payment; the items after it are refused without asking the database
+        AtomicReference<String> unpaid = new AtomicReference<>();
+        List<Future<BatchAnalysisItem>> pending = new ArrayList<>();
+        int inFlight = 0;
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                // Backpressure: a batch never has more than maxInFlightPerBatch images decoded/analyzed at once,
+                // and the next image is only read once a slot frees up (or the client has consumed a result)
+                if (inFlight == maxInFlightPerBatch) {
+                    sink.accept(take(completion));
+                    inFlight--;
+                }
+                int index = i;
+                MultipartFile file = files.get(i);
+                pending.add(completion.submit(() -> analyzeOne(userId, index, file, unpaid)));
+                inFlight++;
+
+                Future<BatchAnalysisItem> done;
+                while ((done = completion.poll()) != null) {
+                    sink.accept(getDone(done));
+                    inFlight--;
+                }
+            }
+            while (inFlight > 0) {
+                sink.accept(take(completion));
+                inFlight--;
+            }
+        } finally {
+            // Client went away or the sink failed: don't keep analyzing images nobody will read
+            pending.forEach(f -> f.cancel(true));
+        }
+    }
+
+    // Each image is charged like a single /AI/analyze-face upload, and given back unless it was analyzed
+    private BatchAnalysisItem analyzeOne(Long userId, int index, MultipartFile file, AtomicReference<String> unpaid) {
+        String filename = file.getOriginalFilename();
+        if (file.isEmpty()) {
+            return new BatchAnalysisItem(index, filename, null, "Empty file");
+        }
+        if (unpaid.get() != null) {
+            return new BatchAnalysisItem(index, filename, null, unpaid.get());
+        }
+        Grant grant;
+        try {
+            grant = quotaService.consume(userId, Feature.UPLOAD);
+        } catch (PaymentRequiredException e) {
+            unpaid.compareAndSet(null, e.getMessage());
+            return new BatchAnalysisItem(index, filename, null, e.getMessage());
+        }
+        try {
+            FaceAnalysisResponse result = aiService.analyzeFace(file.getBytes());
+            if (!result.analyzed()) {
+                quotaService.refund(userId, Feature.UPLOAD, grant);
+            }
+            return new BatchAnalysisItem(index, filename, result, null);
+        } catch (Exception e) {
+            log.warn("Batch item {} ({}) failed", index, filename, e);
+            quotaService.refund(userId, Feature.UPLOAD, grant);
+            return new BatchAnalysisItem(index, filename, null, "Analysis failed, please try again");
+        }
+    }
+
+    private static BatchAnalysisItem take(CompletionService<BatchAnalysisItem> completion) {
+        try {
+            return getDone(completion.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batch results", e);
+        }
+    }
+
+    private static BatchAnalysisItem getDone(Future<BatchAnalysisItem> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batch results", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch item failed", e.getCause());
+        }
+    }
+}
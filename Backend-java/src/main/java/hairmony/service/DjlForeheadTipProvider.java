@@ -0,0 +1,188 @@
+package hairmony.service;
+
+import ai.djl.MalformedModelException;
+import ai.djl.inference.Predictor;
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.djl.modality.cv.util.NDImageUtils;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ModelNotFoundException;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.TranslateException;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+import hairmony.dto.PointDTO;
+import hairmony.serviceInterfaces.IFaceDetection;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import jakarta.annotation.PreDestroy;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Forehead tip computed in-process with a MediaPipe face-mesh model (TensorFlow SavedModel) through DJL.
+ * Select with ai.forehead.provider=djl. The mesh model expects a face-centred crop, so, like the Python
+ * sidecar, the face is detected first and only a square around it (with ai.forehead.djl.crop-margin on
+ * each side) goes through the model; the point is mapped back to the frame.
+ * <p>
+ * Predictors are not thread-safe: a fixed pool of ai.forehead.max-concurrent of them is created with the
+ * model and each call borrows one. Decoding and inference failures are thrown, so
+ * {@link ForeheadSidecarGuard} can count them; null only means no face was found.
+ */
+@Service
+@ConditionalOnProperty(name = "ai.forehead.provider", havingValue = "djl")
+public class DjlForeheadTipProvider implements IForeheadTipProvider {
+
+    // Face-mesh landmark 10 sits at the top of the forehead, same point the Python sidecar returns
+    static final int FOREHEAD_LANDMARK = 10;
+    static final int MESH_INPUT_SIZE = 192;
+
+    private final IFaceDetection faceDetection;
+    private final double cropMargin;
+    private final ZooModel<Image, PointDTO> model;
+    private final List<Predictor<Image, PointDTO>> allPredictors = new CopyOnWriteArrayList<>();
+    private final NativeObjectPool<Predictor<Image, PointDTO>> predictors;
+
+    public DjlForeheadTipProvider(IFaceDetection faceDetection,
+                                  @Value("${ai.forehead.djl.model-path:models/face_mesh}") String modelPath,
+                                  @Value("${ai.forehead.djl.min-face-score:0.5}") float minFaceScore,
+                                  @Value("${ai.forehead.djl.crop-margin:0.25}") double cropMargin,
+                                  @Value("${ai.forehead.max-concurrent:16}") int poolSize,
+                                  @Value("${ai.forehead.deadline-ms:1500}") long borrowTimeoutMs)
+            throws ModelNotFoundException, MalformedModelException, IOException {
+        Path path = Paths.get(modelPath);
+        if (!Files.exists(path)) {
+            throw new IOException("Face mesh model not found at " + path.toAbsolutePath());
+        }
+        this.faceDetection = faceDetection;
+        this.cropMargin = cropMargin;
+        this.model = Criteria.builder()
+                .setTypes(Image.class, PointDTO.class)
+                .optModelPath(path)
+                .optEngine("TensorFlow")
+                .optTranslator(new FaceMeshTranslator(minFaceScore))
+                .build()
+                .loadModel();
+        this.predictors = new NativeObjectPool<>("face-mesh-predictor", Math.max(1, poolSize), borrowTimeoutMs, () -> {
+            Predictor<Image, PointDTO> predictor = model.newPredictor();
+            allPredictors.add(predictor);
+            return predictor;
+        });
+    }
+
+    @Override
+    public PointDTO detectForeheadTip(byte[] jpegBytes) {
+        int[] crop;
+        try (PointerScope scope = new PointerScope()) {
+            Mat frame = FaceImageUtils.decodeReduced(jpegBytes, 1);
+            if (frame.empty()) {
+                throw new IllegalStateException("Face mesh input could not be decoded");
+            }
+            Rect face = faceDetection.detectFace(frame);
+            if (face == null) {
+                return null;
+            }
+            crop = faceCrop(face.x(), face.y(), face.width(), face.height(), frame.cols(), frame.rows(), cropMargin);
+        }
+
+        Image image;
+        try {
+            image = ImageFactory.getInstance().fromInputStream(new ByteArrayInputStream(jpegBytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Image faceImage = image.getSubImage(crop[0], crop[1], crop[2], crop[3]);
+        PointDTO tip = predictors.execute(predictor -> {
+            try {
+                return predictor.predict(faceImage);
+            } catch (TranslateException e) {
+                throw new IllegalStateException("Face mesh inference failed", e);
+            }
+        });
+        return tip == null ? null : new PointDTO(tip.x() + crop[0], tip.y() + crop[1]);
+    }
+
+    /**
+     * Square around the face rect, grown by margin times its larger side on each side and clipped to the
+     * frame: {x, y, width, height}.
+     */
+    static int[] faceCrop(int x, int y, int width, int height, int frameWidth, int frameHeight, double margin) {
+        int side = (int) Math.round(Math.max(width, height) * (1 + 2 * margin));
+        int left = Math.max(0, x + width / 2 - side / 2);
+        int top = Math.max(0, y + height / 2 - side / 2);
+        int right = Math.min(frameWidth, x + width / 2 - side / 2 + side);
+        int bottom = Math.min(frameHeight, y + height / 2 - side / 2 + side);
+        return new int[]{left, top, right - left, bottom - top};
+    }
+
+    @PreDestroy
+    public void close() {
+        allPredictors.forEach(Predictor::close);
+        model.close();
+    }
+
+    /**
+     * Image -> 1x192x192x3 float input in [0,1]; 468x3 mesh output -> forehead point in image pixels.
+     */
+    static class FaceMeshTranslator implements Translator<Image, PointDTO> {
+
+        private final float minFaceScore;
+
+        FaceMeshTranslator(float minFaceScore) {
+            this.minFaceScore = minFaceScore;
+        }
+
+        @Override
+        public NDList processInput(TranslatorContext ctx, Image input) {
+            ctx.setAttachment("width", input.getWidth());
+            ctx.setAttachment("height", input.getHeight());
+            NDArray array = input.toNDArray(ctx.getNDManager(), Image.Flag.COLOR);
+            array = NDImageUtils.resize(array, MESH_INPUT_SIZE, MESH_INPUT_SIZE);
+            array = array.toType(DataType.FLOAT32, false).div(255f).expandDims(0);
+            return new NDList(array);
+        }
+
+        @Override
+        public PointDTO processOutput(TranslatorContext ctx, NDList list) {
+            // Optional second output: face presence logit
+            if (list.size() > 1) {
+                float logit = list.get(1).toFloatArray()[0];
+                double score = 1.0 / (1.0 + Math.exp(-logit));
+                if (score < minFaceScore) {
+                    return null;
+                }
+            }
+            float[] mesh = list.get(0).toFloatArray();
+            if (mesh.length < (FOREHEAD_LANDMARK + 1) * 3) {
+                return null;
+            }
+            int width = (Integer) ctx.getAttachment("width");
+            int height = (Integer) ctx.getAttachment("height");
+            double x = mesh[FOREHEAD_LANDMARK * 3] * width / (double) MESH_INPUT_SIZE;
+            double y = mesh[FOREHEAD_LANDMARK * 3 + 1] * height / (double) MESH_INPUT_SIZE;
+            return new PointDTO(x, y);
+        }
+
+        @Override
+        public Batchifier getBatchifier() {
+            // processInput already adds the batch dimension
+            return null;
+        }
+    }
+}
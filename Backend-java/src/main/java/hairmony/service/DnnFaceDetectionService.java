@@ -0,0 +1,142 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IFaceDetection;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.javacpp.indexer.FloatIndexer;
+import org.bytedeco.opencv.global.opencv_core;           // For auto-loading the native libs
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_objdetect.FaceDetectorYN;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Face detector running the YuNet ONNX model through OpenCV's DNN module (FaceDetectorYN).
+ * Select with ai.face-detector.type=dnn. More robust than the Haar cascade to pose, lighting and
+ * partial occlusion; the model (~230 KB) is read from ai.face-detector.dnn.model-path on disk,
+ * or from the same path on the classpath when bundled in the jar.
+ */
+@Service
+@ConditionalOnProperty(name = "ai.face-detector.type", havingValue = "dnn")
+public class DnnFaceDetectionService implements IFaceDetection {
+
+    // Row layout of FaceDetectorYN output: x, y, w, h, 5 landmarks (x, y), score
+    private static final int SCORE_COLUMN = 14;
+
+    // FaceDetectorYN keeps per-input-size state, so each pooled slot has its own instance
+    private final NativeObjectPool<FaceDetectorYN> faceDetectors;
+
+    public DnnFaceDetectionService(String modelPath, float scoreThreshold, float nmsThreshold, int topK,
+                                   int poolSize, long borrowTimeoutMs) throws IOException {
+        this(modelPath, scoreThreshold, nmsThreshold, topK, poolSize, borrowTimeoutMs, null);
+    }
+
+    /**
+     * With a startup executor the models are loaded concurrently there and the constructor returns
+     * right away ({@link #loaded()} tells when they are all ready); without one they load inline.
+     */
+    @Autowired
+    public DnnFaceDetectionService(@Value("${ai.face-detector.dnn.model-path:models/face_detection_yunet_2023mar.onnx}") String modelPath,
+                                   @Value("${ai.face-detector.dnn.score-threshold:0.8}") float scoreThreshold,
+                                   @Value("${ai.face-detector.dnn.nms-threshold:0.3}") float nmsThreshold,
+                                   @Value("${ai.face-detector.dnn.top-k:50}") int topK,
+                                   @Value("${ai.detector-pool.size:0}") int poolSize,
+                                   @Value("${ai.detector-pool.borrow-timeout-ms:30000}") long borrowTimeoutMs,
+                                   @Qualifier("aiStartupExecutor") Executor startupExecutor) throws IOException {
+        // Trigger the native library load
+        opencv_core.class.getName();
+
+        String model = resolveModel(modelPath);
+        faceDetectors = new NativeObjectPool<>(
+                "dnn-face-detector",
+                NativeObjectPool.resolveSize(poolSize),
+                borrowTimeoutMs,
+                () -> {
+                    // Input size is set per image in detectFace
+                    FaceDetectorYN detector = FaceDetectorYN.create(model, "", new Size(320, 320),
+                            scoreThreshold, nmsThreshold, topK, 0, 0);
+                    if (detector == null || detector.isNull()) {
+                        throw new RuntimeException("Failed to load DNN face detector from " + model);
+                    }
+                    return detector;
+                },
+                startupExecutor
+        );
+    }
+
+    @Override
+    public Rect detectFace(Mat image) {
+        int x, y, width, height;
+        // The output matrix is only read here: free it now rather than with the caller's scope
+        try (PointerScope detectScope = new PointerScope()) {
+            Mat faces = new Mat();
+            faceDetectors.execute(detector -> {
+                detector.setInputSize(new Size(image.cols(), image.rows()));
+                return detector.detect(image, faces);
+            });
+            if (faces.empty() || faces.rows() == 0) {
+                return null;
+            }
+
+            int best = 0;
+            try (FloatIndexer rows = faces.createIndexer()) {
+                for (int r = 1; r < faces.rows(); r++) {
+                    if (rows.get(r, SCORE_COLUMN) > rows.get(best, SCORE_COLUMN)) {
+                        best = r;
+                    }
+                }
+                // Boxes can reach past the border; the LBF fit expects a rect inside the image
+                x = Math.max(0, Math.round(rows.get(best, 0)));
+                y = Math.max(0, Math.round(rows.get(best, 1)));
+                width = Math.min(image.cols(), Math.round(rows.get(best, 0) + rows.get(best, 2))) - x;
+                height = Math.min(image.rows(), Math.round(rows.get(best, 1) + rows.get(best, 3))) - y;
+            }
+        }
+        return width > 0 && height > 0 ? new Rect(x, y, width, height) : null;
+    }
+
+    @Override
+    public NativeObjectPool.Stats poolStats() {
+        return faceDetectors.stats();
+    }
+
+    @Override
+    public CompletableFuture<Void> loaded() {
+        return faceDetectors.loaded();
+    }
+
+    /**
+     * Absolute path of the model: the file itself if it exists, otherwise a temp copy of the classpath resource.
+     */
+    static String resolveModel(String modelPath) throws IOException {
+        Path path = Paths.get(modelPath);
+        if (Files.isRegularFile(path)) {
+            return path.toAbsolutePath().toString();
+        }
+        ClassPathResource resource = new ClassPathResource(modelPath);
+        if (!resource.exists()) {
+            throw new IOException("DNN face detector model not found at " + path.toAbsolutePath() + " or on the classpath");
+        }
+        try (InputStream in = resource.getInputStream()) {
+            File tempFile = File.createTempFile("face-detector", ".onnx");
+            Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tempFile.deleteOnExit();
+            return tempFile.getAbsolutePath();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package hairmony.service;
+
+import hairmony.dto.FaceAnalysisResponse;
+import hairmony.dto.PointDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Face analysis results keyed by the SHA-256 of the uploaded image bytes.
+ * Bounded by an estimated memory weight (LRU eviction) and a TTL. Concurrent requests
+ * for the same image share one pipeline run (single-flight). Results are stored without their
+ * hairstyles, which {@link AIServiceImpl} looks up in the catalog on each read.
+ */
+@Component
+public class FaceAnalysisCache {
+
+    private final long maxWeightBytes;
+    private final long ttlNanos;
+
+    // access-ordered => iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<FaceAnalysisResponse>> inFlight = new ConcurrentHashMap<>();
+    private long weightBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public FaceAnalysisCache(@Value("${ai.cache.max-weight-bytes:33554432}") long maxWeightBytes,
+                             @Value("${ai.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.maxWeightBytes = maxWeightBytes;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Cached result for these image bytes, or run the loader once (even under concurrent identical requests).
+     */
+    public FaceAnalysisResponse getOrCompute(byte[] imageBytes, Supplier<FaceAnalysisResponse> loader) {
+        return getOrCompute(digest(imageBytes), loader);
+    }
+
+    /**
+     * Same, for callers that already hashed the image while reading it (SHA-256 hex).
+     */
+    public FaceAnalysisResponse getOrCompute(String digest, Supplier<FaceAnalysisResponse> loader) {
+        return getOrCompute(digest, loader, () -> { });
+    }
+
+    /**
+     * Same, running beforeWaiting when an identical request is already being computed and this one is
+     * about to wait for its result (e.g. to give back a buffer the loader would have needed).
+     */
+    public FaceAnalysisResponse getOrCompute(String digest, Supplier<FaceAnalysisResponse> loader, Runnable beforeWaiting) {
+        String key = digest.toLowerCase();
+        FaceAnalysisResponse cached = get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<FaceAnalysisResponse> mine = new CompletableFuture<>();
+        CompletableFuture<FaceAnalysisResponse> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            beforeWaiting.run();
+            try {
+                return leader.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            FaceAnalysisResponse response = loader.get();
+            if (isCacheable(response)) {
+                put(key, response);
+            }
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public boolean evict(String digest) {
+        synchronized (entries) {
+            Entry removed = entries.remove(digest.toLowerCase());
+            if (removed == null) {
+                return false;
+            }
+            weightBytes -= removed.weight;
+            return true;
+        }
+    }
+
+    public int evictAll() {
+        synchronized (entries) {
+            int count = entries.size();
+            entries.clear();
+            weightBytes = 0;
+            return count;
+        }
+    }
+
+    public Stats stats() {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get() + coalesced.get();
+        synchronized (entries) {
+            return new Stats(
+                    entries.size(),
+                    weightBytes,
+                    maxWeightBytes,
+                    hitCount,
+                    misses.get(),
+                    coalesced.get(),
+                    evictions.get(),
+                    lookups == 0 ? 0 : (hitCount + coalesced.get()) / (double) lookups
+            );
+        }
+    }
+
+    public static String digest(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private FaceAnalysisResponse get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.createdAtNanos > ttlNanos) {
+                entries.remove(key);
+                weightBytes -= entry.weight;
+                return null;
+            }
+            return entry.response;
+        }
+    }
+
+    private void put(String key, FaceAnalysisResponse response) {
+        long weight = weigh(key, response);
+        if (weight > maxWeightBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(response, weight, System.nanoTime()));
+            if (previous != null) {
+                weightBytes -= previous.weight;
+            }
+            weightBytes += weight;
+            Iterator<Entry> lru = entries.values().iterator();
+            while (weightBytes > maxWeightBytes && lru.hasNext()) {
+                weightBytes -= lru.next().weight;
+                lru.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Transient failures (sidecar down, internal errors) must be retried, not replayed from the cache,
+     * and so must degraded results (landmark-estimated forehead tip).
+     */
+    private static boolean isCacheable(FaceAnalysisResponse response) {
+        if (response == null || response.shape() == null || response.degraded()) {
+            return false;
+        }
+        String shape = response.shape();
+        return !shape.startsWith("Internal error") && !shape.startsWith("Failed to get forehead tip");
+    }
+
+    /**
+     * Rough heap footprint of an entry: object headers, the landmark points and the strings.
+     */
+    private static long weigh(String key, FaceAnalysisResponse response) {
+        long weight = 128 + 2L * key.length();
+        weight += 48 + 2L * response.shape().length();
+        if (response.hairstyles() != null) {
+            for (String style : response.hairstyles()) {
+                weight += 48 + 2L * style.length();
+            }
+        }
+        if (response.landmarks() != null) {
+            weight += 32L * response.landmarks().size();
+        }
+        if (response.faceRect() != null) weight += 32;
+        PointDTO tip = response.foreheadTip();
+        if (tip != null) weight += 32;
+        return weight;
+    }
+
+    private record Entry(FaceAnalysisResponse response, long weight, long createdAtNanos) {}
+
+    public record Stats(int entries,
+                        long weightBytes,
+                        long maxWeightBytes,
+                        long hits,
+                        long misses,
+                        long coalesced,
+                        long evictions,
+                        double hitRatio) {}
+}
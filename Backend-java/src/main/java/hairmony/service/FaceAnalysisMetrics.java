@@ -0,0 +1,99 @@
+package hairmony.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the face analysis pipeline, scraped through /actuator/prometheus:
+ * <ul>
+ *   <li>{@code ai_analysis_stage_seconds{stage}}: histogram per pipeline step (decode, resize, forehead,
+ *       detect, landmarks, classify, map), plus hairstyles, the catalog lookup timed on every analysis
+ *       including the ones served from the cache</li>
+ *   <li>{@code ai_analysis_seconds{outcome}}: histogram of whole pipeline runs</li>
+ *   <li>{@code ai_analysis_outcomes_total{outcome}} and {@code ai_analysis_shapes_total{shape}}</li>
+ *   <li>{@code ai_analysis_forehead_fallbacks_total}: analyses that estimated the forehead tip from the
+ *       landmarks because the sidecar was unavailable; over {@code ai_analysis_seconds_count} it is the fallback rate</li>
+ * </ul>
+ */
+@Component
+public class FaceAnalysisMetrics {
+
+    public static final String OUTCOME_SHAPE = "shape";
+    public static final String OUTCOME_NO_FACE = "no_face";
+    public static final String OUTCOME_INVALID_IMAGE = "invalid_image";
+    public static final String OUTCOME_SIDECAR_FAILURE = "sidecar_failure";
+    public static final String OUTCOME_TOO_LARGE = "too_large";
+    public static final String OUTCOME_ERROR = "error";
+
+    // Buckets around what a request actually costs: a few ms per stage up to multi-second sidecar stalls
+    private static final Duration[] SLOS = {
+            Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50),
+            Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+            Duration.ofSeconds(2), Duration.ofSeconds(5)
+    };
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> pipelineTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> outcomes = new ConcurrentHashMap<>();
+    private final Map<String, Counter> shapes = new ConcurrentHashMap<>();
+    private final Counter foreheadFallbacks;
+
+    public FaceAnalysisMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.foreheadFallbacks = Counter.builder("ai.analysis.forehead.fallbacks")
+                .description("Analyses that used the landmark forehead estimate instead of the sidecar")
+                .register(registry);
+    }
+
+    public void recordStage(String stage, long nanos) {
+        stageTimers.computeIfAbsent(stage, s -> Timer.builder("ai.analysis.stage")
+                        .description("Time spent in one step of the face analysis pipeline")
+                        .tag("stage", s)
+                        .serviceLevelObjectives(SLOS)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * One finished pipeline run: its total time, outcome and, when classified, the face shape.
+     */
+    public void recordAnalysis(String outcome, String shape, long nanos) {
+        pipelineTimers.computeIfAbsent(outcome, o -> Timer.builder("ai.analysis")
+                        .description("Whole face analysis pipeline runs (cache hits excluded)")
+                        .tag("outcome", o)
+                        .serviceLevelObjectives(SLOS)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        recordOutcome(outcome);
+        if (shape != null) {
+            shapes.computeIfAbsent(shape, s -> Counter.builder("ai.analysis.shapes")
+                            .description("Classified face shapes")
+                            .tag("shape", s)
+                            .register(registry))
+                    .increment();
+        }
+    }
+
+    /**
+     * Outcomes decided before the pipeline runs (e.g. an oversized upload).
+     */
+    public void recordOutcome(String outcome) {
+        outcomes.computeIfAbsent(outcome, o -> Counter.builder("ai.analysis.outcomes")
+                        .description("Face analysis results by outcome")
+                        .tag("outcome", o)
+                        .register(registry))
+                .increment();
+    }
+
+    public void recordForeheadFallback() {
+        foreheadFallbacks.increment();
+    }
+}
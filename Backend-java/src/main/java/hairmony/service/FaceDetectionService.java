@@ -1,49 +1,190 @@
 package hairmony.service;
 
 import hairmony.serviceInterfaces.IFaceDetection;
+import org.bytedeco.javacpp.PointerScope;
 import org.bytedeco.opencv.global.opencv_core;           // For auto-loading the native libs
+import org.bytedeco.opencv.global.opencv_imgproc;
 import org.bytedeco.opencv.opencv_core.Mat;
 import org.bytedeco.opencv.opencv_core.Rect;
 import org.bytedeco.opencv.opencv_core.RectVector;      // Bytedeco equivalent of MatOfRect
+import org.bytedeco.opencv.opencv_core.Size;
 import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
-
-import java.io.File;
-import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+/**
+ * Haar cascade face detector, the default (ai.face-detector.type=haar). The "default" profile keeps
+ * OpenCV's detectMultiScale defaults on the colour image; "tuned" runs on an equalized grayscale copy
+ * with a minimum face size and stricter neighbour count, and picks the largest face.
+ */
 @Service
+@ConditionalOnProperty(name = "ai.face-detector.type", havingValue = "haar", matchIfMissing = true)
 public class FaceDetectionService implements IFaceDetection {
 
-    private final CascadeClassifier faceDetector;
+    // One classifier per pooled slot: CascadeClassifier is not safe to share between threads
+    private final NativeObjectPool<CascadeClassifier> faceDetectors;
+    private final HaarSettings settings;
 
     public FaceDetectionService() throws Exception {
+        this(0, 30_000);
+    }
+
+    public FaceDetectionService(int poolSize, long borrowTimeoutMs) throws Exception {
+        this(poolSize, borrowTimeoutMs, HaarSettings.DEFAULT);
+    }
+
+    public FaceDetectionService(int poolSize, long borrowTimeoutMs, HaarSettings settings) throws Exception {
+        this(poolSize, borrowTimeoutMs, settings, null, null);
+    }
+
+    @Autowired
+    public FaceDetectionService(@Value("${ai.detector-pool.size:0}") int poolSize,
+                                @Value("${ai.detector-pool.borrow-timeout-ms:30000}") long borrowTimeoutMs,
+                                @Value("${ai.face-detector.haar.profile:default}") String profile,
+                                @Value("${ai.face-detector.haar.scale-factor:0}") double scaleFactor,
+                                @Value("${ai.face-detector.haar.min-neighbors:0}") int minNeighbors,
+                                @Value("${ai.face-detector.haar.min-size:0}") int minSize,
+                                @Value("${ai.face-detector.haar.max-size:0}") int maxSize,
+                                @Value("${ai.models.cache-dir:}") String modelCacheDir,
+                                @Qualifier("aiStartupExecutor") Executor startupExecutor) throws Exception {
+        this(poolSize, borrowTimeoutMs,
+                HaarSettings.profile(profile).withOverrides(scaleFactor, minNeighbors, minSize, maxSize),
+                modelCacheDir, startupExecutor);
+    }
+
+    /**
+     * With a startup executor the classifiers are parsed concurrently there and the constructor returns
+     * right away ({@link #loaded()} tells when they are all ready); without one they load inline.
+     */
+    public FaceDetectionService(int poolSize, long borrowTimeoutMs, HaarSettings settings,
+                                String modelCacheDir, Executor startupExecutor) throws Exception {
+        this.settings = settings;
+
         // Trigger the native library load
         opencv_core.class.getName();
 
-        // Load the Haar cascade from resources
-        try (InputStream in = new ClassPathResource("haarcascade_frontalface_default.xml").getInputStream()) {
-            File tempFile = File.createTempFile("haarcascade", ".xml");
-            Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            tempFile.deleteOnExit();
+        // Haar cascade from resources, extracted once to the model cache
+        String cascadePath = ModelFiles.extract("haarcascade_frontalface_default.xml", modelCacheDir);
+        faceDetectors = new NativeObjectPool<>(
+                "haar-cascade",
+                NativeObjectPool.resolveSize(poolSize),
+                borrowTimeoutMs,
+                () -> {
+                    CascadeClassifier classifier = new CascadeClassifier(cascadePath);
+                    if (classifier.empty()) {
+                        throw new RuntimeException("Failed to load Haar cascade classifier!");
+                    }
+                    return classifier;
+                },
+                startupExecutor
+        );
+    }
+
+    @Override
+    public Rect detectFace(Mat image) {
+        if (!settings.grayscale()) {
+            return faceDetectors.execute(faceDetector -> {
+                RectVector faces = new RectVector();
+                detect(faceDetector, image, faces);
+                if (faces.size() > 0) {
+                    // Copy so the result does not point into the vector's native buffer
+                    return new Rect(faces.get(settings.largestFace() ? largest(faces) : 0));
+                }
+                return null;
+            });
+        }
 
-            faceDetector = new CascadeClassifier(tempFile.getAbsolutePath());
-            if (faceDetector.empty()) {
-                throw new RuntimeException("Failed to load Haar cascade classifier!");
+        int x, y, width, height;
+        // The grayscale copy is only needed for the detection: free it now rather than with the caller's scope
+        try (PointerScope detectScope = new PointerScope()) {
+            Mat gray = new Mat();
+            opencv_imgproc.cvtColor(image, gray, opencv_imgproc.COLOR_BGR2GRAY);
+            if (settings.equalize()) {
+                opencv_imgproc.equalizeHist(gray, gray);
             }
+            RectVector faces = new RectVector();
+            faceDetectors.execute(faceDetector -> {
+                detect(faceDetector, gray, faces);
+                return null;
+            });
+            if (faces.size() == 0) {
+                return null;
+            }
+            Rect face = faces.get(settings.largestFace() ? largest(faces) : 0);
+            x = face.x();
+            y = face.y();
+            width = face.width();
+            height = face.height();
         }
+        return new Rect(x, y, width, height);
     }
 
     @Override
-    public Rect detectFace(Mat image) {
-        RectVector faces = new RectVector();
-        faceDetector.detectMultiScale(image, faces);
-        if (faces.size() > 0) {
-            return faces.get(0);
+    public NativeObjectPool.Stats poolStats() {
+        return faceDetectors.stats();
+    }
+
+    @Override
+    public CompletableFuture<Void> loaded() {
+        return faceDetectors.loaded();
+    }
+
+    private void detect(CascadeClassifier faceDetector, Mat image, RectVector faces) {
+        faceDetector.detectMultiScale(image, faces, settings.scaleFactor(), settings.minNeighbors(), 0,
+                new Size(settings.minSize(), settings.minSize()),
+                new Size(settings.maxSize(), settings.maxSize()));
+    }
+
+    private static long largest(RectVector faces) {
+        long best = 0;
+        for (long i = 1; i < faces.size(); i++) {
+            if (faces.get(i).area() > faces.get(best).area()) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * detectMultiScale parameters. Sizes are in pixels of the 600x600 analysis canvas, 0 = no limit.
+     */
+    public record HaarSettings(boolean grayscale, boolean equalize, double scaleFactor, int minNeighbors,
+                               int minSize, int maxSize, boolean largestFace) {
+
+        // detectMultiScale's own defaults (Size(0, 0) = unbounded), on the colour image, first face found
+        public static final HaarSettings DEFAULT = new HaarSettings(false, false, 1.1, 3, 0, 0, false);
+
+        // Equalized gray copy (robust to lighting), faces under ~1/7 of the canvas are ignored,
+        // and more overlapping hits are required before a window counts as a face
+        public static final HaarSettings TUNED = new HaarSettings(true, true, 1.15, 5, 80, 0, true);
+
+        public static HaarSettings profile(String name) {
+            return switch (name == null ? "default" : name.trim().toLowerCase()) {
+                case "default" -> DEFAULT;
+                case "tuned" -> TUNED;
+                default -> throw new IllegalArgumentException("Unknown Haar profile: " + name + " (expected default or tuned)");
+            };
+        }
+
+        /**
+         * Profile values with the non-zero arguments taking precedence.
+         */
+        public HaarSettings withOverrides(double scaleFactor, int minNeighbors, int minSize, int maxSize) {
+            if (scaleFactor <= 0 && minNeighbors <= 0 && minSize <= 0 && maxSize <= 0) {
+                return this;
+            }
+            return new HaarSettings(grayscale, equalize,
+                    scaleFactor > 0 ? scaleFactor : this.scaleFactor,
+                    minNeighbors > 0 ? minNeighbors : this.minNeighbors,
+                    minSize > 0 ? minSize : this.minSize,
+                    maxSize > 0 ? maxSize : this.maxSize,
+                    largestFace);
         }
-        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package hairmony.service;
+
+import hairmony.dto.PointDTO;
+import hairmony.dto.RectDTO;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.bytedeco.opencv.global.opencv_core.BORDER_CONSTANT;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+import static org.bytedeco.opencv.global.opencv_core.copyMakeBorder;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.*;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Image helpers shared by the single-shot analysis and the live sessions:
+ * the 600x600 working canvas and the mapping of results back to the uploaded image.
+ */
+public final class FaceImageUtils {
+
+    public static final int CANVAS_SIZE = 600;
+
+    private FaceImageUtils() {
+    }
+
+    /**
+     * Resizes and pads a Mat to a given width & height.
+     */
+    public static Mat resizeAndPad(Mat input, int targetW, int targetH) {
+        int original_w = input.cols();
+        int original_h = input.rows();
+        double scale = Math.min(targetW * 1.0 / original_w, targetH * 1.0 / original_h);
+        int new_w = (int) (original_w * scale);
+        int new_h = (int) (original_h * scale);
+
+        Mat resized = new Mat();
+        resize(input, resized, new Size(new_w, new_h), 0, 0, INTER_AREA);
+
+        int pad_left = (targetW - new_w) / 2;
+        int pad_right = targetW - new_w - pad_left;
+        int pad_top = (targetH - new_h) / 2;
+        int pad_bottom = targetH - new_h - pad_top;
+
+        Mat padded = new Mat();
+        copyMakeBorder(resized, padded, pad_top, pad_bottom, pad_left, pad_right, BORDER_CONSTANT, new Scalar(0,0,0,0));
+        return padded;
+    }
+
+    /**
+     * Decode at 1/2, 1/4 or 1/8 of the full size. For JPEG the downscale happens in the DCT domain,
+     * so the skipped pixels are never materialized.
+     */
+    public static Mat decodeReduced(byte[] bytes, int reduction) {
+        return imdecode(new Mat(bytes), decodeFlags(reduction));
+    }
+
+    public static int decodeFlags(int reduction) {
+        return switch (reduction) {
+            case 2 -> IMREAD_REDUCED_COLOR_2;
+            case 4 -> IMREAD_REDUCED_COLOR_4;
+            case 8 -> IMREAD_REDUCED_COLOR_8;
+            default -> IMREAD_COLOR;
+        };
+    }
+
+    /**
+     * 1xN CV_8U Mat over the encoded image, as imdecode expects it. A direct buffer (pooled upload)
+     * is wrapped in place; a heap buffer is copied into native memory.
+     */
+    public static Mat encodedMat(ByteBuffer image) {
+        if (image.isDirect()) {
+            return new Mat(1, image.remaining(), CV_8UC1, new BytePointer(image));
+        }
+        byte[] bytes = new byte[image.remaining()];
+        image.duplicate().get(bytes);
+        return new Mat(bytes);
+    }
+
+    /**
+     * Convert Mat => JPG bytes.
+     */
+    public static byte[] matToBytes(Mat mat) {
+        BytePointer buffer = new BytePointer();
+        imencode(".jpg", mat, buffer);
+        byte[] arr = new byte[(int) buffer.capacity()];
+        buffer.get(arr);
+        buffer.deallocate();
+        return arr;
+    }
+
+    /**
+     * Convert padded landmark coordinates back to original space.
+     * The original size is the uploaded image's, which can be larger than the Mat that was decoded.
+     */
+    public static List<PointDTO> mapLandmarksToOriginal(Point2fVectorVector landmarks, Mat padded,
+                                                        int originalWidth, int originalHeight) {
+        if (landmarks.empty()) return Collections.emptyList();
+        Point2fVector points = landmarks.get(0);
+
+        // figure out ratio
+        double ratio_x = (double) originalWidth / padded.cols();
+        double ratio_y = (double) originalHeight / padded.rows();
+
+        List<PointDTO> result = new ArrayList<>();
+        for (int i=0; i<points.size(); i++) {
+            float px = points.get(i).x();
+            float py = points.get(i).y();
+            double rx = px * ratio_x;
+            double ry = py * ratio_y;
+            result.add(new PointDTO(rx, ry));
+        }
+        return result;
+    }
+
+    public static RectDTO mapFaceRectToOriginal(Rect rect, Mat padded, int originalWidth, int originalHeight) {
+        double ratio_x = (double) originalWidth / padded.cols();
+        double ratio_y = (double) originalHeight / padded.rows();
+
+        int x = (int) (rect.x() * ratio_x);
+        int y = (int) (rect.y() * ratio_y);
+        int w = (int) (rect.width() * ratio_x);
+        int h = (int) (rect.height() * ratio_y);
+        return new RectDTO(x,y,w,h);
+    }
+
+    public static PointDTO mapForeheadTipToOriginal(PointDTO tip, Mat padded, int originalWidth, int originalHeight) {
+        double ratio_x = (double) originalWidth / padded.cols();
+        double ratio_y = (double) originalHeight / padded.rows();
+        return new PointDTO(tip.x() * ratio_x, tip.y() * ratio_y);
+    }
+
+    /**
+     * Forehead tip estimated from the 68 LBF points, for when the sidecar cannot be used. By the rule of
+     * facial thirds the hairline sits above the brows by half the brow-to-chin distance, along the
+     * chin-to-brow axis (so it follows head tilt). Coordinates are those of the landmarks.
+     */
+    public static PointDTO estimateForeheadTip(Point2fVectorVector landmarks) {
+        Point2fVector points = landmarks.get(0);
+        Point2f left = points.get(21);   // inner end of the left brow
+        Point2f right = points.get(22);  // inner end of the right brow
+        Point2f chin = points.get(8);
+        double browX = (left.x() + right.x()) / 2.0;
+        double browY = (left.y() + right.y()) / 2.0;
+        return new PointDTO(browX + (browX - chin.x()) * 0.5, browY + (browY - chin.y()) * 0.5);
+    }
+}
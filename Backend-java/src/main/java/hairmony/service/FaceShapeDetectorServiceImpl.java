@@ -2,46 +2,169 @@ package hairmony.service;
 
 import hairmony.serviceInterfaces.IFaceShapeDetector;
 import jakarta.annotation.PostConstruct;
+import org.bytedeco.javacpp.PointerScope;
 import org.bytedeco.opencv.global.opencv_face;
 import org.bytedeco.opencv.global.opencv_imgproc;
 import org.bytedeco.opencv.opencv_core.*;
 import org.bytedeco.opencv.opencv_face.Facemark;
-import org.springframework.core.io.ClassPathResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class FaceShapeDetectorServiceImpl implements IFaceShapeDetector {
 
-    private Facemark facemark;
+    private static final Logger log = LoggerFactory.getLogger(FaceShapeDetectorServiceImpl.class);
+
+    @Value("${ai.detector-pool.size:0}")
+    private int poolSize;
+
+    @Value("${ai.detector-pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMs = 30_000;
+
+    // Fit on a crop around the face rect instead of the whole canvas
+    @Value("${ai.landmarks.crop-roi:true}")
+    private boolean cropRoi = true;
+
+    // Margin around the face rect, as a fraction of its size. LBF itself only looks at half a face
+    // width/height around the rect, so 0.5 gives the same pixels as a full-frame fit.
+    @Value("${ai.landmarks.roi-margin:0.5}")
+    private double roiMargin = 0.5;
+
+    // When > 0 the ROI is resized so the face rect is this many pixels wide before the fit
+    @Value("${ai.landmarks.roi-size:0}")
+    private int roiSize;
+
+    // Log the measurements behind one classification out of every N (debug level), 0 => never
+    @Value("${ai.logging.measurement-sample-every:100}")
+    private int measurementSampleEvery = 100;
+    private final AtomicLong measurementsSeen = new AtomicLong();
+
+    // One LBF facemark per pooled slot, each with its own copy of the model
+    private NativeObjectPool<Facemark> facemarks;
+
+    // Per-thread conversion buffers, reused across calls; retained so no request scope frees them
+    private final ThreadLocal<Mat> grayBuffers = ThreadLocal.withInitial(FaceShapeDetectorServiceImpl::retainedMat);
+    private final ThreadLocal<Mat> scaledBuffers = ThreadLocal.withInitial(FaceShapeDetectorServiceImpl::retainedMat);
+
+    // Extracted model kept across boots; blank => ${java.io.tmpdir}/hairmony-models
+    @Value("${ai.models.cache-dir:}")
+    private String modelCacheDir;
+
+    // When set, the facemarks are parsed concurrently there and init() returns right away
+    @Autowired(required = false)
+    @Qualifier("aiStartupExecutor")
+    private Executor startupExecutor;
 
     @PostConstruct
     public void init() throws IOException {
-        File tempModel = File.createTempFile("lbfmodel", ".yaml");
-        tempModel.deleteOnExit();
-
-        try (var in = new ClassPathResource("lbfmodel.yaml").getInputStream()) {
-            Files.copy(in, tempModel.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        }
+        String modelPath = ModelFiles.extract("lbfmodel.yaml", modelCacheDir);
+        facemarks = new NativeObjectPool<>(
+                "lbf-facemark",
+                NativeObjectPool.resolveSize(poolSize),
+                borrowTimeoutMs,
+                () -> {
+                    Facemark facemark = opencv_face.createFacemarkLBF();
+                    facemark.loadModel(modelPath);
+                    return facemark;
+                },
+                startupExecutor
+        );
+    }
 
-        facemark = opencv_face.createFacemarkLBF();
-        facemark.loadModel(tempModel.getAbsolutePath());
+    @Override
+    public CompletableFuture<Void> loaded() {
+        return facemarks.loaded();
     }
 
     @Override
     public Point2fVectorVector detectLandmarks(Mat fullImage, Rect faceRect) {
-        Mat gray = new Mat();
-        opencv_imgproc.cvtColor(fullImage, gray, opencv_imgproc.COLOR_BGR2GRAY);
+        if (!cropRoi) {
+            return detectLandmarksFullFrame(fullImage, faceRect);
+        }
+
+        Point2fVectorVector landmarks = new Point2fVectorVector();
+        boolean success;
+        int roiX, roiY;
+        double scale = 1.0;
+
+        // ROI header, face rect copy and vectors are only needed for the fit: free them now
+        try (PointerScope fitScope = new PointerScope()) {
+            int marginX = (int) Math.ceil(faceRect.width() * roiMargin);
+            int marginY = (int) Math.ceil(faceRect.height() * roiMargin);
+            roiX = Math.max(0, faceRect.x() - marginX);
+            roiY = Math.max(0, faceRect.y() - marginY);
+            // +1: LBF clamps its own crop to cols-1/rows-1, keep that edge inside the ROI
+            int roiRight = Math.min(fullImage.cols(), faceRect.x() + faceRect.width() + marginX + 1);
+            int roiBottom = Math.min(fullImage.rows(), faceRect.y() + faceRect.height() + marginY + 1);
+            if (roiRight <= roiX || roiBottom <= roiY) {
+                throw new RuntimeException("Landmark detection failed!");
+            }
+
+            // Only the ROI is converted; the Mat(Mat, Rect) view shares the canvas pixels
+            Mat gray = grayBuffers.get();
+            opencv_imgproc.cvtColor(new Mat(fullImage, new Rect(roiX, roiY, roiRight - roiX, roiBottom - roiY)),
+                    gray, opencv_imgproc.COLOR_BGR2GRAY);
+
+            Mat input = gray;
+            if (roiSize > 0 && faceRect.width() > 0) {
+                scale = (double) roiSize / faceRect.width();
+                input = scaledBuffers.get();
+                opencv_imgproc.resize(gray, input, new Size(), scale, scale,
+                        scale < 1 ? opencv_imgproc.INTER_AREA : opencv_imgproc.INTER_LINEAR);
+            }
+
+            RectVector faces = new RectVector();
+            faces.push_back(new Rect(
+                    (int) Math.round((faceRect.x() - roiX) * scale),
+                    (int) Math.round((faceRect.y() - roiY) * scale),
+                    (int) Math.round(faceRect.width() * scale),
+                    (int) Math.round(faceRect.height() * scale)));
+
+            Mat fitInput = input;
+            success = facemarks.execute(facemark -> facemark.fit(fitInput, faces, landmarks));
+        }
+
+        if (!success || landmarks.empty()) {
+            throw new RuntimeException("Landmark detection failed!");
+        }
 
-        RectVector faces = new RectVector();
-        faces.push_back(faceRect);
+        // Back to canvas coordinates
+        Point2fVector points = landmarks.get(0);
+        Point2fVector shifted = new Point2fVector(points.size());
+        for (long i = 0; i < points.size(); i++) {
+            Point2f p = points.get(i);
+            shifted.put(i, new Point2f((float) (p.x() / scale + roiX), (float) (p.y() / scale + roiY)));
+        }
+        landmarks.put(0, shifted);
+        return landmarks;
+    }
 
+    /**
+     * Fit on a grayscale copy of the whole image (ai.landmarks.crop-roi=false), the reference for the ROI path.
+     */
+    Point2fVectorVector detectLandmarksFullFrame(Mat fullImage, Rect faceRect) {
         Point2fVectorVector landmarks = new Point2fVectorVector();
-        boolean success = facemark.fit(gray, faces, landmarks);
+        boolean success;
+
+        // The grayscale copy is only needed for the fit: free it now rather than with the caller's scope
+        try (PointerScope fitScope = new PointerScope()) {
+            Mat gray = new Mat();
+            opencv_imgproc.cvtColor(fullImage, gray, opencv_imgproc.COLOR_BGR2GRAY);
+
+            RectVector faces = new RectVector();
+            faces.push_back(faceRect);
+
+            success = facemarks.execute(facemark -> facemark.fit(gray, faces, landmarks));
+        }
 
         if (!success || landmarks.empty()) {
             throw new RuntimeException("Landmark detection failed!");
@@ -49,6 +172,26 @@ public class FaceShapeDetectorServiceImpl implements IFaceShapeDetector {
         return landmarks;
     }
 
+    /**
+     * Switch the fit mode without a Spring context (tests and benchmarks).
+     */
+    void configureRoi(boolean cropRoi, double roiMargin, int roiSize) {
+        this.cropRoi = cropRoi;
+        this.roiMargin = roiMargin;
+        this.roiSize = roiSize;
+    }
+
+    private static Mat retainedMat() {
+        Mat mat = new Mat();
+        mat.retainReference();
+        return mat;
+    }
+
+    @Override
+    public NativeObjectPool.Stats poolStats() {
+        return facemarks.stats();
+    }
+
     @Override
     public ClassificationResult classifyFaceShape(Point2fVectorVector landmarks,
                                                   Rect faceRect,
@@ -93,10 +236,6 @@ public class FaceShapeDetectorServiceImpl implements IFaceShapeDetector {
             faceHeight = Math.sqrt(dx * dx + dy * dy);
         }
 
-        // Debug
-        System.out.printf("DEBUG -> jawWidth=%.1f, cheekWidth=%.1f, foreheadWidth=%.1f, faceHeight=%.1f%n",
-                jawWidth, cheekboneWidth, foreheadWidth, faceHeight);
-
         // Guard
         if (faceHeight < 1 || jawWidth < 1 || cheekboneWidth < 1 || foreheadWidth < 1) {
             return new ClassificationResult("Invalid Dimensions", pythonForeheadTipX, pythonForeheadTipY);
@@ -105,6 +244,18 @@ public class FaceShapeDetectorServiceImpl implements IFaceShapeDetector {
         // Now define shape logic with broader thresholds:
         String shape = computeFaceShape(jawWidth, cheekboneWidth, foreheadWidth, faceHeight);
 
+        // Sampled: one line per request would flood the logs under load
+        if (log.isDebugEnabled() && measurementSampleEvery > 0
+                && measurementsSeen.getAndIncrement() % measurementSampleEvery == 0) {
+            log.debug("face measurements shape={} jawWidth={} cheekWidth={} foreheadWidth={} faceHeight={} ratio={}",
+                    shape,
+                    Math.round(jawWidth * 10) / 10.0,
+                    Math.round(cheekboneWidth * 10) / 10.0,
+                    Math.round(foreheadWidth * 10) / 10.0,
+                    Math.round(faceHeight * 10) / 10.0,
+                    Math.round(faceHeight / Math.max(jawWidth, Math.max(cheekboneWidth, foreheadWidth)) * 100) / 100.0);
+        }
+
         return new ClassificationResult(shape, pythonForeheadTipX, pythonForeheadTipY);
     }
 
@@ -121,9 +272,6 @@ public class FaceShapeDetectorServiceImpl implements IFaceShapeDetector {
         double maxWidth = Math.max(jawWidth, Math.max(cheekWidth, foreheadWidth));
         double ratio = faceHeight / maxWidth; // e.g. 1.37, 1.25, etc.
 
-        System.out.printf("DEBUG -> jawWidth=%.1f, cheekWidth=%.1f, foreheadWidth=%.1f, faceHeight=%.1f (ratio=%.2f)%n",
-                jawWidth, cheekWidth, foreheadWidth, faceHeight, ratio);
-
         // Let’s define all shape thresholds in an easily tweakable place:
         double OBLONG_RATIO = 1.45;        // e.g. anything above 1.45 is oblong
         double ROUND_MAX_RATIO = 1.30;     // if ratio < 1.30 & widths close => Round
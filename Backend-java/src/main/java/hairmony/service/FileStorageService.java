@@ -0,0 +1,267 @@
+package hairmony.service;
+
+import hairmony.entities.StoredFile;
+import hairmony.exceptions.UploadQueueFullException;
+import hairmony.repository.StoredFileRepository;
+import hairmony.serviceInterfaces.FileStorageServiceInf;
+import hairmony.serviceInterfaces.IObjectStorage;
+import hairmony.serviceInterfaces.ImageVariantServiceInf;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Streams each upload into uploads/.tmp/ while hashing it (SHA-256), then hands it to the object storage
+ * under ab/cd/&lt;sha256&gt;.&lt;ext&gt; (a rename for local storage, an upload for S3). When that object already
+ * exists the temp copy is dropped and only the reference count in stored_files goes up, so a picture uploaded
+ * ten times is stored once.
+ * <p>
+ * The copy runs on the bounded uploadIoExecutor, which caps how many uploads hit the disk at once; a full
+ * queue is answered with 429 instead of parking more request threads on I/O. The request thread still
+ * waits for the stored path, since the entity it goes into is saved in the same request.
+ * <p>
+ * Reference changes and file creation/deletion for one key are serialized by a striped lock, so a release
+ * dropping the last reference cannot delete a file that a concurrent store of the same content just reused.
+ * The lock is per node: with shared (S3) storage only the reference count is atomic across nodes.
+ */
+@Service
+public class FileStorageService implements FileStorageServiceInf {
+
+    private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
+
+    static final String PREFIX = "uploads/";
+    private static final Pattern CONTENT_ADDRESSED =
+            Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.[a-z0-9]{1,8}");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,8}");
+
+    private final StoredFileRepository storedFileRepository;
+    private final IObjectStorage objectStorage;
+    private final ImageVariantServiceInf imageVariantService;
+    private final ExecutorService executor;
+    private final Path tmpDir;
+    private final long timeoutMs;
+    private final ReentrantLock[] locks = new ReentrantLock[64];
+
+    private final Counter written;
+    private final Counter deduplicated;
+    private final Counter reclaimed;
+
+    public FileStorageService(StoredFileRepository storedFileRepository,
+                              IObjectStorage objectStorage,
+                              ImageVariantServiceInf imageVariantService,
+                              @Qualifier("uploadIoExecutor") ExecutorService executor,
+                              MeterRegistry registry,
+                              @Value("${uploads.dir:uploads}") String uploadsDir,
+                              @Value("${uploads.io.timeout-ms:30000}") long timeoutMs) {
+        this.storedFileRepository = storedFileRepository;
+        this.objectStorage = objectStorage;
+        this.imageVariantService = imageVariantService;
+        this.executor = executor;
+        this.tmpDir = Paths.get(uploadsDir).resolve(".tmp");
+        this.timeoutMs = timeoutMs;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.written = stores(registry, "written");
+        this.deduplicated = stores(registry, "deduplicated");
+        this.reclaimed = Counter.builder("uploads.reclaimed")
+                .description("Stored files deleted after their last reference was released")
+                .register(registry);
+    }
+
+    private static Counter stores(MeterRegistry registry, String result) {
+        return Counter.builder("uploads.stored")
+                .description("Uploads stored, by whether the content was new")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public String store(MultipartFile file) {
+        CompletableFuture<String> stored;
+        try {
+            stored = storeAsync(file.getInputStream(), extensionOf(file.getOriginalFilename()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read upload", e);
+        }
+        try {
+            return stored.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            stored.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Upload interrupted", e);
+        } catch (TimeoutException e) {
+            // The copy may still finish and take a reference nobody holds; it is released when it does
+            stored.thenAccept(this::release);
+            throw new IllegalStateException("Upload not stored within " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Could not store file. Error: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> storeAsync(InputStream content, String extension) {
+        String ext = extension != null && EXTENSION.matcher(extension).matches() ? extension : "bin";
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try (InputStream in = content) {
+                    return write(in, ext);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not store file", e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            closeQuietly(content);
+            throw new UploadQueueFullException(1);
+        }
+    }
+
+    @Override
+    public void release(String storedPath) {
+        String key = keyOf(storedPath);
+        if (key == null) {
+            return;
+        }
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            if (storedFileRepository.release(key) == 1 && storedFileRepository.deleteIfUnreferenced(key) == 1) {
+                objectStorage.delete(key);
+                imageVariantService.deleteVariants(storedPath);
+                reclaimed.increment();
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete unreferenced upload {}", key, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String write(InputStream in, String ext) throws IOException {
+        Files.createDirectories(tmpDir);
+        Path temp = Files.createTempFile(tmpDir, "upload-", ".tmp");
+        try {
+            MessageDigest sha256 = sha256();
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), sha256)) {
+                size = in.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(sha256.digest());
+            String key = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + ext;
+            String storedPath = PREFIX + key;
+
+            boolean created = false;
+            ReentrantLock lock = lockFor(key);
+            lock.lock();
+            try {
+                if (!objectStorage.exists(key)) {
+                    objectStorage.put(key, temp);
+                    created = true;
+                }
+                try {
+                    retain(key, size);
+                } catch (RuntimeException e) {
+                    if (created) {
+                        objectStorage.delete(key);
+                    }
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (created) {
+                written.increment();
+                imageVariantService.generateVariants(storedPath);
+            } else {
+                deduplicated.increment();
+            }
+            return storedPath;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void retain(String key, long size) {
+        if (storedFileRepository.retain(key) == 1) {
+            return;
+        }
+        try {
+            storedFileRepository.saveAndFlush(new StoredFile(key, size));
+        } catch (DataIntegrityViolationException e) {
+            // Inserted meanwhile by another node
+            if (storedFileRepository.retain(key) != 1) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * "uploads/ab/cd/&lt;sha256&gt;.&lt;ext&gt;" => "ab/cd/&lt;sha256&gt;.&lt;ext&gt;"; null for legacy or foreign paths.
+     */
+    static String keyOf(String storedPath) {
+        if (storedPath == null || !storedPath.startsWith(PREFIX)) {
+            return null;
+        }
+        String key = storedPath.substring(PREFIX.length());
+        return CONTENT_ADDRESSED.matcher(key).matches() ? key : null;
+    }
+
+    static boolean isContentAddressed(String storedPath) {
+        return keyOf(storedPath) != null;
+    }
+
+    /**
+     * Lower-case extension of the client's file name, when it is a plain one ("JPEG" => "jpeg").
+     */
+    static String extensionOf(String originalFilename) {
+        if (originalFilename == null) {
+            return null;
+        }
+        int dot = originalFilename.lastIndexOf('.');
+        return dot < 0 ? null : originalFilename.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private ReentrantLock lockFor(String key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // nothing to recover
+        }
+    }
+}
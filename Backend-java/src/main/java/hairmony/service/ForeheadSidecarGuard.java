@@ -0,0 +1,217 @@
+package hairmony.service;
+
+import hairmony.dto.PointDTO;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Calls the forehead tip provider with a deadline, a bulkhead and a circuit breaker, so a stalled
+ * sidecar costs each analysis at most the deadline and, once the circuit opens, nothing at all.
+ * <ul>
+ *   <li>Deadline: the call runs on its own executor and is abandoned (interrupted) when it takes longer
+ *       than ai.forehead.deadline-ms.</li>
+ *   <li>Bulkhead: at most ai.forehead.max-concurrent calls are in flight. Abandoned calls keep their slot
+ *       until they actually return, so a hung sidecar cannot pile up threads.</li>
+ *   <li>Breaker: after ai.forehead.breaker.failure-threshold consecutive failures or timeouts the circuit
+ *       opens for ai.forehead.breaker.open-ms. Then a single probe call goes through (half-open):
+ *       success closes the circuit, failure opens it again.</li>
+ * </ul>
+ * Whenever the sidecar cannot be used, {@link SidecarUnavailableException} tells the caller to fall back
+ * (see {@link FaceImageUtils#estimateForeheadTip}). A null tip is an answer, not a failure.
+ * <p>
+ * Metrics: {@code ai_forehead_circuit_state{state}} (1 for the current state), {@code ai_forehead_inflight}
+ * and {@code ai_forehead_calls_total{result}}.
+ */
+@Component
+public class ForeheadSidecarGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(ForeheadSidecarGuard.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final IForeheadTipProvider provider;
+    private final ExecutorService executor;
+    private final long deadlineMs;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    private volatile long openedAtNanos;
+
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter timeouts;
+    private final Counter rejected;
+    private final Counter shortCircuited;
+
+    public ForeheadSidecarGuard(IForeheadTipProvider provider,
+                                @Qualifier("aiSidecarExecutor") ExecutorService executor,
+                                MeterRegistry registry,
+                                @Value("${ai.forehead.deadline-ms:1500}") long deadlineMs,
+                                @Value("${ai.forehead.max-concurrent:16}") int maxConcurrent,
+                                @Value("${ai.forehead.breaker.failure-threshold:5}") int failureThreshold,
+                                @Value("${ai.forehead.breaker.open-ms:10000}") long openMs) {
+        this.provider = provider;
+        this.executor = executor;
+        this.deadlineMs = deadlineMs;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.bulkhead = new Semaphore(this.maxConcurrent);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+
+        for (State s : State.values()) {
+            Gauge.builder("ai.forehead.circuit.state", state, current -> current.get() == s ? 1 : 0)
+                    .description("Forehead sidecar circuit breaker state (1 = current)")
+                    .tag("state", s.name().toLowerCase())
+                    .register(registry);
+        }
+        Gauge.builder("ai.forehead.inflight", bulkhead, b -> this.maxConcurrent - b.availablePermits())
+                .description("Forehead sidecar calls holding a bulkhead slot")
+                .register(registry);
+        this.successes = calls(registry, "success");
+        this.failures = calls(registry, "failure");
+        this.timeouts = calls(registry, "timeout");
+        this.rejected = calls(registry, "rejected");
+        this.shortCircuited = calls(registry, "short_circuited");
+    }
+
+    private static Counter calls(MeterRegistry registry, String result) {
+        return Counter.builder("ai.forehead.calls")
+                .description("Forehead sidecar calls by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * The provider's answer (null = no forehead found).
+     *
+     * @throws SidecarUnavailableException when the circuit is open, the bulkhead is full, or the call
+     *                                     failed or ran past its deadline
+     */
+    public PointDTO detectForeheadTip(byte[] jpegBytes) {
+        boolean probe = allowCall();
+        if (!bulkhead.tryAcquire()) {
+            if (probe) {
+                probeInFlight.set(false);
+            }
+            rejected.increment();
+            throw new SidecarUnavailableException("too many concurrent sidecar calls");
+        }
+
+        Future<PointDTO> call;
+        try {
+            call = executor.submit(() -> {
+                try {
+                    return provider.detectForeheadTip(jpegBytes);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            onFailure(probe);
+            failures.increment();
+            throw new SidecarUnavailableException("sidecar executor rejected the call");
+        }
+
+        try {
+            PointDTO tip = call.get(deadlineMs, TimeUnit.MILLISECONDS);
+            onSuccess(probe);
+            successes.increment();
+            return tip;
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            onFailure(probe);
+            timeouts.increment();
+            throw new SidecarUnavailableException("no answer within " + deadlineMs + " ms");
+        } catch (ExecutionException e) {
+            onFailure(probe);
+            failures.increment();
+            log.debug("Forehead sidecar call failed", e.getCause());
+            throw new SidecarUnavailableException("call failed: " + e.getCause());
+        } catch (InterruptedException e) {
+            // The analysis was cancelled; this says nothing about the sidecar's health
+            call.cancel(true);
+            if (probe) {
+                probeInFlight.set(false);
+            }
+            Thread.currentThread().interrupt();
+            throw new CancellationException("forehead lookup cancelled");
+        }
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    /**
+     * True when this call is the half-open probe.
+     */
+    private boolean allowCall() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return false;
+        }
+        if (current == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            log.info("Forehead sidecar circuit half-open, probing");
+        }
+        if (state.get() == State.HALF_OPEN && probeInFlight.compareAndSet(false, true)) {
+            return true;
+        }
+        shortCircuited.increment();
+        throw new SidecarUnavailableException("circuit open");
+    }
+
+    private void onSuccess(boolean probe) {
+        consecutiveFailures.set(0);
+        if (probe) {
+            state.set(State.CLOSED);
+            probeInFlight.set(false);
+            log.info("Forehead sidecar circuit closed");
+        }
+    }
+
+    private void onFailure(boolean probe) {
+        if (probe) {
+            open();
+            probeInFlight.set(false);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            openedAtNanos = System.nanoTime();
+            log.warn("Forehead sidecar circuit opened after {} consecutive failures", failureThreshold);
+        }
+    }
+
+    private void open() {
+        openedAtNanos = System.nanoTime();
+        state.set(State.OPEN);
+        log.warn("Forehead sidecar probe failed, circuit open again");
+    }
+
+    /**
+     * The sidecar could not be used for this call; the caller should fall back.
+     */
+    public static class SidecarUnavailableException extends RuntimeException {
+        public SidecarUnavailableException(String message) {
+            super("Forehead sidecar unavailable: " + message);
+        }
+    }
+}
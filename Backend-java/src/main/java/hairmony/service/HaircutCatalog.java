@@ -0,0 +1,148 @@
+package hairmony.service;
+
+import hairmony.entities.Haircuts;
+import hairmony.repository.HaircutRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Read side of the haircut catalog: an immutable snapshot of every haircut, indexed by normalized
+ * face shape, so recommendations and price lookups never go to the database. The catalog only changes
+ * through {@link HaircutServiceImpl}, which hands each change to {@link #put}/{@link #remove}; those
+ * build a new snapshot and swap it in, so readers always see a complete catalog without locking.
+ * <p>
+ * The haircuts handed out are detached copies shared by all readers: do not modify them.
+ */
+@Component
+public class HaircutCatalog {
+
+    private final HaircutRepository haircutRepository;
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot;
+
+    public HaircutCatalog(HaircutRepository haircutRepository) {
+        this.haircutRepository = haircutRepository;
+    }
+
+    public List<Haircuts> all() {
+        return current().all();
+    }
+
+    /**
+     * Haircuts for a face shape, ignoring case and surrounding blanks ("Oval", " oval ").
+     */
+    public List<Haircuts> byFaceShape(String faceShape) {
+        return current().byFaceShape().getOrDefault(normalize(faceShape), List.of());
+    }
+
+    /**
+     * Names of the haircuts recommended for a face shape, as returned by the AI endpoints.
+     */
+    public List<String> namesByFaceShape(String faceShape) {
+        return current().namesByFaceShape().getOrDefault(normalize(faceShape), List.of());
+    }
+
+    /**
+     * First haircut (by id) whose name contains the query, ignoring case; what reservations are priced by.
+     */
+    public Optional<Haircuts> findFirstByNameContaining(String query) {
+        if (query == null) {
+            return Optional.empty();
+        }
+        String needle = query.toLowerCase(Locale.ROOT);
+        return current().all().stream()
+                .filter(haircut -> haircut.getName() != null && haircut.getName().toLowerCase(Locale.ROOT).contains(needle))
+                .findFirst();
+    }
+
+    /**
+     * Adds or replaces a haircut after it was saved.
+     */
+    public void put(Haircuts haircut) {
+        synchronized (writeLock) {
+            Map<Long, Haircuts> byId = new TreeMap<>(current().byId());
+            byId.put(haircut.getId(), copyOf(haircut));
+            snapshot = Snapshot.of(byId);
+        }
+    }
+
+    /**
+     * Drops a haircut after it was deleted.
+     */
+    public void remove(Long id) {
+        synchronized (writeLock) {
+            Map<Long, Haircuts> byId = new TreeMap<>(current().byId());
+            if (byId.remove(id) != null) {
+                snapshot = Snapshot.of(byId);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot from the database, e.g. after the table was changed outside the service.
+     */
+    public void reload() {
+        synchronized (writeLock) {
+            snapshot = load();
+        }
+    }
+
+    // Loaded on first use rather than at startup, so the context does not need the database to come up
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (writeLock) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        Map<Long, Haircuts> byId = new TreeMap<>();
+        for (Haircuts haircut : haircutRepository.findAll()) {
+            byId.put(haircut.getId(), copyOf(haircut));
+        }
+        return Snapshot.of(byId);
+    }
+
+    static String normalize(String faceShape) {
+        return faceShape == null ? "" : faceShape.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Detached from the persistence context, so later edits of the managed entity do not leak in
+    private static Haircuts copyOf(Haircuts haircut) {
+        Haircuts copy = new Haircuts(haircut.getName(), haircut.getDescription(), haircut.getPrice(),
+                haircut.getFaceShape(), haircut.getImageUrl());
+        copy.setId(haircut.getId());
+        return copy;
+    }
+
+    private record Snapshot(Map<Long, Haircuts> byId,
+                            List<Haircuts> all,
+                            Map<String, List<Haircuts>> byFaceShape,
+                            Map<String, List<String>> namesByFaceShape) {
+
+        static Snapshot of(Map<Long, Haircuts> byId) {
+            Map<String, List<Haircuts>> byFaceShape = new HashMap<>();
+            for (Haircuts haircut : byId.values()) {
+                if (haircut.getFaceShape() != null) {
+                    byFaceShape.computeIfAbsent(normalize(haircut.getFaceShape()), shape -> new ArrayList<>()).add(haircut);
+                }
+            }
+            Map<String, List<Haircuts>> frozen = new HashMap<>();
+            Map<String, List<String>> names = new HashMap<>();
+            byFaceShape.forEach((shape, haircuts) -> {
+                frozen.put(shape, List.copyOf(haircuts));
+                names.put(shape, haircuts.stream().map(Haircuts::getName).toList());
+            });
+            return new Snapshot(Collections.unmodifiableMap(byId), List.copyOf(byId.values()),
+                    Map.copyOf(frozen), Map.copyOf(names));
+        }
+    }
+}
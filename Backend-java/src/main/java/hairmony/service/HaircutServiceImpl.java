@@ -12,9 +12,11 @@ import java.util.List;
 public class HaircutServiceImpl implements HaircutServiceInf {
 
     private final HaircutRepository haircutRepository;
+    private final HaircutCatalog haircutCatalog;
 
-    public HaircutServiceImpl(HaircutRepository haircutRepository) {
+    public HaircutServiceImpl(HaircutRepository haircutRepository, HaircutCatalog haircutCatalog) {
         this.haircutRepository = haircutRepository;
+        this.haircutCatalog = haircutCatalog;
     }
 
     @Override
@@ -30,7 +32,7 @@ public class HaircutServiceImpl implements HaircutServiceInf {
 
     @Override
     public List<Haircuts> getHaircutsByFaceShape(String faceShape) {
-        return haircutRepository.findByFaceShape(faceShape);
+        return haircutCatalog.byFaceShape(faceShape);
     }
 
     @Override
@@ -40,7 +42,9 @@ public class HaircutServiceImpl implements HaircutServiceInf {
 
     @Override
     public Haircuts createHaircut(Haircuts haircut) {
-        return haircutRepository.save(haircut);
+        Haircuts saved = haircutRepository.save(haircut);
+        haircutCatalog.put(saved);
+        return saved;
     }
 
     @Override
@@ -51,12 +55,15 @@ public class HaircutServiceImpl implements HaircutServiceInf {
         haircut.setPrice(haircutDetails.getPrice());
         haircut.setFaceShape(haircutDetails.getFaceShape());
         haircut.setImageUrl(haircutDetails.getImageUrl());
-        return haircutRepository.save(haircut);
+        Haircuts saved = haircutRepository.save(haircut);
+        haircutCatalog.put(saved);
+        return saved;
     }
 
     @Override
     public void deleteHaircut(Long id) {
         Haircuts haircut = getHaircutById(id);
         haircutRepository.delete(haircut);
+        haircutCatalog.remove(id);
     }
 }
\ No newline at end of file
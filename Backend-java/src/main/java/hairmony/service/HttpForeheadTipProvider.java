@@ -0,0 +1,94 @@
+package hairmony.service;
+
+import hairmony.dto.PointDTO;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Forehead tip from the Python (MediaPipe/Flask) sidecar over HTTP + base64 JSON.
+ * Transport failures and error statuses are thrown, so {@link ForeheadSidecarGuard} can count them;
+ * null still means the sidecar found no forehead.
+ */
+@Service
+@ConditionalOnProperty(name = "ai.forehead.provider", havingValue = "http", matchIfMissing = true)
+public class HttpForeheadTipProvider implements IForeheadTipProvider {
+
+    private final URI endpoint;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+
+    public HttpForeheadTipProvider(String url) {
+        this(url, 500, 1500);
+    }
+
+    @Autowired
+    public HttpForeheadTipProvider(@Value("${ai.forehead.http.url:http://localhost:5000/detect-forehead}") String url,
+                                   @Value("${ai.forehead.http.connect-timeout-ms:500}") long connectTimeoutMs,
+                                   @Value("${ai.forehead.deadline-ms:1500}") long requestTimeoutMs) {
+        this.endpoint = URI.create(url);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    @Override
+    public PointDTO detectForeheadTip(byte[] jpegBytes) {
+        String base64Img = Base64.getEncoder().encodeToString(jpegBytes);
+        String jsonPayload = "{ \"image_base64\": \"" + base64Img + "\" }";
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(endpoint)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
+                .build();
+
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("forehead sidecar call interrupted"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Python service returned status: " + response.statusCode());
+        }
+        String respStr = response.body();
+        if (respStr.contains("forehead_x") && respStr.contains("forehead_y")) {
+            double fx = extractDouble(respStr, "forehead_x");
+            double fy = extractDouble(respStr, "forehead_y");
+            return new PointDTO(fx, fy);
+        }
+        return null;
+    }
+
+    /**
+     * Helper to extract a double from a JSON-ish substring, given a key.
+     */
+    private double extractDouble(String respStr, String key) {
+        int idx = respStr.indexOf(key);
+        if (idx < 0) return 0.0;
+        int colon = respStr.indexOf(":", idx);
+        int comma = respStr.indexOf(",", colon);
+        if (comma < 0) comma = respStr.indexOf("}", colon);
+        String sub = respStr.substring(colon+1, comma).trim();
+        sub = sub.replaceAll("[^0-9.]", "");
+        return Double.parseDouble(sub);
+    }
+}
@@ -0,0 +1,144 @@
+package hairmony.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pixel size of an uploaded JPEG or PNG, read from its header without decoding any pixels.
+ * Width/height are as displayed, i.e. already swapped for EXIF orientations that rotate by 90°,
+ * matching what {@code imdecode(..., IMREAD_COLOR)} returns.
+ */
+public record ImageHeader(int width, int height) {
+
+    private static final int[] REDUCTIONS = {8, 4, 2};
+
+    /**
+     * Reads the header, or returns null for other formats and truncated/corrupt data.
+     */
+    public static ImageHeader read(byte[] bytes) {
+        return bytes == null ? null : read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Same as {@link #read(byte[])} for the bytes between position and limit (heap or direct buffer);
+     * the buffer's position is not changed.
+     */
+    public static ImageHeader read(ByteBuffer image) {
+        ByteBuffer b = image.slice();
+        if (b.limit() < 24) {
+            return null;
+        }
+        try {
+            if ((b.get(0) & 0xFF) == 0xFF && (b.get(1) & 0xFF) == 0xD8) {
+                return readJpeg(b);
+            }
+            if ((b.get(0) & 0xFF) == 0x89 && b.get(1) == 'P' && b.get(2) == 'N' && b.get(3) == 'G') {
+                return readPng(b);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // truncated header
+        }
+        return null;
+    }
+
+    /**
+     * Largest decode reduction (8, 4, 2 or 1) that keeps the decoded image at least as large as
+     * what {@code resizeAndPad} would scale it to for a target x target canvas, so no upscaling happens.
+     */
+    public int reductionFor(int target) {
+        int longest = Math.max(width, height);
+        for (int reduction : REDUCTIONS) {
+            if (longest / reduction >= target) {
+                return reduction;
+            }
+        }
+        return 1;
+    }
+
+    private static ImageHeader readJpeg(ByteBuffer b) {
+        int orientation = 1;
+        int i = 2;
+        while (i + 4 < b.limit()) {
+            if ((b.get(i) & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = b.get(i + 1) & 0xFF;
+            if (marker == 0xFF) {           // fill byte
+                i++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {   // no length
+                i += 2;
+                continue;
+            }
+            int length = u16(b, i + 2);
+            if (marker == 0xE1) {
+                orientation = exifOrientation(b, i + 4, length - 2, orientation);
+            }
+            // SOF0..SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                int height = u16(b, i + 5);
+                int width = u16(b, i + 7);
+                if (width == 0 || height == 0) {
+                    return null;
+                }
+                return orientation >= 5 && orientation <= 8
+                        ? new ImageHeader(height, width)
+                        : new ImageHeader(width, height);
+            }
+            if (marker == 0xDA) {           // start of scan without a frame header
+                return null;
+            }
+            i += 2 + length;
+        }
+        return null;
+    }
+
+    /**
+     * Orientation tag (0x0112) of IFD0 in an APP1 "Exif" segment, or the given fallback.
+     */
+    private static int exifOrientation(ByteBuffer b, int start, int length, int fallback) {
+        if (length < 14 || b.get(start) != 'E' || b.get(start + 1) != 'x' || b.get(start + 2) != 'i' || b.get(start + 3) != 'f') {
+            return fallback;
+        }
+        int tiff = start + 6;
+        boolean little = b.get(tiff) == 'I';
+        int ifd = tiff + u32(b, tiff + 4, little);
+        int entries = u16(b, ifd, little);
+        for (int e = 0; e < entries; e++) {
+            int entry = ifd + 2 + e * 12;
+            if (entry + 12 > start + length) {
+                break;
+            }
+            if (u16(b, entry, little) == 0x0112) {
+                return u16(b, entry + 8, little);
+            }
+        }
+        return fallback;
+    }
+
+    private static ImageHeader readPng(ByteBuffer b) {
+        // 8-byte signature, then the IHDR chunk: length(4) "IHDR" width(4) height(4)
+        if (b.get(12) != 'I' || b.get(13) != 'H' || b.get(14) != 'D' || b.get(15) != 'R') {
+            return null;
+        }
+        int width = u32(b, 16, false);
+        int height = u32(b, 20, false);
+        return width > 0 && height > 0 ? new ImageHeader(width, height) : null;
+    }
+
+    private static int u16(ByteBuffer b, int i) {
+        return u16(b, i, false);
+    }
+
+    private static int u16(ByteBuffer b, int i, boolean little) {
+        return little
+                ? (b.get(i) & 0xFF) | (b.get(i + 1) & 0xFF) << 8
+                : (b.get(i) & 0xFF) << 8 | (b.get(i + 1) & 0xFF);
+    }
+
+    private static int u32(ByteBuffer b, int i, boolean little) {
+        return little
+                ? u16(b, i, true) | u16(b, i + 2, true) << 16
+                : u16(b, i) << 16 | u16(b, i + 2);
+    }
+}
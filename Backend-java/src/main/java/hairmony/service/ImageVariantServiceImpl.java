@@ -0,0 +1,334 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.ImageVariantServiceInf;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.javacpp.indexer.UByteIndexer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8U;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.*;
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+
+/**
+ * Writes a thumbnail and a medium copy of every uploaded picture to uploads/variants/, off the request
+ * thread, so listings do not ship multi-megabyte originals. Each variant fits in a square of its size
+ * (never upscaled) and is re-encoded as JPEG or WebP (uploads.variants.format).
+ * <p>
+ * Variant names are derived from the stored upload name ("uploads/&lt;file&gt;" =>
+ * "uploads/variants/&lt;file&gt;.thumb.jpg"), so the stored path records them without a schema change.
+ * Files are written to a temp file and moved into place, so a half-written variant is never served;
+ * until one exists /uploads/**?size= serves the original.
+ */
+@Service
+public class ImageVariantServiceImpl implements ImageVariantServiceInf {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantServiceImpl.class);
+
+    static final String VARIANTS_DIR = "variants";
+
+    private final Path uploadsDir;
+    private final Path variantsDir;
+    private final ExecutorService executor;
+    private final String extension;
+    private final int quality;
+    private final boolean backfill;
+    // smallest first, so each variant is resized from the next larger one
+    private final LinkedHashMap<String, Integer> sizes = new LinkedHashMap<>();
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    private final Timer duration;
+    private final Counter generated;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public ImageVariantServiceImpl(@Value("${uploads.dir:uploads}") String uploadsDir,
+                                   @Qualifier("uploadImageExecutor") ExecutorService executor,
+                                   MeterRegistry registry,
+                                   @Value("${uploads.variants.format:jpg}") String format,
+                                   @Value("${uploads.variants.quality:82}") int quality,
+                                   @Value("${uploads.variants.thumb-px:160}") int thumbPx,
+                                   @Value("${uploads.variants.medium-px:640}") int mediumPx,
+                                   @Value("${uploads.variants.backfill:true}") boolean backfill) {
+        this.uploadsDir = Paths.get(uploadsDir);
+        this.variantsDir = this.uploadsDir.resolve(VARIANTS_DIR);
+        this.executor = executor;
+        this.extension = "webp".equalsIgnoreCase(format) ? "webp" : "jpg";
+        this.quality = Math.max(1, Math.min(100, quality));
+        this.backfill = backfill;
+        sizes.put("thumb", thumbPx);
+        sizes.put("medium", mediumPx);
+
+        this.duration = Timer.builder("uploads.variants.duration")
+                .description("Time to decode an upload and write its variants")
+                .register(registry);
+        this.generated = variants(registry, "generated");
+        this.failed = variants(registry, "failed");
+        this.rejected = variants(registry, "rejected");
+    }
+
+    private static Counter variants(MeterRegistry registry, String result) {
+        return Counter.builder("uploads.variants")
+                .description("Uploads processed by the variant pipeline, by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public void generateVariants(String storedPath) {
+        String fileName = fileNameOf(storedPath);
+        if (fileName == null || !inProgress.add(fileName)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(fileName);
+                } finally {
+                    inProgress.remove(fileName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The original keeps being served; the next backfill picks it up
+            inProgress.remove(fileName);
+            rejected.increment();
+            log.warn("Variant queue full, serving the original of {} for now", fileName);
+        }
+    }
+
+    @Override
+    public String variantFileName(String fileName, String size) {
+        if (!isUpload(fileName) || !sizes.containsKey(size)) {
+            return null;
+        }
+        return VARIANTS_DIR + "/" + fileName + "." + size + "." + extension;
+    }
+
+    @Override
+    public void deleteVariants(String storedPath) {
+        String fileName = fileNameOf(storedPath);
+        if (fileName == null) {
+            return;
+        }
+        for (String size : sizes.keySet()) {
+            try {
+                Files.deleteIfExists(uploadsDir.resolve(variantFileName(fileName, size)));
+            } catch (IOException e) {
+                log.warn("Could not delete the {} variant of {}", size, fileName, e);
+            }
+        }
+    }
+
+    @Override
+    public List<String> sizes() {
+        return List.copyOf(sizes.keySet());
+    }
+
+    /**
+     * Generates the variants missing for uploads stored before this pipeline existed (or dropped
+     * from a full queue). Runs as a single task so it never competes with fresh uploads for the queue.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!backfill || !Files.isDirectory(uploadsDir)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                int count = 0;
+                try (Stream<Path> files = Files.walk(uploadsDir)) {
+                    for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                        String fileName = uploadsDir.relativize(file).toString().replace('\\', '/');
+                        if (isUpload(fileName) && isMissingVariants(fileName) && inProgress.add(fileName)) {
+                            try {
+                                generate(fileName);
+                                count++;
+                            } finally {
+                                inProgress.remove(fileName);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not list {} for the variant backfill", uploadsDir, e);
+                }
+                if (count > 0) {
+                    log.info("Variant backfill processed {} uploads", count);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Variant queue full, skipping the backfill");
+        }
+    }
+
+    private boolean isMissingVariants(String fileName) {
+        for (String size : sizes.keySet()) {
+            if (!Files.exists(uploadsDir.resolve(variantFileName(fileName, size)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void generate(String fileName) {
+        Timer.Sample sample = Timer.start();
+        // Every Mat of the decode/resize chain is freed when the job ends instead of waiting for the GC
+        try (PointerScope scope = new PointerScope()) {
+            byte[] bytes = Files.readAllBytes(uploadsDir.resolve(fileName));
+            Mat image = decode(bytes);
+            if (image == null || image.empty()) {
+                log.debug("{} is not a decodable image, no variants", fileName);
+                failed.increment();
+                return;
+            }
+            // Largest first: each smaller variant is resized from the previous one, not the original
+            List<Map.Entry<String, Integer>> largestFirst = new ArrayList<>(sizes.entrySet());
+            Collections.reverse(largestFirst);
+            Mat source = image;
+            for (Map.Entry<String, Integer> size : largestFirst) {
+                source = fit(source, size.getValue());
+                write(variantFileName(fileName, size.getKey()), encode(flatten(source)));
+            }
+            generated.increment();
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            log.warn("Could not generate variants of {}", fileName, e);
+        } finally {
+            sample.stop(duration);
+        }
+    }
+
+    /**
+     * JPEGs are decoded at the largest DCT reduction that still covers the largest variant.
+     * Other formats keep their alpha channel (flattened onto white after the resize) and are
+     * brought to 8 bits per channel.
+     */
+    private Mat decode(byte[] bytes) {
+        ImageHeader header = ImageHeader.read(bytes);
+        if (header != null && (bytes[0] & 0xFF) == 0xFF) {
+            int largest = Collections.max(sizes.values());
+            return FaceImageUtils.decodeReduced(bytes, header.reductionFor(largest));
+        }
+        Mat image = imdecode(new Mat(bytes), IMREAD_UNCHANGED);
+        if (image.empty()) {
+            return null;
+        }
+        if (image.depth() != CV_8U) {
+            Mat converted = new Mat();
+            image.convertTo(converted, CV_8U, 1.0 / 257, 0);
+            image = converted;
+        }
+        if (image.channels() == 1) {
+            Mat bgr = new Mat();
+            cvtColor(image, bgr, COLOR_GRAY2BGR);
+            image = bgr;
+        }
+        return image;
+    }
+
+    private static Mat fit(Mat image, int box) {
+        int longest = Math.max(image.cols(), image.rows());
+        if (longest <= box) {
+            return image;
+        }
+        double scale = (double) box / longest;
+        Mat resized = new Mat();
+        resize(image, resized, new Size(Math.max(1, (int) Math.round(image.cols() * scale)),
+                Math.max(1, (int) Math.round(image.rows() * scale))), 0, 0, INTER_AREA);
+        return resized;
+    }
+
+    /**
+     * BGRA => BGR over a white background; neither JPEG nor the clients' placeholders expect transparency.
+     */
+    static Mat flatten(Mat image) {
+        if (image.channels() != 4) {
+            return image;
+        }
+        Mat bgr = new Mat(image.rows(), image.cols(), CV_8UC3);
+        try (UByteIndexer src = image.createIndexer(); UByteIndexer dst = bgr.createIndexer()) {
+            for (int y = 0; y < image.rows(); y++) {
+                for (int x = 0; x < image.cols(); x++) {
+                    int alpha = src.get(y, x, 3);
+                    for (int c = 0; c < 3; c++) {
+                        dst.put(y, x, c, (src.get(y, x, c) * alpha + 255 * (255 - alpha) + 127) / 255);
+                    }
+                }
+            }
+        }
+        return bgr;
+    }
+
+    private byte[] encode(Mat image) {
+        int flag = extension.equals("webp") ? IMWRITE_WEBP_QUALITY : IMWRITE_JPEG_QUALITY;
+        BytePointer buffer = new BytePointer();
+        try (IntPointer params = new IntPointer(flag, quality)) {
+            if (!imencode("." + extension, image, buffer, params)) {
+                throw new IllegalStateException("imencode(" + extension + ") failed");
+            }
+            byte[] bytes = new byte[(int) buffer.capacity()];
+            buffer.get(bytes);
+            return bytes;
+        } finally {
+            buffer.deallocate();
+        }
+    }
+
+    private void write(String variant, byte[] bytes) throws IOException {
+        Path target = uploadsDir.resolve(variant);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(variantsDir, ".variant-", ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * "uploads/ab/cd/&lt;file&gt;" => "ab/cd/&lt;file&gt;"; null for anything outside the uploads directory.
+     */
+    private static String fileNameOf(String storedPath) {
+        if (storedPath == null || !storedPath.startsWith("uploads/")) {
+            return null;
+        }
+        String fileName = storedPath.substring("uploads/".length());
+        return isUpload(fileName) ? fileName : null;
+    }
+
+    /**
+     * A path relative to the uploads directory that names an upload, not a variant or a temp file.
+     */
+    private static boolean isUpload(String fileName) {
+        if (fileName == null || fileName.isEmpty() || fileName.startsWith("/") || fileName.endsWith("/")) {
+            return false;
+        }
+        for (String segment : fileName.split("/")) {
+            if (segment.isEmpty() || segment.equals("..") || segment.equals(".")) {
+                return false;
+            }
+        }
+        return !fileName.startsWith(VARIANTS_DIR + "/") && !fileName.startsWith(".");
+    }
+}
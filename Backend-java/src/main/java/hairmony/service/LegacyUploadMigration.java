@@ -0,0 +1,111 @@
+package hairmony.service;
+
+import hairmony.entities.Barbershop;
+import hairmony.entities.User;
+import hairmony.repository.BarbershopRepository;
+import hairmony.repository.UserRepository;
+import hairmony.serviceInterfaces.FileStorageServiceInf;
+import hairmony.serviceInterfaces.ImageVariantServiceInf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Moves pictures stored before the content-addressed store ("uploads/&lt;uuid&gt;_&lt;name&gt;") into it, so
+ * the copies of the same image collapse into one file, then deletes the old files. Pictures whose file is
+ * missing are left as they are.
+ */
+@Component
+public class LegacyUploadMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyUploadMigration.class);
+
+    private final UserRepository userRepository;
+    private final BarbershopRepository barbershopRepository;
+    private final FileStorageServiceInf fileStorageService;
+    private final ImageVariantServiceInf imageVariantService;
+    private final Path uploadsDir;
+    private final boolean enabled;
+
+    public LegacyUploadMigration(UserRepository userRepository,
+                                 BarbershopRepository barbershopRepository,
+                                 FileStorageServiceInf fileStorageService,
+                                 ImageVariantServiceInf imageVariantService,
+                                 @Value("${uploads.dir:uploads}") String uploadsDir,
+                                 @Value("${uploads.migrate-legacy:true}") boolean enabled) {
+        this.userRepository = userRepository;
+        this.barbershopRepository = barbershopRepository;
+        this.fileStorageService = fileStorageService;
+        this.imageVariantService = imageVariantService;
+        this.uploadsDir = Paths.get(uploadsDir);
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+        Set<String> migrated = new HashSet<>();
+        int pictures = 0;
+        for (User user : userRepository.findAll()) {
+            String stored = moveToStore(user.getPicture(), migrated);
+            if (stored != null) {
+                user.setPicture(stored);
+                userRepository.save(user);
+                pictures++;
+            }
+        }
+        for (Barbershop shop : barbershopRepository.findAll()) {
+            String stored = moveToStore(shop.getPicture(), migrated);
+            if (stored != null) {
+                shop.setPicture(stored);
+                barbershopRepository.save(shop);
+                pictures++;
+            }
+        }
+        // Only once nothing points at them any more
+        for (String legacy : migrated) {
+            try {
+                Files.deleteIfExists(uploadsDir.resolve(legacy.substring(FileStorageService.PREFIX.length())));
+                imageVariantService.deleteVariants(legacy);
+            } catch (IOException e) {
+                log.warn("Could not delete migrated upload {}", legacy, e);
+            }
+        }
+        if (pictures > 0) {
+            log.info("Moved {} pictures ({} files) into the content-addressed upload store", pictures, migrated.size());
+        }
+    }
+
+    private String moveToStore(String picture, Set<String> migrated) {
+        if (picture == null || !picture.startsWith(FileStorageService.PREFIX)
+                || FileStorageService.isContentAddressed(picture)) {
+            return null;
+        }
+        String fileName = picture.substring(FileStorageService.PREFIX.length());
+        Path file = uploadsDir.resolve(fileName).normalize();
+        if (fileName.contains("/") || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            String stored = fileStorageService.storeAsync(Files.newInputStream(file),
+                    FileStorageService.extensionOf(fileName)).join();
+            migrated.add(picture);
+            return stored;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not move {} into the upload store", picture, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package hairmony.service;
+
+import hairmony.dto.LiveFaceUpdate;
+import hairmony.dto.RectDTO;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracking state of one /AI/live connection, all in 600x600 canvas coordinates.
+ * Only touched by the worker currently processing that connection's frame.
+ */
+public class LiveFaceSession {
+
+    private final int smoothingWindow;
+
+    long frames;
+    int framesSinceDetection;
+
+    // Face rect used for the next landmark fit; null => run full detection.
+    // Kept as plain Java: native objects of a frame are freed when the frame is done.
+    RectDTO trackedRect;
+
+    // Haar rect expressed relative to the landmark bounding box at the last detection:
+    // {dx/w, dy/h, w'/w, h'/h}. Used to predict the next ROI from the tracked landmarks.
+    double[] rectFromLandmarks;
+
+    // Landmarks of the last analyzed frame as {x0, y0, x1, y1, ...}; a tracked fit must follow on from them
+    float[] previousLandmarks;
+
+    // Forehead tip relative to the brow midpoint, in units of the brow-to-chin distance
+    double[] foreheadOffset;
+
+    private final Deque<String> recentShapes = new ArrayDeque<>();
+    String hairstyleShape;
+    List<String> hairstyles = List.of();
+
+    LiveFaceUpdate lastSent;
+
+    public LiveFaceSession(int smoothingWindow) {
+        this.smoothingWindow = Math.max(1, smoothingWindow);
+    }
+
+    boolean needsDetection(int detectEvery) {
+        return trackedRect == null || framesSinceDetection >= detectEvery;
+    }
+
+    void lost() {
+        trackedRect = null;
+        rectFromLandmarks = null;
+        previousLandmarks = null;
+        recentShapes.clear();
+    }
+
+    /**
+     * Adds the newest per-frame shape and returns the most frequent one over the window
+     * (ties go to the most recent), so a single noisy frame does not flip the result.
+     */
+    String smoothShape(String shape) {
+        recentShapes.addLast(shape);
+        while (recentShapes.size() > smoothingWindow) {
+            recentShapes.removeFirst();
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (String s : recentShapes) {
+            counts.merge(s, 1, Integer::sum);
+        }
+        String best = shape;
+        int bestCount = 0;
+        for (var it = recentShapes.descendingIterator(); it.hasNext(); ) {
+            String s = it.next();
+            if (counts.get(s) > bestCount) {
+                best = s;
+                bestCount = counts.get(s);
+            }
+        }
+        return best;
+    }
+
+    public long frames() {
+        return frames;
+    }
+}
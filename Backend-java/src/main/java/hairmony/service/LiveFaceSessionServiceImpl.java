@@ -0,0 +1,381 @@
+package hairmony.service;
+
+import hairmony.dto.LiveFaceUpdate;
+import hairmony.dto.PointDTO;
+import hairmony.dto.RectDTO;
+import hairmony.serviceInterfaces.IFaceDetection;
+import hairmony.serviceInterfaces.IFaceShapeDetector;
+import hairmony.serviceInterfaces.LiveFaceSessionServiceInf;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static hairmony.service.FaceImageUtils.*;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
+
+/**
+ * Live webcam analysis. Full Haar detection (and the forehead lookup) only runs every
+ * {@code ai.live.detect-every} frames or after tracking was lost; in between, LBF landmarks are
+ * fitted inside the face rect predicted from the previous frame's landmarks. A tracked fit is only
+ * kept if it agrees with the previous frame's landmarks: LBF always returns a face inside the rect it
+ * was given, so comparing against that rect says nothing once the face has left it.
+ */
+@Service
+public class LiveFaceSessionServiceImpl implements LiveFaceSessionServiceInf {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveFaceSessionServiceImpl.class);
+
+    // 68-point LBF indices
+    private static final int CHIN = 8;
+    private static final int BROW_LEFT_INNER = 21;
+    private static final int BROW_RIGHT_INNER = 22;
+
+    private final IFaceDetection faceDetectionService;
+    private final IFaceShapeDetector faceShapeDetectorService;
+    private final ForeheadSidecarGuard foreheadSidecar;
+    private final HaircutCatalog haircutCatalog;
+    private final int detectEvery;
+    private final int smoothingWindow;
+    private final double minTrackIou;
+    private final double maxTrackMotion;
+    private final double maxFitError;
+    private final double minMovePx;
+
+    public LiveFaceSessionServiceImpl(IFaceDetection faceDetectionService,
+                                      IFaceShapeDetector faceShapeDetectorService,
+                                      ForeheadSidecarGuard foreheadSidecar,
+                                      HaircutCatalog haircutCatalog,
+                                      @Value("${ai.live.detect-every:10}") int detectEvery,
+                                      @Value("${ai.live.smoothing-window:5}") int smoothingWindow,
+                                      @Value("${ai.live.min-track-iou:0.5}") double minTrackIou,
+                                      @Value("${ai.live.max-track-motion:0.25}") double maxTrackMotion,
+                                      @Value("${ai.live.max-fit-error:0.15}") double maxFitError,
+                                      @Value("${ai.live.min-move-px:2.0}") double minMovePx) {
+        this.faceDetectionService = faceDetectionService;
+        this.faceShapeDetectorService = faceShapeDetectorService;
+        this.foreheadSidecar = foreheadSidecar;
+        this.haircutCatalog = haircutCatalog;
+        this.detectEvery = Math.max(1, detectEvery);
+        this.smoothingWindow = smoothingWindow;
+        this.minTrackIou = minTrackIou;
+        this.maxTrackMotion = maxTrackMotion;
+        this.maxFitError = maxFitError;
+        this.minMovePx = minMovePx;
+    }
+
+    @Override
+    public LiveFaceSession openSession() {
+        return new LiveFaceSession(smoothingWindow);
+    }
+
+    @Override
+    public LiveFaceUpdate processFrame(LiveFaceSession session, byte[] frame) {
+        session.frames++;
+        // Frees this frame's Mats and vectors as soon as it has been analyzed
+        try (PointerScope frameScope = new PointerScope()) {
+            ImageHeader header = ImageHeader.read(frame);
+            int reduction = header == null ? 1 : header.reductionFor(CANVAS_SIZE);
+            Mat original = reduction == 1 ? decodeMat(frame) : decodeReduced(frame, reduction);
+            if (original.empty()) {
+                return pushIfChanged(session, message(session, "Invalid image or can't decode"));
+            }
+            int originalWidth = reduction > 1 ? header.width() : original.cols();
+            int originalHeight = reduction > 1 ? header.height() : original.rows();
+            Mat padded = resizeAndPad(original, CANVAS_SIZE, CANVAS_SIZE);
+
+            // 1) Cheap path: fit inside the predicted ROI, fall back to detection when the fit drifted
+            Point2fVectorVector landmarks = null;
+            boolean tracked = false;
+            if (!session.needsDetection(detectEvery)) {
+                landmarks = fitTracked(session, padded);
+                tracked = landmarks != null;
+            }
+
+            // 2) Full path: Haar detection, landmark fit, forehead lookup
+            if (landmarks == null) {
+                Rect faceRect = faceDetectionService.detectFace(padded);
+                if (faceRect == null) {
+                    session.lost();
+                    return pushIfChanged(session, message(session, "No face detected"));
+                }
+                landmarks = faceShapeDetectorService.detectLandmarks(padded, faceRect);
+                PointDTO tip;
+                try {
+                    tip = foreheadSidecar.detectForeheadTip(matToBytes(padded));
+                } catch (ForeheadSidecarGuard.SidecarUnavailableException e) {
+                    // Sidecar down or circuit open: keep the last measured offset, or start from the estimate
+                    tip = session.foreheadOffset == null ? estimateForeheadTip(landmarks) : null;
+                }
+                if (tip != null) {
+                    session.foreheadOffset = foreheadOffset(landmarks.get(0), tip);
+                } else if (session.foreheadOffset == null) {
+                    session.lost();
+                    return pushIfChanged(session, message(session, "Failed to get forehead tip from Python"));
+                }
+                // else: keep the offset measured at the previous detection
+                session.rectFromLandmarks = rectFromLandmarks(faceRect, landmarkBounds(landmarks.get(0)));
+                session.framesSinceDetection = 0;
+            }
+            session.framesSinceDetection++;
+
+            Point2fVector points = landmarks.get(0);
+            session.previousLandmarks = coordinates(points);
+            Rect faceRect = predictRect(session.rectFromLandmarks, landmarkBounds(points));
+            session.trackedRect = new RectDTO(faceRect.x(), faceRect.y(), faceRect.width(), faceRect.height());
+            PointDTO tip = foreheadTip(points, session.foreheadOffset);
+
+            // 3) Classify and smooth over the last frames
+            String frameShape = faceShapeDetectorService.classifyFaceShape(landmarks, faceRect, tip.x(), tip.y()).shape();
+            String shape = session.smoothShape(frameShape);
+            if (!shape.equals(session.hairstyleShape)) {
+                session.hairstyles = getRecommendedHairstyles(shape);
+                session.hairstyleShape = shape;
+            }
+
+            return pushIfChanged(session, new LiveFaceUpdate(
+                    session.frames,
+                    tracked,
+                    shape,
+                    session.hairstyles,
+                    mapLandmarksToOriginal(landmarks, padded, originalWidth, originalHeight),
+                    mapFaceRectToOriginal(faceRect, padded, originalWidth, originalHeight),
+                    mapForeheadTipToOriginal(tip, padded, originalWidth, originalHeight)
+            ));
+        } catch (Exception e) {
+            log.warn("live frame {} failed", session.frames, e);
+            session.lost();
+            return pushIfChanged(session, message(session, "Analysis failed, please try again"));
+        }
+    }
+
+    /**
+     * Fit landmarks inside the session's tracked rect. Returns null (and resets tracking) when the fit
+     * does not follow on from the previous frame's landmarks, i.e. the face moved too far or left.
+     */
+    private Point2fVectorVector fitTracked(LiveFaceSession session, Mat padded) {
+        RectDTO tracked = session.trackedRect;
+        Rect roi = new Rect(tracked.x(), tracked.y(), tracked.width(), tracked.height());
+        Point2fVectorVector landmarks;
+        try {
+            landmarks = faceShapeDetectorService.detectLandmarks(padded, roi);
+        } catch (RuntimeException e) {
+            session.lost();
+            return null;
+        }
+        if (!followsOn(session.previousLandmarks, coordinates(landmarks.get(0)))) {
+            session.lost();
+            return null;
+        }
+        return landmarks;
+    }
+
+    /**
+     * Whether landmarks fitted on this frame can be the face of the previous one: their bounds overlap
+     * by at least minTrackIou, the center moved by at most maxTrackMotion of the face size, and the shape
+     * differs by at most maxFitError once position and scale are taken out.
+     */
+    boolean followsOn(float[] previous, float[] current) {
+        if (previous == null || previous.length != current.length) {
+            return false;
+        }
+        double[] before = bounds(previous);
+        double[] after = bounds(current);
+        if (iou(before, after) < minTrackIou) {
+            return false;
+        }
+        double size = Math.max(before[2] - before[0], before[3] - before[1]);
+        double moved = Math.hypot((after[0] + after[2] - before[0] - before[2]) / 2,
+                (after[1] + after[3] - before[1] - before[3]) / 2);
+        return moved <= maxTrackMotion * size && fitError(previous, current) <= maxFitError;
+    }
+
+    /**
+     * Mean distance between corresponding points of two landmark sets, each centered on its centroid and
+     * scaled to unit RMS radius. 0 for the same shape anywhere and at any size; a fit that collapsed or
+     * scrambled its points lands well above 0.3.
+     */
+    static double fitError(float[] a, float[] b) {
+        double[] na = normalized(a);
+        double[] nb = normalized(b);
+        double sum = 0;
+        for (int i = 0; i < na.length; i += 2) {
+            sum += Math.hypot(na[i] - nb[i], na[i + 1] - nb[i + 1]);
+        }
+        return sum / (na.length / 2);
+    }
+
+    private static double[] normalized(float[] xy) {
+        int n = xy.length / 2;
+        double cx = 0, cy = 0;
+        for (int i = 0; i < xy.length; i += 2) {
+            cx += xy[i];
+            cy += xy[i + 1];
+        }
+        cx /= n;
+        cy /= n;
+        double radius = 0;
+        for (int i = 0; i < xy.length; i += 2) {
+            radius += (xy[i] - cx) * (xy[i] - cx) + (xy[i + 1] - cy) * (xy[i + 1] - cy);
+        }
+        radius = Math.max(1e-6, Math.sqrt(radius / n));
+        double[] out = new double[xy.length];
+        for (int i = 0; i < xy.length; i += 2) {
+            out[i] = (xy[i] - cx) / radius;
+            out[i + 1] = (xy[i + 1] - cy) / radius;
+        }
+        return out;
+    }
+
+    static float[] coordinates(Point2fVector points) {
+        float[] xy = new float[(int) points.size() * 2];
+        for (int i = 0; i < points.size(); i++) {
+            Point2f p = points.get(i);
+            xy[2 * i] = p.x();
+            xy[2 * i + 1] = p.y();
+        }
+        return xy;
+    }
+
+    // {minX, minY, maxX, maxY}
+    private static double[] bounds(float[] xy) {
+        double[] b = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = 0; i < xy.length; i += 2) {
+            b[0] = Math.min(b[0], xy[i]);
+            b[1] = Math.min(b[1], xy[i + 1]);
+            b[2] = Math.max(b[2], xy[i]);
+            b[3] = Math.max(b[3], xy[i + 1]);
+        }
+        return b;
+    }
+
+    private static double iou(double[] a, double[] b) {
+        double ix = Math.max(0, Math.min(a[2], b[2]) - Math.max(a[0], b[0]));
+        double iy = Math.max(0, Math.min(a[3], b[3]) - Math.max(a[1], b[1]));
+        double inter = ix * iy;
+        double union = (a[2] - a[0]) * (a[3] - a[1]) + (b[2] - b[0]) * (b[3] - b[1]) - inter;
+        return union <= 0 ? 0 : inter / union;
+    }
+
+    /**
+     * Returns the update if it differs from what the client last received, otherwise null.
+     */
+    private LiveFaceUpdate pushIfChanged(LiveFaceSession session, LiveFaceUpdate update) {
+        LiveFaceUpdate last = session.lastSent;
+        if (last != null
+                && Objects.equals(last.shape(), update.shape())
+                && Objects.equals(last.hairstyles(), update.hairstyles())
+                && !moved(last, update)) {
+            return null;
+        }
+        session.lastSent = update;
+        return update;
+    }
+
+    private boolean moved(LiveFaceUpdate a, LiveFaceUpdate b) {
+        if (a.landmarks().size() != b.landmarks().size()
+                || (a.foreheadTip() == null) != (b.foreheadTip() == null)) {
+            return true;
+        }
+        for (int i = 0; i < a.landmarks().size(); i++) {
+            if (distance(a.landmarks().get(i), b.landmarks().get(i)) >= minMovePx) {
+                return true;
+            }
+        }
+        return a.foreheadTip() != null && distance(a.foreheadTip(), b.foreheadTip()) >= minMovePx;
+    }
+
+    private static LiveFaceUpdate message(LiveFaceSession session, String shape) {
+        return new LiveFaceUpdate(session.frames, false, shape, Collections.emptyList(),
+                Collections.emptyList(), null, null);
+    }
+
+    private static Rect landmarkBounds(Point2fVector points) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < points.size(); i++) {
+            Point2f p = points.get(i);
+            minX = Math.min(minX, p.x());
+            minY = Math.min(minY, p.y());
+            maxX = Math.max(maxX, p.x());
+            maxY = Math.max(maxY, p.y());
+        }
+        return new Rect(Math.round(minX), Math.round(minY),
+                Math.max(1, Math.round(maxX - minX)), Math.max(1, Math.round(maxY - minY)));
+    }
+
+    static double[] rectFromLandmarks(Rect faceRect, Rect bounds) {
+        return new double[] {
+                (double) (faceRect.x() - bounds.x()) / bounds.width(),
+                (double) (faceRect.y() - bounds.y()) / bounds.height(),
+                (double) faceRect.width() / bounds.width(),
+                (double) faceRect.height() / bounds.height()
+        };
+    }
+
+    /**
+     * Face rect for the given landmark bounds, clamped to the canvas.
+     */
+    static Rect predictRect(double[] relation, Rect bounds) {
+        int x = (int) Math.round(bounds.x() + relation[0] * bounds.width());
+        int y = (int) Math.round(bounds.y() + relation[1] * bounds.height());
+        int w = (int) Math.round(relation[2] * bounds.width());
+        int h = (int) Math.round(relation[3] * bounds.height());
+        int x0 = Math.max(0, x), y0 = Math.max(0, y);
+        int x1 = Math.min(CANVAS_SIZE, x + w), y1 = Math.min(CANVAS_SIZE, y + h);
+        return new Rect(x0, y0, Math.max(1, x1 - x0), Math.max(1, y1 - y0));
+    }
+
+    /**
+     * Forehead tip in the brow-to-chin frame (along, across), so it follows head tilt and scale.
+     */
+    static double[] foreheadOffset(Point2fVector points, PointDTO tip) {
+        double[] axis = browToChinAxis(points);
+        double dx = tip.x() - axis[0], dy = tip.y() - axis[1];
+        double len2 = axis[2] * axis[2] + axis[3] * axis[3];
+        return new double[] {
+                (dx * axis[2] + dy * axis[3]) / len2,
+                (dx * -axis[3] + dy * axis[2]) / len2
+        };
+    }
+
+    static PointDTO foreheadTip(Point2fVector points, double[] offset) {
+        double[] axis = browToChinAxis(points);
+        return new PointDTO(
+                axis[0] + offset[0] * axis[2] - offset[1] * axis[3],
+                axis[1] + offset[0] * axis[3] + offset[1] * axis[2]
+        );
+    }
+
+    // {browMidX, browMidY, chinX - browMidX, chinY - browMidY}
+    private static double[] browToChinAxis(Point2fVector points) {
+        Point2f left = points.get(BROW_LEFT_INNER);
+        Point2f right = points.get(BROW_RIGHT_INNER);
+        Point2f chin = points.get(CHIN);
+        double mx = (left.x() + right.x()) / 2.0;
+        double my = (left.y() + right.y()) / 2.0;
+        return new double[] { mx, my, chin.x() - mx, chin.y() - my };
+    }
+
+    private static double distance(PointDTO a, PointDTO b) {
+        return Math.hypot(a.x() - b.x(), a.y() - b.y());
+    }
+
+    /**
+     * Overridable decode method (full resolution), like {@link AIServiceImpl#decodeMat(Mat, int)}.
+     */
+    protected Mat decodeMat(byte[] bytes) {
+        return imdecode(new Mat(bytes), IMREAD_COLOR);
+    }
+
+    private List<String> getRecommendedHairstyles(String faceShape) {
+        return haircutCatalog.namesByFaceShape(faceShape);
+    }
+}
@@ -0,0 +1,70 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IObjectStorage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Optional;
+
+/**
+ * Objects as files under the node's uploads directory. Single-node only: other instances behind a load
+ * balancer do not see them. Select with uploads.storage=local (the default).
+ */
+@Service
+@ConditionalOnProperty(name = "uploads.storage", havingValue = "local", matchIfMissing = true)
+public class LocalObjectStorage implements IObjectStorage {
+
+    private final Path root;
+
+    public LocalObjectStorage(@Value("${uploads.dir:uploads}") String root) {
+        this.root = Paths.get(root);
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void put(String key, InputStream content) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".put-", ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) {
+        Path file = resolve(key);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    private Path resolve(String key) {
+        Path file = root.resolve(key).normalize();
+        if (!file.startsWith(root.normalize())) {
+            throw new IllegalArgumentException("Key outside the uploads directory: " + key);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,56 @@
+package hairmony.service;
+
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Bundled model files (Haar cascade, LBF facemark) extracted from the classpath to a local cache
+ * directory. OpenCV can only load them from a file path; the extracted copy is kept across boots,
+ * keyed by the resource's size and timestamp, so later starts open it directly instead of copying
+ * tens of MB out of the jar into a fresh temp file.
+ */
+public final class ModelFiles {
+
+    private ModelFiles() {
+    }
+
+    /**
+     * Path of a local copy of the classpath resource, extracting it only when no matching copy exists.
+     * A blank cacheDir means {@code ${java.io.tmpdir}/hairmony-models}.
+     */
+    public static String extract(String resourceName, String cacheDir) throws IOException {
+        ClassPathResource resource = new ClassPathResource(resourceName);
+        if (!resource.exists()) {
+            throw new IOException("Model not found on the classpath: " + resourceName);
+        }
+        Path dir = cacheDir == null || cacheDir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "hairmony-models")
+                : Paths.get(cacheDir);
+        Files.createDirectories(dir);
+
+        long length = resource.contentLength();
+        String fileName = resource.getFilename();
+        int dot = fileName.lastIndexOf('.');
+        Path cached = dir.resolve(fileName.substring(0, dot) + "-" + length + "-" + resource.lastModified()
+                + fileName.substring(dot));
+        if (Files.isRegularFile(cached) && Files.size(cached) == length) {
+            return cached.toAbsolutePath().toString();
+        }
+
+        // Copy next to the target and rename, so a concurrent boot never sees a half-written model
+        Path partial = Files.createTempFile(dir, fileName, ".part");
+        try (InputStream in = resource.getInputStream()) {
+            Files.copy(in, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        return cached.toAbsolutePath().toString();
+    }
+}
@@ -0,0 +1,126 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IFaceDetection;
+import hairmony.serviceInterfaces.IFaceShapeDetector;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static hairmony.service.FaceImageUtils.*;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
+import static org.bytedeco.opencv.global.opencv_imgproc.FILLED;
+import static org.bytedeco.opencv.global.opencv_imgproc.ellipse;
+
+/**
+ * Waits for the pooled models to finish loading in the background, then runs a few synthetic
+ * analyses (JPEG decode, resize/pad, Haar, LBF, classification) so the first real request does not
+ * pay for JIT compilation and OpenCV's lazy native initialization. Part of the readiness group:
+ * /actuator/health/readiness stays DOWN until this is done.
+ */
+@Component
+@RequiredArgsConstructor
+public class ModelWarmup implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelWarmup.class);
+
+    private final IFaceDetection faceDetectionService;
+    private final IFaceShapeDetector faceShapeDetectorService;
+    @Qualifier("aiStartupExecutor")
+    private final ExecutorService startupExecutor;
+    @Value("${ai.warmup.enabled:true}")
+    private final boolean enabled;
+    @Value("${ai.warmup.rounds:3}")
+    private final int rounds;
+
+    private volatile CompletableFuture<Void> warmup;
+    private volatile double loadMs;
+    private volatile double warmupMs;
+    private volatile long readyAfterJvmStartMs;
+
+    @PostConstruct
+    public void start() {
+        long start = System.nanoTime();
+        warmup = CompletableFuture.allOf(faceDetectionService.loaded(), faceShapeDetectorService.loaded())
+                .thenRunAsync(() -> {
+                    loadMs = (System.nanoTime() - start) / 1e6;
+                    long warmupStart = System.nanoTime();
+                    if (enabled) {
+                        for (int round = 0; round < rounds; round++) {
+                            runSyntheticAnalysis();
+                        }
+                    }
+                    warmupMs = (System.nanoTime() - warmupStart) / 1e6;
+                    readyAfterJvmStartMs = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+                    log.info("Face models ready: loaded in {} ms (background), warm-up {} ms, {} ms after JVM start",
+                            Math.round(loadMs), Math.round(warmupMs), readyAfterJvmStartMs);
+                }, startupExecutor)
+                .whenComplete((done, error) -> {
+                    if (error != null) {
+                        log.error("Face model loading or warm-up failed", error);
+                    }
+                });
+    }
+
+    /**
+     * Completes when the models are loaded and warmed up.
+     */
+    public CompletableFuture<Void> ready() {
+        return warmup;
+    }
+
+    @Override
+    public Health health() {
+        CompletableFuture<Void> current = warmup;
+        if (current == null || !current.isDone()) {
+            return Health.down().withDetail("status", "loading models").build();
+        }
+        if (current.isCompletedExceptionally()) {
+            return Health.down(current.exceptionNow()).build();
+        }
+        return Health.up()
+                .withDetail("modelLoadMs", Math.round(loadMs))
+                .withDetail("warmupMs", Math.round(warmupMs))
+                .withDetail("readyAfterJvmStartMs", readyAfterJvmStartMs)
+                .build();
+    }
+
+    /**
+     * One pass over the native code paths of an analysis, on a drawn face-like image. The results
+     * are irrelevant; only the code paths and allocations matter.
+     */
+    private void runSyntheticAnalysis() {
+        try (PointerScope scope = new PointerScope()) {
+            Mat frame = new Mat(960, 720, CV_8UC3, new Scalar(120, 130, 140, 0));
+            ellipse(frame, new Point(360, 450), new Size(170, 230), 0, 0, 360, new Scalar(150, 170, 210, 0), FILLED, 8, 0);
+            ellipse(frame, new Point(295, 400), new Size(28, 14), 0, 0, 360, new Scalar(40, 40, 40, 0), FILLED, 8, 0);
+            ellipse(frame, new Point(425, 400), new Size(28, 14), 0, 0, 360, new Scalar(40, 40, 40, 0), FILLED, 8, 0);
+
+            Mat decoded = imdecode(new Mat(matToBytes(frame)), IMREAD_COLOR);
+            Mat padded = resizeAndPad(decoded, CANVAS_SIZE, CANVAS_SIZE);
+            Rect detected = faceDetectionService.detectFace(padded);
+            Rect faceRect = detected != null ? detected : new Rect(200, 150, 200, 260);
+            try {
+                Point2fVectorVector landmarks = faceShapeDetectorService.detectLandmarks(padded, faceRect);
+                faceShapeDetectorService.classifyFaceShape(landmarks, faceRect, 300, 120);
+                mapLandmarksToOriginal(landmarks, padded, decoded.cols(), decoded.rows());
+            } catch (RuntimeException e) {
+                // A failed fit on the synthetic image still exercised the model
+                log.debug("Warm-up landmark fit failed: {}", e.getMessage());
+            }
+        }
+    }
+}
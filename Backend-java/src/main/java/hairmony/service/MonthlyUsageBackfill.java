@@ -0,0 +1,78 @@
+package hairmony.service;
+
+import hairmony.entities.MonthlyUsage;
+import hairmony.repository.MonthlyUsageRepository;
+import hairmony.repository.ReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills client_monthly_usage from the reservations already in the database, with one GROUP BY over the
+ * (client_id, date, status) index. Runs only while the ledger is empty, i.e. on the first start with it;
+ * from then on {@link MonthlyUsageLedger} is kept up to date as reservations change.
+ * <p>
+ * It runs once the beans are created, before the web server starts, so no booking can be counted twice;
+ * and it writes every row in one transaction, so a failed backfill leaves the ledger empty for the next
+ * start to try again instead of half filled.
+ */
+@Component
+public class MonthlyUsageBackfill implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(MonthlyUsageBackfill.class);
+
+    private final ReservationRepository reservationRepository;
+    private final MonthlyUsageRepository monthlyUsageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public MonthlyUsageBackfill(ReservationRepository reservationRepository,
+                                MonthlyUsageRepository monthlyUsageRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${reservations.usage-ledger.backfill:true}") boolean enabled) {
+        this.reservationRepository = reservationRepository;
+        this.monthlyUsageRepository = monthlyUsageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        backfill();
+    }
+
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (monthlyUsageRepository.count() > 0) {
+                return;
+            }
+            List<Object[]> counts = reservationRepository.countConfirmedByClientAndMonth();
+            List<MonthlyUsage> rows = new ArrayList<>(counts.size());
+            long reservations = 0;
+            for (Object[] row : counts) {
+                Long clientId = ((Number) row[0]).longValue();
+                YearMonth month = YearMonth.of(((Number) row[1]).intValue(), ((Number) row[2]).intValue());
+                int count = ((Number) row[3]).intValue();
+                // The exact count, not an increment: nothing else writes the ledger before traffic starts
+                rows.add(new MonthlyUsage(clientId, MonthlyUsageLedger.monthKey(month), count));
+                reservations += count;
+            }
+            monthlyUsageRepository.saveAll(rows);
+            if (!rows.isEmpty()) {
+                log.info("Backfilled client_monthly_usage: {} confirmed reservations in {} client-months",
+                        reservations, rows.size());
+            }
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package hairmony.service;
+
+import hairmony.entities.MonthlyUsage;
+import hairmony.entities.Reservation;
+import hairmony.repository.MonthlyUsageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.function.IntSupplier;
+
+/**
+ * Per-client, per-month count of CONFIRMED reservations (client_monthly_usage), replacing a scan of the
+ * whole reservations table on every booking. Reads are a primary-key lookup; every change is a single
+ * conditional UPDATE, the row being inserted with a client's first reservation of the month. Whoever moves
+ * a reservation into or out of CONFIRMED reports it here: {@link ReservationServiceImpl} and the Stripe
+ * success callback.
+ */
+@Service
+@RequiredArgsConstructor
+public class MonthlyUsageLedger {
+
+    static final String CONFIRMED = "CONFIRMED";
+
+    private final MonthlyUsageRepository monthlyUsageRepository;
+
+    public int confirmedIn(Long clientId, YearMonth month) {
+        return monthlyUsageRepository.findConfirmed(clientId, monthKey(month)).orElse(0);
+    }
+
+    /**
+     * Counts one more CONFIRMED reservation unless the client already has limit of them that month; parallel
+     * bookings of one client cannot both take the last free haircut.
+     *
+     * @return whether it was counted
+     */
+    public boolean claim(Long clientId, YearMonth month, int limit) {
+        if (limit <= 0) {
+            return false;
+        }
+        int key = monthKey(month);
+        if (monthlyUsageRepository.incrementBelow(clientId, key, limit) == 1) {
+            return true;
+        }
+        if (monthlyUsageRepository.existsById(new MonthlyUsage.Key(clientId, key))) {
+            return false;   // at the limit
+        }
+        return insertOr(clientId, key, 1, () -> monthlyUsageRepository.incrementBelow(clientId, key, limit)) == 1;
+    }
+
+    public void add(Long clientId, YearMonth month, int count) {
+        int key = monthKey(month);
+        if (monthlyUsageRepository.add(clientId, key, count) == 0) {
+            insertOr(clientId, key, count, () -> monthlyUsageRepository.add(clientId, key, count));
+        }
+    }
+
+    /**
+     * Gives back a count taken by {@link #claim} or {@link #add}.
+     */
+    public void remove(Long clientId, YearMonth month) {
+        monthlyUsageRepository.decrement(clientId, monthKey(month));
+    }
+
+    /**
+     * Follows a reservation whose status was previousStatus and is now reservation.getStatus().
+     */
+    public void statusChanged(Reservation reservation, String previousStatus) {
+        boolean was = CONFIRMED.equals(previousStatus);
+        boolean is = CONFIRMED.equals(reservation.getStatus());
+        if (was == is || reservation.getClient() == null || reservation.getDate() == null) {
+            return;
+        }
+        YearMonth month = YearMonth.from(reservation.getDate());
+        if (is) {
+            add(reservation.getClient().getId(), month, 1);
+        } else {
+            remove(reservation.getClient().getId(), month);
+        }
+    }
+
+    /**
+     * Inserts the row with count, or runs the UPDATE again when another request inserted it first.
+     */
+    private int insertOr(Long clientId, int key, int count, IntSupplier update) {
+        try {
+            monthlyUsageRepository.saveAndFlush(new MonthlyUsage(clientId, key, count));
+            return 1;
+        } catch (DataIntegrityViolationException e) {
+            return update.getAsInt();
+        }
+    }
+
+    static int monthKey(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+}
@@ -0,0 +1,191 @@
+package hairmony.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Fixed-size pool of independently created native objects (CascadeClassifier, Facemark, ...).
+ * OpenCV detectors keep mutable state, so each instance is used by one thread at a time:
+ * callers borrow an instance, work with it, and give it back.
+ */
+public class NativeObjectPool<T> {
+
+    private final String name;
+    private final int size;
+    private final long borrowTimeoutMs;
+    private final BlockingQueue<T> idle;
+    private final CompletableFuture<Void> loaded;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final long createdAtNanos = System.nanoTime();
+
+    public NativeObjectPool(String name, int size, long borrowTimeoutMs, Supplier<T> factory) {
+        this(name, size, borrowTimeoutMs, factory, null);
+    }
+
+    /**
+     * With a loader executor the instances are created concurrently on it and the constructor returns
+     * immediately; each instance becomes borrowable as soon as it is created (see {@link #loaded()}).
+     * Without one they are created one after the other before the constructor returns.
+     */
+    public NativeObjectPool(String name, int size, long borrowTimeoutMs, Supplier<T> factory, Executor loader) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be >= 1 for pool " + name);
+        }
+        this.name = name;
+        this.size = size;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idle = new ArrayBlockingQueue<>(size);
+        if (loader == null) {
+            for (int i = 0; i < size; i++) {
+                idle.add(factory.get());
+            }
+            this.loaded = CompletableFuture.completedFuture(null);
+        } else {
+            CompletableFuture<?>[] instances = new CompletableFuture<?>[size];
+            for (int i = 0; i < size; i++) {
+                instances[i] = CompletableFuture.supplyAsync(factory, loader).thenAccept(idle::add);
+            }
+            this.loaded = CompletableFuture.allOf(instances);
+        }
+    }
+
+    /**
+     * Completes once every instance has been created, exceptionally if one of them failed to load.
+     */
+    public CompletableFuture<Void> loaded() {
+        return loaded;
+    }
+
+    /**
+     * Resolves a configured pool size: anything below 1 means "one per available core".
+     */
+    public static int resolveSize(int configured) {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Borrow an instance, run the work, and always return the instance to the pool.
+     */
+    public <R> R execute(Function<T, R> work) {
+        try (Lease<T> lease = lease()) {
+            return work.apply(lease.get());
+        }
+    }
+
+    /**
+     * Borrow an instance for work that does not fit in one call; closing the lease gives it back.
+     */
+    public Lease<T> lease() {
+        return new Lease<>(this, borrow());
+    }
+
+    /**
+     * A borrowed instance. Closing it more than once returns the instance once.
+     */
+    public static final class Lease<T> implements AutoCloseable {
+        private final NativeObjectPool<T> pool;
+        private final long start = System.nanoTime();
+        private T instance;
+
+        private Lease(NativeObjectPool<T> pool, T instance) {
+            this.pool = pool;
+            this.instance = instance;
+        }
+
+        public T get() {
+            if (instance == null) {
+                throw new IllegalStateException("Lease on " + pool.name + " pool already returned");
+            }
+            return instance;
+        }
+
+        @Override
+        public void close() {
+            T returned = instance;
+            if (returned != null) {
+                instance = null;
+                pool.busyNanos.addAndGet(System.nanoTime() - start);
+                pool.release(returned);
+            }
+        }
+    }
+
+    private T borrow() {
+        if (loaded.isCompletedExceptionally() && idle.isEmpty() && inUse.get() == 0) {
+            // Nothing was loaded and nothing will come back: fail now instead of after the timeout
+            throw loadFailure();
+        }
+        long start = System.nanoTime();
+        T instance;
+        try {
+            instance = idle.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + name + " pool", e);
+        }
+        long waited = System.nanoTime() - start;
+        if (instance == null && loaded.isCompletedExceptionally()) {
+            throw loadFailure();
+        }
+        if (instance == null) {
+            timeoutCount.incrementAndGet();
+            throw new IllegalStateException("Timed out after " + borrowTimeoutMs + " ms waiting for " + name + " pool");
+        }
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        inUse.incrementAndGet();
+        return instance;
+    }
+
+    private IllegalStateException loadFailure() {
+        return new IllegalStateException("Pool " + name + " failed to load", loaded.exceptionNow());
+    }
+
+    private void release(T instance) {
+        inUse.decrementAndGet();
+        idle.offer(instance);
+    }
+
+    public Stats stats() {
+        long borrows = borrowCount.get();
+        double avgWaitMs = borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+        long elapsed = Math.max(1, System.nanoTime() - createdAtNanos);
+        double utilization = Math.min(1.0, busyNanos.get() / (double) (elapsed * size));
+        return new Stats(
+                name,
+                size,
+                inUse.get(),
+                borrows,
+                timeoutCount.get(),
+                avgWaitMs,
+                maxWaitNanos.get() / 1_000_000.0,
+                utilization
+        );
+    }
+
+    /**
+     * Snapshot of pool usage. utilization = busy time / (elapsed time * size) since the pool was created.
+     */
+    public record Stats(String name,
+                        int size,
+                        int inUse,
+                        long borrows,
+                        long timeouts,
+                        double avgWaitMs,
+                        double maxWaitMs,
+                        double utilization) {}
+}
@@ -0,0 +1,77 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IFaceDetection;
+import hairmony.serviceInterfaces.IFaceShapeDetector;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bytedeco.javacpp.Pointer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Gauges of the native side, next to the pipeline meters of {@link FaceAnalysisMetrics}:
+ * <ul>
+ *   <li>{@code javacpp_memory_tracked_bytes}, {@code javacpp_memory_tracked_objects}: JavaCPP allocations
+ *       not freed yet; should come back down after every request</li>
+ *   <li>{@code javacpp_memory_physical_bytes}: process RSS as JavaCPP sees it, heap included</li>
+ *   <li>{@code ai_pool_*{pool}}: size, in use, utilization, average/max borrow wait, borrows and
+ *       timeouts of the detector, facemark and upload buffer pools</li>
+ * </ul>
+ */
+@Component
+public class NativeResourceMetrics {
+
+    public NativeResourceMetrics(MeterRegistry registry,
+                                 IFaceDetection faceDetectionService,
+                                 IFaceShapeDetector faceShapeDetectorService,
+                                 UploadBufferPool uploadBuffers) {
+        Gauge.builder("javacpp.memory.tracked", Pointer::totalBytes)
+                .description("Native memory allocated through JavaCPP and not freed yet")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("javacpp.memory.tracked.objects", Pointer::totalCount)
+                .description("JavaCPP objects not freed yet")
+                .register(registry);
+        Gauge.builder("javacpp.memory.physical", Pointer::physicalBytes)
+                .description("Resident memory of the process, heap included")
+                .baseUnit("bytes")
+                .register(registry);
+
+        registerPool(registry, faceDetectionService::poolStats);
+        registerPool(registry, faceShapeDetectorService::poolStats);
+        registerPool(registry, uploadBuffers::stats);
+    }
+
+    static void registerPool(MeterRegistry registry, Supplier<NativeObjectPool.Stats> stats) {
+        String pool = stats.get().name();
+        Gauge.builder("ai.pool.size", stats, s -> s.get().size())
+                .tag("pool", pool)
+                .register(registry);
+        Gauge.builder("ai.pool.in.use", stats, s -> s.get().inUse())
+                .description("Pooled instances currently borrowed")
+                .tag("pool", pool)
+                .register(registry);
+        Gauge.builder("ai.pool.utilization", stats, s -> s.get().utilization())
+                .description("Busy time over elapsed time times size, since the pool was created")
+                .tag("pool", pool)
+                .register(registry);
+        Gauge.builder("ai.pool.wait.avg", stats, s -> s.get().avgWaitMs() / 1000)
+                .description("Average time a borrow waited for a free instance")
+                .baseUnit("seconds")
+                .tag("pool", pool)
+                .register(registry);
+        Gauge.builder("ai.pool.wait.max", stats, s -> s.get().maxWaitMs() / 1000)
+                .baseUnit("seconds")
+                .tag("pool", pool)
+                .register(registry);
+        FunctionCounter.builder("ai.pool.borrows", stats, s -> s.get().borrows())
+                .tag("pool", pool)
+                .register(registry);
+        FunctionCounter.builder("ai.pool.timeouts", stats, s -> s.get().timeouts())
+                .description("Borrows that gave up after the borrow timeout")
+                .tag("pool", pool)
+                .register(registry);
+    }
+}
@@ -0,0 +1,75 @@
+package hairmony.service;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerScope;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * JavaCPP allocations of one face analysis, freed together when the analysis ends instead of
+ * whenever the GC gets to them. Everything allocated on the owning thread while the scope is open
+ * is attached automatically; stages running on pipeline workers hand their results over with
+ * {@link #attach(Object)}. Must be opened and closed on the same thread.
+ */
+public class NativeScope implements AutoCloseable {
+
+    private final PointerScope scope = new PointerScope();
+    private final Phaser activeStages = new Phaser(1);
+    private volatile boolean closing;
+
+    /**
+     * Called by a worker before it touches the request's Mats. Returns false once the request has
+     * finished, in which case the stage must not run.
+     */
+    public boolean enterStage() {
+        activeStages.register();
+        if (closing) {
+            activeStages.arriveAndDeregister();
+            return false;
+        }
+        return true;
+    }
+
+    public void exitStage() {
+        activeStages.arriveAndDeregister();
+    }
+
+    /**
+     * Keep a stage result (if it is a native object) alive until this scope closes.
+     */
+    public synchronized <T> T attach(T value) {
+        if (value instanceof Pointer pointer && !pointer.isNull()) {
+            scope.attach(pointer);
+        }
+        return value;
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        // A cancelled stage may still be inside a native call that reads the request's Mats
+        activeStages.arriveAndAwaitAdvance();
+        scope.close();
+    }
+
+    /**
+     * Off-heap usage as tracked by JavaCPP. totalBytes/totalCount cover JavaCPP-allocated objects
+     * still waiting to be freed; physicalBytes is the process RSS (heap included).
+     */
+    public record MemoryStats(long totalBytes,
+                              long totalCount,
+                              long maxBytes,
+                              long physicalBytes,
+                              long maxPhysicalBytes) {
+
+        public static MemoryStats current() {
+            return new MemoryStats(
+                    Pointer.totalBytes(),
+                    Pointer.totalCount(),
+                    Pointer.maxBytes(),
+                    Pointer.physicalBytes(),
+                    Pointer.maxPhysicalBytes()
+            );
+        }
+    }
+}
@@ -7,14 +7,8 @@ import hairmony.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import hairmony.serviceInterfaces.FileStorageServiceInf;
 import hairmony.serviceInterfaces.ProfileServiceInf;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -23,6 +17,7 @@ public class ProfileService implements ProfileServiceInf {
     private final UserRepository userRepository;
     private final BarbershopRepository barbershopRepository;
     private final PasswordEncoder passwordEncoder;
+    private final FileStorageServiceInf fileStorageService;
 
     public ProfileDTO getProfile(Long userId) {
         User user = userRepository.findById(userId)
@@ -39,12 +34,6 @@ public class ProfileService implements ProfileServiceInf {
             user.setUsername(changes.getUsername());
         }
 
-        // Update picture if a new file is provided
-        if (changes.getPictureFile() != null && !changes.getPictureFile().isEmpty()) {
-            String path = saveFileToUploads(changes.getPictureFile());
-            user.setPicture(path);
-        }
-
         // Update password if provided
         if (changes.getNewPassword() != null && !changes.getNewPassword().isBlank()) {
             String hashed = passwordEncoder.encode(changes.getNewPassword());
@@ -71,7 +60,23 @@ public class ProfileService implements ProfileServiceInf {
             }
         }
 
-        userRepository.save(user);
+        // Update picture if a new file is provided, once every other change is valid so a rejected
+        // update stores nothing; the old picture is released once the user is saved
+        String replacedPicture = null;
+        String storedPicture = null;
+        if (changes.getPictureFile() != null && !changes.getPictureFile().isEmpty()) {
+            storedPicture = fileStorageService.store(changes.getPictureFile());
+            replacedPicture = user.getPicture();
+            user.setPicture(storedPicture);
+        }
+
+        try {
+            userRepository.save(user);
+        } catch (RuntimeException e) {
+            fileStorageService.release(storedPicture);
+            throw e;
+        }
+        fileStorageService.release(replacedPicture);
         return toProfileDTO(user);
     }
 
@@ -112,22 +117,6 @@ public class ProfileService implements ProfileServiceInf {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         userRepository.delete(user);
+        fileStorageService.release(user.getPicture());
     }
-
-    private String saveFileToUploads(MultipartFile file) {
-        try {
-            Path uploadsDir = Paths.get("uploads");
-            Files.createDirectories(uploadsDir);
-
-            String originalFilename = file.getOriginalFilename();
-            String uniqueFilename = UUID.randomUUID() + "_" + originalFilename;
-
-            Path targetPath = uploadsDir.resolve(uniqueFilename).normalize();
-            Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-
-            return "uploads/" + uniqueFilename;
-        } catch (IOException e) {
-            throw new RuntimeException("Could not store file. Error: " + e.getMessage());
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package hairmony.service;
+
+import hairmony.exceptions.PaymentRequiredException;
+import hairmony.exceptions.ResourceNotFoundException;
+import hairmony.repository.UserRepository;
+import hairmony.serviceInterfaces.QuotaServiceInf;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * The counters are only touched through conditional UPDATEs, so parallel requests of one user cannot
+ * both spend the last trial, and no User entity is loaded on the way. Each call is its own short
+ * transaction: nothing stays locked while the analysis runs.
+ */
+@Service
+@RequiredArgsConstructor
+public class QuotaServiceImpl implements QuotaServiceInf {
+
+    private final UserRepository userRepository;
+
+    @Override
+    @Transactional
+    public Grant consume(Long userId, Feature feature) {
+        int updated = switch (feature) {
+            case UPLOAD -> userRepository.consumeFreeTrial(userId);
+            case LIVE -> userRepository.consumeLiveTrial(userId);
+        };
+        if (updated == 1) {
+            return Grant.CHARGED;
+        }
+        // No row changed: either unlimited (never charged) or out of trials
+        boolean unlimited = userRepository.findUnlimitedAccessById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        if (unlimited) {
+            return Grant.UNLIMITED;
+        }
+        throw new PaymentRequiredException(feature.paymentMessage(), null, feature.price());
+    }
+
+    @Override
+    @Transactional
+    public void refund(Long userId, Feature feature, Grant grant) {
+        if (grant != Grant.CHARGED) {
+            return;
+        }
+        switch (feature) {
+            case UPLOAD -> userRepository.refundFreeTrial(userId);
+            case LIVE -> userRepository.refundLiveTrial(userId);
+        }
+    }
+}
@@ -4,23 +4,29 @@ import hairmony.dto.ReservationRequestDTO;
 import hairmony.entities.*;
 import hairmony.exceptions.PaymentRequiredException;
 import hairmony.repository.*;
+import hairmony.serviceInterfaces.AvailabilityServiceInf;
 import hairmony.serviceInterfaces.NotificationServiceInf;
 import hairmony.serviceInterfaces.ReservationServiceInf;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class ReservationServiceImpl implements ReservationServiceInf {
 
+    static final String PENDING_PAYMENT = "PENDING_PAYMENT";
+
     private final ReservationRepository reservationRepository;
     private final ClientRepository clientRepository;
     private final BarberRepository barberRepository;
-    private final HaircutRepository haircutRepository;
+    private final HaircutCatalog haircutCatalog;
     private final NotificationServiceInf notificationService;
+    private final MonthlyUsageLedger monthlyUsageLedger;
+    private final AvailabilityServiceInf availabilityService;
 
     @Override
     public Reservation createReservation(ReservationRequestDTO dto) {
@@ -29,17 +35,30 @@ public class ReservationServiceImpl implements ReservationServiceInf {
         Barber barber = barberRepository.findById(dto.getBarberId())
                 .orElseThrow(() -> new RuntimeException("Barber not found"));
 
-        Haircuts haircut = haircutRepository.findByNameContainingIgnoreCase(dto.getHairstyleChosen())
-                .stream().findFirst().orElse(null);
+        Haircuts haircut = haircutCatalog.findFirstByNameContaining(dto.getHairstyleChosen()).orElse(null);
         double haircutPrice = (haircut != null) ? haircut.getPrice() : 20.0;
 
-        int usageThisMonth = countReservationsThisMonth(client.getId());
-
-        boolean hasFreeHaircut = false;
-        if (client.isVIPSubscriber() && usageThisMonth < 3) {
-            hasFreeHaircut = true;
-        } else if (client.isNormalSubscriber() && usageThisMonth < 2) {
-            hasFreeHaircut = true;
+        // The slot first: a booking that cannot get it must not use up a free haircut
+        availabilityService.hold(barber.getId(), dto.getDate(), dto.getTime());
+
+        // Free haircuts count against this month's CONFIRMED reservations; the new one is counted
+        // under the month it is booked for
+        int freeHaircuts = client.isVIPSubscriber() ? 3 : client.isNormalSubscriber() ? 2 : 0;
+        YearMonth thisMonth = YearMonth.now();
+        YearMonth bookedMonth = YearMonth.from(dto.getDate());
+        boolean hasFreeHaircut;
+        try {
+            if (bookedMonth.equals(thisMonth)) {
+                hasFreeHaircut = monthlyUsageLedger.claim(client.getId(), thisMonth, freeHaircuts);
+            } else {
+                hasFreeHaircut = monthlyUsageLedger.confirmedIn(client.getId(), thisMonth) < freeHaircuts;
+                if (hasFreeHaircut) {
+                    monthlyUsageLedger.add(client.getId(), bookedMonth, 1);
+                }
+            }
+        } catch (RuntimeException e) {
+            availabilityService.release(barber.getId(), dto.getDate(), dto.getTime());
+            throw e;
         }
 
         Reservation reservation = new Reservation();
@@ -48,6 +67,7 @@ public class ReservationServiceImpl implements ReservationServiceInf {
         reservation.setHairstyleChosen(dto.getHairstyleChosen());
         reservation.setClient(client);
         reservation.setBarber(barber);
+        reservation.setHeldAt(LocalDateTime.now());
 
         if (hasFreeHaircut) {
             reservation.setStatus("CONFIRMED");
@@ -56,14 +76,22 @@ public class ReservationServiceImpl implements ReservationServiceInf {
                     "Reservation for " + reservation.getHairstyleChosen() + " is confirmed and paid!"
             );
         } else {
-            reservation.setStatus("PENDING_PAYMENT");
+            reservation.setStatus(PENDING_PAYMENT);
             notificationService.createNotification(
                     client,
                     "Reservation for " + reservation.getHairstyleChosen() + " is confirmed and waiting for payment!"
             );
         }
 
-        reservationRepository.save(reservation);
+        try {
+            reservationRepository.save(reservation);
+        } catch (RuntimeException e) {
+            if (hasFreeHaircut) {
+                monthlyUsageLedger.remove(client.getId(), bookedMonth);
+            }
+            availabilityService.release(barber.getId(), dto.getDate(), dto.getTime());
+            throw e;
+        }
 
         notificationService.createNotification(
                 barber,
@@ -71,6 +99,7 @@ public class ReservationServiceImpl implements ReservationServiceInf {
         );
 
         if (!hasFreeHaircut) {
+            availabilityService.awaitingPayment(reservation);
             throw new PaymentRequiredException(
                     "Payment required for this haircut",
                     reservation.getId(),
@@ -86,8 +115,15 @@ public class ReservationServiceImpl implements ReservationServiceInf {
         Reservation reservation = reservationRepository.findById(reservationId)
                 .orElseThrow(() -> new RuntimeException("Reservation not found"));
 
+        String previousStatus = reservation.getStatus();
         reservation.setStatus(newStatus);
+        if (PENDING_PAYMENT.equals(newStatus) && !PENDING_PAYMENT.equals(previousStatus)) {
+            // Put back to unpaid: a fresh payment window
+            reservation.setHeldAt(LocalDateTime.now());
+        }
         reservationRepository.save(reservation);
+        monthlyUsageLedger.statusChanged(reservation, previousStatus);
+        availabilityService.statusChanged(reservation, previousStatus);
 
         notificationService.createNotification(
                 reservation.getClient(),
@@ -105,18 +141,4 @@ public class ReservationServiceImpl implements ReservationServiceInf {
     public List<Reservation> getReservationsByClient(Long clientId) {
         return reservationRepository.findByClientId(clientId);
     }
-
-    private int countReservationsThisMonth(Long clientId) {
-        List<Reservation> all = reservationRepository.findAll();
-        LocalDate now = LocalDate.now();
-        int currentMonth = now.getMonthValue();
-        int currentYear = now.getYear();
-
-        return (int) all.stream()
-                .filter(r -> r.getClient().getId().equals(clientId)
-                        && r.getDate().getYear() == currentYear
-                        && r.getDate().getMonthValue() == currentMonth
-                        && "CONFIRMED".equals(r.getStatus()))
-                .count();
-    }
 }
@@ -0,0 +1,350 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IObjectStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Objects in an S3-compatible bucket (AWS S3, MinIO, R2, ...), so every node behind the load balancer sees
+ * the same uploads. Select with uploads.storage=s3.
+ * <ul>
+ *   <li>Writes stream: a file up to one part goes up in a single PUT, anything larger as a multipart upload
+ *       read one part (uploads.s3.part-size-bytes) at a time, aborted if any part fails.</li>
+ *   <li>The node's uploads directory is a local cache tier: stored files are kept there, misses are fetched
+ *       on first read, and the least recently used are deleted beyond uploads.s3.cache-max-bytes.</li>
+ *   <li>{@link #presignedGet} signs time-limited GET URLs, so /uploads/** can redirect clients to the bucket.</li>
+ * </ul>
+ * Requests are signed with SigV4 over java.net.http; objects are written with an immutable Cache-Control,
+ * as their keys are content hashes.
+ */
+@Service
+@ConditionalOnProperty(name = "uploads.storage", havingValue = "s3")
+public class S3ObjectStorage implements IObjectStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(S3ObjectStorage.class);
+
+    static final int MIN_PART_BYTES = 5 * 1024 * 1024;   // S3's floor for every part but the last
+    static final String OBJECT_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+
+    private final String endpoint;
+    private final String bucket;
+    private final boolean pathStyle;
+    private final int partBytes;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+    private final S3RequestSigner signer;
+    private final Path cacheDir;
+    private final Path tmpDir;
+    private final LocalCache cache;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public S3ObjectStorage(MeterRegistry registry,
+                           @Value("${uploads.dir:uploads}") String cacheDir,
+                           @Value("${uploads.s3.endpoint}") String endpoint,
+                           @Value("${uploads.s3.region:us-east-1}") String region,
+                           @Value("${uploads.s3.bucket}") String bucket,
+                           @Value("${uploads.s3.access-key}") String accessKey,
+                           @Value("${uploads.s3.secret-key}") String secretKey,
+                           @Value("${uploads.s3.path-style:true}") boolean pathStyle,
+                           @Value("${uploads.s3.part-size-bytes:8388608}") int partBytes,
+                           @Value("${uploads.s3.request-timeout-ms:30000}") long requestTimeoutMs,
+                           @Value("${uploads.s3.cache-max-bytes:1073741824}") long cacheMaxBytes) {
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.bucket = bucket;
+        this.pathStyle = pathStyle;
+        this.partBytes = Math.max(partBytes, MIN_PART_BYTES);
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)   // S3 does not speak HTTP/2
+                .connectTimeout(Duration.ofMillis(Math.min(requestTimeoutMs, 5_000)))
+                .build();
+        this.signer = new S3RequestSigner(accessKey, secretKey, region);
+        this.cacheDir = Paths.get(cacheDir).toAbsolutePath().normalize();
+        this.tmpDir = this.cacheDir.resolve(".tmp");
+        this.cache = new LocalCache(this.cacheDir, cacheMaxBytes);
+
+        Gauge.builder("uploads.s3.cache.bytes", cache, LocalCache::bytes)
+                .description("Bytes of bucket objects kept in the local cache tier")
+                .register(registry);
+        this.cacheHits = cacheLookups(registry, "hit");
+        this.cacheMisses = cacheLookups(registry, "miss");
+    }
+
+    private static Counter cacheLookups(MeterRegistry registry, String result) {
+        return Counter.builder("uploads.s3.cache")
+                .description("Reads of bucket objects, by whether the local cache tier had them")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        Path cached = resolve(key);
+        long size = Files.size(file);
+        if (size < partBytes) {
+            putObject(key, HttpRequest.BodyPublishers.ofFile(file));
+        } else {
+            try (InputStream in = Files.newInputStream(file)) {
+                putMultipart(key, in, in.readNBytes(partBytes));
+            }
+        }
+        Files.createDirectories(cached.getParent());
+        Files.move(file, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        cache.add(key, size);
+    }
+
+    @Override
+    public void put(String key, InputStream content) throws IOException {
+        resolve(key);
+        byte[] first = content.readNBytes(partBytes);
+        if (first.length < partBytes) {
+            putObject(key, HttpRequest.BodyPublishers.ofByteArray(first));
+        } else {
+            putMultipart(key, content, first);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        resolve(key);
+        HttpResponse<Void> response = send("HEAD", key, null, HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        check(response, "HEAD", key);
+        return true;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path cached = resolve(key);
+        HttpResponse<String> response = send("DELETE", key, null, HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 404) {
+            check(response, "DELETE", key);
+        }
+        cache.remove(key);
+        Files.deleteIfExists(cached);
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) throws IOException {
+        Path cached = resolve(key);
+        if (Files.isRegularFile(cached)) {
+            cache.touch(key, cached);
+            cacheHits.increment();
+            return Optional.of(cached);
+        }
+        cacheMisses.increment();
+        Files.createDirectories(tmpDir);
+        Path temp = Files.createTempFile(tmpDir, "s3-", ".tmp");
+        try {
+            HttpResponse<Path> response = send("GET", key, null, HttpRequest.BodyPublishers.noBody(),
+                    HttpResponse.BodyHandlers.ofFile(temp));
+            if (response.statusCode() == 404) {
+                return Optional.empty();
+            }
+            check(response, "GET", key);
+            long size = Files.size(temp);
+            Files.createDirectories(cached.getParent());
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            cache.add(key, size);
+            return Optional.of(cached);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * The signing time is rounded down to half the TTL, so the URL of an object stays the same (and
+     * cacheable by browsers) for that long while always having at least half the TTL left.
+     */
+    @Override
+    public Optional<URI> presignedGet(String key, Duration ttl) {
+        resolve(key);
+        long window = Math.max(1, ttl.toSeconds() / 2);
+        Instant signedAt = Instant.ofEpochSecond(Instant.now().getEpochSecond() / window * window);
+        return Optional.of(signer.presign("GET", objectUri(key, null), ttl, signedAt));
+    }
+
+    private void putObject(String key, HttpRequest.BodyPublisher body) throws IOException {
+        check(send("PUT", key, null, body, HttpResponse.BodyHandlers.ofString()), "PUT", key);
+    }
+
+    /**
+     * Uploads first and then the rest of in, one part in memory at a time.
+     */
+    private void putMultipart(String key, InputStream in, byte[] first) throws IOException {
+        HttpResponse<String> initiated = send("POST", key, "uploads=", HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofString());
+        check(initiated, "POST ?uploads", key);
+        Matcher uploadIdMatcher = UPLOAD_ID.matcher(initiated.body());
+        if (!uploadIdMatcher.find()) {
+            throw new IOException("S3 did not return an UploadId for " + key);
+        }
+        String uploadId = uploadIdMatcher.group(1);
+        String uploadIdParam = "uploadId=" + S3RequestSigner.encode(uploadId);
+
+        List<String> etags = new ArrayList<>();
+        try {
+            byte[] part = first;
+            while (part.length > 0) {
+                int partNumber = etags.size() + 1;
+                HttpResponse<String> uploaded = send("PUT", key, "partNumber=" + partNumber + "&" + uploadIdParam,
+                        HttpRequest.BodyPublishers.ofByteArray(part), HttpResponse.BodyHandlers.ofString());
+                check(uploaded, "PUT part " + partNumber, key);
+                etags.add(uploaded.headers().firstValue("ETag")
+                        .orElseThrow(() -> new IOException("S3 returned no ETag for part " + partNumber + " of " + key)));
+                part = in.readNBytes(partBytes);
+            }
+
+            StringBuilder parts = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                parts.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etags.get(i)).append("</ETag></Part>");
+            }
+            parts.append("</CompleteMultipartUpload>");
+            HttpResponse<String> completed = send("POST", key, uploadIdParam,
+                    HttpRequest.BodyPublishers.ofString(parts.toString()), HttpResponse.BodyHandlers.ofString());
+            check(completed, "POST ?uploadId", key);
+            // S3 may answer 200 and report the failure in the body
+            if (completed.body().contains("<Error>")) {
+                throw new IOException("S3 could not complete the upload of " + key + ": " + completed.body());
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                send("DELETE", key, uploadIdParam, HttpRequest.BodyPublishers.noBody(),
+                        HttpResponse.BodyHandlers.discarding());
+            } catch (IOException abortFailure) {
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, String query, HttpRequest.BodyPublisher body,
+                                     HttpResponse.BodyHandler<T> handler) throws IOException {
+        URI uri = objectUri(key, query);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .method(method, body);
+        signer.sign(method, uri, Instant.now()).forEach(request::header);
+        if ((method.equals("PUT") && query == null) || (method.equals("POST") && "uploads=".equals(query))) {
+            request.header("Content-Type", MediaTypeFactory.getMediaType(key)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            request.header("Cache-Control", OBJECT_CACHE_CONTROL);
+        }
+        try {
+            return httpClient.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("S3 " + method + " " + key + " interrupted");
+        }
+    }
+
+    private static void check(HttpResponse<?> response, String operation, String key) throws IOException {
+        int status = response.statusCode();
+        if (status < 200 || status >= 300) {
+            String detail = response.body() instanceof String body && !body.isBlank() ? ": " + body : "";
+            throw new IOException("S3 " + operation + " " + key + " answered " + status + detail);
+        }
+    }
+
+    URI objectUri(String key, String query) {
+        String path = "/" + S3RequestSigner.encodePath(key);
+        String base;
+        if (pathStyle) {
+            base = endpoint + "/" + bucket + path;
+        } else {
+            URI server = URI.create(endpoint);
+            base = server.getScheme() + "://" + bucket + "." + server.getRawAuthority() + path;
+        }
+        return URI.create(query == null ? base : base + "?" + query);
+    }
+
+    private Path resolve(String key) {
+        Path file = cacheDir.resolve(key).normalize();
+        if (!file.startsWith(cacheDir) || file.equals(cacheDir) || file.startsWith(tmpDir)) {
+            throw new IllegalArgumentException("Invalid object key: " + key);
+        }
+        return file;
+    }
+
+    /**
+     * Sizes of the objects kept under the cache directory, least recently used first. Only files this
+     * instance put there (or read from there) are ever evicted.
+     */
+    static final class LocalCache {
+        private final Path root;
+        private final long maxBytes;
+        private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(256, 0.75f, true);
+        private long bytes;
+
+        LocalCache(Path root, long maxBytes) {
+            this.root = root;
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized void add(String key, long size) {
+            Long previous = sizes.put(key, size);
+            bytes += size - (previous == null ? 0 : previous);
+            var eldest = sizes.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> evicted = eldest.next();
+                if (evicted.getKey().equals(key)) {
+                    continue;   // just stored or read: about to be served
+                }
+                bytes -= evicted.getValue();
+                eldest.remove();
+                try {
+                    Files.deleteIfExists(root.resolve(evicted.getKey()));
+                } catch (IOException e) {
+                    log.warn("Could not evict {} from the local upload cache", evicted.getKey(), e);
+                }
+            }
+        }
+
+        synchronized void touch(String key, Path file) throws IOException {
+            if (sizes.get(key) == null) {
+                add(key, Files.size(file));   // left by an earlier run
+            }
+        }
+
+        synchronized void remove(String key) {
+            Long previous = sizes.remove(key);
+            if (previous != null) {
+                bytes -= previous;
+            }
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+    }
+}
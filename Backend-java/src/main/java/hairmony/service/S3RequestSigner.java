@@ -0,0 +1,214 @@
+package hairmony.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * AWS Signature Version 4 for the S3 REST API: Authorization headers for requests and query-string
+ * signatures for presigned URLs. Payloads are sent as UNSIGNED-PAYLOAD so they can be streamed.
+ */
+final class S3RequestSigner {
+
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DATE_STAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+
+    S3RequestSigner(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    /**
+     * Headers to add to the request (x-amz-date, x-amz-content-sha256, Authorization). The URI's query
+     * must already be encoded the way it is sent.
+     */
+    Map<String, String> sign(String method, URI uri, Instant now) {
+        String amzDate = AMZ_DATE.format(now);
+        SortedMap<String, String> headers = new TreeMap<>();
+        headers.put("host", hostHeader(uri));
+        headers.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        headers.put("x-amz-date", amzDate);
+        String signedHeaders = String.join(";", headers.keySet());
+
+        String signature = signature(method, uri.getRawPath(), canonicalQuery(uri.getRawQuery(), null),
+                headers, signedHeaders, UNSIGNED_PAYLOAD, now);
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("x-amz-date", amzDate);
+        result.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        result.put("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope(now)
+                + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+        return result;
+    }
+
+    /**
+     * GET URL signed in the query string, valid for ttl (at most 7 days, as S3 enforces).
+     */
+    URI presign(String method, URI uri, Duration ttl, Instant now) {
+        long seconds = Math.max(1, Math.min(ttl.toSeconds(), Duration.ofDays(7).toSeconds()));
+        SortedMap<String, String> headers = new TreeMap<>();
+        headers.put("host", hostHeader(uri));
+
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("X-Amz-Algorithm", ALGORITHM);
+        query.put("X-Amz-Credential", accessKey + "/" + scope(now));
+        query.put("X-Amz-Date", AMZ_DATE.format(now));
+        query.put("X-Amz-Expires", Long.toString(seconds));
+        query.put("X-Amz-SignedHeaders", "host");
+        StringBuilder rawQuery = new StringBuilder(uri.getRawQuery() == null ? "" : uri.getRawQuery());
+        query.forEach((name, value) -> {
+            if (!rawQuery.isEmpty()) {
+                rawQuery.append('&');
+            }
+            rawQuery.append(encode(name)).append('=').append(encode(value));
+        });
+
+        String signature = signature(method, uri.getRawPath(), canonicalQuery(rawQuery.toString(), null),
+                headers, "host", UNSIGNED_PAYLOAD, now);
+        return URI.create(uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath()
+                + "?" + rawQuery + "&X-Amz-Signature=" + signature);
+    }
+
+    /**
+     * Signature of a request as received, for the stand-in server in tests: the same canonical form
+     * computed from what came over the wire.
+     */
+    String signatureOf(String method, String rawPath, String rawQuery, Map<String, String> signedHeaderValues,
+                       String payloadHash, Instant signedAt, String excludedQueryParam) {
+        SortedMap<String, String> headers = new TreeMap<>();
+        signedHeaderValues.forEach((name, value) -> headers.put(name.toLowerCase(Locale.ROOT), value));
+        return signature(method, rawPath, canonicalQuery(rawQuery, excludedQueryParam), headers,
+                String.join(";", headers.keySet()), payloadHash, signedAt);
+    }
+
+    static Instant parseAmzDate(String amzDate) {
+        return AMZ_DATE.parse(amzDate, Instant::from);
+    }
+
+    private String signature(String method, String rawPath, String canonicalQuery, SortedMap<String, String> headers,
+                             String signedHeaders, String payloadHash, Instant now) {
+        StringBuilder canonicalHeaders = new StringBuilder();
+        headers.forEach((name, value) -> canonicalHeaders.append(name).append(':').append(value.trim()).append('\n'));
+        String canonicalRequest = method + "\n"
+                + (rawPath == null || rawPath.isEmpty() ? "/" : rawPath) + "\n"
+                + canonicalQuery + "\n"
+                + canonicalHeaders + "\n"
+                + signedHeaders + "\n"
+                + payloadHash;
+        String stringToSign = ALGORITHM + "\n" + AMZ_DATE.format(now) + "\n" + scope(now) + "\n"
+                + hex(sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), DATE_STAMP.format(now));
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        return hex(hmac(key, stringToSign));
+    }
+
+    private String scope(Instant now) {
+        return DATE_STAMP.format(now) + "/" + region + "/s3/aws4_request";
+    }
+
+    /**
+     * Parameters sorted by encoded name then value; a bare "uploads" becomes "uploads=".
+     */
+    private static String canonicalQuery(String rawQuery, String excluded) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String[]> params = new ArrayList<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            if (!name.equals(excluded)) {
+                params.add(new String[]{name, value});
+            }
+        }
+        params.sort(Comparator.<String[], String>comparing(p -> p[0]).thenComparing(p -> p[1]));
+        StringJoiner joined = new StringJoiner("&");
+        params.forEach(p -> joined.add(p[0] + "=" + p[1]));
+        return joined.toString();
+    }
+
+    /**
+     * Host as the HTTP client sends it: the port only when it is not the scheme's default.
+     */
+    static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || (port == 443 && "https".equalsIgnoreCase(uri.getScheme()))
+                || (port == 80 && "http".equalsIgnoreCase(uri.getScheme()));
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    /**
+     * RFC 3986 percent-encoding, as SigV4 requires (space => %20, '~' kept).
+     */
+    static String encode(String value) {
+        StringBuilder out = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~') {
+                out.append(c);
+            } else {
+                out.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Object key as a URI path: each segment encoded, slashes kept.
+     */
+    static String encodePath(String key) {
+        StringJoiner path = new StringJoiner("/");
+        for (String segment : key.split("/", -1)) {
+            path.add(encode(segment));
+        }
+        return path.toString();
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+}
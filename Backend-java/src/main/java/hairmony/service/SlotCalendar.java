@@ -0,0 +1,238 @@
+package hairmony.service;
+
+import hairmony.entities.WorkingHours;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * One barber's slots: the working hours as a bit mask over the slots of a day (the 96 quarter hours of a day
+ * fit in two longs), and for each day with reservations the number of reservations on each slot. Counting
+ * rather than flagging keeps reservations that overlap (off the grid, or put back by staff over a rebooked
+ * slot) apart: freeing one leaves the other's slots taken. Only days from today on are kept. Guarded by its
+ * own monitor: bookings of different barbers never wait on each other.
+ */
+final class SlotCalendar {
+
+    enum Hold {
+        HELD,
+        OFF_GRID,   // not at the start of a slot
+        CLOSED,     // outside the working hours
+        TAKEN
+    }
+
+    private final int slotMinutes;
+    private final int slotsPerDay;
+    private final Map<Long, short[]> taken = new HashMap<>();   // epoch day -> reservations per slot
+    private long[] open;
+    private Set<DayOfWeek> closedDays;
+    private long prunedBefore = Long.MIN_VALUE;
+
+    SlotCalendar(int slotMinutes, WorkingHours hours) {
+        this.slotMinutes = slotMinutes;
+        this.slotsPerDay = 24 * 60 / slotMinutes;
+        setHours(hours);
+    }
+
+    /**
+     * Replaces the working hours; reservations already taken stay taken.
+     */
+    synchronized void setHours(WorkingHours hours) {
+        this.open = openMask(hours);
+        this.closedDays = closedDays(hours.getClosedDays());
+    }
+
+    /**
+     * The first taken slot, from fromMinute of today on, that the given hours would close; null when every
+     * reservation ahead still fits them. Callers that must not race bookings hold this calendar's
+     * monitor until they have called {@link #setHours}.
+     */
+    synchronized LocalDateTime firstOrphan(WorkingHours hours, LocalDate today, int fromMinute) {
+        long[] mask = openMask(hours);
+        Set<DayOfWeek> closed = closedDays(hours.getClosedDays());
+        LocalDateTime first = null;
+        for (Map.Entry<Long, short[]> day : taken.entrySet()) {
+            long epochDay = day.getKey();
+            if (epochDay < today.toEpochDay() || (first != null && epochDay > first.toLocalDate().toEpochDay())) {
+                continue;
+            }
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            int fromSlot = epochDay == today.toEpochDay() ? fromMinute / slotMinutes : 0;
+            for (int slot = fromSlot; slot < slotsPerDay; slot++) {
+                // Only slots the current hours open: one already outside them (off the grid, put back by staff) stays as it was
+                boolean openNow = !closedDays.contains(date.getDayOfWeek()) && bit(open, slot);
+                boolean openAfter = !closed.contains(date.getDayOfWeek()) && bit(mask, slot);
+                if (day.getValue()[slot] > 0 && openNow && !openAfter) {
+                    LocalDateTime orphan = LocalDateTime.of(date, LocalTime.ofSecondOfDay(slot * slotMinutes * 60L));
+                    if (first == null || orphan.isBefore(first)) {
+                        first = orphan;
+                    }
+                    break;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Takes the slots of an appointment of the given length at date/time if they are all free and within
+     * the working hours.
+     */
+    synchronized Hold hold(LocalDate date, LocalTime time, int minutes) {
+        int start = time.toSecondOfDay();
+        if (start % (slotMinutes * 60) != 0) {
+            return Hold.OFF_GRID;
+        }
+        int from = start / 60 / slotMinutes;
+        int to = from + Math.ceilDiv(minutes, slotMinutes);
+        if (to > slotsPerDay || closedDays.contains(date.getDayOfWeek()) || !all(open, from, to)) {
+            return Hold.CLOSED;
+        }
+        short[] day = taken.get(date.toEpochDay());
+        if (day != null && any(day, from, to)) {
+            return Hold.TAKEN;
+        }
+        count(taken.computeIfAbsent(date.toEpochDay(), d -> new short[slotsPerDay]), from, to, 1);
+        return Hold.HELD;
+    }
+
+    /**
+     * Counts an existing reservation, wherever it falls: off the grid, it takes every slot it overlaps; over
+     * another reservation, both are counted.
+     */
+    synchronized void take(LocalDate date, LocalTime time, int minutes) {
+        int start = time.toSecondOfDay() / 60;
+        count(taken.computeIfAbsent(date.toEpochDay(), d -> new short[slotsPerDay]), start / slotMinutes,
+                Math.min(slotsPerDay, Math.ceilDiv(start + minutes, slotMinutes)), 1);
+    }
+
+    /**
+     * Uncounts a reservation given by {@link #hold} or {@link #take}; slots other reservations still take stay taken.
+     */
+    synchronized void free(LocalDate date, LocalTime time, int minutes) {
+        short[] day = taken.get(date.toEpochDay());
+        if (day == null) {
+            return;
+        }
+        int start = time.toSecondOfDay() / 60;
+        count(day, start / slotMinutes, Math.min(slotsPerDay, Math.ceilDiv(start + minutes, slotMinutes)), -1);
+        if (!any(day, 0, slotsPerDay)) {
+            taken.remove(date.toEpochDay());
+        }
+    }
+
+    /**
+     * Start times on date where an appointment of the given length fits, from fromMinute of the day on.
+     */
+    synchronized List<LocalTime> freeStarts(LocalDate date, int minutes, int fromMinute) {
+        if (closedDays.contains(date.getDayOfWeek())) {
+            return List.of();
+        }
+        short[] day = taken.get(date.toEpochDay());
+        int length = Math.ceilDiv(minutes, slotMinutes);
+        List<LocalTime> starts = new ArrayList<>();
+        int run = 0;
+        for (int slot = 0; slot < slotsPerDay; slot++) {
+            run = bit(open, slot) && (day == null || day[slot] == 0) ? run + 1 : 0;
+            int start = (slot - length + 1) * slotMinutes;
+            if (run >= length && start >= fromMinute) {
+                starts.add(LocalTime.ofSecondOfDay(start * 60L));
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Drops the bitmaps of the days before today, once a day.
+     */
+    synchronized void prune(LocalDate today) {
+        long epochDay = today.toEpochDay();
+        if (epochDay > prunedBefore) {
+            taken.keySet().removeIf(day -> day < epochDay);
+            prunedBefore = epochDay;
+        }
+    }
+
+    /**
+     * Parses "SUNDAY, monday" into days of the week.
+     *
+     * @throws IllegalArgumentException for anything else than day names
+     */
+    static Set<DayOfWeek> closedDays(String days) {
+        Set<DayOfWeek> closed = EnumSet.noneOf(DayOfWeek.class);
+        if (days != null) {
+            for (String day : days.split(",")) {
+                if (!day.isBlank()) {
+                    closed.add(DayOfWeek.valueOf(day.trim().toUpperCase(Locale.ROOT)));
+                }
+            }
+        }
+        return closed;
+    }
+
+    private long[] openMask(WorkingHours hours) {
+        long[] mask = new long[words()];
+        // Partial slots at either end are not bookable
+        set(mask, Math.ceilDiv(minuteOf(hours.getOpensAt()), slotMinutes), endMinute(hours.getClosesAt()) / slotMinutes, true);
+        if (hours.getBreakStart() != null && hours.getBreakEnd() != null) {
+            set(mask, minuteOf(hours.getBreakStart()) / slotMinutes,
+                    Math.ceilDiv(endMinute(hours.getBreakEnd()), slotMinutes), false);
+        }
+        return mask;
+    }
+
+    private static int minuteOf(LocalTime time) {
+        return time.toSecondOfDay() / 60;
+    }
+
+    // 00:00 as an end is midnight at the end of the day
+    static int endMinute(LocalTime time) {
+        return time.equals(LocalTime.MIDNIGHT) ? 24 * 60 : minuteOf(time);
+    }
+
+    private int words() {
+        return Math.ceilDiv(slotsPerDay, 64);
+    }
+
+    private static boolean bit(long[] bits, int slot) {
+        return (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private static boolean all(long[] bits, int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            if (!bit(bits, slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean any(short[] counts, int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            if (counts[slot] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Never below zero: a free without a matching take leaves the slot free, not owed
+    private static void count(short[] counts, int from, int to, int delta) {
+        for (int slot = from; slot < to; slot++) {
+            counts[slot] = (short) Math.max(0, counts[slot] + delta);
+        }
+    }
+
+    private static void set(long[] bits, int from, int to, boolean value) {
+        for (int slot = from; slot < to; slot++) {
+            if (value) {
+                bits[slot >>> 6] |= 1L << slot;
+            } else {
+                bits[slot >>> 6] &= ~(1L << slot);
+            }
+        }
+    }
+}
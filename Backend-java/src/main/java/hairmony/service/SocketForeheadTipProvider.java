@@ -0,0 +1,239 @@
+package hairmony.service;
+
+import hairmony.dto.PointDTO;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forehead tip from the sidecar over a persistent binary protocol.
+ * <p>
+ * Frame in:  int32 (big-endian) length N, then N bytes of JPEG.<br>
+ * Frame out: float32 x, float32 y (big-endian); NaN/NaN means no forehead found.<br>
+ * <p>
+ * Each connection carries one frame at a time: a call borrows an idle connection from a pool of at most
+ * ai.forehead.socket.pool-size (opening one if none is idle), writes its frame, reads the reply and gives
+ * the connection back. A connection whose call missed its deadline is closed rather than reused, since
+ * its late reply would be read by the next call.
+ * <p>
+ * Connections go to a Unix domain socket when the socket file exists, otherwise to loopback TCP.
+ * Transport failures and missed deadlines are thrown as {@link UncheckedIOException}, so
+ * {@link ForeheadSidecarGuard} can count them; null only means no forehead was found.
+ * Select with ai.forehead.provider=socket.
+ */
+@Service
+@ConditionalOnProperty(name = "ai.forehead.provider", havingValue = "socket")
+public class SocketForeheadTipProvider implements IForeheadTipProvider {
+
+    static final int RESPONSE_BYTES = 8;
+
+    private final Path socketPath;
+    private final InetSocketAddress tcpAddress;
+    private final long deadlineMs;
+    private final BlockingQueue<Connection> idle;
+    private final Semaphore permits;
+
+    public SocketForeheadTipProvider(@Value("${ai.forehead.socket.path:/tmp/hairmony-forehead.sock}") String socketPath,
+                                     @Value("${ai.forehead.socket.tcp-host:127.0.0.1}") String tcpHost,
+                                     @Value("${ai.forehead.socket.tcp-port:5001}") int tcpPort,
+                                     @Value("${ai.forehead.socket.pool-size:8}") int poolSize,
+                                     @Value("${ai.forehead.socket.deadline-ms:2000}") long deadlineMs) {
+        this.socketPath = socketPath == null || socketPath.isBlank() ? null : Paths.get(socketPath);
+        this.tcpAddress = new InetSocketAddress(tcpHost, tcpPort);
+        this.deadlineMs = deadlineMs;
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+        this.permits = new Semaphore(poolSize);
+    }
+
+    @Override
+    public PointDTO detectForeheadTip(byte[] jpegBytes) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        try {
+            if (!permits.tryAcquire(deadlineMs, TimeUnit.MILLISECONDS)) {
+                throw new UncheckedIOException(new SocketTimeoutException(
+                        "no sidecar connection available within " + deadlineMs + " ms"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("forehead sidecar call interrupted"));
+        }
+        try {
+            Connection connection = idle.poll();
+            boolean reused = connection != null;
+            if (connection == null) {
+                connection = openConnection(deadline);
+            }
+            try {
+                float[] xy = connection.call(jpegBytes, deadline);
+                idle.offer(connection);
+                return toPoint(xy);
+            } catch (InterruptedIOException e) {
+                // Deadline exceeded or call cancelled: a late reply would desynchronize the stream,
+                // so the connection is dropped
+                connection.close();
+                throw e;
+            } catch (IOException e) {
+                connection.close();
+                if (!reused) throw e;
+                // The pooled connection may have gone stale (sidecar restart); retry once on a fresh one
+                Connection fresh = openConnection(deadline);
+                try {
+                    float[] xy = fresh.call(jpegBytes, deadline);
+                    idle.offer(fresh);
+                    return toPoint(xy);
+                } catch (IOException retryFailure) {
+                    fresh.close();
+                    throw retryFailure;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static PointDTO toPoint(float[] xy) {
+        if (Float.isNaN(xy[0]) || Float.isNaN(xy[1])) {
+            return null;
+        }
+        return new PointDTO(xy[0], xy[1]);
+    }
+
+    private Connection openConnection(long deadlineNanos) throws IOException {
+        SocketChannel channel;
+        if (socketPath != null && Files.exists(socketPath)) {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            connect(channel, UnixDomainSocketAddress.of(socketPath), deadlineNanos);
+        } else {
+            channel = SocketChannel.open();
+            channel.socket().setTcpNoDelay(true);
+            connect(channel, tcpAddress, deadlineNanos);
+        }
+        return new Connection(channel);
+    }
+
+    /**
+     * Non-blocking connect, so an unreachable sidecar costs no more than what is left of the call's deadline.
+     */
+    private static void connect(SocketChannel channel, SocketAddress address, long deadlineNanos) throws IOException {
+        try {
+            channel.configureBlocking(false);
+            if (channel.connect(address)) {
+                return;
+            }
+            try (Selector selector = Selector.open()) {
+                channel.register(selector, SelectionKey.OP_CONNECT);
+                while (!channel.finishConnect()) {
+                    long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                    if (remainingMs <= 0) {
+                        throw new SocketTimeoutException("connect deadline exceeded");
+                    }
+                    selector.select(remainingMs);
+                    selector.selectedKeys().clear();
+                }
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * One persistent, non-blocking channel; a Selector enforces the per-call deadline.
+     */
+    static final class Connection {
+
+        private final SocketChannel channel;
+        private final Selector selector;
+        private final ByteBuffer header = ByteBuffer.allocate(4);
+        private final ByteBuffer response = ByteBuffer.allocate(RESPONSE_BYTES);
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            channel.configureBlocking(false);
+            this.selector = Selector.open();
+        }
+
+        float[] call(byte[] payload, long deadlineNanos) throws IOException {
+            header.clear();
+            header.putInt(payload.length).flip();
+            ByteBuffer[] frame = {header, ByteBuffer.wrap(payload)};
+
+            SelectionKey key = channel.register(selector, SelectionKey.OP_WRITE);
+            while (frame[0].hasRemaining() || frame[1].hasRemaining()) {
+                channel.write(frame);
+                if (frame[0].hasRemaining() || frame[1].hasRemaining()) {
+                    await(deadlineNanos);
+                }
+            }
+
+            response.clear();
+            key.interestOps(SelectionKey.OP_READ);
+            while (response.hasRemaining()) {
+                if (channel.read(response) < 0) {
+                    throw new IOException("Sidecar closed the connection");
+                }
+                if (response.hasRemaining()) {
+                    await(deadlineNanos);
+                }
+            }
+            response.flip();
+            return new float[]{response.getFloat(), response.getFloat()};
+        }
+
+        private void await(long deadlineNanos) throws IOException {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMs <= 0) {
+                throw new SocketTimeoutException("deadline exceeded");
+            }
+            selector.select(remainingMs);
+            selector.selectedKeys().clear();
+            if (Thread.currentThread().isInterrupted()) {
+                // The analysis was cancelled (e.g. no face detected); give up on this reply
+                throw new InterruptedIOException("Forehead call cancelled");
+            }
+        }
+
+        void close() {
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
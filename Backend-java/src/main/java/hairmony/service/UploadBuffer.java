@@ -0,0 +1,103 @@
+package hairmony.service;
+
+import org.bytedeco.javacpp.BytePointer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Reusable native buffer an upload is streamed into, so the encoded image goes from the request
+ * body to imdecode without a heap byte[] in between. Grows by doubling up to the upload cap and
+ * keeps its size for the next request, unless {@link #shrink} frees it. Not thread-safe: used by one
+ * request at a time via the pool.
+ */
+public class UploadBuffer {
+
+    static final int INITIAL_CAPACITY = 1 << 20;
+
+    private BytePointer memory;
+    private ByteBuffer view;
+
+    /**
+     * Replace the buffer's contents with the whole stream and return the SHA-256 hex of it.
+     * Throws {@link UploadTooLargeException} as soon as more than maxBytes have been read.
+     */
+    public String readFrom(InputStream in, long maxBytes) throws IOException {
+        if (view == null) {
+            allocate((int) Math.min(INITIAL_CAPACITY, maxBytes + 1));
+        }
+        view.clear();
+        ReadableByteChannel channel = Channels.newChannel(in);
+        while (channel.read(view) >= 0) {
+            if (!view.hasRemaining()) {
+                // Capacity is capped at maxBytes + 1, so a full buffer at the cap means "too large"
+                if (view.capacity() > maxBytes) {
+                    throw new UploadTooLargeException(maxBytes);
+                }
+                allocate((int) Math.min((long) view.capacity() * 2, maxBytes + 1));
+            }
+        }
+        view.flip();
+
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(view.duplicate());
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The bytes read by the last {@link #readFrom}, as a direct buffer over the native memory.
+     */
+    public ByteBuffer contents() {
+        return view.duplicate();
+    }
+
+    public long capacity() {
+        return view == null ? 0 : view.capacity();
+    }
+
+    /**
+     * Free the native block if it grew beyond maxRetainedBytes; the next upload starts again from
+     * {@link #INITIAL_CAPACITY}. A few outsized photos then do not pin the cap's worth of native
+     * memory in every pooled buffer.
+     */
+    public void shrink(long maxRetainedBytes) {
+        if (view != null && view.capacity() > maxRetainedBytes) {
+            memory.releaseReference();
+            memory = null;
+            view = null;
+        }
+    }
+
+    /**
+     * Switch to a larger native block, keeping what was read so far.
+     */
+    private void allocate(int capacity) {
+        BytePointer grown = new BytePointer(capacity);
+        // Owned by this buffer, not by whatever PointerScope the current request may have open
+        grown.retainReference();
+        ByteBuffer grownView = grown.asByteBuffer();
+        if (view != null) {
+            view.flip();
+            grownView.put(view);
+            memory.releaseReference();
+        }
+        memory = grown;
+        view = grownView;
+    }
+
+    public static class UploadTooLargeException extends RuntimeException {
+        public UploadTooLargeException(long maxBytes) {
+            super("Image too large (max " + maxBytes + " bytes)");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package hairmony.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.BiFunction;
+
+/**
+ * Streams uploads into pooled native {@link UploadBuffer}s. The number of buffers also bounds how
+ * many uploads are held in memory at once, so callers hand a buffer back as soon as the image is
+ * decoded; the size cap is enforced while reading, before the body has been fully buffered.
+ */
+@Component
+public class UploadBufferPool {
+
+    private final NativeObjectPool<UploadBuffer> buffers;
+    private final long maxUploadBytes;
+    private final long maxRetainedBytes;
+
+    public UploadBufferPool(@Value("${ai.upload.buffers:0}") int poolSize,
+                            @Value("${ai.upload.max-bytes:20971520}") long maxUploadBytes,
+                            @Value("${ai.upload.retained-buffer-bytes:4194304}") long maxRetainedBytes,
+                            @Value("${ai.upload.borrow-timeout-ms:30000}") long borrowTimeoutMs) {
+        this.maxUploadBytes = maxUploadBytes;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.buffers = new NativeObjectPool<>("upload-buffer", NativeObjectPool.resolveSize(poolSize),
+                borrowTimeoutMs, UploadBuffer::new);
+    }
+
+    /**
+     * Read the file into a pooled buffer and run the work with (SHA-256 hex, direct buffer over the bytes).
+     * The buffer is only valid inside the work and goes back to the pool afterwards.
+     */
+    public <R> R ingest(MultipartFile file, BiFunction<String, ByteBuffer, R> work) {
+        try (Upload upload = open(file)) {
+            return work.apply(upload.digest(), upload.contents());
+        }
+    }
+
+    /**
+     * Read the file into a pooled buffer that stays borrowed until the returned upload is closed.
+     */
+    public Upload open(MultipartFile file) {
+        if (file.getSize() > maxUploadBytes) {
+            throw new UploadBuffer.UploadTooLargeException(maxUploadBytes);
+        }
+        NativeObjectPool.Lease<UploadBuffer> lease = buffers.lease();
+        try (InputStream in = file.getInputStream()) {
+            String digest = lease.get().readFrom(in, maxUploadBytes);
+            return new Upload(lease, digest);
+        } catch (IOException e) {
+            giveBack(lease);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            giveBack(lease);
+            throw e;
+        }
+    }
+
+    private void giveBack(NativeObjectPool.Lease<UploadBuffer> lease) {
+        lease.get().shrink(maxRetainedBytes);
+        lease.close();
+    }
+
+    /**
+     * An upload in a borrowed buffer. {@link #contents()} is only valid until {@link #close()}, which
+     * can be called early (right after decoding) and again at the end; the buffer goes back once.
+     */
+    public final class Upload implements AutoCloseable {
+        private final NativeObjectPool.Lease<UploadBuffer> lease;
+        private final String digest;
+        private boolean closed;
+
+        private Upload(NativeObjectPool.Lease<UploadBuffer> lease, String digest) {
+            this.lease = lease;
+            this.digest = digest;
+        }
+
+        // SHA-256 hex of the upload
+        public String digest() {
+            return digest;
+        }
+
+        public ByteBuffer contents() {
+            return lease.get().contents();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                giveBack(lease);
+            }
+        }
+    }
+
+    public long maxUploadBytes() {
+        return maxUploadBytes;
+    }
+
+    public NativeObjectPool.Stats stats() {
+        return buffers.stats();
+    }
+}
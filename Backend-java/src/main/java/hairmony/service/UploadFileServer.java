@@ -0,0 +1,419 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IObjectStorage;
+import hairmony.serviceInterfaces.ImageVariantServiceInf;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Serves /uploads/** with validators and long-lived caching:
+ * <ul>
+ *   <li>ETag is the SHA-256 of the bytes sent: taken from the name for content-addressed uploads,
+ *       computed once (and kept while size and mtime do not change) for variants and legacy files.</li>
+ *   <li>Content-addressed originals never change, so they are {@code immutable} for a year; their variants
+ *       are cached for a day; the original served in place of a variant that is not generated yet, and legacy
+ *       names, must be revalidated (cheap: a 304).</li>
+ *   <li>If-None-Match => 304, a single byte range => 206 (If-Range honoured), multiple ranges => the whole file.</li>
+ *   <li>Bodies: small files come from an in-memory LRU (uploads.serve.cache-*); large ones go through
+ *       Tomcat's sendfile when the connector supports it, otherwise FileChannel.transferTo.</li>
+ *   <li>Content-addressed originals are read through {@link IObjectStorage#localFile}, so with S3 storage any
+ *       node can serve them; with uploads.serve.redirect-ttl-seconds &gt; 0 and a store that can presign, the
+ *       client is redirected to the bucket instead. Variants are derived per node, from the local copy.</li>
+ * </ul>
+ */
+@Component
+public class UploadFileServer {
+
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    static final String VARIANT = "public, max-age=86400";
+    static final String REVALIDATE = "public, no-cache";
+
+    // Tomcat request attributes (org.apache.catalina.Globals), so the container sends the file itself
+    static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private final ImageVariantServiceInf imageVariantService;
+    private final IObjectStorage objectStorage;
+    private final Path uploadsDir;
+    private final int cacheMaxFileBytes;
+    private final long sendfileMinBytes;
+    private final FileCache cache;
+    private final Duration redirectTtl;
+
+    private final Counter fromMemory;
+    private final Counter viaSendfile;
+    private final Counter viaChannel;
+    private final Counter notModified;
+    private final Counter redirected;
+
+    public UploadFileServer(ImageVariantServiceInf imageVariantService,
+                            IObjectStorage objectStorage,
+                            MeterRegistry registry,
+                            @Value("${uploads.dir:uploads}") String uploadsDir,
+                            @Value("${uploads.serve.cache-max-bytes:33554432}") long cacheMaxBytes,
+                            @Value("${uploads.serve.cache-max-file-bytes:262144}") int cacheMaxFileBytes,
+                            @Value("${uploads.serve.sendfile-min-bytes:49152}") long sendfileMinBytes,
+                            @Value("${uploads.serve.redirect-ttl-seconds:0}") long redirectTtlSeconds) {
+        this.imageVariantService = imageVariantService;
+        this.objectStorage = objectStorage;
+        this.uploadsDir = Paths.get(uploadsDir).toAbsolutePath().normalize();
+        this.cacheMaxFileBytes = cacheMaxFileBytes;
+        this.sendfileMinBytes = sendfileMinBytes;
+        this.cache = new FileCache(cacheMaxBytes);
+        this.redirectTtl = redirectTtlSeconds > 0 ? Duration.ofSeconds(redirectTtlSeconds) : null;
+
+        Gauge.builder("uploads.serve.cache.bytes", cache, FileCache::weight)
+                .description("Bytes held by the in-memory cache of small uploads")
+                .register(registry);
+        this.fromMemory = served(registry, "memory");
+        this.viaSendfile = served(registry, "sendfile");
+        this.viaChannel = served(registry, "channel");
+        this.notModified = served(registry, "not_modified");
+        this.redirected = served(registry, "redirect");
+    }
+
+    private static Counter served(MeterRegistry registry, String via) {
+        return Counter.builder("uploads.served")
+                .description("Responses for /uploads/**, by how the body was sent")
+                .tag("via", via)
+                .register(registry);
+    }
+
+    /**
+     * @param relativePath decoded path below /uploads/ ("ab/cd/&lt;sha256&gt;.jpg")
+     * @param size         ?size= (thumb, medium), or null for the original
+     */
+    public void serve(String relativePath, String size, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!isServable(relativePath)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String storedPath = FileStorageService.PREFIX + relativePath;
+        boolean contentAddressed = FileStorageService.isContentAddressed(storedPath);
+        if (contentAddressed && size == null && redirectTtl != null) {
+            Optional<URI> url = objectStorage.presignedGet(relativePath, redirectTtl);
+            if (url.isPresent()) {
+                // The URL changes at most every ttl/2 (see S3ObjectStorage#presignedGet)
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + redirectTtl.toSeconds() / 2);
+                response.sendRedirect(url.get().toString());
+                redirected.increment();
+                return;
+            }
+        }
+
+        Path original;
+        if (contentAddressed) {
+            Optional<Path> local = objectStorage.localFile(relativePath);
+            if (local.isEmpty()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            original = local.get().toAbsolutePath().normalize();
+        } else {
+            original = uploadsDir.resolve(relativePath).normalize();
+        }
+        Path file = original;
+        String cacheControl;
+        if (size != null) {
+            String variant = imageVariantService.variantFileName(relativePath, size);
+            Path variantFile = variant == null ? null : uploadsDir.resolve(variant).normalize();
+            if (variantFile != null && Files.isRegularFile(variantFile)) {
+                file = variantFile;
+                cacheControl = contentAddressed ? VARIANT : REVALIDATE;
+            } else {
+                cacheControl = REVALIDATE;   // the variant will replace it under the same URL
+                if (variantFile != null && contentAddressed) {
+                    // Stored on another node: derive the variants from the copy now cached here
+                    imageVariantService.generateVariants(storedPath);
+                }
+            }
+        } else {
+            cacheControl = contentAddressed ? IMMUTABLE : REVALIDATE;
+        }
+        if (!file.startsWith(uploadsDir)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        Entry entry = cache.get(file, attributes.size(), modified);
+        if (entry == null) {
+            entry = load(file, attributes.size(), modified,
+                    contentAddressed && file.equals(original) ? hashOf(relativePath) : null);
+        }
+        long length = entry.length();
+
+        response.setHeader(HttpHeaders.ETAG, entry.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, modified);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), entry.etag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            notModified.increment();
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = length - 1;
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        long[] range = ifRange == null || ifRange.equals(entry.etag())
+                ? parseRange(request.getHeader(HttpHeaders.RANGE), length) : null;
+        if (range == UNSATISFIABLE) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if (range != null) {
+            start = range[0];
+            end = range[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (entry.bytes() != null) {
+            response.getOutputStream().write(entry.bytes(), (int) start, (int) count);
+            fromMemory.increment();
+        } else if (count >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            viaSendfile.increment();
+        } else {
+            transfer(file, start, count, response.getOutputStream());
+            viaChannel.increment();
+        }
+    }
+
+    /**
+     * Hashes the file (and keeps its bytes when it is small) and caches the result.
+     */
+    private Entry load(Path file, long length, long modified, String knownHash) throws IOException {
+        byte[] bytes = null;
+        String hash = knownHash;
+        if (length <= cacheMaxFileBytes) {
+            bytes = Files.readAllBytes(file);
+            if (bytes.length != length) {
+                length = bytes.length;   // changed under us; the next request sees the new mtime
+            }
+            if (hash == null) {
+                hash = HexFormat.of().formatHex(sha256().digest(bytes));
+            }
+        } else if (hash == null) {
+            hash = hashFile(file);
+        }
+        Entry entry = new Entry(length, modified, "\"" + hash + "\"", bytes);
+        cache.put(file, entry);
+        return entry;
+    }
+
+    private static String hashFile(Path file) throws IOException {
+        MessageDigest sha256 = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                sha256.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private static void transfer(Path file, long start, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    break;   // file shrank
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Single "bytes=a-b", "bytes=a-" or "bytes=-n" range as inclusive [start, end]; null to send the whole
+     * file (no header, several ranges, unparseable); {@link #UNSATISFIABLE} when it starts past the end.
+     */
+    static long[] parseRange(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                return length == 0 ? UNSATISFIABLE : new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return end < start ? null : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * If-None-Match uses the weak comparison: W/"x" matches "x".
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || (tag.startsWith("W/") && tag.substring(2).equals(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Plain relative path without dot segments or dot files (uploads/.tmp holds files being written).
+     */
+    static boolean isServable(String relativePath) {
+        if (relativePath == null || relativePath.isEmpty() || relativePath.indexOf('\\') >= 0
+                || relativePath.indexOf('\0') >= 0) {
+            return false;
+        }
+        for (String segment : relativePath.split("/", -1)) {
+            if (segment.isEmpty() || segment.startsWith(".")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // "ab/cd/<sha256>.jpg" => "<sha256>"
+    private static String hashOf(String relativePath) {
+        String name = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+        return name.substring(0, name.indexOf('.'));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * ETag of a file as of (size, mtime), plus its bytes when it is small enough to keep in memory.
+     */
+    record Entry(long length, long modified, String etag, byte[] bytes) {
+        long weight() {
+            return 128 + (bytes == null ? 0 : bytes.length);
+        }
+    }
+
+    /**
+     * Least-recently-used entries by path, bounded by the bytes they hold.
+     */
+    static final class FileCache {
+        private final long maxWeight;
+        private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+        private long weight;
+
+        FileCache(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized Entry get(Path file, long length, long modified) {
+            Entry entry = entries.get(file);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.length() != length || entry.modified() != modified) {
+                weight -= entries.remove(file).weight();
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(Path file, Entry entry) {
+            if (entry.weight() > maxWeight) {
+                return;
+            }
+            Entry previous = entries.put(file, entry);
+            weight += entry.weight() - (previous == null ? 0 : previous.weight());
+            var eldest = entries.entrySet().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                Map.Entry<Path, Entry> evicted = eldest.next();
+                weight -= evicted.getValue().weight();
+                eldest.remove();
+            }
+        }
+
+        synchronized long weight() {
+            return weight;
+        }
+    }
+}
@@ -4,8 +4,21 @@ package hairmony.serviceInterfaces;
 import hairmony.dto.FaceAnalysisResponse;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Map;
+
 
 public interface AIServiceInf {
     FaceAnalysisResponse analyzeFace(MultipartFile file);
 
+    FaceAnalysisResponse analyzeFace(byte[] imageBytes);
+
+    Map<String, Object> getPipelineStats();
+
+    /**
+     * Drop the cached result for one image (SHA-256 hex of its bytes).
+     */
+    boolean evictCachedResult(String digest);
+
+    int evictAllCachedResults();
+
 }
@@ -0,0 +1,39 @@
+package hairmony.serviceInterfaces;
+
+import hairmony.dto.AnalysisJobStatus;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+public interface AnalysisJobServiceInf {
+
+    /**
+     * Queue the image for analysis and return the QUEUED job right away.
+     * Throws {@link hairmony.exceptions.JobQueueFullException} when the queue is full.
+     */
+    default AnalysisJobStatus submit(MultipartFile file, String owner) {
+        return submit(file, owner, () -> {});
+    }
+
+    /**
+     * As {@link #submit(MultipartFile, String)}; onFailure runs on the worker when the analysis
+     * fails or finds no face (not when the submission itself is rejected).
+     */
+    AnalysisJobStatus submit(MultipartFile file, String owner, Runnable onFailure);
+
+    Optional<AnalysisJobStatus> get(String jobId, String owner);
+
+    /**
+     * Long poll: completes when the job finishes or after at most maxWait with its current state.
+     * Empty if there is no such job for this owner.
+     */
+    Optional<CompletableFuture<AnalysisJobStatus>> await(String jobId, String owner, Duration maxWait);
+
+    /**
+     * Queue depth, capacity, wait/run times and throughput.
+     */
+    Map<String, Object> stats();
+}
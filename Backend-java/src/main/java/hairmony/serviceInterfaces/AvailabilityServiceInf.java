@@ -0,0 +1,61 @@
+package hairmony.serviceInterfaces;
+
+import hairmony.dto.AvailabilityDTO;
+import hairmony.entities.Reservation;
+import hairmony.entities.WorkingHours;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Which slots of a barber are free, kept in memory and updated as reservations are made, change status
+ * or are cancelled: reading availability does not touch the database, unless an unpaid hold has lapsed
+ * and must be cancelled.
+ */
+public interface AvailabilityServiceInf {
+
+    /**
+     * Free appointment starts of the barber from from to to (inclusive), today at the earliest.
+     */
+    AvailabilityDTO getAvailability(Long barberId, LocalDate from, LocalDate to);
+
+    /**
+     * Takes the slot for a new reservation.
+     *
+     * @throws hairmony.exceptions.SlotUnavailableException when it is taken, outside working hours or past
+     */
+    void hold(Long barberId, LocalDate date, LocalTime time);
+
+    /**
+     * Gives back a slot taken by {@link #hold} for a reservation that was not saved.
+     */
+    void release(Long barberId, LocalDate date, LocalTime time);
+
+    /**
+     * Marks a reservation saved as PENDING_PAYMENT after its {@link #hold}: unless it is paid (or otherwise
+     * changes status) within availability.payment-hold-minutes of its heldAt, it is cancelled and its slot
+     * given back.
+     */
+    void awaitingPayment(Reservation reservation);
+
+    /**
+     * Follows a reservation whose status was previousStatus and is now reservation.getStatus().
+     */
+    void statusChanged(Reservation reservation, String previousStatus);
+
+    /**
+     * Sets the barber's own hours, or clears them (null or all fields empty) to follow the barbershop's.
+     *
+     * @return the hours the barber now works
+     * @throws hairmony.exceptions.ScheduleConflictException when an upcoming reservation falls outside them
+     */
+    WorkingHours updateBarberHours(Long barberId, WorkingHours hours);
+
+    /**
+     * Sets the barbershop's hours, used by its barbers without their own.
+     *
+     * @throws hairmony.exceptions.ScheduleConflictException when an upcoming reservation of one of those
+     *                                                       barbers falls outside them
+     */
+    WorkingHours updateBarbershopHours(Long barbershopId, WorkingHours hours);
+}
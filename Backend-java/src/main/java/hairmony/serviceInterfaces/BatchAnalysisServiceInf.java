@@ -0,0 +1,32 @@
+package hairmony.serviceInterfaces;
+
+import hairmony.dto.BatchAnalysisItem;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface BatchAnalysisServiceInf {
+
+    /**
+     * One of a user's concurrent batches, taken before the streamed response starts; close it when the batch ends.
+     */
+    interface BatchSlot extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Take one of the user's ai.batch.max-concurrent-per-user batch slots.
+     *
+     * @throws hairmony.exceptions.TooManyBatchesException when all of them are in use
+     */
+    BatchSlot reserve(Long userId);
+
+    /**
+     * Analyze every file and hand each item to the sink as soon as it is ready (completion order).
+     * Each non-empty file takes one upload of the user's quota, given back when it is not analyzed;
+     * once the quota runs out the remaining items carry the payment message as their error.
+     */
+    void analyzeBatch(Long userId, List<MultipartFile> files, Consumer<BatchAnalysisItem> sink);
+}
@@ -0,0 +1,33 @@
+package hairmony.serviceInterfaces;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Content-addressed upload store: identical files are kept once, under "uploads/ab/cd/&lt;sha256&gt;.&lt;ext&gt;",
+ * and reference counted. Every {@code store} must be balanced by a {@link #release} once the stored path is
+ * no longer referenced (picture replaced, account deleted).
+ */
+public interface FileStorageServiceInf {
+
+    /**
+     * Stores the upload and takes a reference; returns the stored path ("uploads/ab/cd/&lt;sha256&gt;.jpg").
+     *
+     * @throws hairmony.exceptions.UploadQueueFullException when the I/O executor is saturated
+     */
+    String store(MultipartFile file);
+
+    /**
+     * Same as {@link #store(MultipartFile)} for a raw stream; the stream must stay open until the future
+     * completes, and is closed by the store.
+     */
+    CompletableFuture<String> storeAsync(InputStream content, String extension);
+
+    /**
+     * Drops one reference; the file (and its variants) is deleted with the last one.
+     * Paths that are not content-addressed (legacy uploads, null) are ignored.
+     */
+    void release(String storedPath);
+}
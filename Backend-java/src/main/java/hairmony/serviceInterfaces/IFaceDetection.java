@@ -1,5 +1,21 @@
 package hairmony.serviceInterfaces;
 
+import hairmony.service.NativeObjectPool;
+
+import java.util.concurrent.CompletableFuture;
+
 public interface IFaceDetection {
     org.bytedeco.opencv.opencv_core.Rect detectFace(org.bytedeco.opencv.opencv_core.Mat image);
-}
\ No newline at end of file
+
+    /**
+     * Usage of the detector instance pool (wait time, utilization).
+     */
+    NativeObjectPool.Stats poolStats();
+
+    /**
+     * Completes once every pooled detector instance has loaded its model.
+     */
+    default CompletableFuture<Void> loaded() {
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -1,8 +1,11 @@
 package hairmony.serviceInterfaces;
 
+import hairmony.service.NativeObjectPool;
 import org.bytedeco.opencv.opencv_core.Point2fVectorVector;
 import org.bytedeco.opencv.opencv_core.Rect;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface IFaceShapeDetector {
 
     /**
@@ -18,5 +21,17 @@ public interface IFaceShapeDetector {
                                            double pythonForeheadTipX,
                                            double pythonForeheadTipY);
 
+    /**
+     * Usage of the facemark instance pool (wait time, utilization).
+     */
+    NativeObjectPool.Stats poolStats();
+
+    /**
+     * Completes once every pooled facemark instance has loaded its model.
+     */
+    default CompletableFuture<Void> loaded() {
+        return CompletableFuture.completedFuture(null);
+    }
+
     record ClassificationResult(String shape, double tipForeheadX, double tipForeheadY) {}
 }
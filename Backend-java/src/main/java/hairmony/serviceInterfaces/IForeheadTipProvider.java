@@ -0,0 +1,12 @@
+package hairmony.serviceInterfaces;
+
+import hairmony.dto.PointDTO;
+
+public interface IForeheadTipProvider {
+
+    /**
+     * Locate the forehead tip in a JPEG-encoded frame.
+     * Coordinates are in the frame's pixel space; returns null if no face/forehead was found.
+     */
+    PointDTO detectForeheadTip(byte[] jpegBytes);
+}
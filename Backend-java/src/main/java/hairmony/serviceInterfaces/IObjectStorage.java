@@ -0,0 +1,43 @@
+package hairmony.serviceInterfaces;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Where upload bytes live, by key relative to the uploads root ("ab/cd/&lt;sha256&gt;.jpg").
+ * Selected with uploads.storage: local (the node's uploads directory) or s3 (any S3-compatible store,
+ * with the uploads directory as a local cache tier).
+ */
+public interface IObjectStorage {
+
+    /**
+     * Stores a finished file under the key. The file is consumed: moved into place or deleted afterwards.
+     */
+    void put(String key, Path file) throws IOException;
+
+    /**
+     * Stores a stream of unknown length under the key; the stream is read to the end but not closed.
+     */
+    void put(String key, InputStream content) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * A local file with the object's bytes, fetched into the cache tier if needed; empty when the key
+     * does not exist.
+     */
+    Optional<Path> localFile(String key) throws IOException;
+
+    /**
+     * A time-limited URL clients can read the object from directly, for stores that have one.
+     */
+    default Optional<URI> presignedGet(String key, Duration ttl) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,32 @@
+package hairmony.serviceInterfaces;
+
+import java.util.List;
+
+/**
+ * Bounded-size copies of uploaded pictures (thumbnail, medium) for listings and profile views.
+ * The original stays the reference: a variant that is not generated yet resolves to the original.
+ */
+public interface ImageVariantServiceInf {
+
+    /**
+     * Queue the variants of a stored upload ("uploads/&lt;file&gt;", "uploads/ab/cd/&lt;file&gt;") for generation;
+     * returns at once.
+     */
+    void generateVariants(String storedPath);
+
+    /**
+     * Deletes the variants of a stored upload, e.g. once the upload itself was deleted.
+     */
+    void deleteVariants(String storedPath);
+
+    /**
+     * File name of a variant, relative to the uploads directory ("variants/&lt;file&gt;.thumb.jpg"),
+     * or null for an unknown size. The file may not exist yet.
+     */
+    String variantFileName(String fileName, String size);
+
+    /**
+     * The ?size= values /uploads/** accepts, smallest first.
+     */
+    List<String> sizes();
+}
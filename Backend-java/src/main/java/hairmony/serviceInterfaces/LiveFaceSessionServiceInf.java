@@ -0,0 +1,16 @@
+package hairmony.serviceInterfaces;
+
+import hairmony.dto.LiveFaceUpdate;
+import hairmony.service.LiveFaceSession;
+
+public interface LiveFaceSessionServiceInf {
+
+    LiveFaceSession openSession();
+
+    /**
+     * Analyze one webcam frame of a live session.
+     * Returns null when the result did not change enough to be worth pushing to the client.
+     * Frames of one session must be processed one at a time.
+     */
+    LiveFaceUpdate processFrame(LiveFaceSession session, byte[] frame);
+}
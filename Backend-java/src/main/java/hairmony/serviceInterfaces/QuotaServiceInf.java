@@ -0,0 +1,56 @@
+package hairmony.serviceInterfaces;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Per-user trial quota of the paid AI features. A use is taken before the analysis runs and given
+ * back when the analysis fails, each as a single conditional UPDATE.
+ */
+public interface QuotaServiceInf {
+
+    /**
+     * Takes one use of the feature.
+     *
+     * @throws hairmony.exceptions.PaymentRequiredException when the user has none left
+     */
+    Grant consume(Long userId, Feature feature);
+
+    /**
+     * Returns a use taken by {@link #consume}; nothing to do for unlimited users.
+     */
+    void refund(Long userId, Feature feature, Grant grant);
+
+    enum Grant {
+        CHARGED,
+        UNLIMITED
+    }
+
+    enum Feature {
+        UPLOAD("upload", 2.0, "Pay $2 for another upload"),
+        LIVE("live", 5.0, "Pay $5 to use Live Detection");
+
+        private final String key;
+        private final double price;
+        private final String paymentMessage;
+
+        Feature(String key, double price, String paymentMessage) {
+            this.key = key;
+            this.price = price;
+            this.paymentMessage = paymentMessage;
+        }
+
+        public double price() {
+            return price;
+        }
+
+        public String paymentMessage() {
+            return paymentMessage;
+        }
+
+        // The ?feature= values of /usage/check
+        public static Optional<Feature> of(String key) {
+            return Arrays.stream(values()).filter(f -> f.key.equals(key)).findFirst();
+        }
+    }
+}
@@ -6,20 +6,25 @@ import hairmony.entities.Haircuts;
 import hairmony.repository.HaircutRepository;
 import hairmony.serviceInterfaces.IFaceDetection;
 import hairmony.serviceInterfaces.IFaceShapeDetector;
-import org.bytedeco.opencv.opencv_core.Mat;
-import org.bytedeco.opencv.opencv_core.Rect;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bytedeco.opencv.opencv_core.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.Mockito.*;
 
 class AIServiceImplTest {
@@ -27,19 +32,30 @@ class AIServiceImplTest {
     private IFaceDetection faceDetection;
     private IFaceShapeDetector faceShapeDetector;
     private HaircutRepository haircutRepository;
+    private IForeheadTipProvider foreheadTipProvider;
+    private ForeheadSidecarGuard foreheadSidecar;
     private AIServiceImpl aiService;
+    private SimpleMeterRegistry registry;
+    private FaceAnalysisMetrics metrics;
+    private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private static final ExecutorService sidecarExecutor = Executors.newCachedThreadPool();
+    private static final UploadBufferPool uploadBuffers = new UploadBufferPool(2, 1 << 20, 1 << 20, 1_000);
 
     @BeforeEach
     void setUp() {
         faceDetection = Mockito.mock(IFaceDetection.class);
         faceShapeDetector = Mockito.mock(IFaceShapeDetector.class);
         haircutRepository = Mockito.mock(HaircutRepository.class);
+        foreheadTipProvider = Mockito.mock(IForeheadTipProvider.class);
+        registry = new SimpleMeterRegistry();
+        metrics = new FaceAnalysisMetrics(registry);
+        foreheadSidecar = new ForeheadSidecarGuard(foreheadTipProvider, sidecarExecutor, registry, 2_000, 4, 5, 10_000);
 
         // Provide a custom subclass that overrides decodeMat(...) and getForeheadTipFromPython(...)
-        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, haircutRepository) {
+        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, new HaircutCatalog(haircutRepository), foreheadSidecar, new FaceAnalysisCache(1 << 20, 60), uploadBuffers, metrics, executor) {
 
             @Override
-            protected Mat decodeMat(byte[] bytes) {
+            protected Mat decodeMat(Mat encoded, int flags) {
                 // Instead of actually decoding, just return a 100x100 color Mat
                 // so that it’s never empty => simulates a valid decode
                 return new Mat(100, 100, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
@@ -55,11 +71,78 @@ class AIServiceImplTest {
 
 
 
+    @Test
+    @DisplayName("The upload buffer is back in the pool once decoded, before the sidecar call")
+    void testUploadBufferReleasedAfterDecode() throws IOException {
+        int[] buffersInUse = new int[1];
+        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, new HaircutCatalog(haircutRepository), foreheadSidecar, new FaceAnalysisCache(1 << 20, 60), uploadBuffers, metrics, executor) {
+            @Override
+            protected Mat decodeMat(Mat encoded, int flags) {
+                return new Mat(100, 100, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+            }
+
+            @Override
+            protected PointDTO getForeheadTipFromPython(byte[] imageBytes) {
+                buffersInUse[0] = uploadBuffers.stats().inUse();
+                return new PointDTO(120.0, 60.0);
+            }
+        };
+        MultipartFile mockFile = Mockito.mock(MultipartFile.class);
+        when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[]{7, 7, 7}));
+        when(faceDetection.detectFace(any(Mat.class))).thenReturn(new Rect(10, 10, 50, 50));
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class)))
+                .thenReturn(new Point2fVectorVector(new Point2fVector(new Point2f(1, 1))));
+        when(faceShapeDetector.classifyFaceShape(any(), any(), anyDouble(), anyDouble()))
+                .thenReturn(new IFaceShapeDetector.ClassificationResult("Oval", 0, 0));
+
+        aiService.analyzeFace(mockFile);
+
+        verify(faceDetection).detectFace(any(Mat.class));
+        assertEquals(0, buffersInUse[0]);
+        assertEquals(0, uploadBuffers.stats().inUse());
+    }
+
+    @Test
+    @DisplayName("A cached result gets the hairstyles of the catalog as it is now, not as it was when cached")
+    void testCachedResultFollowsCatalog() {
+        Haircuts fade = new Haircuts("Fade", "", 20, "Oval", null);
+        fade.setId(1L);
+        when(haircutRepository.findAll()).thenReturn(Collections.singletonList(fade));
+        HaircutCatalog catalog = new HaircutCatalog(haircutRepository);
+        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, catalog, foreheadSidecar, new FaceAnalysisCache(1 << 20, 60), uploadBuffers, metrics, executor) {
+            @Override
+            protected Mat decodeMat(Mat encoded, int flags) {
+                return new Mat(100, 100, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+            }
+
+            @Override
+            protected PointDTO getForeheadTipFromPython(byte[] imageBytes) {
+                return new PointDTO(120.0, 60.0);
+            }
+        };
+        when(faceDetection.detectFace(any(Mat.class))).thenReturn(new Rect(10, 10, 50, 50));
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class)))
+                .thenReturn(new Point2fVectorVector(new Point2fVector(new Point2f(1, 1))));
+        when(faceShapeDetector.classifyFaceShape(any(), any(), anyDouble(), anyDouble()))
+                .thenReturn(new IFaceShapeDetector.ClassificationResult("Oval", 0, 0));
+        byte[] image = {4, 2};
+
+        assertEquals(Collections.singletonList("Fade"), aiService.analyzeFace(image).hairstyles());
+
+        Haircuts quiff = new Haircuts("Quiff", "", 30, "Oval", null);
+        quiff.setId(2L);
+        catalog.put(quiff);
+        catalog.remove(1L);
+        assertEquals(Collections.singletonList("Quiff"), aiService.analyzeFace(image).hairstyles());
+        verify(faceDetection, times(1)).detectFace(any(Mat.class));   // the second call was a cache hit
+        assertEquals(2, registry.timer("ai.analysis.stage", "stage", "hairstyles").count());
+    }
+
     @Test
     @DisplayName("No face detected => returns shape=No face detected")
     void testNoFaceDetected() throws IOException {
         MultipartFile mockFile = Mockito.mock(MultipartFile.class);
-        when(mockFile.getBytes()).thenReturn(new byte[200]);
+        when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[200]));
 
         // Force detectFace to return null => no face
         when(faceDetection.detectFace(any(Mat.class))).thenReturn(null);
@@ -67,15 +150,17 @@ class AIServiceImplTest {
         FaceAnalysisResponse response = aiService.analyzeFace(mockFile);
         assertEquals("No face detected", response.shape());
         assertTrue(response.hairstyles().isEmpty());
+        assertEquals(1, registry.counter("ai.analysis.outcomes", "outcome", "no_face").count());
+        assertEquals(1, registry.timer("ai.analysis.stage", "stage", "detect").count());
     }
 
     @Test
     @DisplayName("If we override getForeheadTipFromPython to return null => 'Failed to get forehead tip'")
     void testForeheadTipNull() throws IOException {
         // Rebuild aiService but override getForeheadTipFromPython => null
-        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, haircutRepository) {
+        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, new HaircutCatalog(haircutRepository), foreheadSidecar, new FaceAnalysisCache(1 << 20, 60), uploadBuffers, metrics, executor) {
             @Override
-            protected Mat decodeMat(byte[] bytes) {
+            protected Mat decodeMat(Mat encoded, int flags) {
                 return new Mat(100, 100, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
             }
 
@@ -86,21 +171,122 @@ class AIServiceImplTest {
         };
 
         MultipartFile mockFile = Mockito.mock(MultipartFile.class);
-        when(mockFile.getBytes()).thenReturn(new byte[200]);
+        when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[200]));
         when(faceDetection.detectFace(any(Mat.class))).thenReturn(new Rect(10,10,50,50));
 
         FaceAnalysisResponse response = aiService.analyzeFace(mockFile);
         assertEquals("Failed to get forehead tip from Python", response.shape());
+        assertEquals(1, registry.counter("ai.analysis.outcomes", "outcome", "sidecar_failure").count());
     }
 
     @Test
     @DisplayName("IOException => shape=Internal error")
     void testIOException() throws IOException {
         MultipartFile mockFile = Mockito.mock(MultipartFile.class);
-        when(mockFile.getBytes()).thenThrow(new IOException("Simulated IO error"));
+        when(mockFile.getInputStream()).thenThrow(new IOException("Simulated IO error"));
 
         FaceAnalysisResponse response = aiService.analyzeFace(mockFile);
         assertTrue(response.shape().contains("Internal error"));
     }
 
+    @Test
+    @DisplayName("No face detected => returns without waiting for a slow forehead call")
+    void testNoFaceCancelsForehead() throws IOException {
+        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, new HaircutCatalog(haircutRepository), foreheadSidecar, new FaceAnalysisCache(1 << 20, 60), uploadBuffers, metrics, executor) {
+            @Override
+            protected Mat decodeMat(Mat encoded, int flags) {
+                return new Mat(100, 100, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+            }
+
+            @Override
+            protected PointDTO getForeheadTipFromPython(byte[] imageBytes) {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+                return new PointDTO(120.0, 60.0);
+            }
+        };
+
+        MultipartFile mockFile = Mockito.mock(MultipartFile.class);
+        when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[200]));
+        when(faceDetection.detectFace(any(Mat.class))).thenReturn(null);
+
+        long start = System.nanoTime();
+        FaceAnalysisResponse response = aiService.analyzeFace(mockFile);
+        assertEquals("No face detected", response.shape());
+        assertTrue(java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+    }
+
+    @Test
+    @DisplayName("Forehead failure before detection finishes => landmark fitting never starts")
+    void testForeheadFailureSkipsLandmarks() throws IOException {
+        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, new HaircutCatalog(haircutRepository), foreheadSidecar, new FaceAnalysisCache(1 << 20, 60), uploadBuffers, metrics, executor) {
+            @Override
+            protected Mat decodeMat(Mat encoded, int flags) {
+                return new Mat(100, 100, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+            }
+
+            @Override
+            protected PointDTO getForeheadTipFromPython(byte[] imageBytes) {
+                return null;
+            }
+        };
+
+        MultipartFile mockFile = Mockito.mock(MultipartFile.class);
+        when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[200]));
+        when(faceDetection.detectFace(any(Mat.class))).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return new Rect(10, 10, 50, 50);
+        });
+
+        FaceAnalysisResponse response = aiService.analyzeFace(mockFile);
+        assertEquals("Failed to get forehead tip from Python", response.shape());
+        verify(faceShapeDetector, after(700).never()).detectLandmarks(any(Mat.class), any(Rect.class));
+    }
+
+    @Test
+    @DisplayName("Sidecar down => forehead tip estimated from the landmarks, response flagged degraded and not cached")
+    void testSidecarDownDegradesToLandmarkEstimate() throws IOException {
+        aiService = new AIServiceImpl(faceDetection, faceShapeDetector, new HaircutCatalog(haircutRepository), foreheadSidecar, new FaceAnalysisCache(1 << 20, 60), uploadBuffers, metrics, executor) {
+            @Override
+            protected Mat decodeMat(Mat encoded, int flags) {
+                return new Mat(600, 600, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+            }
+        };
+        when(foreheadTipProvider.detectForeheadTip(any())).thenThrow(new IllegalStateException("connection refused"));
+        when(faceDetection.detectFace(any(Mat.class))).thenAnswer(invocation -> new Rect(150, 150, 300, 300));
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class))).thenAnswer(invocation -> landmarks());
+        when(faceShapeDetector.classifyFaceShape(any(), any(), anyDouble(), anyDouble()))
+                .thenReturn(new IFaceShapeDetector.ClassificationResult("Oval", 0, 0));
+
+        for (int i = 0; i < 2; i++) {
+            MultipartFile mockFile = Mockito.mock(MultipartFile.class);
+            when(mockFile.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[200]));
+            FaceAnalysisResponse response = aiService.analyzeFace(mockFile);
+
+            assertEquals("Oval", response.shape());
+            assertTrue(response.degraded());
+            // Brows at y=200, chin at y=500 => hairline half the brow-to-chin distance above the brows
+            assertEquals(300.0, response.foreheadTip().x(), 1e-3);
+            assertEquals(50.0, response.foreheadTip().y(), 1e-3);
+        }
+        // Same bytes twice, yet both ran the pipeline: degraded results are not cached
+        verify(foreheadTipProvider, times(2)).detectForeheadTip(any());
+        assertEquals(2, registry.counter("ai.analysis.forehead.fallbacks").count());
+        assertEquals(2, registry.counter("ai.forehead.calls", "result", "failure").count());
+    }
+
+    // 68 points on a vertical line pattern: inner brows (21, 22) at (290|310, 200), chin (8) at (300, 500)
+    private static Point2fVectorVector landmarks() {
+        Point2f[] points = new Point2f[68];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point2f(300, 350);
+        }
+        points[8] = new Point2f(300, 500);
+        points[21] = new Point2f(290, 200);
+        points[22] = new Point2f(310, 200);
+        return new Point2fVectorVector(new Point2fVector(points));
+    }
 }
@@ -0,0 +1,135 @@
+package hairmony.service;
+
+import hairmony.dto.AnalysisJobStatus;
+import hairmony.dto.FaceAnalysisResponse;
+import hairmony.exceptions.JobQueueFullException;
+import hairmony.serviceInterfaces.AIServiceInf;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+class AnalysisJobServiceImplTest {
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(2), new ThreadPoolExecutor.AbortPolicy());
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AIServiceInf aiService = Mockito.mock(AIServiceInf.class);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private AnalysisJobServiceImpl service() {
+        return new AnalysisJobServiceImpl(aiService, executor, registry, 1 << 20, 600, 5_000);
+    }
+
+    private static MockMultipartFile image(int marker) {
+        return new MockMultipartFile("file", "face.jpg", "image/jpeg", new byte[]{(byte) marker});
+    }
+
+    @Test
+    @DisplayName("Submit returns QUEUED at once; a long poll returns the result when the job is done")
+    void testSubmitAndLongPoll() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(aiService.analyzeFace(any(byte[].class))).thenAnswer(invocation -> {
+            release.await();
+            return new FaceAnalysisResponse("Oval", List.of("Quiff"), List.of(), null, null);
+        });
+        AnalysisJobServiceImpl jobs = service();
+
+        AnalysisJobStatus submitted = jobs.submit(image(1), "alice");
+        assertEquals("QUEUED", submitted.status());
+
+        CompletableFuture<AnalysisJobStatus> poll = jobs.await(submitted.id(), "alice", Duration.ofSeconds(5)).orElseThrow();
+        assertFalse(poll.isDone());
+        release.countDown();
+
+        AnalysisJobStatus done = poll.get(5, TimeUnit.SECONDS);
+        assertEquals("DONE", done.status());
+        assertEquals("Oval", done.result().shape());
+        assertEquals("DONE", jobs.get(submitted.id(), "alice").orElseThrow().status());
+        assertEquals(1.0, registry.counter("ai.jobs.finished", "status", "done").count());
+        assertEquals(1, registry.timer("ai.jobs.wait").count());
+    }
+
+    @Test
+    @DisplayName("Long poll on a running job returns its current state when the wait runs out")
+    void testLongPollTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(aiService.analyzeFace(any(byte[].class))).thenAnswer(invocation -> {
+            release.await();
+            return new FaceAnalysisResponse("Oval", List.of(), List.of(), null, null);
+        });
+        AnalysisJobServiceImpl jobs = service();
+        AnalysisJobStatus submitted = jobs.submit(image(1), "alice");
+
+        AnalysisJobStatus status = jobs.await(submitted.id(), "alice", Duration.ofMillis(100)).orElseThrow()
+                .get(5, TimeUnit.SECONDS);
+        assertNotEquals("DONE", status.status());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("Full queue => JobQueueFullException with a Retry-After estimate, and the rejection is counted")
+    void testQueueFullIsRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(aiService.analyzeFace(any(byte[].class))).thenAnswer(invocation -> {
+            release.await();
+            return new FaceAnalysisResponse("Oval", List.of(), List.of(), null, null);
+        });
+        AnalysisJobServiceImpl jobs = service();
+
+        // 1 running + 2 queued fill the executor
+        jobs.submit(image(1), "alice");
+        while (executor.getActiveCount() == 0) {
+            Thread.sleep(5);
+        }
+        jobs.submit(image(2), "alice");
+        jobs.submit(image(3), "alice");
+
+        JobQueueFullException e = assertThrows(JobQueueFullException.class, () -> jobs.submit(image(4), "alice"));
+        assertTrue(e.getRetryAfterSeconds() >= 1 && e.getRetryAfterSeconds() <= 60);
+        assertEquals(1.0, registry.counter("ai.jobs.rejected").count());
+        assertEquals(2, jobs.stats().get("queueDepth"));
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("A failing job reports a generic error, not the exception's message")
+    void testFailureHidesDetails() throws Exception {
+        when(aiService.analyzeFace(any(byte[].class)))
+                .thenThrow(new IllegalStateException("/opt/models/lbfmodel.yaml: cv::Exception at 0x7f3a"));
+        AnalysisJobServiceImpl jobs = service();
+        AnalysisJobStatus submitted = jobs.submit(image(1), "alice");
+
+        AnalysisJobStatus failed = jobs.await(submitted.id(), "alice", Duration.ofSeconds(5)).orElseThrow()
+                .get(5, TimeUnit.SECONDS);
+        assertEquals("FAILED", failed.status());
+        assertEquals("Analysis failed, please try again", failed.error());
+    }
+
+    @Test
+    @DisplayName("Jobs are only visible to the user who submitted them")
+    void testOwnerIsolation() {
+        when(aiService.analyzeFace(any(byte[].class)))
+                .thenReturn(new FaceAnalysisResponse("Oval", List.of(), List.of(), null, null));
+        AnalysisJobServiceImpl jobs = service();
+        AnalysisJobStatus submitted = jobs.submit(image(1), "alice");
+
+        assertTrue(jobs.get(submitted.id(), "bob").isEmpty());
+        assertTrue(jobs.await(submitted.id(), "bob", Duration.ofMillis(10)).isEmpty());
+        assertTrue(jobs.get("no-such-job", "alice").isEmpty());
+    }
+}
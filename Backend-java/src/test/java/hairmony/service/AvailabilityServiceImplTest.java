@@ -0,0 +1,418 @@
+package hairmony.service;
+
+import hairmony.dto.AvailabilityDTO;
+import hairmony.dto.ReservationRequestDTO;
+import hairmony.entities.Barber;
+import hairmony.entities.Barbershop;
+import hairmony.entities.Client;
+import hairmony.entities.Reservation;
+import hairmony.entities.WorkingHours;
+import hairmony.exceptions.InvalidScheduleException;
+import hairmony.exceptions.PaymentRequiredException;
+import hairmony.exceptions.ScheduleConflictException;
+import hairmony.exceptions.SlotUnavailableException;
+import hairmony.repository.BarberRepository;
+import hairmony.repository.BarbershopRepository;
+import hairmony.repository.ClientRepository;
+import hairmony.serviceInterfaces.NotificationServiceInf;
+import hairmony.serviceInterfaces.ReservationServiceInf;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Default hours (availability.default-hours): 09:00-18:00, break 12:00-13:00, closed on Sunday; 15-minute
+ * slots, 30-minute appointments.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({AvailabilityServiceImpl.class, ReservationServiceImpl.class, MonthlyUsageLedger.class})
+// Every booking must commit on its own, as in production, so no test-wide transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AvailabilityServiceImplTest {
+
+    private static final int THREADS = 16;
+    // Strictly after today, so every slot of these days is still ahead
+    private static final LocalDate TUESDAY = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.TUESDAY));
+    private static final LocalDate WEDNESDAY = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.WEDNESDAY));
+    private static final LocalDate SUNDAY = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.SUNDAY));
+
+    @Autowired
+    private AvailabilityServiceImpl availabilityService;
+    @Autowired
+    private ReservationServiceInf reservationService;
+    @Autowired
+    private MonthlyUsageLedger monthlyUsageLedger;
+    @Autowired
+    private ClientRepository clientRepository;
+    @Autowired
+    private BarberRepository barberRepository;
+    @Autowired
+    private BarbershopRepository barbershopRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private HaircutCatalog haircutCatalog;
+    @MockBean
+    private NotificationServiceInf notificationService;
+
+    private Client client() {
+        Client client = new Client("client-" + UUID.randomUUID(), "secret", "CLIENT", null, null);
+        client.setVIPSubscriber(true);
+        return clientRepository.save(client);
+    }
+
+    private Barber barber() {
+        return barberRepository.save(new Barber("barber-" + UUID.randomUUID(), "secret", "BARBER", null, "fades", 4.5));
+    }
+
+    /**
+     * Books and returns the saved reservation's status; a taken or invalid slot throws.
+     */
+    private String book(Client client, Barber barber, LocalDate date, LocalTime time) {
+        ReservationRequestDTO dto = new ReservationRequestDTO();
+        dto.setClientId(client.getId());
+        dto.setBarberId(barber.getId());
+        dto.setDate(date);
+        dto.setTime(time);
+        dto.setHairstyleChosen("Buzz cut");
+        try {
+            return reservationService.createReservation(dto).getStatus();
+        } catch (PaymentRequiredException e) {
+            return "PENDING_PAYMENT";
+        }
+    }
+
+    private void insert(Barber barber, LocalDate date, LocalTime time, String status) {
+        insert(barber, date, time, status, null);
+    }
+
+    private void insert(Barber barber, LocalDate date, LocalTime time, String status, LocalDateTime heldAt) {
+        jdbcTemplate.update("INSERT INTO reservations (date, time, hairstyle_chosen, client_id, barber_id, status, held_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", Date.valueOf(date), Time.valueOf(time), "Buzz cut",
+                client().getId(), barber.getId(), status, heldAt == null ? null : Timestamp.valueOf(heldAt));
+    }
+
+    private String status(Barber barber, LocalTime time) {
+        return jdbcTemplate.queryForObject("SELECT status FROM reservations WHERE barber_id = ? AND time = ?",
+                String.class, barber.getId(), Time.valueOf(time));
+    }
+
+    private List<LocalTime> free(Barber barber, LocalDate date) {
+        return availabilityService.getAvailability(barber.getId(), date, date).days().get(0).freeSlots();
+    }
+
+    private static List<LocalTime> quarters(String from, String to) {
+        List<LocalTime> times = new ArrayList<>();
+        for (LocalTime time = LocalTime.parse(from); !time.isAfter(LocalTime.parse(to)); time = time.plusMinutes(15)) {
+            times.add(time);
+        }
+        return times;
+    }
+
+    @Test
+    @DisplayName("Free starts are the working hours minus the break and the 30 minutes around each booking")
+    void testFreeSlots() {
+        Barber barber = barber();
+        assertEquals(concat(quarters("09:00", "11:30"), quarters("13:00", "17:30")), free(barber, TUESDAY));
+
+        assertEquals("CONFIRMED", book(client(), barber, TUESDAY, LocalTime.of(10, 0)));
+        // 09:45 and 10:15 would overlap the 10:00-10:30 appointment
+        assertEquals(concat(quarters("09:00", "09:30"), quarters("10:30", "11:30"), quarters("13:00", "17:30")),
+                free(barber, TUESDAY));
+        assertEquals(List.of(), free(barber, SUNDAY));
+
+        AvailabilityDTO week = availabilityService.getAvailability(barber.getId(), TUESDAY, TUESDAY.plusDays(6));
+        assertEquals(7, week.days().size());
+        assertEquals(15, week.slotMinutes());
+        assertEquals(30, week.appointmentMinutes());
+        AvailabilityDTO capped = availabilityService.getAvailability(barber.getId(), TUESDAY, TUESDAY.plusYears(1));
+        assertEquals(31, capped.days().size());
+        AvailabilityDTO fromPast = availabilityService.getAvailability(barber.getId(), LocalDate.now().minusDays(3), null);
+        assertEquals(LocalDate.now(), fromPast.days().get(0).date());
+    }
+
+    @SafeVarargs
+    private static List<LocalTime> concat(List<LocalTime>... lists) {
+        List<LocalTime> all = new ArrayList<>();
+        for (List<LocalTime> list : lists) {
+            all.addAll(list);
+        }
+        return all;
+    }
+
+    @Test
+    @DisplayName("Bookings are refused on taken, overlapping, off-grid, closed or past slots, and cancelling frees the slot")
+    void testBookingValidatesSlot() {
+        Barber barber = barber();
+        Client first = client();
+        Client second = client();
+        assertEquals("CONFIRMED", book(first, barber, TUESDAY, LocalTime.of(10, 0)));
+
+        for (LocalTime time : List.of(LocalTime.of(10, 0), LocalTime.of(10, 15), LocalTime.of(9, 45),
+                LocalTime.of(10, 7), LocalTime.of(12, 0), LocalTime.of(17, 45), LocalTime.of(8, 30))) {
+            assertThrows(SlotUnavailableException.class, () -> book(second, barber, TUESDAY, time), time.toString());
+        }
+        assertThrows(SlotUnavailableException.class, () -> book(second, barber, SUNDAY, LocalTime.of(10, 0)));
+        assertThrows(SlotUnavailableException.class, () -> book(second, barber, LocalDate.now().minusDays(1), LocalTime.of(10, 0)));
+        assertThrows(SlotUnavailableException.class, () -> book(second, barber, null, null));
+        // Refused bookings neither saved a reservation nor used a free haircut
+        assertTrue(reservationService.getReservationsByClient(second.getId()).isEmpty());
+        assertEquals(0, monthlyUsageLedger.confirmedIn(second.getId(), YearMonth.from(TUESDAY)));
+
+        // Another barber is free at that time
+        assertEquals("CONFIRMED", book(second, barber(), TUESDAY, LocalTime.of(10, 0)));
+
+        Long reservationId = reservationService.getReservationsByClient(first.getId()).get(0).getId();
+        reservationService.updateStatus(reservationId, "CANCELLED");
+        assertTrue(free(barber, TUESDAY).contains(LocalTime.of(10, 0)));
+        assertEquals("CONFIRMED", book(second, barber, TUESDAY, LocalTime.of(10, 0)));
+        assertFalse(free(barber, TUESDAY).contains(LocalTime.of(10, 0)));
+    }
+
+    @Test
+    @DisplayName("Overlapping reservations are counted apart: freeing one keeps the other's slots taken")
+    void testOverlappingReservations() {
+        Barber barber = barber();
+        Client first = client();
+        Client second = client();
+        assertEquals("CONFIRMED", book(first, barber, TUESDAY, LocalTime.of(14, 0)));
+        Long firstId = reservationService.getReservationsByClient(first.getId()).get(0).getId();
+        reservationService.updateStatus(firstId, "CANCELLED");
+        assertEquals("CONFIRMED", book(second, barber, TUESDAY, LocalTime.of(14, 0)));
+        Long secondId = reservationService.getReservationsByClient(second.getId()).get(0).getId();
+
+        // Staff put the first one back over the rebooked slot, then the second one is cancelled
+        reservationService.updateStatus(firstId, "CONFIRMED");
+        reservationService.updateStatus(secondId, "CANCELLED");
+        assertFalse(free(barber, TUESDAY).contains(LocalTime.of(14, 0)));
+        reservationService.updateStatus(firstId, "CANCELLED");
+        assertTrue(free(barber, TUESDAY).contains(LocalTime.of(14, 0)));
+
+        // Off the grid: 10:00 takes 10:00-10:30, 10:20 takes 10:15-11:00
+        Barber other = barber();
+        insert(other, WEDNESDAY, LocalTime.of(10, 0), "CONFIRMED");
+        insert(other, WEDNESDAY, LocalTime.of(10, 20), "CONFIRMED");
+        Long early = reservationService.getReservationsByBarber(other.getId()).stream()
+                .filter(r -> r.getTime().equals(LocalTime.of(10, 0))).findFirst().orElseThrow().getId();
+        reservationService.updateStatus(early, "CANCELLED");
+        List<LocalTime> wednesday = free(other, WEDNESDAY);
+        assertTrue(wednesday.contains(LocalTime.of(9, 45)));
+        assertFalse(wednesday.contains(LocalTime.of(10, 0)));
+        assertFalse(wednesday.contains(LocalTime.of(10, 15)));
+        assertTrue(wednesday.contains(LocalTime.of(11, 0)));
+    }
+
+    @Test
+    @DisplayName("Parallel bookings of one slot: exactly one gets it")
+    void testParallelBookingsOfOneSlot() throws Exception {
+        Barber barber = barber();
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            clients.add(client());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        int booked = 0;
+        int refused = 0;
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<>();
+            for (Client client : clients) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return book(client, barber, WEDNESDAY, LocalTime.of(15, 0));
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                try {
+                    future.get(30, TimeUnit.SECONDS);
+                    booked++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(SlotUnavailableException.class, e.getCause());
+                    refused++;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, booked);
+        assertEquals(THREADS - 1, refused);
+        assertEquals(1, reservationService.getReservationsByBarber(barber.getId()).size());
+    }
+
+    @Test
+    @DisplayName("Availability is answered from memory: no statement once the barber's calendar is loaded")
+    void testServedFromMemory() {
+        Barber warm = barber();
+        insert(warm, WEDNESDAY, LocalTime.of(14, 0), "CONFIRMED");
+        insert(warm, WEDNESDAY, LocalTime.of(15, 0), "CANCELLED");
+        insert(warm, WEDNESDAY, LocalTime.of(16, 10), "PENDING_PAYMENT");   // off the grid: takes 16:00-16:45
+        availabilityService.warmUp();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        availabilityService.getAvailability(warm.getId(), null, LocalDate.now().plusDays(30));
+        List<LocalTime> wednesday = free(warm, WEDNESDAY);
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        assertFalse(wednesday.contains(LocalTime.of(13, 45)));
+        assertFalse(wednesday.contains(LocalTime.of(14, 0)));
+        assertTrue(wednesday.contains(LocalTime.of(14, 30)));
+        assertTrue(wednesday.contains(LocalTime.of(15, 0)));
+        assertFalse(wednesday.contains(LocalTime.of(16, 0)));
+        assertFalse(wednesday.contains(LocalTime.of(16, 30)));
+        assertTrue(wednesday.contains(LocalTime.of(16, 45)));
+
+        // A barber the warm-up did not see is loaded on first use, alone
+        Barber late = barber();
+        insert(late, WEDNESDAY, LocalTime.of(9, 0), "CONFIRMED");
+        statistics.clear();
+        assertFalse(free(late, WEDNESDAY).contains(LocalTime.of(9, 0)));
+        assertTrue(statistics.getPrepareStatementCount() > 0);
+        statistics.clear();
+        assertFalse(free(late, WEDNESDAY).contains(LocalTime.of(9, 0)));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("An unpaid reservation holds its slot for payment-hold-minutes, then is cancelled and the slot freed")
+    void testUnpaidHoldLapses() {
+        Barber barber = barber();
+        LocalDateTime longAgo = LocalDateTime.now().minusMinutes(31);
+        insert(barber, WEDNESDAY, LocalTime.of(9, 0), "PENDING_PAYMENT", longAgo);
+        insert(barber, WEDNESDAY, LocalTime.of(10, 0), "PENDING_PAYMENT", LocalDateTime.now());
+        insert(barber, WEDNESDAY, LocalTime.of(11, 0), "PENDING_PAYMENT", longAgo);
+        // The first read loads the barber's calendar along with the unpaid holds, all still taken
+        List<LocalTime> before = free(barber, WEDNESDAY);
+        assertFalse(before.contains(LocalTime.of(9, 0)));
+        // Paid after the holds were loaded but before they were cancelled: the payment wins
+        jdbcTemplate.update("UPDATE reservations SET status = 'CONFIRMED' WHERE barber_id = ? AND time = ?",
+                barber.getId(), Time.valueOf(LocalTime.of(11, 0)));
+
+        List<LocalTime> after = free(barber, WEDNESDAY);
+        assertTrue(after.contains(LocalTime.of(9, 0)));
+        assertEquals("CANCELLED", status(barber, LocalTime.of(9, 0)));
+        assertFalse(after.contains(LocalTime.of(10, 0)));
+        assertEquals("PENDING_PAYMENT", status(barber, LocalTime.of(10, 0)));
+        assertFalse(after.contains(LocalTime.of(11, 0)));
+        assertEquals("CONFIRMED", status(barber, LocalTime.of(11, 0)));
+
+        // A new unpaid booking is tracked from the moment it is made
+        assertEquals("PENDING_PAYMENT", book(clientWithoutFreeHaircuts(), barber, WEDNESDAY, LocalTime.of(14, 0)));
+        assertFalse(free(barber, WEDNESDAY).contains(LocalTime.of(14, 0)));
+    }
+
+    private Client clientWithoutFreeHaircuts() {
+        return clientRepository.save(new Client("client-" + UUID.randomUUID(), "secret", "CLIENT", null, null));
+    }
+
+    @Test
+    @DisplayName("A barber works their own hours, else their barbershop's, else the defaults")
+    void testWorkingHours() {
+        Barbershop shop = new Barbershop();
+        shop.setName("Corner cuts");
+        shop = barbershopRepository.save(shop);
+        Barber barber = barber();
+        barber.setBarbershop(shop);
+        barber = barberRepository.save(barber);
+        free(barber, TUESDAY);   // loaded before the hours change: they must reach the cached calendar
+
+        availabilityService.updateBarbershopHours(shop.getId(),
+                new WorkingHours(LocalTime.of(10, 0), LocalTime.of(14, 0), null, null, "tuesday"));
+        assertEquals(List.of(), free(barber, TUESDAY));
+        assertEquals(quarters("10:00", "13:30"), free(barber, WEDNESDAY));
+
+        WorkingHours own = availabilityService.updateBarberHours(barber.getId(),
+                new WorkingHours(LocalTime.of(20, 0), LocalTime.MIDNIGHT, null, null, null));
+        assertEquals(LocalTime.of(20, 0), own.getOpensAt());
+        assertEquals(quarters("20:00", "23:30"), free(barber, TUESDAY));
+        Client night = client();
+        assertEquals("CONFIRMED", book(night, barber, TUESDAY, LocalTime.of(23, 30)));
+
+        // The shop's hours would leave the 23:30 reservation out: refused until it is cancelled
+        Long nightBarberId = barber.getId();
+        assertThrows(ScheduleConflictException.class,
+                () -> availabilityService.updateBarberHours(nightBarberId, new WorkingHours()));
+        assertEquals(quarters("20:00", "23:00"), free(barber, TUESDAY));
+        assertEquals(LocalTime.of(20, 0), barberRepository.findById(nightBarberId).orElseThrow().getWorkingHours().getOpensAt());
+        Reservation reservation = reservationService.getReservationsByClient(night.getId()).get(0);
+        reservationService.updateStatus(reservation.getId(), "CANCELLED");
+
+        availabilityService.updateBarberHours(barber.getId(), new WorkingHours());   // back to the shop's
+        assertEquals(List.of(), free(barber, TUESDAY));
+        availabilityService.updateBarbershopHours(shop.getId(), null);              // back to the defaults
+        assertEquals(concat(quarters("09:00", "11:30"), quarters("13:00", "17:30")), free(barber, TUESDAY));
+
+        Long barberId = barber.getId();
+        assertThrows(InvalidScheduleException.class, () -> availabilityService.updateBarberHours(barberId,
+                new WorkingHours(LocalTime.of(18, 0), LocalTime.of(9, 0), null, null, null)));
+        assertThrows(InvalidScheduleException.class, () -> availabilityService.updateBarberHours(barberId,
+                new WorkingHours(LocalTime.of(9, 0), LocalTime.of(18, 0), LocalTime.of(12, 0), null, null)));
+        assertThrows(InvalidScheduleException.class, () -> availabilityService.updateBarberHours(barberId,
+                new WorkingHours(LocalTime.of(9, 0), LocalTime.of(18, 0), null, null, "Caturday")));
+    }
+
+    @Test
+    @DisplayName("Shop hours that would leave a following barber's reservation out are refused; barbers with their own hours don't count")
+    void testShopHoursKeepReservations() {
+        Barbershop shop = new Barbershop();
+        shop.setName("Late cuts");
+        shop = barbershopRepository.save(shop);
+        Barber following = barber();
+        following.setBarbershop(shop);
+        following = barberRepository.save(following);
+        Barber own = barber();
+        own.setBarbershop(shop);
+        own = barberRepository.save(own);
+        availabilityService.updateBarberHours(own.getId(),
+                new WorkingHours(LocalTime.of(9, 0), LocalTime.of(18, 0), null, null, null));
+        assertEquals("CONFIRMED", book(client(), own, TUESDAY, LocalTime.of(17, 0)));
+        Client client = client();
+        assertEquals("CONFIRMED", book(client, following, TUESDAY, LocalTime.of(16, 0)));
+
+        Long shopId = shop.getId();
+        WorkingHours mornings = new WorkingHours(LocalTime.of(9, 0), LocalTime.of(14, 0), null, null, null);
+        assertThrows(ScheduleConflictException.class, () -> availabilityService.updateBarbershopHours(shopId, mornings));
+        assertNull(barbershopRepository.findById(shopId).orElseThrow().getWorkingHours());
+        assertTrue(free(following, WEDNESDAY).contains(LocalTime.of(16, 0)));
+
+        Reservation reservation = reservationService.getReservationsByClient(client.getId()).get(0);
+        reservationService.updateStatus(reservation.getId(), "CANCELLED");
+        availabilityService.updateBarbershopHours(shopId, mornings);
+        assertEquals(quarters("09:00", "13:30"), free(following, WEDNESDAY));
+        assertTrue(free(own, WEDNESDAY).contains(LocalTime.of(17, 0)));
+    }
+}
@@ -0,0 +1,185 @@
+package hairmony.service;
+
+import hairmony.dto.BatchAnalysisItem;
+import hairmony.dto.FaceAnalysisResponse;
+import hairmony.dto.RectDTO;
+import hairmony.exceptions.PaymentRequiredException;
+import hairmony.exceptions.TooManyBatchesException;
+import hairmony.serviceInterfaces.AIServiceInf;
+import hairmony.serviceInterfaces.BatchAnalysisServiceInf.BatchSlot;
+import hairmony.serviceInterfaces.QuotaServiceInf;
+import hairmony.serviceInterfaces.QuotaServiceInf.Feature;
+import hairmony.serviceInterfaces.QuotaServiceInf.Grant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BatchAnalysisServiceImplTest {
+
+    private static final Long USER = 7L;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final QuotaServiceInf quotaService = Mockito.mock(QuotaServiceInf.class);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Every image yields exactly one item and a batch never exceeds its in-flight limit")
+    void testBackpressure() {
+        AIServiceInf aiService = Mockito.mock(AIServiceInf.class);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(aiService.analyzeFace(any(byte[].class))).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            running.decrementAndGet();
+            byte[] bytes = invocation.getArgument(0);
+            return new FaceAnalysisResponse("Oval-" + bytes[0], List.of(), List.of(), null, null);
+        });
+
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            files.add(new MockMultipartFile("files", "img" + i + ".jpg", "image/jpeg", new byte[]{(byte) i}));
+        }
+
+        BatchAnalysisServiceImpl service = new BatchAnalysisServiceImpl(aiService, quotaService, executor, 3, 2);
+        List<BatchAnalysisItem> items = Collections.synchronizedList(new ArrayList<>());
+        service.analyzeBatch(USER, files, items::add);
+
+        assertEquals(60, items.size());
+        assertTrue(maxRunning.get() <= 3, "max concurrent analyses was " + maxRunning.get());
+        Set<Integer> indexes = new HashSet<>();
+        for (BatchAnalysisItem item : items) {
+            assertTrue(indexes.add(item.index()));
+            assertEquals("img" + item.index() + ".jpg", item.filename());
+            assertEquals("Oval-" + item.index(), item.result().shape());
+        }
+    }
+
+    @Test
+    @DisplayName("A broken or empty file becomes a per-item error, the rest of the batch still succeeds")
+    void testPerItemErrors() throws IOException {
+        AIServiceInf aiService = Mockito.mock(AIServiceInf.class);
+        when(aiService.analyzeFace(any(byte[].class)))
+                .thenReturn(new FaceAnalysisResponse("Round", List.of(), List.of(), null, null));
+
+        MultipartFile broken = Mockito.mock(MultipartFile.class);
+        when(broken.getOriginalFilename()).thenReturn("broken.jpg");
+        when(broken.getBytes()).thenThrow(new IOException("disk gone"));
+
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "ok.jpg", "image/jpeg", new byte[]{1}),
+                broken,
+                new MockMultipartFile("files", "empty.jpg", "image/jpeg", new byte[0])
+        );
+
+        Map<Integer, BatchAnalysisItem> byIndex = new ConcurrentHashMap<>();
+        new BatchAnalysisServiceImpl(aiService, quotaService, executor, 2, 2).analyzeBatch(USER, files, item -> byIndex.put(item.index(), item));
+
+        assertEquals("Round", byIndex.get(0).result().shape());
+        assertEquals("Analysis failed, please try again", byIndex.get(1).error());
+        assertEquals("Empty file", byIndex.get(2).error());
+    }
+
+    @Test
+    @DisplayName("A failing sink (client disconnected) stops the batch")
+    void testSinkFailureStops() {
+        AIServiceInf aiService = Mockito.mock(AIServiceInf.class);
+        AtomicInteger analyzed = new AtomicInteger();
+        when(aiService.analyzeFace(any(byte[].class))).thenAnswer(invocation -> {
+            analyzed.incrementAndGet();
+            return new FaceAnalysisResponse("Round", List.of(), List.of(), null, null);
+        });
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            files.add(new MockMultipartFile("files", "img" + i + ".jpg", "image/jpeg", new byte[]{1}));
+        }
+
+        BatchAnalysisServiceImpl service = new BatchAnalysisServiceImpl(aiService, quotaService, executor, 2, 2);
+        assertThrows(IllegalStateException.class, () -> service.analyzeBatch(USER, files, item -> {
+            throw new IllegalStateException("client gone");
+        }));
+        assertTrue(analyzed.get() < 100);
+    }
+
+    @Test
+    @DisplayName("A user gets at most max-concurrent-per-user batch slots at once, other users are not affected")
+    void testPerUserBatchLimit() {
+        BatchAnalysisServiceImpl service =
+                new BatchAnalysisServiceImpl(Mockito.mock(AIServiceInf.class), quotaService, executor, 2, 2);
+
+        BatchSlot first = service.reserve(1L);
+        BatchSlot second = service.reserve(1L);
+        assertThrows(TooManyBatchesException.class, () -> service.reserve(1L));
+        service.reserve(2L).close();
+
+        first.close();
+        first.close();   // closing twice gives back one slot only
+        BatchSlot third = service.reserve(1L);
+        assertThrows(TooManyBatchesException.class, () -> service.reserve(1L));
+
+        second.close();
+        third.close();
+        service.reserve(1L).close();
+    }
+
+    @Test
+    @DisplayName("Each image takes one upload, given back when it is not analyzed; past the quota items carry the payment message")
+    void testChargedPerItem() {
+        AIServiceInf aiService = Mockito.mock(AIServiceInf.class);
+        when(aiService.analyzeFace(any(byte[].class))).thenAnswer(invocation -> {
+            byte[] bytes = invocation.getArgument(0);
+            return bytes[0] == 0
+                    ? new FaceAnalysisResponse("No face detected", List.of(), List.of(), null, null)
+                    : new FaceAnalysisResponse("Oval", List.of(), List.of(), new RectDTO(0, 0, 10, 10), null);
+        });
+        AtomicInteger left = new AtomicInteger(3);
+        when(quotaService.consume(USER, Feature.UPLOAD)).thenAnswer(invocation -> {
+            if (left.getAndDecrement() <= 0) {
+                throw new PaymentRequiredException(Feature.UPLOAD.paymentMessage(), null, Feature.UPLOAD.price());
+            }
+            return Grant.CHARGED;
+        });
+
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "face.jpg", "image/jpeg", new byte[]{1}),
+                new MockMultipartFile("files", "noface.jpg", "image/jpeg", new byte[]{0}),
+                new MockMultipartFile("files", "empty.jpg", "image/jpeg", new byte[0]),
+                new MockMultipartFile("files", "face2.jpg", "image/jpeg", new byte[]{2}),
+                new MockMultipartFile("files", "late.jpg", "image/jpeg", new byte[]{3}),
+                new MockMultipartFile("files", "later.jpg", "image/jpeg", new byte[]{4})
+        );
+        Map<Integer, BatchAnalysisItem> byIndex = new ConcurrentHashMap<>();
+        // One at a time, so which items find the quota empty is deterministic
+        new BatchAnalysisServiceImpl(aiService, quotaService, executor, 1, 2)
+                .analyzeBatch(USER, files, item -> byIndex.put(item.index(), item));
+
+        assertTrue(byIndex.get(0).result().analyzed());
+        assertFalse(byIndex.get(1).result().analyzed());
+        assertEquals("Empty file", byIndex.get(2).error());
+        assertTrue(byIndex.get(3).result().analyzed());
+        assertEquals(Feature.UPLOAD.paymentMessage(), byIndex.get(4).error());
+        assertEquals(Feature.UPLOAD.paymentMessage(), byIndex.get(5).error());
+
+        // face, noface, face2 charged, late refused; later refused without asking again
+        verify(quotaService, times(4)).consume(USER, Feature.UPLOAD);
+        verify(quotaService, times(1)).refund(eq(USER), eq(Feature.UPLOAD), eq(Grant.CHARGED));
+        verify(aiService, times(3)).analyzeFace(any(byte[].class));
+    }
+}
@@ -0,0 +1,83 @@
+package hairmony.service;
+
+import hairmony.dto.PointDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DjlForeheadTipProviderTest {
+
+    private static final String SIDECAR_URL = System.getProperty("ai.forehead.http.url", "http://localhost:5000/detect-forehead");
+    private static final String MODEL_PATH = System.getProperty("ai.forehead.djl.model-path", "models/face_mesh");
+
+    @Test
+    @DisplayName("Face crop: square around the face, grown by the margin")
+    void testFaceCrop() {
+        // 100x80 face at (200, 150): larger side 100, margin 0.25 => 150 square centred on (250, 190)
+        assertArrayEquals(new int[]{175, 115, 150, 150},
+                DjlForeheadTipProvider.faceCrop(200, 150, 100, 80, 600, 600, 0.25));
+    }
+
+    @Test
+    @DisplayName("Face crop: clipped to the frame near its edges")
+    void testFaceCropClipped() {
+        assertArrayEquals(new int[]{0, 0, 135, 135},
+                DjlForeheadTipProvider.faceCrop(10, 10, 100, 100, 600, 600, 0.25));
+        assertArrayEquals(new int[]{465, 465, 135, 135},
+                DjlForeheadTipProvider.faceCrop(490, 490, 100, 100, 600, 600, 0.25));
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("DJL face mesh lands on the sidecar's forehead tip for test-face.png")
+    void testMatchesSidecar() throws Exception {
+        assumeTrue(Files.isDirectory(Paths.get(MODEL_PATH)), "Face-mesh model not available");
+        assumeTrue(sidecarReachable(), "Forehead sidecar not running");
+        byte[] image = readResource("test-face.png");
+
+        FaceDetectionService faceDetection = NativeAssumptions.assumeObjdetect(() -> new FaceDetectionService(1, 30_000));
+        DjlForeheadTipProvider djl = new DjlForeheadTipProvider(faceDetection, MODEL_PATH, 0.5f, 0.25, 1, 30_000);
+        try {
+            PointDTO expected = new HttpForeheadTipProvider(SIDECAR_URL).detectForeheadTip(image);
+            PointDTO actual = djl.detectForeheadTip(image);
+            assertNotNull(expected, "sidecar found no forehead on test-face.png");
+            assertNotNull(actual, "DJL found no forehead on test-face.png");
+
+            // Both run the same mesh model on a face crop; allow for the different face detectors and crops
+            int width = ImageIO.read(new ByteArrayInputStream(image)).getWidth();
+            double tolerance = width * 0.05;
+            assertEquals(expected.x(), actual.x(), tolerance, "x of " + actual + " vs sidecar " + expected);
+            assertEquals(expected.y(), actual.y(), tolerance, "y of " + actual + " vs sidecar " + expected);
+        } finally {
+            djl.close();
+        }
+    }
+
+    private static boolean sidecarReachable() {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(SIDECAR_URL).openConnection();
+            conn.setConnectTimeout(300);
+            conn.connect();
+            conn.disconnect();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static byte[] readResource(String name) throws Exception {
+        Path path = Paths.get(DjlForeheadTipProviderTest.class.getResource("/" + name).toURI());
+        return Files.readAllBytes(path);
+    }
+}
@@ -0,0 +1,119 @@
+package hairmony.service;
+
+import hairmony.dto.FaceAnalysisResponse;
+import hairmony.dto.PointDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FaceAnalysisCacheTest {
+
+    private static FaceAnalysisResponse response(String shape) {
+        List<PointDTO> landmarks = Collections.nCopies(68, new PointDTO(1, 2));
+        return new FaceAnalysisResponse(shape, List.of("Buzz cut"), landmarks, null, new PointDTO(3, 4));
+    }
+
+    @Test
+    @DisplayName("Same bytes => pipeline runs once, second call is a hit")
+    void testHit() {
+        FaceAnalysisCache cache = new FaceAnalysisCache(1 << 20, 60);
+        AtomicInteger runs = new AtomicInteger();
+
+        FaceAnalysisResponse first = cache.getOrCompute(new byte[]{1, 2, 3}, () -> {
+            runs.incrementAndGet();
+            return response("Oval");
+        });
+        FaceAnalysisResponse second = cache.getOrCompute(new byte[]{1, 2, 3}, () -> {
+            runs.incrementAndGet();
+            return response("Round");
+        });
+
+        assertEquals(1, runs.get());
+        assertSame(first, second);
+        assertEquals(1, cache.stats().hits());
+        assertEquals(0.5, cache.stats().hitRatio(), 0.0001);
+    }
+
+    @Test
+    @DisplayName("Concurrent identical requests are coalesced into one pipeline run")
+    void testSingleFlight() throws Exception {
+        FaceAnalysisCache cache = new FaceAnalysisCache(1 << 20, 60);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<FaceAnalysisResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.getOrCompute(new byte[]{9, 9}, () -> {
+                    runs.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return response("Heart");
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<FaceAnalysisResponse> result : results) {
+                assertEquals("Heart", result.get(10, TimeUnit.SECONDS).shape());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    @DisplayName("Transient failures are not cached")
+    void testFailuresNotCached() {
+        FaceAnalysisCache cache = new FaceAnalysisCache(1 << 20, 60);
+        cache.getOrCompute(new byte[]{5}, () -> response("Failed to get forehead tip from Python"));
+        cache.getOrCompute(new byte[]{5}, () -> response("Internal error: boom"));
+        FaceAnalysisResponse third = cache.getOrCompute(new byte[]{5}, () -> response("Square"));
+
+        assertEquals("Square", third.shape());
+        assertEquals(3, cache.stats().misses());
+        assertEquals(1, cache.stats().entries());
+    }
+
+    @Test
+    @DisplayName("Least recently used entries are evicted once the weight budget is exceeded")
+    void testLruEviction() {
+        FaceAnalysisCache cache = new FaceAnalysisCache(6_000, 60);
+        for (byte i = 0; i < 10; i++) {
+            cache.getOrCompute(new byte[]{i}, () -> response("Oval"));
+            // keep image 0 hot
+            cache.getOrCompute(new byte[]{0}, () -> response("Round"));
+        }
+
+        FaceAnalysisCache.Stats stats = cache.stats();
+        assertTrue(stats.evictions() > 0);
+        assertTrue(stats.weightBytes() <= 6_000);
+        assertEquals("Oval", cache.getOrCompute(new byte[]{0}, () -> response("Round")).shape());
+        assertEquals("Round", cache.getOrCompute(new byte[]{1}, () -> response("Round")).shape());
+    }
+
+    @Test
+    @DisplayName("Expired entries and evicted digests are recomputed")
+    void testTtlAndEvict() throws Exception {
+        FaceAnalysisCache cache = new FaceAnalysisCache(1 << 20, 0);
+        cache.getOrCompute(new byte[]{7}, () -> response("Oval"));
+        Thread.sleep(5);
+        assertEquals("Round", cache.getOrCompute(new byte[]{7}, () -> response("Round")).shape());
+
+        FaceAnalysisCache longLived = new FaceAnalysisCache(1 << 20, 60);
+        longLived.getOrCompute(new byte[]{8}, () -> response("Oval"));
+        assertTrue(longLived.evict(FaceAnalysisCache.digest(new byte[]{8})));
+        assertEquals("Round", longLived.getOrCompute(new byte[]{8}, () -> response("Round")).shape());
+    }
+}
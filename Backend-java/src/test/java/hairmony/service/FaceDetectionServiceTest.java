@@ -0,0 +1,78 @@
+package hairmony.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+import static org.junit.jupiter.api.Assertions.*;
+import static hairmony.service.NativeAssumptions.assumeObjdetect;
+
+class FaceDetectionServiceTest {
+
+    private static FaceDetectionService detector;
+    private static Mat face;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        detector = assumeObjdetect(() -> new FaceDetectionService(4, 30_000));
+        face = imread(resourcePath("test-face.png"), IMREAD_COLOR);
+        assertFalse(face.empty());
+    }
+
+    @Test
+    @DisplayName("DNN detector loading on the startup executor: loaded() fails with the model, not before it")
+    void testDnnLoadedReflectsModel() throws Exception {
+        java.nio.file.Path broken = java.nio.file.Files.createTempFile("broken", ".onnx");
+        java.nio.file.Files.write(broken, new byte[]{1, 2, 3});
+        ExecutorService loader = Executors.newSingleThreadExecutor();
+        try {
+            DnnFaceDetectionService dnn = new DnnFaceDetectionService(broken.toString(), 0.8f, 0.3f, 50, 2, 1_000, loader);
+            assertThrows(CompletionException.class, () -> dnn.loaded().join());
+        } finally {
+            loader.shutdownNow();
+            java.nio.file.Files.delete(broken);
+        }
+    }
+
+    static String resourcePath(String name) throws Exception {
+        return java.nio.file.Paths.get(FaceDetectionServiceTest.class.getResource("/" + name).toURI()).toString();
+    }
+
+    @Test
+    @DisplayName("Parallel detections on the pool return the same rect as a single-threaded run")
+    void testConcurrentDetection() throws Exception {
+        Rect expected = detector.detectFace(face);
+        assertNotNull(expected);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Rect>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(() -> detector.detectFace(face)));
+            }
+            for (Future<Rect> result : results) {
+                Rect rect = result.get(60, TimeUnit.SECONDS);
+                assertNotNull(rect);
+                assertEquals(expected.x(), rect.x());
+                assertEquals(expected.y(), rect.y());
+                assertEquals(expected.width(), rect.width());
+                assertEquals(expected.height(), rect.height());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        NativeObjectPool.Stats stats = detector.poolStats();
+        assertEquals(4, stats.size());
+        assertEquals(0, stats.inUse());
+        assertTrue(stats.borrows() >= 65);
+    }
+}
@@ -0,0 +1,109 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IFaceDetection;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+import static org.junit.jupiter.api.Assertions.*;
+import static hairmony.service.NativeAssumptions.assumeObjdetect;
+
+/**
+ * Compares the Haar profiles and the DNN detector on a local corpus: a directory with a faces/ and a
+ * no-faces/ sub-directory (-Dai.bench.corpus=...), or the bundled test images when none is given.
+ * Images go through the same 600x600 letterbox as the pipeline. The DNN detector only takes part
+ * when its model is present (-Dai.face-detector.dnn.model-path=...).
+ */
+@Tag("benchmark")
+class FaceDetectorBenchmarkTest {
+
+    private static final String CORPUS = System.getProperty("ai.bench.corpus");
+    private static final String DNN_MODEL = System.getProperty("ai.face-detector.dnn.model-path",
+            "models/face_detection_yunet_2023mar.onnx");
+    private static final int ROUNDS = 5;
+
+    @Test
+    @DisplayName("Latency and detection rate: Haar default vs Haar tuned vs DNN")
+    void compareDetectors() throws Exception {
+        Map<String, IFaceDetection> detectors = new LinkedHashMap<>();
+        detectors.put("haar-default", assumeObjdetect(() -> new FaceDetectionService(1, 30_000, FaceDetectionService.HaarSettings.DEFAULT)));
+        detectors.put("haar-tuned", new FaceDetectionService(1, 30_000, FaceDetectionService.HaarSettings.TUNED));
+        if (Files.isRegularFile(Paths.get(DNN_MODEL))) {
+            detectors.put("dnn", new DnnFaceDetectionService(DNN_MODEL, 0.8f, 0.3f, 50, 1, 30_000));
+        }
+
+        List<Mat> faces = load(CORPUS == null ? List.of(resource("test-face.png")) : list(Paths.get(CORPUS, "faces")));
+        List<Mat> noFaces = load(CORPUS == null ? List.of(resource("no-face.jpg")) : list(Paths.get(CORPUS, "no-faces")));
+        assertFalse(faces.isEmpty(), "corpus has no face images");
+
+        for (Map.Entry<String, IFaceDetection> entry : detectors.entrySet()) {
+            IFaceDetection detector = entry.getValue();
+            // warm-up
+            faces.forEach(detector::detectFace);
+
+            long[] samples = new long[ROUNDS * (faces.size() + noFaces.size())];
+            int n = 0;
+            int detected = 0;
+            int falsePositives = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                for (Mat image : faces) {
+                    long start = System.nanoTime();
+                    Rect rect = detector.detectFace(image);
+                    samples[n++] = System.nanoTime() - start;
+                    if (round == 0 && rect != null) detected++;
+                }
+                for (Mat image : noFaces) {
+                    long start = System.nanoTime();
+                    Rect rect = detector.detectFace(image);
+                    samples[n++] = System.nanoTime() - start;
+                    if (round == 0 && rect != null) falsePositives++;
+                }
+            }
+            Arrays.sort(samples);
+            System.out.printf("%s -> p50=%.1f ms, p95=%.1f ms, detected %d/%d faces, %d/%d false positives%n",
+                    entry.getKey(),
+                    samples[samples.length / 2] / 1e6,
+                    samples[(int) (samples.length * 0.95)] / 1e6,
+                    detected, faces.size(),
+                    falsePositives, noFaces.size());
+            if (CORPUS == null) {
+                assertEquals(1, detected, entry.getKey() + " found no face on test-face.png");
+            }
+        }
+    }
+
+    private static List<Mat> load(List<Path> paths) {
+        List<Mat> images = new ArrayList<>();
+        for (Path path : paths) {
+            Mat image = imread(path.toString(), IMREAD_COLOR);
+            if (!image.empty()) {
+                images.add(FaceImageUtils.resizeAndPad(image, FaceImageUtils.CANVAS_SIZE, FaceImageUtils.CANVAS_SIZE));
+            }
+        }
+        return images;
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    private static Path resource(String name) throws Exception {
+        return Paths.get(FaceDetectorBenchmarkTest.class.getResource("/" + name).toURI());
+    }
+}
@@ -0,0 +1,215 @@
+package hairmony.service;
+
+import hairmony.exceptions.UploadQueueFullException;
+import hairmony.repository.StoredFileRepository;
+import hairmony.serviceInterfaces.ImageVariantServiceInf;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Stores files under a temp directory with the reference counts in the embedded H2 database.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+// Every reference change must commit on its own, as in production, so no test-wide transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FileStorageServiceTest {
+
+    @TempDir
+    Path uploads;
+
+    @Autowired
+    private StoredFileRepository storedFileRepository;
+
+    private final ImageVariantServiceInf imageVariantService = Mockito.mock(ImageVariantServiceInf.class);
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(64), new ThreadPoolExecutor.AbortPolicy());
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        storedFileRepository.deleteAll();
+    }
+
+    private FileStorageService service() {
+        return new FileStorageService(storedFileRepository, new LocalObjectStorage(uploads.toString()),
+                imageVariantService, executor, new SimpleMeterRegistry(), uploads.toString(), 5_000);
+    }
+
+    private static MockMultipartFile upload(String name, String content) {
+        return new MockMultipartFile("picture", name, "image/jpeg", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int refCount(String storedPath) {
+        return storedFileRepository.findById(FileStorageService.keyOf(storedPath)).orElseThrow().getRefCount();
+    }
+
+    private List<Path> files() throws Exception {
+        try (Stream<Path> files = Files.walk(uploads)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    @Test
+    @DisplayName("Identical uploads share one sharded, content-addressed file and count their references")
+    void testDeduplicates() throws Exception {
+        FileStorageService storage = service();
+
+        String first = storage.store(upload("IMG_1.JPG", "same picture"));
+        String second = storage.store(upload("copy of it.jpg", "same picture"));
+        String other = storage.store(upload("other.png", "another picture"));
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertTrue(first.matches("uploads/([0-9a-f]{2})/([0-9a-f]{2})/\\1\\2[0-9a-f]{60}\\.jpg"), first);
+        assertTrue(other.endsWith(".png"));
+        assertEquals("same picture", Files.readString(uploads.resolve(first.substring("uploads/".length()))));
+        assertEquals(2, files().size(), "no temp files are left behind");
+        assertEquals(2, refCount(first));
+        assertEquals(1, refCount(other));
+        verify(imageVariantService, times(1)).generateVariants(first);
+        verify(imageVariantService, times(1)).generateVariants(other);
+    }
+
+    @Test
+    @DisplayName("The file and its variants are deleted with the last reference; legacy paths are left alone")
+    void testReleaseReclaims() throws Exception {
+        FileStorageService storage = service();
+        String path = storage.store(upload("a.jpg", "picture"));
+        storage.store(upload("b.jpg", "picture"));
+        Path file = uploads.resolve(path.substring("uploads/".length()));
+
+        storage.release(path);
+        assertTrue(Files.exists(file));
+        assertEquals(1, refCount(path));
+
+        storage.release(path);
+        assertFalse(Files.exists(file));
+        assertTrue(storedFileRepository.findById(FileStorageService.keyOf(path)).isEmpty());
+        verify(imageVariantService).deleteVariants(path);
+
+        storage.release(path);  // already gone: no-op
+        storage.release("uploads/0b1c-legacy_me.jpg");
+        storage.release(null);
+        verify(imageVariantService, times(1)).deleteVariants(any());
+
+        String again = storage.store(upload("c.jpg", "picture"));
+        assertEquals(path, again);
+        assertTrue(Files.exists(file), "content stored again after being reclaimed");
+    }
+
+    @Test
+    @DisplayName("Concurrent uploads of the same content end up as one file with every reference counted")
+    void testConcurrentStores() throws Exception {
+        FileStorageService storage = service();
+        int uploadsCount = 32;
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> stored = new ArrayList<>();
+            for (int i = 0; i < uploadsCount; i++) {
+                stored.add(clients.submit(() -> {
+                    start.await();
+                    return storage.store(upload("face.jpg", "popular picture"));
+                }));
+            }
+            start.countDown();
+            Set<String> paths = new HashSet<>();
+            for (Future<String> future : stored) {
+                paths.add(future.get(10, TimeUnit.SECONDS));
+            }
+
+            assertEquals(1, paths.size());
+            assertEquals(uploadsCount, refCount(paths.iterator().next()));
+            assertEquals(1, files().size());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Nodes sharing an S3 bucket store identical content once and reclaim it with the last reference")
+    void testSharedObjectStorage() throws Exception {
+        try (S3StandIn s3 = new S3StandIn()) {
+            Path nodeADir = uploads.resolve("node-a");
+            FileStorageService nodeA = s3Node(s3, nodeADir);
+            FileStorageService nodeB = s3Node(s3, uploads.resolve("node-b"));
+
+            String first = nodeA.store(upload("a.jpg", "shared picture"));
+            String second = nodeB.store(upload("b.jpg", "shared picture"));
+            String key = FileStorageService.keyOf(first);
+            assertEquals(first, second);
+            assertEquals(2, refCount(first));
+            assertEquals("shared picture", new String(s3.object(key).bytes(), StandardCharsets.UTF_8));
+            assertEquals(1, s3.requests().stream().filter("PUT"::equals).count(), "uploaded once");
+            assertTrue(Files.exists(nodeADir.resolve(key)), "kept in the storing node's cache tier");
+
+            nodeB.release(second);
+            assertNotNull(s3.object(key));
+            nodeA.release(first);
+            assertNull(s3.object(key));
+            assertFalse(Files.exists(nodeADir.resolve(key)));
+        }
+    }
+
+    private FileStorageService s3Node(S3StandIn s3, Path dir) {
+        S3ObjectStorage objectStorage = new S3ObjectStorage(new SimpleMeterRegistry(), dir.toString(), s3.endpoint(),
+                S3StandIn.REGION, S3StandIn.BUCKET, S3StandIn.ACCESS_KEY, S3StandIn.SECRET_KEY, true,
+                S3ObjectStorage.MIN_PART_BYTES, 5_000, 1 << 20);
+        return new FileStorageService(storedFileRepository, objectStorage, imageVariantService, executor,
+                new SimpleMeterRegistry(), dir.toString(), 5_000);
+    }
+
+    @Test
+    @DisplayName("A saturated I/O executor rejects the upload with a retry hint instead of queueing it")
+    void testQueueFull() {
+        ThreadPoolExecutor tiny = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            FileStorageService storage = new FileStorageService(storedFileRepository,
+                    new LocalObjectStorage(uploads.toString()), imageVariantService, tiny,
+                    new SimpleMeterRegistry(), uploads.toString(), 5_000);
+            tiny.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            tiny.execute(() -> { });
+
+            UploadQueueFullException e = assertThrows(UploadQueueFullException.class,
+                    () -> storage.storeAsync(new ByteArrayInputStream(new byte[10]), "jpg"));
+            assertTrue(e.getRetryAfterSeconds() >= 1);
+        } finally {
+            release.countDown();
+            tiny.shutdownNow();
+        }
+    }
+}
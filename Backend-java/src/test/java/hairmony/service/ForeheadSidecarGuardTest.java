@@ -0,0 +1,168 @@
+package hairmony.service;
+
+import hairmony.dto.PointDTO;
+import hairmony.service.ForeheadSidecarGuard.SidecarUnavailableException;
+import hairmony.service.ForeheadSidecarGuard.State;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.net.ServerSocket;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ForeheadSidecarGuardTest {
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final IForeheadTipProvider provider = Mockito.mock(IForeheadTipProvider.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterAll
+    static void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ForeheadSidecarGuard guard(long deadlineMs, int maxConcurrent, int failureThreshold, long openMs) {
+        return new ForeheadSidecarGuard(provider, executor, registry, deadlineMs, maxConcurrent, failureThreshold, openMs);
+    }
+
+    private double state(String name) {
+        return registry.get("ai.forehead.circuit.state").tag("state", name).gauge().value();
+    }
+
+    @Test
+    @DisplayName("A stalled sidecar costs the caller the deadline, not the stall")
+    void testDeadline() {
+        when(provider.detectForeheadTip(any())).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return new PointDTO(1, 1);
+        });
+        ForeheadSidecarGuard guard = guard(200, 4, 5, 10_000);
+
+        long start = System.nanoTime();
+        assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs < 1_000, "returned after " + elapsedMs + " ms");
+        assertEquals(1, registry.counter("ai.forehead.calls", "result", "timeout").count());
+    }
+
+    @Test
+    @DisplayName("Consecutive failures open the circuit; an open circuit never calls the sidecar")
+    void testOpensAfterThreshold() {
+        when(provider.detectForeheadTip(any())).thenThrow(new IllegalStateException("connection refused"));
+        ForeheadSidecarGuard guard = guard(1_000, 4, 3, 60_000);
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+        }
+        assertEquals(State.OPEN, guard.state());
+        assertEquals(1.0, state("open"));
+        assertEquals(0.0, state("closed"));
+
+        assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+        verify(provider, times(3)).detectForeheadTip(any());
+        assertEquals(1, registry.counter("ai.forehead.calls", "result", "short_circuited").count());
+    }
+
+    @Test
+    @DisplayName("A dead socket sidecar counts as a failure and opens the circuit")
+    void testDeadSocketSidecarOpens() throws Exception {
+        int port;
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();   // closed again: nothing listens there
+        }
+        SocketForeheadTipProvider socketProvider = new SocketForeheadTipProvider(null, "127.0.0.1", port, 4, 500);
+        ForeheadSidecarGuard guard = new ForeheadSidecarGuard(socketProvider, executor, registry, 1_000, 4, 3, 60_000);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+            }
+            assertEquals(State.OPEN, guard.state());
+            assertEquals(3, registry.counter("ai.forehead.calls", "result", "failure").count());
+        } finally {
+            socketProvider.close();
+        }
+    }
+
+    @Test
+    @DisplayName("After the open period one probe goes through: failure re-opens, success closes")
+    void testHalfOpenProbe() throws Exception {
+        when(provider.detectForeheadTip(any()))
+                .thenThrow(new IllegalStateException("down"))
+                .thenThrow(new IllegalStateException("still down"))
+                .thenReturn(new PointDTO(10, 20));
+        ForeheadSidecarGuard guard = guard(1_000, 4, 1, 100);
+
+        assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+        assertEquals(State.OPEN, guard.state());
+
+        Thread.sleep(150);
+        assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+        assertEquals(State.OPEN, guard.state(), "failed probe re-opens the circuit");
+        assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+
+        Thread.sleep(150);
+        assertEquals(new PointDTO(10, 20), guard.detectForeheadTip(new byte[1]));
+        assertEquals(State.CLOSED, guard.state());
+        verify(provider, times(3)).detectForeheadTip(any());
+    }
+
+    @Test
+    @DisplayName("Only one caller probes a half-open circuit")
+    void testSingleProbe() throws Exception {
+        CountDownLatch probing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(provider.detectForeheadTip(any()))
+                .thenThrow(new IllegalStateException("down"))
+                .thenAnswer(invocation -> {
+                    probing.countDown();
+                    release.await();
+                    return new PointDTO(1, 2);
+                });
+        ForeheadSidecarGuard guard = guard(5_000, 4, 1, 50);
+        assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+        Thread.sleep(100);
+
+        Future<PointDTO> probe = executor.submit(() -> guard.detectForeheadTip(new byte[1]));
+        assertTrue(probing.await(5, TimeUnit.SECONDS));
+        assertEquals(State.HALF_OPEN, guard.state());
+        assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+
+        release.countDown();
+        assertEquals(new PointDTO(1, 2), probe.get(5, TimeUnit.SECONDS));
+        assertEquals(State.CLOSED, guard.state());
+    }
+
+    @Test
+    @DisplayName("The bulkhead turns away calls beyond max-concurrent, and a null tip is not a failure")
+    void testBulkhead() throws Exception {
+        CountDownLatch inFlight = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        when(provider.detectForeheadTip(any())).thenAnswer(invocation -> {
+            inFlight.countDown();
+            release.await();
+            return null;
+        });
+        ForeheadSidecarGuard guard = guard(5_000, 2, 1, 60_000);
+
+        Future<PointDTO> first = executor.submit(() -> guard.detectForeheadTip(new byte[1]));
+        Future<PointDTO> second = executor.submit(() -> guard.detectForeheadTip(new byte[1]));
+        assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+        assertEquals(2.0, registry.get("ai.forehead.inflight").gauge().value());
+
+        assertThrows(SidecarUnavailableException.class, () -> guard.detectForeheadTip(new byte[1]));
+        assertEquals(1, registry.counter("ai.forehead.calls", "result", "rejected").count());
+
+        release.countDown();
+        assertNull(first.get(5, TimeUnit.SECONDS));
+        assertNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(State.CLOSED, guard.state(), "rejections and null tips do not trip the breaker");
+    }
+}
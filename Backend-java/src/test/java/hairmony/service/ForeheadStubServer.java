@@ -0,0 +1,110 @@
+package hairmony.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the forehead sidecar speaking the binary frame protocol
+ * (int32 length + JPEG in, float32 x + float32 y out), so the socket transport can be tested without MediaPipe.
+ */
+class ForeheadStubServer implements AutoCloseable {
+
+    private final ServerSocketChannel server;
+    private final Path socketPath;
+    private final Function<byte[], float[]> responder;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger frames = new AtomicInteger();
+    private volatile long delayMs;
+
+    private ForeheadStubServer(ServerSocketChannel server, Path socketPath, Function<byte[], float[]> responder) {
+        this.server = server;
+        this.socketPath = socketPath;
+        this.responder = responder;
+        Thread acceptor = new Thread(this::acceptLoop, "forehead-stub-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    static ForeheadStubServer unix(Path socketPath, Function<byte[], float[]> responder) throws IOException {
+        Files.deleteIfExists(socketPath);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        return new ForeheadStubServer(server, socketPath, responder);
+    }
+
+    static ForeheadStubServer tcp(Function<byte[], float[]> responder) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        return new ForeheadStubServer(server, null, responder);
+    }
+
+    int port() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    int frames() {
+        return frames.get();
+    }
+
+    void setDelayMs(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                connections.incrementAndGet();
+                Thread handler = new Thread(() -> serve(channel), "forehead-stub-conn");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel;
+             DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+             DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel))) {
+            while (true) {
+                int length = in.readInt();
+                byte[] jpeg = in.readNBytes(length);
+                frames.incrementAndGet();
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+                float[] xy = responder.apply(jpeg);
+                out.writeFloat(xy[0]);
+                out.writeFloat(xy[1]);
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // client went away
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        if (socketPath != null) {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+}
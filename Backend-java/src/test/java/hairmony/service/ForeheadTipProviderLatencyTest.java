@@ -0,0 +1,96 @@
+package hairmony.service;
+
+import hairmony.dto.PointDTO;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares the HTTP sidecar against the in-process DJL provider on the bundled test images.
+ * Each provider only takes part when it is reachable (sidecar running / face-mesh model present).
+ */
+@Tag("benchmark")
+class ForeheadTipProviderLatencyTest {
+
+    private static final String SIDECAR_URL = System.getProperty("ai.forehead.http.url", "http://localhost:5000/detect-forehead");
+    private static final String MODEL_PATH = System.getProperty("ai.forehead.djl.model-path", "models/face_mesh");
+    private static final int ROUNDS = 20;
+
+    @Test
+    @DisplayName("Latency: HTTP sidecar vs in-process DJL face mesh")
+    void compareLatency() throws Exception {
+        Map<String, IForeheadTipProvider> providers = new LinkedHashMap<>();
+        if (sidecarReachable()) {
+            providers.put("http", new HttpForeheadTipProvider(SIDECAR_URL));
+        }
+        DjlForeheadTipProvider djl = null;
+        if (Files.isDirectory(Paths.get(MODEL_PATH))) {
+            FaceDetectionService faceDetection = NativeAssumptions.assumeObjdetect(() -> new FaceDetectionService(1, 30_000));
+            djl = new DjlForeheadTipProvider(faceDetection, MODEL_PATH, 0.5f, 0.25, 1, 30_000);
+            providers.put("djl", djl);
+        }
+        assumeTrue(!providers.isEmpty(), "Neither the sidecar nor the face-mesh model is available");
+
+        List<byte[]> images = List.of(
+                readResource("test-face.png"),
+                readResource("no-face.jpg")
+        );
+
+        try {
+            for (Map.Entry<String, IForeheadTipProvider> entry : providers.entrySet()) {
+                IForeheadTipProvider provider = entry.getValue();
+                // warm-up
+                images.forEach(provider::detectForeheadTip);
+
+                long[] samples = new long[ROUNDS * images.size()];
+                int n = 0;
+                PointDTO faceTip = null;
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (int i = 0; i < images.size(); i++) {
+                        long start = System.nanoTime();
+                        PointDTO tip = provider.detectForeheadTip(images.get(i));
+                        samples[n++] = System.nanoTime() - start;
+                        if (i == 0) faceTip = tip;
+                    }
+                }
+                Arrays.sort(samples);
+                System.out.printf("%s provider -> p50=%.1f ms, p95=%.1f ms, tip=%s%n",
+                        entry.getKey(),
+                        samples[samples.length / 2] / 1e6,
+                        samples[(int) (samples.length * 0.95)] / 1e6,
+                        faceTip);
+                assertNotNull(faceTip, entry.getKey() + " found no forehead on test-face.png");
+            }
+        } finally {
+            if (djl != null) djl.close();
+        }
+    }
+
+    private static boolean sidecarReachable() {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(SIDECAR_URL).openConnection();
+            conn.setConnectTimeout(300);
+            conn.connect();
+            conn.disconnect();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static byte[] readResource(String name) throws Exception {
+        Path path = Paths.get(ForeheadTipProviderLatencyTest.class.getResource("/" + name).toURI());
+        return Files.readAllBytes(path);
+    }
+}
@@ -0,0 +1,102 @@
+package hairmony.service;
+
+import hairmony.entities.Haircuts;
+import hairmony.repository.HaircutRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HaircutCatalogTest {
+
+    private HaircutRepository haircutRepository;
+    private HaircutCatalog catalog;
+
+    private static Haircuts haircut(long id, String name, double price, String faceShape) {
+        Haircuts haircut = new Haircuts(name, name + " description", price, faceShape, null);
+        haircut.setId(id);
+        return haircut;
+    }
+
+    @BeforeEach
+    void setUp() {
+        haircutRepository = Mockito.mock(HaircutRepository.class);
+        when(haircutRepository.findAll()).thenReturn(List.of(
+                haircut(2, "Textured Crop", 25, "Oval"),
+                haircut(1, "Quiff", 30, "oval "),
+                haircut(3, "Side Part", 20, "Square"),
+                haircut(4, "Buzz Cut", 15, null)));
+        catalog = new HaircutCatalog(haircutRepository);
+    }
+
+    @Test
+    @DisplayName("Face shapes are matched ignoring case and blanks, and the database is read only once")
+    void testIndexedByNormalizedShape() {
+        assertEquals(List.of("Quiff", "Textured Crop"), catalog.namesByFaceShape("OVAL"));
+        assertEquals(List.of("Side Part"), catalog.namesByFaceShape(" square"));
+        assertEquals(List.of(), catalog.namesByFaceShape("Heart"));
+        assertEquals(List.of(), catalog.byFaceShape(null));
+        assertEquals(4, catalog.all().size());
+
+        verify(haircutRepository, times(1)).findAll();
+        verifyNoMoreInteractions(haircutRepository);
+    }
+
+    @Test
+    @DisplayName("Price lookups take the first haircut by id whose name contains the query")
+    void testFindFirstByNameContaining() {
+        assertEquals(30, catalog.findFirstByNameContaining("quiff").orElseThrow().getPrice());
+        assertEquals("Side Part", catalog.findFirstByNameContaining("PART").orElseThrow().getName());
+        assertTrue(catalog.findFirstByNameContaining("Mullet").isEmpty());
+        assertTrue(catalog.findFirstByNameContaining(null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Edits swap in a new snapshot; lists already handed out do not change")
+    void testCopyOnWrite() {
+        List<Haircuts> before = catalog.byFaceShape("oval");
+
+        Haircuts moved = haircut(2, "Textured Crop", 28, "Square");
+        catalog.put(moved);
+        moved.setPrice(99);  // the catalog keeps its own copy
+        catalog.put(haircut(5, "Pompadour", 35, "Oval"));
+        catalog.remove(3L);
+
+        assertEquals(List.of("Quiff", "Textured Crop"), before.stream().map(Haircuts::getName).toList());
+        assertEquals(List.of("Quiff", "Pompadour"), catalog.namesByFaceShape("oval"));
+        assertEquals(List.of("Textured Crop"), catalog.namesByFaceShape("square"));
+        assertEquals(28, catalog.findFirstByNameContaining("crop").orElseThrow().getPrice());
+        assertThrows(UnsupportedOperationException.class, () -> catalog.all().clear());
+        verify(haircutRepository, times(1)).findAll();
+    }
+
+    @Test
+    @DisplayName("HaircutServiceImpl keeps the catalog in step with create, update and delete")
+    void testServiceWritesThrough() {
+        HaircutServiceImpl service = new HaircutServiceImpl(haircutRepository, catalog);
+        when(haircutRepository.save(any(Haircuts.class))).thenAnswer(invocation -> {
+            Haircuts saved = invocation.getArgument(0);
+            if (saved.getId() == null) {
+                saved.setId(10L);
+            }
+            return saved;
+        });
+        when(haircutRepository.findById(1L)).thenReturn(Optional.of(haircut(1, "Quiff", 30, "Oval")));
+
+        service.createHaircut(new Haircuts("Fringe", "", 22, "Round", null));
+        assertEquals(List.of("Fringe"), service.getHaircutsByFaceShape("Round").stream().map(Haircuts::getName).toList());
+
+        service.updateHaircut(1L, new Haircuts("Quiff", "", 32, "Round", null));
+        assertEquals(List.of("Quiff", "Fringe"), catalog.namesByFaceShape("round"));
+        assertEquals(List.of("Textured Crop"), catalog.namesByFaceShape("oval"));
+
+        service.deleteHaircut(1L);
+        assertEquals(List.of("Fringe"), catalog.namesByFaceShape("round"));
+    }
+}
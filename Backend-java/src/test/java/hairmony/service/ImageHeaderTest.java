@@ -0,0 +1,86 @@
+package hairmony.service;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imencode;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageHeaderTest {
+
+    @Test
+    @DisplayName("JPEG and PNG sizes are read from the header")
+    void testReadsJpegAndPng() {
+        assertEquals(new ImageHeader(640, 480), ImageHeader.read(encode(".jpg", 640, 480)));
+        assertEquals(new ImageHeader(300, 500), ImageHeader.read(encode(".png", 300, 500)));
+    }
+
+    @Test
+    @DisplayName("Unknown or truncated data => null (full decode path)")
+    void testUnknownFormat() {
+        assertNull(ImageHeader.read(new byte[200]));
+        assertNull(ImageHeader.read((byte[]) null));
+        byte[] jpeg = encode(".jpg", 640, 480);
+        byte[] truncated = new byte[30];
+        System.arraycopy(jpeg, 0, truncated, 0, truncated.length);
+        assertNull(ImageHeader.read(truncated));
+    }
+
+    @Test
+    @DisplayName("EXIF orientation 6 (rotate 90°) swaps width and height")
+    void testExifOrientationSwapsSize() {
+        byte[] jpeg = encode(".jpg", 640, 480);
+        assertEquals(new ImageHeader(480, 640), ImageHeader.read(withOrientation(jpeg, 6)));
+        assertEquals(new ImageHeader(640, 480), ImageHeader.read(withOrientation(jpeg, 3)));
+    }
+
+    @Test
+    @DisplayName("Reduction never decodes below the 600px canvas")
+    void testReductionFor() {
+        assertEquals(1, new ImageHeader(640, 480).reductionFor(600));
+        assertEquals(1, new ImageHeader(1000, 800).reductionFor(600));
+        assertEquals(2, new ImageHeader(1200, 900).reductionFor(600));
+        assertEquals(4, new ImageHeader(3000, 4000).reductionFor(600));
+        assertEquals(8, new ImageHeader(8000, 6000).reductionFor(600));
+    }
+
+    private static byte[] encode(String ext, int width, int height) {
+        Mat mat = new Mat(height, width, CV_8UC3, new Scalar(90, 120, 200, 0));
+        BytePointer buffer = new BytePointer();
+        imencode(ext, mat, buffer);
+        byte[] bytes = new byte[(int) buffer.capacity()];
+        buffer.get(bytes);
+        buffer.deallocate();
+        return bytes;
+    }
+
+    /**
+     * Inserts a minimal big-endian APP1/Exif segment holding only the orientation tag right after SOI.
+     */
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] tiff = {
+                'M', 'M', 0, 42, 0, 0, 0, 8,            // header, IFD0 at offset 8
+                0, 1,                                    // 1 entry
+                0x01, 0x12, 0, 3, 0, 0, 0, 1,            // orientation, SHORT, count 1
+                0, (byte) orientation, 0, 0,
+                0, 0, 0, 0                               // no next IFD
+        };
+        int length = 2 + 6 + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.writeBytes(new byte[] {'E', 'x', 'i', 'f', 0, 0});
+        out.writeBytes(tiff);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+}
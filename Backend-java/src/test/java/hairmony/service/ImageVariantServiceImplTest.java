@@ -0,0 +1,137 @@
+package hairmony.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.indexer.UByteIndexer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC4;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageVariantServiceImplTest {
+
+    @TempDir
+    Path uploads;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ImageVariantServiceImpl service(String format) {
+        return new ImageVariantServiceImpl(uploads.toString(), executor, registry, format, 82, 160, 640, true);
+    }
+
+    // One worker, FIFO: once a no-op runs, everything submitted before it is done
+    private void drain() throws Exception {
+        while (true) {
+            try {
+                executor.submit(() -> { }).get(10, TimeUnit.SECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private static byte[] encode(String ext, Mat mat) {
+        BytePointer buffer = new BytePointer();
+        imencode(ext, mat, buffer);
+        byte[] bytes = new byte[(int) buffer.capacity()];
+        buffer.get(bytes);
+        buffer.deallocate();
+        return bytes;
+    }
+
+    private Mat variant(ImageVariantServiceImpl service, String fileName, String size) throws Exception {
+        Path file = uploads.resolve(service.variantFileName(fileName, size));
+        assertTrue(Files.exists(file), file + " was not generated");
+        return imdecode(new Mat(Files.readAllBytes(file)), IMREAD_UNCHANGED);
+    }
+
+    @Test
+    @DisplayName("A large JPEG gets a 640px medium and a 160px thumbnail, aspect ratio kept")
+    void testJpegVariants() throws Exception {
+        Files.write(uploads.resolve("a_shop.jpg"), encode(".jpg", new Mat(1500, 2000, CV_8UC3, new Scalar(90, 120, 200, 0))));
+        ImageVariantServiceImpl service = service("jpg");
+
+        service.generateVariants("uploads/a_shop.jpg");
+        drain();
+
+        Mat medium = variant(service, "a_shop.jpg", "medium");
+        assertEquals(640, medium.cols());
+        assertEquals(480, medium.rows());
+        Mat thumb = variant(service, "a_shop.jpg", "thumb");
+        assertEquals(160, thumb.cols());
+        assertEquals(120, thumb.rows());
+        assertEquals(1.0, registry.counter("uploads.variants", "result", "generated").count());
+    }
+
+    @Test
+    @DisplayName("Transparent PNGs are flattened onto white; small images are not upscaled")
+    void testPngAlphaAndNoUpscale() throws Exception {
+        Mat rgba = new Mat(100, 120, CV_8UC4, new Scalar(0, 0, 255, 0));  // fully transparent red
+        Files.write(uploads.resolve("b_me.png"), encode(".png", rgba));
+        ImageVariantServiceImpl service = service("webp");
+
+        service.generateVariants("uploads/b_me.png");
+        drain();
+
+        assertTrue(service.variantFileName("b_me.png", "thumb").endsWith(".thumb.webp"));
+        Mat medium = variant(service, "b_me.png", "medium");
+        assertEquals(120, medium.cols());
+        assertEquals(100, medium.rows());
+        assertEquals(3, medium.channels());
+        try (UByteIndexer pixels = medium.createIndexer()) {
+            for (int c = 0; c < 3; c++) {
+                assertTrue(pixels.get(50, 60, c) > 245, "channel " + c + " = " + pixels.get(50, 60, c));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Non-images and paths outside uploads/ are ignored; a full queue drops the job instead of blocking")
+    void testIgnoredAndRejected() throws Exception {
+        Files.writeString(uploads.resolve("c_notes.txt"), "not an image");
+        ImageVariantServiceImpl service = service("jpg");
+
+        service.generateVariants("uploads/c_notes.txt");
+        service.generateVariants("elsewhere/c_notes.txt");
+        service.generateVariants(null);
+        drain();
+        assertFalse(Files.exists(uploads.resolve(service.variantFileName("c_notes.txt", "thumb"))));
+        assertEquals(1.0, registry.counter("uploads.variants", "result", "failed").count());
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // Only once the worker holds the blocker is the queue empty for sure
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { });  // fills the queue
+        service.generateVariants("uploads/d.jpg");
+        assertEquals(1.0, registry.counter("uploads.variants", "result", "rejected").count());
+        release.countDown();
+    }
+}
@@ -0,0 +1,84 @@
+package hairmony.service;
+
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+import static org.junit.jupiter.api.Assertions.*;
+import static hairmony.service.NativeAssumptions.assumeObjdetect;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * LBF fit on the full padded canvas vs on a cropped face ROI: same landmarks, less work per call.
+ * Needs lbfmodel.yaml on the classpath (it is not committed, see FaceShapeDetectorServiceImpl).
+ */
+@Tag("benchmark")
+class LandmarkRoiBenchmarkTest {
+
+    private static final int ROUNDS = Integer.getInteger("ai.landmarks.rounds", 50);
+    private static final double TOLERANCE_PX = 0.5;
+
+    @Test
+    @DisplayName("Benchmark: full-frame vs ROI landmark fit")
+    void compareFitPaths() throws Exception {
+        assumeTrue(getClass().getResource("/lbfmodel.yaml") != null, "lbfmodel.yaml not on the classpath");
+        FaceDetectionService faceDetection = assumeObjdetect(() -> new FaceDetectionService(1, 30_000));
+        FaceShapeDetectorServiceImpl landmarks = new FaceShapeDetectorServiceImpl();
+        landmarks.init();
+
+        String path = java.nio.file.Paths.get(getClass().getResource("/test-face.png").toURI()).toString();
+        Mat canvas = FaceImageUtils.resizeAndPad(imread(path, IMREAD_COLOR), FaceImageUtils.CANVAS_SIZE, FaceImageUtils.CANVAS_SIZE);
+        Rect face = faceDetection.detectFace(canvas);
+        assertNotNull(face);
+
+        landmarks.configureRoi(true, 0.5, 0);
+        float[] full = points(landmarks.detectLandmarksFullFrame(canvas, face));
+        float[] roi = points(landmarks.detectLandmarks(canvas, face));
+        assertEquals(full.length, roi.length);
+        double maxDiff = 0;
+        for (int i = 0; i < full.length; i++) {
+            maxDiff = Math.max(maxDiff, Math.abs(full[i] - roi[i]));
+        }
+        assertTrue(maxDiff <= TOLERANCE_PX, "ROI landmarks differ by up to " + maxDiff + " px");
+
+        long[] fullTimes = new long[ROUNDS];
+        long[] roiTimes = new long[ROUNDS];
+        for (int r = 0; r < ROUNDS; r++) {
+            try (PointerScope scope = new PointerScope()) {
+                long start = System.nanoTime();
+                landmarks.detectLandmarksFullFrame(canvas, face);
+                fullTimes[r] = System.nanoTime() - start;
+            }
+            try (PointerScope scope = new PointerScope()) {
+                long start = System.nanoTime();
+                landmarks.detectLandmarks(canvas, face);
+                roiTimes[r] = System.nanoTime() - start;
+            }
+        }
+        System.out.printf("LBF fit (face %dx%d on %dx%d canvas): full frame median %.2f ms, ROI median %.2f ms, max diff %.3f px%n",
+                face.width(), face.height(), canvas.cols(), canvas.rows(),
+                median(fullTimes), median(roiTimes), maxDiff);
+    }
+
+    private static float[] points(Point2fVectorVector landmarks) {
+        Point2fVector shape = landmarks.get(0);
+        float[] xy = new float[(int) shape.size() * 2];
+        for (int i = 0; i < shape.size(); i++) {
+            xy[2 * i] = shape.get(i).x();
+            xy[2 * i + 1] = shape.get(i).y();
+        }
+        return xy;
+    }
+
+    private static double median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+}
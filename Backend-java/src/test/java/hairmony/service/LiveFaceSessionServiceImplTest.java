@@ -0,0 +1,208 @@
+package hairmony.service;
+
+import hairmony.dto.LiveFaceUpdate;
+import hairmony.dto.PointDTO;
+import hairmony.repository.HaircutRepository;
+import hairmony.serviceInterfaces.IFaceDetection;
+import hairmony.serviceInterfaces.IFaceShapeDetector;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bytedeco.opencv.opencv_core.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LiveFaceSessionServiceImplTest {
+
+    private IFaceDetection faceDetection;
+    private IFaceShapeDetector faceShapeDetector;
+    private IForeheadTipProvider foreheadTipProvider;
+    private LiveFaceSessionServiceImpl liveService;
+    private static final ExecutorService sidecarExecutor = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() {
+        faceDetection = Mockito.mock(IFaceDetection.class);
+        faceShapeDetector = Mockito.mock(IFaceShapeDetector.class);
+        foreheadTipProvider = Mockito.mock(IForeheadTipProvider.class);
+        HaircutRepository haircutRepository = Mockito.mock(HaircutRepository.class);
+
+        // detect every 3 frames, no shape smoothing, push on any 2px movement
+        ForeheadSidecarGuard foreheadSidecar = new ForeheadSidecarGuard(foreheadTipProvider, sidecarExecutor,
+                new SimpleMeterRegistry(), 2_000, 4, 5, 10_000);
+        liveService = new LiveFaceSessionServiceImpl(faceDetection, faceShapeDetector, foreheadSidecar,
+                new HaircutCatalog(haircutRepository), 3, 1, 0.5, 0.25, 0.15, 2.0) {
+            @Override
+            protected Mat decodeMat(byte[] bytes) {
+                // Same size as the canvas => original and padded coordinates match
+                return new Mat(600, 600, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+            }
+        };
+
+        // A fresh Rect per call: results are freed with the frame that produced them
+        when(faceDetection.detectFace(any(Mat.class))).thenAnswer(invocation -> new Rect(200, 200, 200, 200));
+        when(foreheadTipProvider.detectForeheadTip(any())).thenReturn(new PointDTO(300.0, 180.0));
+        when(faceShapeDetector.classifyFaceShape(any(), any(), anyDouble(), anyDouble()))
+                .thenReturn(new IFaceShapeDetector.ClassificationResult("Oval", 0, 0));
+    }
+
+    @Test
+    @DisplayName("Full detection only every N frames, landmarks tracked in between")
+    void testTracksBetweenDetections() {
+        AtomicInteger calls = new AtomicInteger();
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class)))
+                .thenAnswer(invocation -> face(300 + 5 * calls.getAndIncrement(), 300));
+
+        LiveFaceSession session = liveService.openSession();
+        LiveFaceUpdate first = liveService.processFrame(session, new byte[10]);
+        LiveFaceUpdate second = liveService.processFrame(session, new byte[10]);
+        liveService.processFrame(session, new byte[10]);
+        LiveFaceUpdate fourth = liveService.processFrame(session, new byte[10]);
+
+        assertEquals("Oval", first.shape());
+        assertFalse(first.tracked());
+        assertTrue(second.tracked());
+        assertFalse(fourth.tracked());
+        verify(faceDetection, times(2)).detectFace(any(Mat.class));
+        verify(foreheadTipProvider, times(2)).detectForeheadTip(any());
+        verify(faceShapeDetector, times(4)).detectLandmarks(any(Mat.class), any(Rect.class));
+    }
+
+    @Test
+    @DisplayName("Tracked forehead tip follows the landmarks")
+    void testForeheadFollowsLandmarks() {
+        AtomicInteger calls = new AtomicInteger();
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class)))
+                .thenAnswer(invocation -> face(300 + 10 * calls.getAndIncrement(), 300));
+
+        LiveFaceSession session = liveService.openSession();
+        LiveFaceUpdate first = liveService.processFrame(session, new byte[10]);
+        LiveFaceUpdate second = liveService.processFrame(session, new byte[10]);
+
+        assertEquals(300.0, first.foreheadTip().x(), 0.5);
+        assertEquals(310.0, second.foreheadTip().x(), 0.5);
+        assertEquals(180.0, second.foreheadTip().y(), 0.5);
+    }
+
+    @Test
+    @DisplayName("Unchanged result => nothing pushed")
+    void testUnchangedResultNotPushed() {
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class))).thenAnswer(invocation -> face(300, 300));
+
+        LiveFaceSession session = liveService.openSession();
+        assertNotNull(liveService.processFrame(session, new byte[10]));
+        assertNull(liveService.processFrame(session, new byte[10]));
+        assertNull(liveService.processFrame(session, new byte[10]));
+    }
+
+    @Test
+    @DisplayName("Tracked fit drifts out of the predicted ROI => re-detect on the same frame")
+    void testTrackingLossRedetects() {
+        AtomicInteger calls = new AtomicInteger();
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class)))
+                .thenAnswer(invocation -> calls.getAndIncrement() == 1 ? face(100, 100) : face(300, 300));
+
+        LiveFaceSession session = liveService.openSession();
+        liveService.processFrame(session, new byte[10]);
+        liveService.processFrame(session, new byte[10]);
+
+        verify(faceDetection, times(2)).detectFace(any(Mat.class));
+        verify(faceShapeDetector, times(3)).detectLandmarks(any(Mat.class), any(Rect.class));
+    }
+
+    @Test
+    @DisplayName("Face moves out of the ROI => the fit made inside the ROI is rejected and the frame re-detected")
+    void testFaceLeavesRoi() {
+        AtomicInteger faceX = new AtomicInteger(300);
+        when(faceDetection.detectFace(any(Mat.class)))
+                .thenAnswer(invocation -> new Rect(faceX.get() - 100, 200, 200, 200));
+        // Like LBF: a face inside the ROI when there is one, otherwise still a face-sized fit within the ROI
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class))).thenAnswer(invocation -> {
+            Rect roi = invocation.getArgument(1);
+            int cx = roi.x() + roi.width() / 2, cy = roi.y() + roi.height() / 2;
+            return Math.abs(faceX.get() - cx) < roi.width() / 2 ? face(faceX.get(), 300) : scrambledFace(cx, cy);
+        });
+
+        LiveFaceSession session = liveService.openSession();
+        liveService.processFrame(session, new byte[10]);
+        faceX.set(520);
+        LiveFaceUpdate update = liveService.processFrame(session, new byte[10]);
+
+        assertFalse(update.tracked());
+        assertEquals(520.0, update.landmarks().get(8).x(), 0.5);
+        verify(faceDetection, times(2)).detectFace(any(Mat.class));
+    }
+
+    @Test
+    @DisplayName("A tracked fit follows on only with enough overlap, little motion and the same shape")
+    void testFollowsOn() {
+        float[] previous = LiveFaceSessionServiceImpl.coordinates(face(300, 300).get(0));
+
+        assertTrue(liveService.followsOn(previous, LiveFaceSessionServiceImpl.coordinates(face(330, 300).get(0))));
+        // 50px on a 180px face: the bounds still overlap by more than half, but that is too far for one frame
+        assertFalse(liveService.followsOn(previous, LiveFaceSessionServiceImpl.coordinates(face(350, 300).get(0))));
+        // Same bounds, but not the same face
+        assertFalse(liveService.followsOn(previous, LiveFaceSessionServiceImpl.coordinates(scrambledFace(300, 300).get(0))));
+        assertFalse(liveService.followsOn(null, previous));
+    }
+
+    @Test
+    @DisplayName("No face => message pushed once, then suppressed until something changes")
+    void testNoFaceDetected() {
+        when(faceDetection.detectFace(any(Mat.class))).thenReturn(null);
+
+        LiveFaceSession session = liveService.openSession();
+        LiveFaceUpdate update = liveService.processFrame(session, new byte[10]);
+        assertEquals("No face detected", update.shape());
+        assertTrue(update.landmarks().isEmpty());
+        assertNull(liveService.processFrame(session, new byte[10]));
+        verify(foreheadTipProvider, never()).detectForeheadTip(any());
+    }
+
+    @Test
+    @DisplayName("Shape smoothing ignores a single outlier frame")
+    void testSmoothShape() {
+        LiveFaceSession session = new LiveFaceSession(5);
+        session.smoothShape("Oval");
+        session.smoothShape("Oval");
+        assertEquals("Oval", session.smoothShape("Round"));
+        assertEquals("Oval", session.smoothShape("Oval"));
+    }
+
+    /**
+     * 68 points around (cx, cy): chin (8) at the bottom, inner brows (21, 22) above the center.
+     */
+    private static Point2fVectorVector face(float cx, float cy) {
+        Point2f[] points = new Point2f[68];
+        for (int i = 0; i < points.length; i++) {
+            double angle = 2 * Math.PI * i / points.length;
+            points[i] = new Point2f(cx + (float) (90 * Math.cos(angle)), cy + (float) (90 * Math.sin(angle)));
+        }
+        points[8] = new Point2f(cx, cy + 90);
+        points[21] = new Point2f(cx - 10, cy - 40);
+        points[22] = new Point2f(cx + 10, cy - 40);
+        return new Point2fVectorVector(new Point2fVector(points));
+    }
+
+    /**
+     * The points of {@link #face} in the wrong places: same bounds, not the same face.
+     */
+    private static Point2fVectorVector scrambledFace(float cx, float cy) {
+        Point2fVector points = face(cx, cy).get(0);
+        Point2f[] shifted = new Point2f[68];
+        for (int i = 0; i < shifted.length; i++) {
+            Point2f p = points.get((i + 17) % shifted.length);
+            shifted[i] = new Point2f(p.x(), p.y());
+        }
+        return new Point2fVectorVector(new Point2fVector(shifted));
+    }
+}
@@ -0,0 +1,108 @@
+package hairmony.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+import static org.junit.jupiter.api.Assertions.*;
+import static hairmony.service.NativeAssumptions.assumeObjdetect;
+
+/**
+ * Boot-to-ready (model extraction + pool loading) and first-request latency, serial vs parallel loading.
+ * The timing comparison is tagged "benchmark" and only runs with -Pbenchmarks.
+ */
+class ModelStartupTest {
+
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService loader = Executors.newFixedThreadPool(POOL_SIZE);
+
+    @TempDir
+    Path cacheDir;
+
+    @AfterAll
+    static void shutdown() {
+        loader.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Models are extracted once and reused on later boots")
+    void testModelCache() throws Exception {
+        String first = ModelFiles.extract("haarcascade_frontalface_default.xml", cacheDir.toString());
+        long firstModified = Files.getLastModifiedTime(Paths.get(first)).toMillis();
+        Thread.sleep(20);
+        String second = ModelFiles.extract("haarcascade_frontalface_default.xml", cacheDir.toString());
+
+        assertEquals(first, second);
+        assertEquals(firstModified, Files.getLastModifiedTime(Paths.get(second)).toMillis());
+        try (var files = Files.list(cacheDir)) {
+            assertEquals(1, files.count(), "no partial files left behind");
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Startup: serial vs parallel Haar pool loading, cold vs warm first request")
+    void testParallelLoadingAndWarmup() throws Exception {
+        long serialStart = System.nanoTime();
+        FaceDetectionService serial = assumeObjdetect(() -> new FaceDetectionService(POOL_SIZE, 30_000,
+                FaceDetectionService.HaarSettings.DEFAULT, cacheDir.toString(), null));
+        double serialMs = (System.nanoTime() - serialStart) / 1e6;
+
+        long parallelStart = System.nanoTime();
+        FaceDetectionService parallel = new FaceDetectionService(POOL_SIZE, 30_000,
+                FaceDetectionService.HaarSettings.DEFAULT, cacheDir.toString(), loader);
+        double constructorMs = (System.nanoTime() - parallelStart) / 1e6;
+        parallel.loaded().join();
+        double parallelMs = (System.nanoTime() - parallelStart) / 1e6;
+
+        Mat face = imread(Paths.get(getClass().getResource("/test-face.png").toURI()).toString(), IMREAD_COLOR);
+        Mat canvas = FaceImageUtils.resizeAndPad(face, FaceImageUtils.CANVAS_SIZE, FaceImageUtils.CANVAS_SIZE);
+
+        // First request on a fresh pool instance vs the same request once warmed up
+        long coldStart = System.nanoTime();
+        Rect cold = serial.detectFace(canvas);
+        double coldMs = (System.nanoTime() - coldStart) / 1e6;
+        for (int i = 0; i < 5; i++) {
+            parallel.detectFace(canvas);
+        }
+        long warmStart = System.nanoTime();
+        Rect warm = parallel.detectFace(canvas);
+        double warmMs = (System.nanoTime() - warmStart) / 1e6;
+
+        System.out.printf("Haar pool of %d: serial load %.1f ms, parallel load %.1f ms (constructor returned after %.1f ms); "
+                        + "first request %.1f ms cold, %.1f ms warm%n",
+                POOL_SIZE, serialMs, parallelMs, constructorMs, coldMs, warmMs);
+
+        assertNotNull(cold);
+        assertEquals(cold.x(), warm.x());
+        assertEquals(cold.width(), warm.width());
+        assertEquals(POOL_SIZE, parallel.poolStats().size());
+    }
+
+    @Test
+    @DisplayName("A pool whose instances fail to load fails fast instead of waiting for the borrow timeout")
+    void testFailedLoadFailsFast() {
+        NativeObjectPool<Object> pool = new NativeObjectPool<>("broken", 2, 30_000,
+                () -> {
+                    throw new IllegalStateException("model missing");
+                }, loader);
+
+        assertThrows(Exception.class, () -> pool.loaded().join());
+        long start = System.nanoTime();
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> pool.execute(instance -> instance));
+        assertTrue(e.getMessage().contains("failed to load"));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1_000);
+    }
+}
@@ -0,0 +1,28 @@
+package hairmony.service;
+
+import org.junit.jupiter.api.Assumptions;
+
+/**
+ * Assumptions shared by the tests that need OpenCV natives.
+ */
+final class NativeAssumptions {
+
+    private NativeAssumptions() {
+    }
+
+    interface NativeLoad<T> {
+        T load() throws Exception;
+    }
+
+    /**
+     * Runs a load that links OpenCV objdetect and skips the test when the natives are missing:
+     * objdetect links against highgui, which needs GTK on the host.
+     */
+    static <T> T assumeObjdetect(NativeLoad<T> load) throws Exception {
+        try {
+            return load.load();
+        } catch (UnsatisfiedLinkError e) {
+            return Assumptions.abort("OpenCV objdetect natives unavailable: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package hairmony.service;
+
+import hairmony.dto.FaceAnalysisResponse;
+import hairmony.dto.PointDTO;
+import hairmony.repository.HaircutRepository;
+import hairmony.serviceInterfaces.IFaceDetection;
+import hairmony.serviceInterfaces.IFaceShapeDetector;
+import hairmony.serviceInterfaces.IForeheadTipProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.opencv.opencv_core.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs thousands of analyses through the real Mat work (resize/pad, JPEG encode, mapping) and checks
+ * that JavaCPP-tracked memory goes back to where it started, i.e. nothing is left for the GC to free.
+ */
+@Tag("benchmark")
+class NativeMemorySoakTest {
+
+    private static final int WARM_UP = 50;
+    private static final int ROUNDS = Integer.getInteger("ai.soak.rounds", 2_000);
+    private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterAll
+    static void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Native memory stays bounded after thousands of analyses")
+    void nativeMemoryIsReleasedPerRequest() {
+        IFaceDetection faceDetection = Mockito.mock(IFaceDetection.class);
+        IFaceShapeDetector faceShapeDetector = Mockito.mock(IFaceShapeDetector.class);
+        when(faceDetection.detectFace(any(Mat.class))).thenAnswer(invocation -> new Rect(150, 150, 300, 300));
+        when(faceShapeDetector.detectLandmarks(any(Mat.class), any(Rect.class))).thenAnswer(invocation -> landmarks());
+        when(faceShapeDetector.classifyFaceShape(any(), any(), anyDouble(), anyDouble()))
+                .thenReturn(new IFaceShapeDetector.ClassificationResult("Oval", 0, 0));
+
+        // Tiny cache + distinct bytes per request => every round runs the full pipeline
+        AIServiceImpl aiService = new AIServiceImpl(faceDetection, faceShapeDetector,
+                new HaircutCatalog(Mockito.mock(HaircutRepository.class)),
+                new ForeheadSidecarGuard(Mockito.mock(IForeheadTipProvider.class), executor, new SimpleMeterRegistry(),
+                        2_000, 4, 5, 10_000),
+                new FaceAnalysisCache(1, 60), new UploadBufferPool(1, 1 << 20, 1 << 20, 1_000),
+                new FaceAnalysisMetrics(new SimpleMeterRegistry()), executor) {
+            @Override
+            protected Mat decodeMat(Mat encoded, int flags) {
+                return new Mat(480, 640, org.bytedeco.opencv.global.opencv_core.CV_8UC3);
+            }
+
+            @Override
+            protected PointDTO getForeheadTipFromPython(byte[] imageBytes) {
+                return new PointDTO(300.0, 120.0);
+            }
+        };
+
+        for (int i = 0; i < WARM_UP; i++) {
+            analyze(aiService, i);
+        }
+        long baselineCount = Pointer.totalCount();
+        long baselineBytes = Pointer.totalBytes();
+        long baselinePhysical = Pointer.physicalBytes();
+
+        for (int i = WARM_UP; i < WARM_UP + ROUNDS; i++) {
+            analyze(aiService, i);
+        }
+
+        long leakedCount = Pointer.totalCount() - baselineCount;
+        long leakedBytes = Pointer.totalBytes() - baselineBytes;
+        long physicalGrowth = Pointer.physicalBytes() - baselinePhysical;
+        System.out.printf("Native soak (%d rounds): +%d pointers, +%d tracked bytes, RSS +%.1f MB%n",
+                ROUNDS, leakedCount, leakedBytes, physicalGrowth / 1_048_576.0);
+
+        // A leak of even one Mat per request would show up as >= ROUNDS extra pointers
+        assertTrue(leakedCount < 64, "JavaCPP pointers still alive: " + leakedCount);
+        assertTrue(leakedBytes < 1 << 20, "JavaCPP bytes still allocated: " + leakedBytes);
+        // Loose: RSS also moves with the Java heap. ~2 MB of Mats per round would be gigabytes.
+        assertTrue(physicalGrowth < 512L << 20, "RSS grew by " + physicalGrowth + " bytes");
+    }
+
+    private static void analyze(AIServiceImpl aiService, int round) {
+        // Through the upload path, so the pooled native upload buffer is soaked too
+        byte[] bytes = ByteBuffer.allocate(16).putInt(round).array();
+        FaceAnalysisResponse response = aiService.analyzeFace(new MockMultipartFile("file", bytes));
+        assertEquals("Oval", response.shape());
+    }
+
+    private static Point2fVectorVector landmarks() {
+        Point2f[] points = new Point2f[68];
+        for (int i = 0; i < points.length; i++) {
+            double angle = 2 * Math.PI * i / points.length;
+            points[i] = new Point2f(300 + (float) (140 * Math.cos(angle)), 300 + (float) (140 * Math.sin(angle)));
+        }
+        return new Point2fVectorVector(new Point2fVector(points));
+    }
+}
@@ -0,0 +1,72 @@
+package hairmony.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeObjectPoolTest {
+
+    @Test
+    @DisplayName("An instance is never handed to two threads at the same time")
+    void testExclusiveBorrow() throws Exception {
+        AtomicInteger ids = new AtomicInteger();
+        NativeObjectPool<Integer> pool = new NativeObjectPool<>("test", 3, 5_000, ids::incrementAndGet);
+        Set<Integer> busy = ConcurrentHashMap.newKeySet();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            CompletableFuture<?>[] tasks = new CompletableFuture<?>[200];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = CompletableFuture.runAsync(() -> pool.execute(id -> {
+                    assertTrue(busy.add(id), "instance borrowed twice");
+                    maxConcurrent.accumulateAndGet(busy.size(), Math::max);
+                    Thread.onSpinWait();
+                    busy.remove(id);
+                    return id;
+                }), executor);
+            }
+            CompletableFuture.allOf(tasks).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(3, ids.get());
+        assertTrue(maxConcurrent.get() <= 3);
+        NativeObjectPool.Stats stats = pool.stats();
+        assertEquals(200, stats.borrows());
+        assertEquals(0, stats.inUse());
+        assertTrue(stats.utilization() >= 0 && stats.utilization() <= 1);
+    }
+
+    @Test
+    @DisplayName("Borrowing from an exhausted pool times out")
+    void testBorrowTimeout() throws Exception {
+        NativeObjectPool<Object> pool = new NativeObjectPool<>("test", 1, 50, Object::new);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> pool.execute(o -> {
+            holding.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException ignored) {
+            }
+            return o;
+        }));
+        holder.start();
+        holding.await();
+
+        assertThrows(IllegalStateException.class, () -> pool.execute(o -> o));
+        assertEquals(1, pool.stats().timeouts());
+
+        done.countDown();
+        holder.join();
+        assertNotNull(pool.execute(o -> o));
+    }
+}
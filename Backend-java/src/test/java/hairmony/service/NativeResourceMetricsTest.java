@@ -0,0 +1,39 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IFaceDetection;
+import hairmony.serviceInterfaces.IFaceShapeDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class NativeResourceMetricsTest {
+
+    @Test
+    @DisplayName("Pool gauges follow the live pool stats, JavaCPP memory gauges are registered")
+    void testGauges() {
+        NativeObjectPool<Object> detectors = new NativeObjectPool<>("haar-cascade", 2, 1_000, Object::new);
+        NativeObjectPool<Object> facemarks = new NativeObjectPool<>("lbf-facemark", 3, 1_000, Object::new);
+        IFaceDetection faceDetection = Mockito.mock(IFaceDetection.class);
+        IFaceShapeDetector faceShapeDetector = Mockito.mock(IFaceShapeDetector.class);
+        when(faceDetection.poolStats()).thenAnswer(invocation -> detectors.stats());
+        when(faceShapeDetector.poolStats()).thenAnswer(invocation -> facemarks.stats());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        new NativeResourceMetrics(registry, faceDetection, faceShapeDetector, new UploadBufferPool(1, 1 << 20, 1 << 20, 1_000));
+
+        assertEquals(2, registry.get("ai.pool.size").tag("pool", "haar-cascade").gauge().value());
+        assertEquals(3, registry.get("ai.pool.size").tag("pool", "lbf-facemark").gauge().value());
+        assertEquals(1, registry.get("ai.pool.size").tag("pool", "upload-buffer").gauge().value());
+        try (NativeObjectPool.Lease<Object> lease = detectors.lease()) {
+            assertEquals(1, registry.get("ai.pool.in.use").tag("pool", "haar-cascade").gauge().value());
+        }
+        assertEquals(0, registry.get("ai.pool.in.use").tag("pool", "haar-cascade").gauge().value());
+        assertEquals(1, registry.get("ai.pool.borrows").tag("pool", "haar-cascade").functionCounter().count());
+        assertTrue(registry.get("javacpp.memory.physical").gauge().value() > 0);
+        assertNotNull(registry.get("javacpp.memory.tracked").gauge());
+    }
+}
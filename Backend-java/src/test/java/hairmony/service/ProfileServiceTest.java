@@ -0,0 +1,65 @@
+package hairmony.service;
+
+import hairmony.dto.ProfileDTO;
+import hairmony.entities.Barber;
+import hairmony.repository.BarbershopRepository;
+import hairmony.repository.UserRepository;
+import hairmony.serviceInterfaces.FileStorageServiceInf;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ProfileServiceTest {
+
+    private static final Long USER = 3L;
+
+    private final UserRepository userRepository = Mockito.mock(UserRepository.class);
+    private final BarbershopRepository barbershopRepository = Mockito.mock(BarbershopRepository.class);
+    private final FileStorageServiceInf fileStorageService = Mockito.mock(FileStorageServiceInf.class);
+    private final ProfileService profileService = new ProfileService(userRepository, barbershopRepository,
+            Mockito.mock(PasswordEncoder.class), fileStorageService);
+
+    @Test
+    @DisplayName("A rejected update stores no picture and keeps the old one")
+    void testRejectedUpdateStoresNothing() {
+        Barber barber = new Barber("bob", "x", "BARBER", "uploads/old.jpg", null, 0.0);
+        when(userRepository.findById(USER)).thenReturn(Optional.of(barber));
+        when(barbershopRepository.findById(99L)).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> profileService.updateProfile(USER, changes(99L)));
+        verify(fileStorageService, never()).store(any());
+        verify(fileStorageService, never()).release(any());
+        assertEquals("uploads/old.jpg", barber.getPicture());
+    }
+
+    @Test
+    @DisplayName("A failed save releases the new picture; a successful one releases the old")
+    void testPictureReleasedWithSave() {
+        Barber barber = new Barber("bob", "x", "BARBER", "uploads/old.jpg", null, 0.0);
+        when(userRepository.findById(USER)).thenReturn(Optional.of(barber));
+        when(fileStorageService.store(any())).thenReturn("uploads/new.jpg");
+        when(userRepository.save(any())).thenThrow(new IllegalStateException("db down")).thenReturn(barber);
+
+        assertThrows(IllegalStateException.class, () -> profileService.updateProfile(USER, changes(null)));
+        verify(fileStorageService).release("uploads/new.jpg");
+
+        barber.setPicture("uploads/old.jpg");
+        profileService.updateProfile(USER, changes(null));
+        verify(fileStorageService).release("uploads/old.jpg");
+    }
+
+    private static ProfileDTO changes(Long barbershopId) {
+        ProfileDTO changes = new ProfileDTO();
+        changes.setBarbershopId(barbershopId);
+        changes.setPictureFile(new MockMultipartFile("pictureFile", "me.jpg", "image/jpeg", new byte[]{1}));
+        return changes;
+    }
+}
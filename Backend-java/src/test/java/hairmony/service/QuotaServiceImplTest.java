@@ -0,0 +1,153 @@
+package hairmony.service;
+
+import hairmony.entities.Client;
+import hairmony.entities.User;
+import hairmony.exceptions.PaymentRequiredException;
+import hairmony.repository.UserRepository;
+import hairmony.serviceInterfaces.QuotaServiceInf;
+import hairmony.serviceInterfaces.QuotaServiceInf.Feature;
+import hairmony.serviceInterfaces.QuotaServiceInf.Grant;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the conditional UPDATEs against the embedded H2 database, from many threads at once.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(QuotaServiceImpl.class)
+// Every consume must commit on its own, as in production, so no test-wide transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QuotaServiceImplTest {
+
+    private static final int THREADS = 32;
+
+    @Autowired
+    private QuotaServiceInf quotaService;
+    @Autowired
+    private UserRepository userRepository;
+
+    private User newUser(int uploads, int live, boolean unlimited) {
+        Client client = new Client("quota-" + UUID.randomUUID(), "secret", "CLIENT", null, null);
+        client.setFreeTrialsRemaining(uploads);
+        client.setLiveTrialsRemaining(live);
+        client.setUnlimitedAccess(unlimited);
+        return userRepository.save(client);
+    }
+
+    private User reload(User user) {
+        return userRepository.findById(user.getId()).orElseThrow();
+    }
+
+    /**
+     * Fires the task from THREADS threads released together and returns what each call produced.
+     */
+    private static <T> List<T> race(Callable<T> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Parallel requests never spend more trials than the user has")
+    void testNoOverConsumption() throws Exception {
+        User user = newUser(5, 2, false);
+
+        List<Boolean> uploads = race(() -> {
+            try {
+                return quotaService.consume(user.getId(), Feature.UPLOAD) == Grant.CHARGED;
+            } catch (PaymentRequiredException e) {
+                return false;
+            }
+        });
+        List<Boolean> live = race(() -> {
+            try {
+                return quotaService.consume(user.getId(), Feature.LIVE) == Grant.CHARGED;
+            } catch (PaymentRequiredException e) {
+                return false;
+            }
+        });
+
+        assertEquals(5, uploads.stream().filter(charged -> charged).count());
+        assertEquals(2, live.stream().filter(charged -> charged).count());
+        User after = reload(user);
+        assertEquals(0, after.getFreeTrialsRemaining());
+        assertEquals(0, after.getLiveTrialsRemaining());
+    }
+
+    @Test
+    @DisplayName("Failed analyses give their trial back, even when racing with new requests")
+    void testRefundUnderContention() throws Exception {
+        User user = newUser(3, 1, false);
+        AtomicInteger denied = new AtomicInteger();
+
+        // Every request fails its analysis and refunds: the balance must end where it started
+        race(() -> {
+            try {
+                Grant grant = quotaService.consume(user.getId(), Feature.UPLOAD);
+                quotaService.refund(user.getId(), Feature.UPLOAD, grant);
+            } catch (PaymentRequiredException e) {
+                denied.incrementAndGet();
+            }
+            return null;
+        });
+
+        assertEquals(3, reload(user).getFreeTrialsRemaining());
+        assertTrue(denied.get() < THREADS, "some requests got a trial");
+    }
+
+    @Test
+    @DisplayName("Out of trials => PaymentRequiredException with the feature's price")
+    void testPaymentRequired() {
+        User user = newUser(0, 0, false);
+
+        PaymentRequiredException e = assertThrows(PaymentRequiredException.class,
+                () -> quotaService.consume(user.getId(), Feature.LIVE));
+        assertEquals("Pay $5 to use Live Detection", e.getMessage());
+        assertEquals(5.0, e.getAmount());
+        assertEquals(0, reload(user).getLiveTrialsRemaining());
+    }
+
+    @Test
+    @DisplayName("Unlimited users are neither charged nor refunded")
+    void testUnlimitedAccess() {
+        User user = newUser(1, 1, true);
+
+        Grant grant = quotaService.consume(user.getId(), Feature.UPLOAD);
+        assertEquals(Grant.UNLIMITED, grant);
+        quotaService.refund(user.getId(), Feature.UPLOAD, grant);
+
+        assertEquals(1, reload(user).getFreeTrialsRemaining());
+    }
+}
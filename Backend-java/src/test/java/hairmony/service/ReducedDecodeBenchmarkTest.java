@@ -0,0 +1,77 @@
+package hairmony.service;
+
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static hairmony.service.FaceImageUtils.*;
+import static org.bytedeco.opencv.global.opencv_core.*;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Full decode + resizeAndPad vs header-driven reduced decode + resizeAndPad on synthetic 12 MP and 48 MP photos.
+ */
+@Tag("benchmark")
+class ReducedDecodeBenchmarkTest {
+
+    private static final int ROUNDS = Integer.getInteger("ai.decode.rounds", 5);
+
+    @Test
+    @DisplayName("Benchmark: full vs reduced decode of large JPEGs")
+    void compareDecodePaths() {
+        int[][] sizes = {{4000, 3000}, {8000, 6000}};
+        for (int[] size : sizes) {
+            byte[] jpeg = photo(size[0], size[1]);
+            ImageHeader header = ImageHeader.read(jpeg);
+            assertEquals(new ImageHeader(size[0], size[1]), header);
+            int reduction = header.reductionFor(CANVAS_SIZE);
+            assertTrue(reduction > 1);
+
+            long[] full = new long[ROUNDS];
+            long[] reduced = new long[ROUNDS];
+            for (int r = 0; r < ROUNDS; r++) {
+                try (PointerScope scope = new PointerScope()) {
+                    long start = System.nanoTime();
+                    Mat decoded = imdecode(new Mat(jpeg), IMREAD_COLOR);
+                    Mat padded = resizeAndPad(decoded, CANVAS_SIZE, CANVAS_SIZE);
+                    full[r] = System.nanoTime() - start;
+                    assertEquals(size[0], decoded.cols());
+                    assertEquals(CANVAS_SIZE, padded.cols());
+                }
+                try (PointerScope scope = new PointerScope()) {
+                    long start = System.nanoTime();
+                    Mat decoded = decodeReduced(jpeg, reduction);
+                    Mat padded = resizeAndPad(decoded, CANVAS_SIZE, CANVAS_SIZE);
+                    reduced[r] = System.nanoTime() - start;
+                    // Still at least canvas-sized => resizeAndPad only ever shrinks
+                    assertTrue(Math.max(decoded.cols(), decoded.rows()) >= CANVAS_SIZE);
+                    assertEquals(CANVAS_SIZE, padded.cols());
+                }
+            }
+            System.out.printf("%dx%d (%.1f MB jpeg): full decode median %.1f ms, 1/%d decode median %.1f ms%n",
+                    size[0], size[1], jpeg.length / 1_048_576.0,
+                    median(full), reduction, median(reduced));
+        }
+    }
+
+    private static byte[] photo(int width, int height) {
+        try (PointerScope scope = new PointerScope()) {
+            // Noise so the JPEG is photo-sized and costs real work to decode
+            Mat mat = new Mat(height, width, CV_8UC3);
+            randu(mat, new Mat(1, 1, CV_64F, new DoublePointer(0.0)), new Mat(1, 1, CV_64F, new DoublePointer(255.0)));
+            return matToBytes(mat);
+        }
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,277 @@
+package hairmony.service;
+
+import hairmony.dto.ReservationRequestDTO;
+import hairmony.entities.Barber;
+import hairmony.entities.Client;
+import hairmony.entities.Reservation;
+import hairmony.exceptions.PaymentRequiredException;
+import hairmony.repository.BarberRepository;
+import hairmony.repository.ClientRepository;
+import hairmony.repository.MonthlyUsageRepository;
+import hairmony.repository.ReservationRepository;
+import hairmony.serviceInterfaces.AvailabilityServiceInf;
+import hairmony.serviceInterfaces.NotificationServiceInf;
+import hairmony.serviceInterfaces.ReservationServiceInf;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Books against the embedded H2 database with up to 100k reservations of other clients in it.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({ReservationServiceImpl.class, MonthlyUsageLedger.class, MonthlyUsageBackfill.class})
+// Every booking must commit on its own, as in production, so no test-wide transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationServiceImplTest {
+
+    private static final int THREADS = 16;
+    private static final String[] STATUSES = {"CONFIRMED", "PENDING_PAYMENT", "CONFIRMED", "CANCELLED"};
+
+    @Autowired
+    private ReservationServiceInf reservationService;
+    @Autowired
+    private MonthlyUsageLedger monthlyUsageLedger;
+    @Autowired
+    private MonthlyUsageBackfill monthlyUsageBackfill;
+    @Autowired
+    private MonthlyUsageRepository monthlyUsageRepository;
+    @Autowired
+    private ClientRepository clientRepository;
+    @Autowired
+    private BarberRepository barberRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private HaircutCatalog haircutCatalog;
+    @MockBean
+    private NotificationServiceInf notificationService;
+    // Every booking here takes the same slot; slots are AvailabilityServiceImplTest's business
+    @MockBean
+    private AvailabilityServiceInf availabilityService;
+
+    private final List<Client> others = new ArrayList<>();
+    private Barber barber;
+    private int seeded;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM reservations");
+        monthlyUsageRepository.deleteAll();
+    }
+
+    private Client client(boolean vip, boolean normal) {
+        Client client = new Client("client-" + UUID.randomUUID(), "secret", "CLIENT", null, null);
+        client.setVIPSubscriber(vip);
+        client.setNormalSubscriber(normal);
+        return clientRepository.save(client);
+    }
+
+    private Barber barber() {
+        if (barber == null) {
+            barber = barberRepository.save(new Barber("barber-" + UUID.randomUUID(), "secret", "BARBER", null, "fades", 4.5));
+        }
+        return barber;
+    }
+
+    /**
+     * Adds reservations of 20 other clients over the last two years, a mix of statuses, straight through JDBC.
+     */
+    private void seed(int count) {
+        while (others.size() < 20) {
+            others.add(client(false, true));
+        }
+        LocalDate firstOfMonth = YearMonth.now().atDay(1);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = seeded; i < seeded + count; i++) {
+            LocalDate date = firstOfMonth.minusMonths(i % 24).plusDays(i % 28);
+            rows.add(new Object[]{Date.valueOf(date), java.sql.Time.valueOf(LocalTime.of(9 + i % 8, 0)), "Buzz cut",
+                    others.get(i % others.size()).getId(), barber().getId(), STATUSES[i % STATUSES.length]});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO reservations (date, time, hairstyle_chosen, client_id, barber_id, status) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", rows);
+        seeded += count;
+    }
+
+    /**
+     * Books and returns the status the reservation got.
+     */
+    private String book(Client client, LocalDate date) {
+        ReservationRequestDTO dto = new ReservationRequestDTO();
+        dto.setClientId(client.getId());
+        dto.setBarberId(barber().getId());
+        dto.setDate(date);
+        dto.setTime(LocalTime.of(10, 0));
+        dto.setHairstyleChosen("Buzz cut");
+        try {
+            return reservationService.createReservation(dto).getStatus();
+        } catch (PaymentRequiredException e) {
+            return "PENDING_PAYMENT";
+        }
+    }
+
+    private record Cost(long statements, long entityLoads) {
+    }
+
+    private Cost cost(Runnable booking) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        booking.run();
+        return new Cost(statistics.getPrepareStatementCount(), statistics.getEntityLoadCount());
+    }
+
+    private int confirmedInDb(Long clientId, YearMonth month) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations WHERE client_id = ? AND status = 'CONFIRMED' "
+                        + "AND date >= ? AND date < ?", Integer.class, clientId,
+                Date.valueOf(month.atDay(1)), Date.valueOf(month.plusMonths(1).atDay(1)));
+    }
+
+    @Test
+    @DisplayName("Booking costs the same statements and entity loads with 1k or 100k reservations in the table")
+    void testConstantCostBooking() {
+        Client early = client(false, true);
+        Client late = client(false, true);
+
+        seed(1_000);
+        Cost small = cost(() -> assertEquals("CONFIRMED", book(early, LocalDate.now())));
+        seed(99_000);
+        Cost large = cost(() -> assertEquals("CONFIRMED", book(late, LocalDate.now())));
+
+        assertEquals(small, large);
+        assertTrue(large.entityLoads() <= 2, "only the client and the barber are loaded: " + large);
+        assertTrue(large.statements() <= 8, "a handful of primary-key statements: " + large);
+    }
+
+    @Test
+    @DisplayName("The backfill reproduces the CONFIRMED counts of 100k existing reservations, then bookings continue from them")
+    void testBackfill() {
+        seed(100_000);
+        monthlyUsageBackfill.backfill();
+
+        int confirmed = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reservations WHERE status = 'CONFIRMED'", Integer.class);
+        int ledgerTotal = monthlyUsageRepository.findAll().stream().mapToInt(u -> u.getConfirmed()).sum();
+        assertEquals(confirmed, ledgerTotal);
+        YearMonth thisMonth = YearMonth.now();
+        for (Client client : others) {
+            assertEquals(confirmedInDb(client.getId(), thisMonth), monthlyUsageLedger.confirmedIn(client.getId(), thisMonth));
+            assertEquals(confirmedInDb(client.getId(), thisMonth.minusMonths(5)),
+                    monthlyUsageLedger.confirmedIn(client.getId(), thisMonth.minusMonths(5)));
+        }
+
+        // Seeded clients are normal subscribers that already used their two free haircuts this month
+        Client busy = others.get(0);
+        assertTrue(monthlyUsageLedger.confirmedIn(busy.getId(), thisMonth) >= 2);
+        assertEquals("PENDING_PAYMENT", book(busy, LocalDate.now()));
+
+        monthlyUsageBackfill.backfill();   // not empty any more: a no-op
+        assertEquals(ledgerTotal, monthlyUsageRepository.findAll().stream().mapToInt(u -> u.getConfirmed()).sum());
+    }
+
+    @Test
+    @DisplayName("A backfill that fails half way leaves the ledger empty, so the next start fills it completely")
+    void testFailedBackfillRetried() {
+        Client client = client(false, true);
+        ReservationRepository broken = Mockito.mock(ReservationRepository.class);
+        // The same client-month twice: the second row fails to insert after the first one was written
+        when(broken.countConfirmedByClientAndMonth()).thenReturn(List.of(
+                new Object[]{client.getId(), 2024, 5, 3},
+                new Object[]{client.getId(), 2024, 5, 1}));
+        MonthlyUsageBackfill failing = new MonthlyUsageBackfill(broken, monthlyUsageRepository, transactionManager, true);
+        assertThrows(RuntimeException.class, failing::backfill);
+        assertEquals(0, monthlyUsageRepository.count());
+
+        seed(1_000);
+        monthlyUsageBackfill.backfill();
+        int confirmed = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reservations WHERE status = 'CONFIRMED'", Integer.class);
+        assertEquals(confirmed, monthlyUsageRepository.findAll().stream().mapToInt(u -> u.getConfirmed()).sum());
+    }
+
+    @Test
+    @DisplayName("Parallel bookings of one subscriber never get more free haircuts than the plan allows")
+    void testNoOverbookedFreeHaircuts() throws Exception {
+        Client subscriber = client(false, true);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<String> statuses = new ArrayList<>();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return book(subscriber, LocalDate.now());
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                statuses.add(future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(2, statuses.stream().filter("CONFIRMED"::equals).count());
+        assertEquals(2, monthlyUsageLedger.confirmedIn(subscriber.getId(), YearMonth.now()));
+        assertEquals(2, confirmedInDb(subscriber.getId(), YearMonth.now()));
+    }
+
+    @Test
+    @DisplayName("Status changes into and out of CONFIRMED move the count of the reservation's month")
+    void testStatusChanges() {
+        Client vip = client(true, false);
+        YearMonth nextMonth = YearMonth.now().plusMonths(1);
+
+        assertEquals("CONFIRMED", book(vip, nextMonth.atDay(3)));
+        assertEquals(1, monthlyUsageLedger.confirmedIn(vip.getId(), nextMonth));
+        assertEquals(0, monthlyUsageLedger.confirmedIn(vip.getId(), YearMonth.now()));
+
+        Reservation reservation = reservationService.getReservationsByClient(vip.getId()).get(0);
+        reservationService.updateStatus(reservation.getId(), "CANCELLED");
+        assertEquals(0, monthlyUsageLedger.confirmedIn(vip.getId(), nextMonth));
+        reservationService.updateStatus(reservation.getId(), "CANCELLED");
+        assertEquals(0, monthlyUsageLedger.confirmedIn(vip.getId(), nextMonth));
+        reservationService.updateStatus(reservation.getId(), "CONFIRMED");
+        assertEquals(1, monthlyUsageLedger.confirmedIn(vip.getId(), nextMonth));
+
+        Client payer = client(false, false);
+        assertEquals("PENDING_PAYMENT", book(payer, LocalDate.now()));
+        assertEquals(0, monthlyUsageLedger.confirmedIn(payer.getId(), YearMonth.now()));
+        Reservation pending = reservationService.getReservationsByClient(payer.getId()).get(0);
+        reservationService.updateStatus(pending.getId(), "CONFIRMED");   // as after a Stripe payment
+        assertEquals(1, monthlyUsageLedger.confirmedIn(payer.getId(), YearMonth.now()));
+    }
+}
@@ -0,0 +1,282 @@
+package hairmony.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for an S3-compatible endpoint (path-style, one bucket): PUT, GET, HEAD, DELETE,
+ * multipart uploads and presigned GETs, each rejected with 403 unless its SigV4 signature matches,
+ * so {@link S3ObjectStorage} can be tested without MinIO or AWS.
+ */
+class S3StandIn implements AutoCloseable {
+
+    static final String ACCESS_KEY = "test-access-key";
+    static final String SECRET_KEY = "test-secret-key";
+    static final String REGION = "eu-west-1";
+    static final String BUCKET = "hairmony-uploads";
+
+    record StoredObject(byte[] bytes, String contentType, String cacheControl) {
+    }
+
+    private record PendingUpload(String key, String contentType, String cacheControl,
+                                 SortedMap<Integer, byte[]> parts) {
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final S3RequestSigner signer = new S3RequestSigner(ACCESS_KEY, SECRET_KEY, REGION);
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, PendingUpload> uploads = new ConcurrentHashMap<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger uploadIds = new AtomicInteger();
+    private volatile int failPart;
+
+    S3StandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    StoredObject object(String key) {
+        return objects.get(key);
+    }
+
+    int pendingUploads() {
+        return uploads.size();
+    }
+
+    /**
+     * "METHOD" or "METHOD ?param,param" of every authorized request, in order.
+     */
+    List<String> requests() {
+        synchronized (requests) {
+            return List.copyOf(requests);
+        }
+    }
+
+    /**
+     * Answers 500 to this part number of any multipart upload (0: none).
+     */
+    void failPart(int partNumber) {
+        this.failPart = partNumber;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            Map<String, String> query = parseQuery(rawQuery);
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (!authorized(exchange, method, rawQuery, query)) {
+                respond(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+                return;
+            }
+            String prefix = "/" + BUCKET + "/";
+            String path = exchange.getRequestURI().getPath();
+            if (!path.startsWith(prefix)) {
+                respond(exchange, 404, "<Error><Code>NoSuchBucket</Code></Error>");
+                return;
+            }
+            String key = path.substring(prefix.length());
+            Set<String> params = new TreeSet<>(query.keySet());
+            params.removeIf(name -> name.startsWith("X-Amz-"));
+            requests.add(params.isEmpty() ? method : method + " ?" + String.join(",", params));
+
+            switch (method) {
+                case "PUT" -> {
+                    if (query.containsKey("uploadId")) {
+                        uploadPart(exchange, query, body);
+                    } else {
+                        objects.put(key, new StoredObject(body, header(exchange, "Content-Type"),
+                                header(exchange, "Cache-Control")));
+                        exchange.getResponseHeaders().add("ETag", etag(body));
+                        respond(exchange, 200, "");
+                    }
+                }
+                case "POST" -> {
+                    if (query.containsKey("uploads")) {
+                        String uploadId = "upload-" + uploadIds.incrementAndGet();
+                        uploads.put(uploadId, new PendingUpload(key, header(exchange, "Content-Type"),
+                                header(exchange, "Cache-Control"), new TreeMap<>()));
+                        respond(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>"
+                                + key + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                    } else {
+                        completeUpload(exchange, key, query, new String(body, StandardCharsets.UTF_8));
+                    }
+                }
+                case "GET", "HEAD" -> {
+                    StoredObject object = objects.get(key);
+                    if (object == null) {
+                        respond(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                        return;
+                    }
+                    if (object.contentType() != null) {
+                        exchange.getResponseHeaders().add("Content-Type", object.contentType());
+                    }
+                    if (object.cacheControl() != null) {
+                        exchange.getResponseHeaders().add("Cache-Control", object.cacheControl());
+                    }
+                    exchange.getResponseHeaders().add("ETag", etag(object.bytes()));
+                    if (method.equals("HEAD")) {
+                        exchange.sendResponseHeaders(200, -1);
+                    } else {
+                        exchange.sendResponseHeaders(200, object.bytes().length);
+                        exchange.getResponseBody().write(object.bytes());
+                    }
+                }
+                case "DELETE" -> {
+                    if (query.containsKey("uploadId")) {
+                        uploads.remove(query.get("uploadId"));
+                    } else {
+                        objects.remove(key);   // S3 answers 204 for missing keys as well
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> respond(exchange, 405, "");
+            }
+        }
+    }
+
+    private void uploadPart(HttpExchange exchange, Map<String, String> query, byte[] body) throws IOException {
+        PendingUpload upload = uploads.get(query.get("uploadId"));
+        if (upload == null) {
+            respond(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+        int partNumber = Integer.parseInt(query.get("partNumber"));
+        if (partNumber == failPart) {
+            respond(exchange, 500, "<Error><Code>InternalError</Code></Error>");
+            return;
+        }
+        upload.parts().put(partNumber, body);
+        exchange.getResponseHeaders().add("ETag", etag(body));
+        respond(exchange, 200, "");
+    }
+
+    private void completeUpload(HttpExchange exchange, String key, Map<String, String> query, String xml)
+            throws IOException {
+        PendingUpload upload = uploads.remove(query.get("uploadId"));
+        if (upload == null || !upload.key().equals(key)) {
+            respond(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+            return;
+        }
+        ByteArrayOutputStream combined = new ByteArrayOutputStream();
+        int expected = 1;
+        for (Map.Entry<Integer, byte[]> part : upload.parts().entrySet()) {
+            String listed = "<Part><PartNumber>" + part.getKey() + "</PartNumber><ETag>" + etag(part.getValue())
+                    + "</ETag></Part>";
+            if (part.getKey() != expected++ || !xml.contains(listed)) {
+                // Real S3 reports this in a 200 body
+                respond(exchange, 200, "<Error><Code>InvalidPart</Code></Error>");
+                return;
+            }
+            combined.write(part.getValue());
+        }
+        objects.put(key, new StoredObject(combined.toByteArray(), upload.contentType(), upload.cacheControl()));
+        respond(exchange, 200, "<CompleteMultipartUploadResult><Key>" + key + "</Key></CompleteMultipartUploadResult>");
+    }
+
+    private boolean authorized(HttpExchange exchange, String method, String rawQuery, Map<String, String> query) {
+        String rawPath = exchange.getRequestURI().getRawPath();
+        String host = header(exchange, "Host");
+        if (query.containsKey("X-Amz-Signature")) {
+            Instant signedAt = S3RequestSigner.parseAmzDate(query.get("X-Amz-Date"));
+            long expires = Long.parseLong(query.get("X-Amz-Expires"));
+            if (Instant.now().isAfter(signedAt.plusSeconds(expires))
+                    || !query.get("X-Amz-Credential").startsWith(ACCESS_KEY + "/")) {
+                return false;
+            }
+            String expected = signer.signatureOf(method, rawPath, rawQuery, Map.of("host", host),
+                    S3RequestSigner.UNSIGNED_PAYLOAD, signedAt, "X-Amz-Signature");
+            return expected.equals(query.get("X-Amz-Signature"));
+        }
+
+        String authorization = header(exchange, "Authorization");
+        if (authorization == null || !authorization.startsWith(S3RequestSigner.ALGORITHM + " Credential=" + ACCESS_KEY + "/")) {
+            return false;
+        }
+        String signedHeaders = field(authorization, "SignedHeaders=");
+        Map<String, String> values = new HashMap<>();
+        for (String name : signedHeaders.split(";")) {
+            String value = header(exchange, name);
+            if (value == null) {
+                return false;
+            }
+            values.put(name, value);
+        }
+        Instant signedAt = S3RequestSigner.parseAmzDate(header(exchange, "x-amz-date"));
+        String expected = signer.signatureOf(method, rawPath, rawQuery, values,
+                header(exchange, "x-amz-content-sha256"), signedAt, null);
+        return expected.equals(field(authorization, "Signature="));
+    }
+
+    private static String field(String authorization, String name) {
+        int start = authorization.indexOf(name) + name.length();
+        int end = authorization.indexOf(',', start);
+        return authorization.substring(start, end < 0 ? authorization.length() : end).trim();
+    }
+
+    private static String header(HttpExchange exchange, String name) {
+        return exchange.getRequestHeaders().getFirst(name);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static String etag(byte[] bytes) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(bytes)) + "\"";
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (exchange.getRequestMethod().equals("HEAD") || bytes.length == 0) {
+            exchange.sendResponseHeaders(status, -1);   // no body: writing even 0 bytes would fail
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,112 @@
+package hairmony.service;
+
+import hairmony.dto.PointDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SocketForeheadTipProviderTest {
+
+    @TempDir
+    Path tempDir;
+
+    // Echo the payload size back so every reply can be matched to its request
+    private static float[] lengthEcho(byte[] jpeg) {
+        return new float[]{jpeg.length, jpeg.length / 2f};
+    }
+
+    @Test
+    @DisplayName("Unix domain socket: raw bytes in, two floats out, one persistent connection")
+    void testUnixSocketRoundTrip() throws Exception {
+        Path socket = tempDir.resolve("forehead.sock");
+        try (ForeheadStubServer stub = ForeheadStubServer.unix(socket, SocketForeheadTipProviderTest::lengthEcho)) {
+            SocketForeheadTipProvider provider = new SocketForeheadTipProvider(socket.toString(), "127.0.0.1", 1, 4, 2000);
+
+            for (int size = 1; size <= 50; size++) {
+                PointDTO tip = provider.detectForeheadTip(new byte[size * 100]);
+                assertEquals(size * 100, tip.x(), 0.001);
+                assertEquals(size * 50, tip.y(), 0.001);
+            }
+            assertEquals(1, stub.connections());
+            assertEquals(50, stub.frames());
+            provider.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Falls back to loopback TCP when the socket file does not exist")
+    void testTcpFallback() throws Exception {
+        try (ForeheadStubServer stub = ForeheadStubServer.tcp(jpeg -> new float[]{120f, 60f})) {
+            SocketForeheadTipProvider provider = new SocketForeheadTipProvider(
+                    tempDir.resolve("missing.sock").toString(), "127.0.0.1", stub.port(), 4, 2000);
+
+            PointDTO tip = provider.detectForeheadTip(new byte[]{1, 2, 3});
+            assertEquals(new PointDTO(120.0, 60.0), tip);
+            provider.close();
+        }
+    }
+
+    @Test
+    @DisplayName("NaN reply => no forehead found")
+    void testNoForehead() throws Exception {
+        try (ForeheadStubServer stub = ForeheadStubServer.tcp(jpeg -> new float[]{Float.NaN, Float.NaN})) {
+            SocketForeheadTipProvider provider = new SocketForeheadTipProvider(null, "127.0.0.1", stub.port(), 4, 2000);
+            assertNull(provider.detectForeheadTip(new byte[10]));
+            provider.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A call past its deadline throws and the connection is replaced")
+    void testDeadline() throws Exception {
+        try (ForeheadStubServer stub = ForeheadStubServer.tcp(SocketForeheadTipProviderTest::lengthEcho)) {
+            SocketForeheadTipProvider provider = new SocketForeheadTipProvider(null, "127.0.0.1", stub.port(), 4, 200);
+
+            stub.setDelayMs(1000);
+            long start = System.nanoTime();
+            assertThrows(UncheckedIOException.class, () -> provider.detectForeheadTip(new byte[10]));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 900);
+
+            stub.setDelayMs(0);
+            PointDTO tip = provider.detectForeheadTip(new byte[42]);
+            assertEquals(42, tip.x(), 0.001);
+            assertEquals(2, stub.connections());
+            provider.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent callers each get their own reply and connections stay bounded")
+    void testConcurrentCalls() throws Exception {
+        Path socket = tempDir.resolve("concurrent.sock");
+        try (ForeheadStubServer stub = ForeheadStubServer.unix(socket, SocketForeheadTipProviderTest::lengthEcho)) {
+            SocketForeheadTipProvider provider = new SocketForeheadTipProvider(socket.toString(), "127.0.0.1", 1, 4, 5000);
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            try {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 1; i <= 200; i++) {
+                    int size = i * 7;
+                    results.add(executor.submit(() -> {
+                        PointDTO tip = provider.detectForeheadTip(new byte[size]);
+                        return tip != null && tip.x() == size;
+                    }));
+                }
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get(30, TimeUnit.SECONDS));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertTrue(stub.connections() <= 4);
+            provider.close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package hairmony.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadBufferTest {
+
+    @Test
+    @DisplayName("Contents and digest match the stream, across growth and reuse")
+    void testReadGrowAndReuse() throws IOException {
+        UploadBuffer buffer = new UploadBuffer();
+        byte[] large = randomBytes(3 * UploadBuffer.INITIAL_CAPACITY + 17);
+        byte[] small = randomBytes(1000);
+
+        assertEquals(FaceAnalysisCache.digest(large), buffer.readFrom(new ByteArrayInputStream(large), 8L << 20));
+        assertArrayEquals(large, toArray(buffer.contents()));
+        assertTrue(buffer.contents().isDirect());
+        long grownCapacity = buffer.capacity();
+
+        // Reused for a smaller upload: same native block, only the new bytes are visible
+        assertEquals(FaceAnalysisCache.digest(small), buffer.readFrom(new ByteArrayInputStream(small), 8L << 20));
+        assertArrayEquals(small, toArray(buffer.contents()));
+        assertEquals(grownCapacity, buffer.capacity());
+    }
+
+    @Test
+    @DisplayName("Upload over the cap => rejected while reading; exactly at the cap => accepted")
+    void testSizeCap() throws IOException {
+        UploadBuffer buffer = new UploadBuffer();
+        assertThrows(UploadBuffer.UploadTooLargeException.class,
+                () -> buffer.readFrom(new ByteArrayInputStream(new byte[5001]), 5000));
+        buffer.readFrom(new ByteArrayInputStream(new byte[5000]), 5000);
+        assertEquals(5000, buffer.contents().remaining());
+
+        UploadBufferPool pool = new UploadBufferPool(1, 5000, 5000, 1_000);
+        MockMultipartFile tooBig = new MockMultipartFile("file", new byte[6000]);
+        assertThrows(UploadBuffer.UploadTooLargeException.class, () -> pool.ingest(tooBig, (digest, image) -> digest));
+    }
+
+    @Test
+    @DisplayName("A buffer grown past the retained size is freed when returned; closing an upload twice returns it once")
+    void testShrinkAndEarlyClose() throws IOException {
+        UploadBuffer buffer = new UploadBuffer();
+        buffer.readFrom(new ByteArrayInputStream(new byte[1000]), 8L << 20);
+        buffer.shrink(2L << 20);
+        assertEquals(UploadBuffer.INITIAL_CAPACITY, buffer.capacity());
+
+        buffer.readFrom(new ByteArrayInputStream(randomBytes(3 << 20)), 8L << 20);
+        buffer.shrink(2L << 20);
+        assertEquals(0, buffer.capacity());
+        byte[] small = randomBytes(1000);
+        assertEquals(FaceAnalysisCache.digest(small), buffer.readFrom(new ByteArrayInputStream(small), 8L << 20));
+        assertArrayEquals(small, toArray(buffer.contents()));
+
+        UploadBufferPool pool = new UploadBufferPool(1, 8L << 20, 2L << 20, 100);
+        MockMultipartFile file = new MockMultipartFile("file", small);
+        try (UploadBufferPool.Upload first = pool.open(file)) {
+            first.close();   // done with the bytes: the single buffer is free for the next upload
+            first.close();
+            assertEquals(0, pool.stats().inUse());
+            try (UploadBufferPool.Upload second = pool.open(file)) {
+                assertEquals(first.digest(), second.digest());
+                assertEquals(1, pool.stats().inUse());
+            }
+        }
+        assertEquals(0, pool.stats().inUse());
+    }
+
+    @Test
+    @DisplayName("Ingesting an 8 MB upload allocates a small fraction of its size on the heap")
+    void testIngestionHeapAllocation() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        byte[] image = randomBytes(8 << 20);
+        MockMultipartFile file = new MockMultipartFile("file", image);
+        UploadBufferPool pool = new UploadBufferPool(1, 16L << 20, 16L << 20, 1_000);
+        pool.ingest(file, (digest, bytes) -> digest);   // warm-up: grows the pooled buffer once
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        String digest = pool.ingest(file, (d, bytes) -> d);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(FaceAnalysisCache.digest(image), digest);
+        System.out.printf("Upload ingestion: %d KB heap allocated for an %d KB upload%n", allocated / 1024, image.length / 1024);
+        assertTrue(allocated < image.length / 8, "heap allocated while ingesting: " + allocated);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,222 @@
+package hairmony.service;
+
+import hairmony.serviceInterfaces.IObjectStorage;
+import hairmony.serviceInterfaces.ImageVariantServiceInf;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadFileServerTest {
+
+    @TempDir
+    Path root;
+
+    private Path uploads;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ImageVariantServiceImpl variants;
+    private UploadFileServer server;
+
+    private String picture;       // relative path of a content-addressed upload
+    private byte[] pictureBytes;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        uploads = Files.createDirectories(root.resolve("uploads"));
+        variants = new ImageVariantServiceImpl(uploads.toString(), Mockito.mock(ExecutorService.class),
+                new SimpleMeterRegistry(), "jpg", 82, 160, 640, false);
+        // 1 KB kept in memory, files from 4 KB up go through sendfile
+        server = new UploadFileServer(variants, new LocalObjectStorage(uploads.toString()), registry,
+                uploads.toString(), 64 * 1024, 1024, 4096, 0);
+
+        pictureBytes = new byte[300];
+        Arrays.fill(pictureBytes, (byte) 7);
+        String hash = sha256(pictureBytes);
+        picture = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".jpg";
+        write(picture, pictureBytes);
+    }
+
+    private void write(String relative, byte[] bytes) throws Exception {
+        Path file = uploads.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes);
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    private MockHttpServletResponse get(String path, String size, String... headers) throws Exception {
+        return get(server, path, size, headers);
+    }
+
+    private static MockHttpServletResponse get(UploadFileServer server, String path, String size, String... headers)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/" + path);
+        for (int i = 0; i < headers.length; i += 2) {
+            request.addHeader(headers[i], headers[i + 1]);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        server.serve(path, size, request, response);
+        return response;
+    }
+
+    @Test
+    @DisplayName("Content-addressed originals carry their hash as ETag and are immutable; If-None-Match => 304")
+    void testEtagAndImmutable() throws Exception {
+        MockHttpServletResponse response = get(picture, null);
+        assertEquals(200, response.getStatus());
+        String etag = "\"" + picture.substring(6, 70) + "\"";
+        assertEquals(etag, response.getHeader("ETag"));
+        assertEquals(UploadFileServer.IMMUTABLE, response.getHeader("Cache-Control"));
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertArrayEquals(pictureBytes, response.getContentAsByteArray());
+
+        MockHttpServletResponse revalidated = get(picture, null, "If-None-Match", "\"other\", W/" + etag);
+        assertEquals(304, revalidated.getStatus());
+        assertEquals(0, revalidated.getContentAsByteArray().length);
+        assertEquals(etag, revalidated.getHeader("ETag"));
+        assertEquals(1.0, registry.counter("uploads.served", "via", "not_modified").count());
+    }
+
+    @Test
+    @DisplayName("Single byte ranges => 206; bad If-Range or several ranges => whole file; past the end => 416")
+    void testRanges() throws Exception {
+        MockHttpServletResponse middle = get(picture, null, "Range", "bytes=10-19");
+        assertEquals(206, middle.getStatus());
+        assertEquals("bytes 10-19/300", middle.getHeader("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(pictureBytes, 10, 20), middle.getContentAsByteArray());
+
+        MockHttpServletResponse suffix = get(picture, null, "Range", "bytes=-5");
+        assertEquals("bytes 295-299/300", suffix.getHeader("Content-Range"));
+        assertEquals(5, suffix.getContentAsByteArray().length);
+
+        MockHttpServletResponse open = get(picture, null, "Range", "bytes=290-");
+        assertEquals("bytes 290-299/300", open.getHeader("Content-Range"));
+
+        assertEquals(200, get(picture, null, "Range", "bytes=0-1,5-6").getStatus());
+        assertEquals(200, get(picture, null, "Range", "bytes=0-9", "If-Range", "\"stale\"").getStatus());
+
+        MockHttpServletResponse beyond = get(picture, null, "Range", "bytes=300-");
+        assertEquals(416, beyond.getStatus());
+        assertEquals("bytes */300", beyond.getHeader("Content-Range"));
+    }
+
+    @Test
+    @DisplayName("?size= serves the variant once it exists, the original (to be revalidated) until then")
+    void testVariantFallback() throws Exception {
+        MockHttpServletResponse pending = get(picture, "thumb");
+        assertArrayEquals(pictureBytes, pending.getContentAsByteArray());
+        assertEquals(UploadFileServer.REVALIDATE, pending.getHeader("Cache-Control"));
+
+        byte[] thumb = {1, 2, 3};
+        write(variants.variantFileName(picture, "thumb"), thumb);
+        MockHttpServletResponse ready = get(picture, "thumb");
+        assertArrayEquals(thumb, ready.getContentAsByteArray());
+        assertEquals(UploadFileServer.VARIANT, ready.getHeader("Cache-Control"));
+        assertEquals("\"" + sha256(thumb) + "\"", ready.getHeader("ETag"));
+
+        assertArrayEquals(pictureBytes, get(picture, "huge").getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("Legacy files are hashed for their ETag, and a changed file is not served from the cache")
+    void testLegacyFileChanges() throws Exception {
+        write("0b1c_me.png", new byte[]{1, 1, 1});
+        MockHttpServletResponse first = get("0b1c_me.png", null);
+        assertEquals(UploadFileServer.REVALIDATE, first.getHeader("Cache-Control"));
+        assertEquals("image/png", first.getContentType());
+        assertEquals(first.getHeader("ETag"), get("0b1c_me.png", null).getHeader("ETag"));
+        assertEquals(2.0, registry.counter("uploads.served", "via", "memory").count(), "small files are sent from memory");
+
+        write("0b1c_me.png", new byte[]{2, 2, 2, 2});
+        Files.setLastModifiedTime(uploads.resolve("0b1c_me.png"), FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+        MockHttpServletResponse changed = get("0b1c_me.png", null);
+        assertArrayEquals(new byte[]{2, 2, 2, 2}, changed.getContentAsByteArray());
+        assertNotEquals(first.getHeader("ETag"), changed.getHeader("ETag"));
+    }
+
+    @Test
+    @DisplayName("Large files go to Tomcat's sendfile when supported, through FileChannel.transferTo otherwise")
+    void testLargeFiles() throws Exception {
+        byte[] large = new byte[10_000];
+        Arrays.fill(large, (byte) 9);
+        write("big.jpg", large);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/big.jpg");
+        request.setAttribute(UploadFileServer.SENDFILE_SUPPORTED, Boolean.TRUE);
+        request.addHeader("Range", "bytes=100-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        server.serve("big.jpg", null, request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals(uploads.resolve("big.jpg").toAbsolutePath().normalize().toString(),
+                request.getAttribute(UploadFileServer.SENDFILE_FILENAME));
+        assertEquals(100L, request.getAttribute(UploadFileServer.SENDFILE_START));
+        assertEquals(10_000L, request.getAttribute(UploadFileServer.SENDFILE_END));
+        assertEquals(9_900, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length, "the container writes the body");
+
+        MockHttpServletResponse copied = get("big.jpg", null);
+        assertArrayEquals(large, copied.getContentAsByteArray());
+        assertEquals(1.0, registry.counter("uploads.served", "via", "channel").count());
+    }
+
+    @Test
+    @DisplayName("Traversal, dot files (uploads/.tmp) and missing files => 404")
+    void testRejectsOutsidePaths() throws Exception {
+        Files.writeString(root.resolve("secret.txt"), "secret");
+        write(".tmp/upload-1.tmp", new byte[]{1});
+
+        assertEquals(404, get("../secret.txt", null).getStatus());
+        assertEquals(404, get("ab/../../secret.txt", null).getStatus());
+        assertEquals(404, get(".tmp/upload-1.tmp", null).getStatus());
+        assertEquals(404, get("ab//x.jpg", null).getStatus());
+        assertEquals(404, get("missing.jpg", null).getStatus());
+        assertEquals(404, get(picture.substring(0, 2), null).getStatus(), "directories are not served");
+    }
+
+    @Test
+    @DisplayName("A presigning store redirects originals to the bucket; variants are derived from the local copy")
+    void testRedirectToObjectStore() throws Exception {
+        IObjectStorage store = Mockito.mock(IObjectStorage.class);
+        URI presigned = URI.create("https://bucket.example/" + picture + "?X-Amz-Signature=abc");
+        Mockito.when(store.presignedGet(Mockito.eq(picture), Mockito.any())).thenReturn(Optional.of(presigned));
+        Mockito.when(store.localFile(picture)).thenReturn(Optional.of(uploads.resolve(picture)));
+        Mockito.when(store.localFile("ab/cd/" + "0".repeat(64) + ".jpg")).thenReturn(Optional.empty());
+        ImageVariantServiceInf variantService = Mockito.mock(ImageVariantServiceInf.class);
+        Mockito.when(variantService.variantFileName(picture, "thumb")).thenReturn("variants/" + picture + ".thumb.jpg");
+        UploadFileServer redirecting = new UploadFileServer(variantService, store, registry, uploads.toString(),
+                64 * 1024, 1024, 4096, 600);
+
+        MockHttpServletResponse original = get(redirecting, picture, null);
+        assertEquals(302, original.getStatus());
+        assertEquals(presigned.toString(), original.getRedirectedUrl());
+        assertEquals("private, max-age=300", original.getHeader("Cache-Control"));
+        assertEquals(1.0, registry.counter("uploads.served", "via", "redirect").count());
+
+        MockHttpServletResponse thumb = get(redirecting, picture, "thumb");
+        assertEquals(200, thumb.getStatus());
+        assertArrayEquals(pictureBytes, thumb.getContentAsByteArray());
+        Mockito.verify(variantService).generateVariants("uploads/" + picture);
+
+        assertEquals(404, get(redirecting, "ab/cd/" + "0".repeat(64) + ".jpg", "thumb").getStatus());
+    }
+}
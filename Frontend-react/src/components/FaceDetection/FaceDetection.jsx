@@ -1,9 +1,8 @@
 "use client"
 
-import { useState, useRef, useCallback } from "react"
+import { useState, useRef } from "react"
 import axios from "axios"
 import { Link, useNavigate } from "react-router-dom"
-import { useAuth } from "../../contexts/AuthContext"
 
 export default function UploadImage() {
   const [image, setImage] = useState(null)
@@ -15,7 +14,6 @@ export default function UploadImage() {
   const [error, setError] = useState("")
   const canvasRef = useRef(null)
   const fileInputRef = useRef(null)
-  const { userId } = useAuth()
   const [showPaymentModal, setShowPaymentModal] = useState(false) // <-- controls popup
 
   const navigate = useNavigate()
@@ -51,30 +49,8 @@ export default function UploadImage() {
     }
   }
 
-  /**
-   * Check usage before analyzing
-   * e.g. GET /usage/check?feature=upload&userId=123
-   */
-  const checkUsage = useCallback(async () => {
-    try {
-      const res = await axios.get("http://localhost:8443/usage/check", {
-        params: { feature: "upload", userId },
-      })
-      return res.data.status === "OK"
-    } catch (err) {
-      console.error("Usage check error:", err)
-      return false
-    }
-  }, [userId])
-
-  // "Analyze Face" button
-  const handleAnalyzeClick = async () => {
-    // 1) Check usage first
-    const canUse = await checkUsage()
-    if (!canUse) {
-      setShowPaymentModal(true)
-      return
-    }
+  // "Analyze Face" button. The upload quota is checked and charged by /AI/analyze-face itself
+  const handleAnalyzeClick = () => {
     handleUpload()
   }
 
@@ -121,6 +97,11 @@ export default function UploadImage() {
         resizedHeight,
       })
     } catch (err) {
+      // 402 => no upload trials left
+      if (err.response?.status === 402) {
+        setShowPaymentModal(true)
+        return
+      }
       console.error("Error uploading image:", err)
       setError("Failed to analyze face")
     } finally {
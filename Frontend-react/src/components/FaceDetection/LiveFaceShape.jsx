@@ -2,9 +2,10 @@
 
 import { useRef, useEffect, useState, useCallback } from "react"
 import Webcam from "react-webcam"
-import axios from "axios"
 import { Link, useNavigate } from "react-router-dom"
-import { useAuth } from "../../contexts/AuthContext"
+
+// Close code of a live session refused for payment (the server sends a NEED_PAYMENT message first)
+const NEED_PAYMENT_CLOSE = 1008
 
 export default function LiveFaceShape() {
   const webcamRef = useRef(null)
@@ -17,23 +18,9 @@ export default function LiveFaceShape() {
   const [authorized, setAuthorized] = useState(false)
   const [showPaymentModal, setShowPaymentModal] = useState(false) // <-- controls popup
 
-  const { userId } = useAuth()
   const navigate = useNavigate()
 
-  // 1) Check usage
-  const checkUsage = useCallback(async () => {
-    try {
-      const res = await axios.get("http://localhost:8443/usage/check", {
-        params: { feature: "live", userId },
-      })
-      return res.data.status === "OK"
-    } catch (err) {
-      console.error("Usage check error:", err)
-      return false
-    }
-  }, [userId])
-
-  // 2) dataURL to Blob helper
+  // 1) dataURL to Blob helper
   function dataURLtoBlob(dataurl) {
     const arr = dataurl.split(",")
     const mime = arr[0].match(/:(.*?);/)[1]
@@ -46,7 +33,7 @@ export default function LiveFaceShape() {
     return new Blob([u8arr], { type: mime })
   }
 
-  // 3) Draw shape on the canvas
+  // 2) Draw shape on the canvas
   const drawShape = useCallback((data) => {
     if (!canvasRef.current || !webcamRef.current?.video) return
 
@@ -89,61 +76,76 @@ export default function LiveFaceShape() {
     }
   }, [])
 
-  // 4) Start capturing frames
-  const processFrame = useCallback(async () => {
-    if (!webcamRef.current) return
-    try {
-      setIsLoading(true)
-      const screenshot = webcamRef.current.getScreenshot()
-      if (!screenshot) return
-
-      const blob = dataURLtoBlob(screenshot)
-      const formData = new FormData()
-      formData.append("file", blob, "frame.jpg")
-
-      const response = await axios.post("http://localhost:8443/AI/analyze-face", formData, {
-        headers: { "Content-Type": "multipart/form-data" },
-      })
-
-      setFaceData((prev) => (JSON.stringify(prev) === JSON.stringify(response.data) ? prev : response.data))
-      drawShape(response.data)
-      setError(null)
-    } catch (err) {
-      setError("Failed to analyze frame. Please try again.")
-      console.error("Error detecting face shape:", err)
-    } finally {
-      setIsLoading(false)
-    }
-  }, [drawShape])
+  // 3) Send the current frame over the live socket.
+  //    The server only answers when the result changed, and drops frames it can't keep up with.
+  const socketRef = useRef(null)
+
+  const processFrame = useCallback(() => {
+    const socket = socketRef.current
+    if (!webcamRef.current || !socket || socket.readyState !== WebSocket.OPEN) return
+    // Skip this tick while the previous frame is still being uploaded
+    if (socket.bufferedAmount > 0) return
+    const screenshot = webcamRef.current.getScreenshot()
+    if (!screenshot) return
+    socket.send(dataURLtoBlob(screenshot))
+  }, [])
 
-  // 5) On mount, check usage & either start detection or show modal
+  // 4) On mount, open the live session; the server charges it and refuses it when payment is needed
   useEffect(() => {
     let isMounted = true
     const intervalRef = { current: null }
 
-    const startInterval = () => {
-      // capture frame every ~1.5s
-      intervalRef.current = setInterval(() => {
-        if (isMounted) processFrame()
-      }, 500)
-    }
+    const startSession = () => {
+      setIsLoading(true)
+      const token = localStorage.getItem("token")
+      // The JWT rides as a subprotocol after "bearer", so it never shows up in a URL
+      const socket = new WebSocket("ws://localhost:8443/AI/live", token ? ["bearer", token] : ["bearer"])
+      socketRef.current = socket
 
-    checkUsage().then((ok) => {
-      if (!isMounted) return
-      if (ok) {
+      socket.onopen = () => {
+        if (!isMounted) return
         setAuthorized(true)
-        startInterval()
-      } else {
-        setAuthorized(false)
-        setShowPaymentModal(true) // <-- show popup if not authorized
+        setError(null)
+        // capture a frame every ~100ms
+        intervalRef.current = setInterval(processFrame, 100)
       }
-    })
+      socket.onmessage = (event) => {
+        if (!isMounted) return
+        const update = JSON.parse(event.data)
+        setIsLoading(false)
+        if (update.status === "NEED_PAYMENT") {
+          setAuthorized(false)
+          setShowPaymentModal(true)
+          return
+        }
+        setFaceData(update)
+        drawShape(update)
+        setError(null)
+      }
+      socket.onerror = (err) => {
+        console.error("Live session error:", err)
+      }
+      socket.onclose = (event) => {
+        clearInterval(intervalRef.current)
+        if (!isMounted) return
+        setIsLoading(false)
+        if (event.code === NEED_PAYMENT_CLOSE) {
+          setAuthorized(false)
+          setShowPaymentModal(true)
+          return
+        }
+        setError("Live session disconnected. Please reload the page.")
+      }
+    }
+
+    startSession()
 
     return () => {
       isMounted = false
       clearInterval(intervalRef.current)
+      socketRef.current?.close()
     }
-  }, [checkUsage, processFrame])
+  }, [processFrame, drawShape])
 
   return (
     <div className="pt-24 min-h-screen bg-gradient-to-b from-gray-50 to-gray-100 dark:from-gray-900 dark:to-gray-800 pb-12 px-4">
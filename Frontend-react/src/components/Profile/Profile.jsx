@@ -55,7 +55,7 @@ export default function Profile() {
     
                 // Set preview URL with full server path
                 if (res.data.picturePath) {
-                    setPreviewUrl(`http://localhost:8443/${res.data.picturePath}`)
+                    setPreviewUrl(`http://localhost:8443/${res.data.picturePath}?size=medium`)
                 } else {
                     setPreviewUrl(null)
                 }
@@ -152,7 +152,7 @@ export default function Profile() {
             setNewPassword("")
             setProfilePicture(null)
             // Reset previewUrl to new server path or null
-            setPreviewUrl(res.data.picturePath ? `http://localhost:8443/${res.data.picturePath}` : null)
+            setPreviewUrl(res.data.picturePath ? `http://localhost:8443/${res.data.picturePath}?size=medium` : null)
             setSuccess("Profile updated successfully!")
     
             setTimeout(() => setSuccess(""), 3000)
@@ -191,7 +191,7 @@ export default function Profile() {
                             onClick={() => {
                                 setEditMode(false)
                                 setNewPassword("")
-                                setPreviewUrl(profile.picturePath ? `http://localhost:8443/${profile.picturePath}` : null)
+                                setPreviewUrl(profile.picturePath ? `http://localhost:8443/${profile.picturePath}?size=medium` : null)
                                 setProfilePicture(null)
                             }}
                             className="flex items-center bg-white/20 hover:bg-white/30 text-white px-4 py-2 rounded-lg transition-colors"
@@ -227,7 +227,7 @@ export default function Profile() {
                                         <img src={previewUrl} alt="Profile" className="w-full h-full object-cover" />
                                     ) : (
                                         profile?.picturePath ? (
-                                            <img src={`http://localhost:8443/${profile.picturePath}`} alt="Profile" className="w-full h-full object-cover" />
+                                            <img src={`http://localhost:8443/${profile.picturePath}?size=medium`} alt="Profile" className="w-full h-full object-cover" />
                                         ) : (
                                             <div className="w-full h-full flex items-center justify-center">
                                                 <User className="h-16 w-16 text-gray-400" />
@@ -29,6 +29,9 @@ export default function ReservationPage() {
   const [reservationDate, setReservationDate] = useState("")
   const [reservationTime, setReservationTime] = useState("")
   const [notes, setNotes] = useState("")
+  const [timeSlots, setTimeSlots] = useState([])
+  const [slotsLoading, setSlotsLoading] = useState(false)
+  const [slotsVersion, setSlotsVersion] = useState(0)
 
   // Auth and routing
   const { userId } = useAuth()
@@ -66,6 +69,39 @@ export default function ReservationPage() {
       .catch(err => console.error('Error fetching all barbers:', err))
   }, [])
 
+  // Free start times of the selected barber on the selected date
+  useEffect(() => {
+    if (!selectedBarber || !reservationDate) {
+      setTimeSlots([])
+      return
+    }
+    let cancelled = false
+    setSlotsLoading(true)
+    axios.get(`http://localhost:8443/barbers/${selectedBarber.id}/availability`, {
+      params: { from: reservationDate, to: reservationDate },
+    })
+      .then((res) => {
+        if (cancelled) return
+        const day = res.data.days.find((d) => d.date === reservationDate)
+        // "09:00:00" -> "09:00"
+        const slots = day ? day.freeSlots.map((time) => time.slice(0, 5)) : []
+        setTimeSlots(slots)
+        setReservationTime((time) => (slots.includes(time) ? time : ""))
+      })
+      .catch((err) => {
+        if (cancelled) return
+        console.error("Error fetching availability:", err)
+        setTimeSlots([])
+        setError("Failed to load the barber's available times. Please try again.")
+      })
+      .finally(() => {
+        if (!cancelled) setSlotsLoading(false)
+      })
+    return () => {
+      cancelled = true
+    }
+  }, [selectedBarber, reservationDate, slotsVersion])
+
   // Sort hairstyles based on recommendations
   useEffect(() => {
     if (hairstyles.length > 0 && recommendedHairstyleNames.length > 0) {
@@ -157,6 +193,12 @@ export default function ReservationPage() {
           message: message || "Payment required for this haircut",
         })
         setShowPaymentModal(true)
+      } else if (err.response && err.response.status === 409) {
+        // Taken meanwhile, closed or past: the server says which; pick again from fresh times
+        setError(err.response.data?.message || err.response.data || "That time is no longer available. Please pick another one.")
+        setReservationTime("")
+        setShowSummary(false)
+        setSlotsVersion((version) => version + 1)
       } else {
         setError("Reservation creation failed. Please try again or contact support.")
       }
@@ -239,14 +281,6 @@ export default function ReservationPage() {
     return hairstyles.find((h) => h.id === selectedHairstyle) || {}
   }
 
-  const getAvailableTimeSlots = () => {
-    return [
-      "09:00", "09:30", "10:00", "10:30", "11:00", "11:30",
-      "13:00", "13:30", "14:00", "14:30", "15:00", "15:30",
-      "16:00", "16:30", "17:00", "17:30",
-    ]
-  }
-
   const renderStars = (rating) => {
     const numericRating = parseFloat(rating)
     
@@ -602,7 +636,7 @@ export default function ReservationPage() {
                     <div>
                       <img 
                         className="w-40 h-40 rounded-lg" 
-                        src={(`http://localhost:8443/${selectedBarbershop?.picture || "/placeholder.svg"}`)} 
+                        src={(`http://localhost:8443/${selectedBarbershop?.picture || "/placeholder.svg"}?size=medium`)} 
                         alt={selectedBarbershop?.name}
                         onError={(e) => {
                           e.target.src = "https://via.placeholder.com/160x160?text=Barbershop";
@@ -637,7 +671,7 @@ export default function ReservationPage() {
                   </h3>
                   <div className="flex items-start">
                     <img
-                      src={(`http://localhost:8443/${selectedBarber?.picture || "/placeholder.svg"}`)}
+                      src={(`http://localhost:8443/${selectedBarber?.picture || "/placeholder.svg"}?size=medium`)}
                       alt={selectedBarber?.username}
                       className="w-40 h-40 object-cover rounded-lg mr-3"
                       onError={(e) => {
@@ -1119,7 +1153,7 @@ export default function ReservationPage() {
                             <div className="flex items-start">
                               <div className="flex-shrink-0 h-16 w-16 bg-indigo-100 dark:bg-indigo-900/30 rounded-lg flex items-center justify-center mr-4">
                                 <img 
-                                  src={`http://localhost:8443/${shop.picture}`} 
+                                  src={`http://localhost:8443/${shop.picture}?size=thumb`} 
                                   alt={shop.name}
                                   className="w-full h-full object-cover rounded-lg"
                                   onError={(e) => {
@@ -1214,7 +1248,7 @@ export default function ReservationPage() {
                           >
                             <div className="relative">
                               <img
-                                src={(`http://localhost:8443/${barber.picture || "/placeholder.svg"}`)}
+                                src={(`http://localhost:8443/${barber.picture || "/placeholder.svg"}?size=medium`)}
                                 alt={barber.name}
                                 className="w-full h-48 object-cover"
                                 onError={(e) => {
@@ -1383,10 +1417,18 @@ export default function ReservationPage() {
                           <div className="text-center py-8 text-gray-500 dark:text-gray-400">
                             Please select a date first
                           </div>
+                        ) : slotsLoading ? (
+                          <div className="text-center py-8 text-gray-500 dark:text-gray-400">
+                            Loading available times...
+                          </div>
+                        ) : timeSlots.length === 0 ? (
+                          <div className="text-center py-8 text-gray-500 dark:text-gray-400">
+                            No free times on this day, please pick another date
+                          </div>
                         ) : (
                           <>
                             <div className="grid grid-cols-3 gap-2">
-                              {getAvailableTimeSlots().map((time) => {
+                              {timeSlots.map((time) => {
                                 const isSelected = time === reservationTime
 
                                 return (